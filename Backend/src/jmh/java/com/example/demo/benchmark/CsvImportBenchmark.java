@@ -0,0 +1,91 @@
+package com.example.demo.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.demo.model.TransactionRecord;
+import com.example.demo.utility.CsvFilter;
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvValidationException;
+
+/**
+ * CSV 账单解析吞吐量，结果单位为 rows/s（每次调用解析 ROWS 行）：
+ * legacy = 旧 importCsv，每一行都重新查找列下标
+ * streaming = CsvFilter.stream，表头只解析一次，逐行校验并转换成 TransactionRecord
+ *
+ * 端到端（含 JDBC 批量写入）的吞吐见 CsvImportThroughputTest。
+ * 运行: ./gradlew jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CsvImportBenchmark {
+    private static final int ROWS = 100_000;
+
+    private String csv;
+    private CsvFilter csvFilter;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StringBuilder builder = new StringBuilder("交易时间,交易类型,交易对方,商品,收/支,金额(元),支付方式\n");
+        for (int i = 0; i < ROWS; i++) {
+            builder.append(String.format("2024-%02d-%02d 12:%02d:00,商户消费,商户%d,商品%d,%s,%d.%02d,零钱%n",
+                    i % 12 + 1, i % 28 + 1, i % 60, i % 97, i, i % 3 == 0 ? "收入" : "支出", i % 500 + 1, i % 100));
+        }
+        csv = builder.toString();
+        csvFilter = new CsvFilter();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void legacyPerRowHeaderLookup(Blackhole blackhole) throws IOException, CsvValidationException {
+        try (CSVReader csvReader = new CSVReader(new BufferedReader(new StringReader(csv)))) {
+            String[] headers = csvReader.readNext();
+            String[] values;
+            while ((values = csvReader.readNext()) != null) {
+                int typeIndex = findColumnIndex(headers, "收/支");
+                int amountIndex = findColumnIndex(headers, "金额(元)");
+                int timeIndex = findColumnIndex(headers, "交易时间");
+                blackhole.consume(values[typeIndex]);
+                blackhole.consume(values[amountIndex]);
+                blackhole.consume(values[timeIndex]);
+                blackhole.consume(new TransactionRecord());
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROWS)
+    public void streamingParse(Blackhole blackhole) {
+        try (Stream<CsvFilter.CsvRow> rows = csvFilter.stream(new StringReader(csv))) {
+            Iterator<CsvFilter.CsvRow> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                blackhole.consume(iterator.next().record());
+            }
+        }
+    }
+
+    private static int findColumnIndex(String[] headers, String columnName) {
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i].equals(columnName)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.demo.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.demo.utility.jwt.JwtUtil;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+
+/**
+ * 对比一次认证请求里的 token 解析开销：
+ * legacy = 旧实现，每次 validate / getUserId / getRole 都新建 parser 并重新验签
+ * cached = parseClaims，复用 JwtParser 并命中 claims 缓存
+ *
+ * 运行: ./gradlew jmh
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JwtClaimsBenchmark {
+    private static final String SECRET = "benchmarksecretbenchmarksecretbenchmarksecretbenchmarksecret";
+    private static final int TOKEN_COUNT = 10_000;
+
+    private JwtUtil jwtUtil;
+    private SecretKey key;
+    private String[] tokens;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        jwtUtil = new JwtUtil(SECRET, 3_600_000L, TOKEN_COUNT);
+        key = Keys.hmacShaKeyFor(SECRET.getBytes());
+        tokens = new String[TOKEN_COUNT];
+        for (int i = 0; i < TOKEN_COUNT; i++) {
+            tokens[i] = jwtUtil.generateToken((long) i, "user" + i, "ROLE_USER");
+        }
+    }
+
+    private String nextToken() {
+        cursor = (cursor + 1) % TOKEN_COUNT;
+        return tokens[cursor];
+    }
+
+    @Benchmark
+    public void legacyThreeParses(Blackhole blackhole) {
+        String token = nextToken();
+        blackhole.consume(Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token));
+        blackhole.consume(Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token)
+                .getBody().get("userId", Long.class));
+        blackhole.consume(Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token)
+                .getBody().get("role", String.class));
+    }
+
+    @Benchmark
+    public void cachedParseClaims(Blackhole blackhole) {
+        String token = nextToken();
+        Claims claims = jwtUtil.parseClaims(token);
+        blackhole.consume(claims.get("userId", Long.class));
+        blackhole.consume(claims.get("role", String.class));
+    }
+}
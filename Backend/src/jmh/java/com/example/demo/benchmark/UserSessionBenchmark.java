@@ -0,0 +1,165 @@
+package com.example.demo.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import com.example.demo.config.redis.RedisConfig;
+import com.example.demo.model.redis.RedisAccount;
+import com.example.demo.model.redis.RedisUser;
+import com.example.demo.service.session.CurrentAccountNearCache;
+import com.example.demo.service.session.UserSessionStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * 100k 个在线会话下读取用户资料、检查账户名重复的开销：
+ * legacy = 旧格式，KEYS login_user:{id}:account* 之后逐个 GET，KEYS 要遍历整个 keyspace
+ * hash = UserSessionStore，一个 HGETALL / HEXISTS
+ *
+ * 需要一个本地 Redis，并且会清空所用的数据库，默认使用 15 号库:
+ * ./gradlew jmh -Pjmh.includes=UserSessionBenchmark -Dredis.host=localhost -Dredis.database=15
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserSessionBenchmark {
+    private static final int SESSIONS = 100_000;
+    private static final int ACCOUNTS_PER_USER = 3;
+    private static final int SEED_BATCH_SIZE = 1_000;
+
+    private LettuceConnectionFactory connectionFactory;
+    private RedisTemplate<String, Object> redisTemplate;
+    private UserSessionStore userSessionStore;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int database = Integer.getInteger("redis.database", 15);
+        if (database == 0) {
+            throw new IllegalStateException("Refusing to flush database 0, pass -Dredis.database=<scratch db>");
+        }
+        RedisStandaloneConfiguration configuration = new RedisStandaloneConfiguration(
+                System.getProperty("redis.host", "localhost"), Integer.getInteger("redis.port", 6379));
+        configuration.setDatabase(database);
+        connectionFactory = new LettuceConnectionFactory(configuration);
+        connectionFactory.afterPropertiesSet();
+
+        RedisConfig redisConfig = new RedisConfig();
+        redisTemplate = redisConfig.redisTemplate(connectionFactory, redisConfig.redisObjectMapper(), true);
+        userSessionStore = new UserSessionStore(redisTemplate, new SimpleMeterRegistry(),
+                CurrentAccountNearCache.disabled(new SimpleMeterRegistry()), null, 60, false);
+
+        flush();
+        for (int start = 0; start < SESSIONS; start += SEED_BATCH_SIZE) {
+            seedBatch(start, Math.min(start + SEED_BATCH_SIZE, SESSIONS));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        flush();
+        connectionFactory.destroy();
+    }
+
+    // 两种格式各写一份：旧格式的独立 key 和新格式的哈希，哈希 key 不会匹配旧格式的 KEYS 模式
+    @SuppressWarnings("unchecked")
+    private void seedBatch(int from, int to) {
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplate.getKeySerializer();
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplate.getValueSerializer();
+        List<RedisUser> users = new ArrayList<>();
+        List<List<RedisAccount>> accounts = new ArrayList<>();
+        for (long userId = from; userId < to; userId++) {
+            users.add(new RedisUser(userId, "user" + userId, "user" + userId + "@example.com", "0400000000", null, "token-" + userId));
+            List<RedisAccount> userAccounts = new ArrayList<>();
+            for (int i = 0; i < ACCOUNTS_PER_USER; i++) {
+                long accountId = userId * ACCOUNTS_PER_USER + i;
+                userAccounts.add(new RedisAccount(accountId, "account" + i, 100.0, 50.0));
+            }
+            accounts.add(userAccounts);
+        }
+
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < users.size(); i++) {
+                String prefix = "login_user:" + users.get(i).getUserId() + ":";
+                connection.stringCommands().set(keySerializer.serialize(prefix + "info"), valueSerializer.serialize(users.get(i)));
+                List<Long> accountIds = new ArrayList<>();
+                for (RedisAccount account : accounts.get(i)) {
+                    accountIds.add(account.getId());
+                    connection.stringCommands().set(keySerializer.serialize(prefix + "account:" + account.getId()),
+                            valueSerializer.serialize(account));
+                }
+                connection.stringCommands().set(keySerializer.serialize(prefix + "account:initial placeholder"),
+                        valueSerializer.serialize(accountIds));
+            }
+            return null;
+        });
+        for (int i = 0; i < users.size(); i++) {
+            userSessionStore.open(users.get(i), accounts.get(i));
+        }
+    }
+
+    private void flush() {
+        redisTemplate.execute((RedisCallback<Object>) connection -> {
+            connection.serverCommands().flushDb();
+            return null;
+        });
+    }
+
+    private static long randomUser() {
+        return ThreadLocalRandom.current().nextLong(SESSIONS);
+    }
+
+    @Benchmark
+    public void legacyProfileRead(Blackhole blackhole) {
+        long userId = randomUser();
+        blackhole.consume(redisTemplate.opsForValue().get("login_user:" + userId + ":info"));
+        Set<String> keys = redisTemplate.keys("login_user:" + userId + ":account*");
+        for (String key : keys) {
+            if (!key.endsWith("initial placeholder")) {
+                blackhole.consume(redisTemplate.opsForValue().get(key));
+            }
+        }
+    }
+
+    @Benchmark
+    public void hashProfileRead(Blackhole blackhole) {
+        blackhole.consume(userSessionStore.load(randomUser()));
+    }
+
+    @Benchmark
+    public void legacyAccountNameCheck(Blackhole blackhole) {
+        long userId = randomUser();
+        boolean exists = false;
+        for (String key : redisTemplate.keys("login_user:" + userId + ":account*")) {
+            if (!key.endsWith("initial placeholder")
+                    && redisTemplate.opsForValue().get(key) instanceof RedisAccount account
+                    && account.getName().equals("account2")) {
+                exists = true;
+            }
+        }
+        blackhole.consume(exists);
+    }
+
+    @Benchmark
+    public void hashAccountNameCheck(Blackhole blackhole) {
+        blackhole.consume(userSessionStore.accountNameExists(randomUser(), "account2"));
+    }
+}
@@ -20,6 +20,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.client.RestClient;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 
@@ -28,6 +29,7 @@ import java.util.function.Consumer;
 
 @SpringBootApplication
 @EnableAsync
+@EnableScheduling
 @EnableElasticsearchRepositories
 @EnableJpaRepositories
 @EnableWebSocket
@@ -12,4 +12,9 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 public @interface Agent {
 
+    /**
+     * 用户消息里出现这些词时才把该 Agent 作为工具发给模型，见 AgentRegistry.select。
+     * 英文按单词前缀匹配，中文按子串匹配；为空表示每次都发送
+     */
+    String[] keywords() default {};
 }
@@ -1,11 +1,5 @@
 package com.example.demo.agent.AgentImpl;
 
-import com.crazzyghost.alphavantage.AlphaVantage;
-import com.crazzyghost.alphavantage.AlphaVantageException;
-import com.crazzyghost.alphavantage.fundamentaldata.response.CompanyOverviewResponse;
-import com.crazzyghost.alphavantage.parameters.OutputSize;
-import com.crazzyghost.alphavantage.timeseries.response.StockUnit;
-import com.crazzyghost.alphavantage.timeseries.response.TimeSeriesResponse;
 import com.example.demo.agent.Agent;
 import com.example.demo.agent.AbstractAgent;
 import com.example.demo.model.dto.TransactionRecordDTO;
@@ -22,7 +16,8 @@ import java.util.List;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
-@Agent
+@Agent(keywords = {"record", "transaction", "spend", "spent", "expense", "income", "payment", "paid", "bill",
+        "budget", "account", "balance", "purchase", "记录", "交易", "消费", "支出", "收入", "账单", "账户", "预算"})
 @Description("provide user request data")
 public class RecordAnalyzer extends AbstractAgent<RecordAnalyzer.Request, String> {
 
@@ -14,7 +14,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 
-@Agent
+@Agent(keywords = {"stock", "share", "ticker", "price", "market", "nasdaq", "nyse", "invest", "portfolio",
+        "company", "dividend", "股票", "股价", "股市", "公司", "市值", "投资"})
 @Description("provide user stock information")
 public class StockAnalyzer extends AbstractAgent<StockAnalyzer.Request, String> {
 
@@ -14,7 +14,8 @@ import org.springframework.stereotype.Component;
 
 import java.util.function.Function;
 
-@Agent
+@Agent(keywords = {"weather", "temperature", "rain", "forecast", "sunny", "wind", "humid", "snow", "storm",
+        "天气", "气温", "温度", "下雨", "预报"})
 @Description("provide user weather information")
 public class WeatherAnalyzer extends AbstractAgent<WeatherAnalyzer.Request, String> {
 
@@ -109,7 +110,7 @@ public class WeatherAnalyzer extends AbstractAgent<WeatherAnalyzer.Request, Stri
             // if request days is invalid
             int days = request.days <= 0 ? DEFAULT_DAYS : Math.min(request.days, 3);
 
-            JsonNode forecastData = weatherService.getForecast(request.location, days);
+            JsonNode forecastData = weatherService.getForecast(location, days);
             return formatForecastResponse(forecastData);
         }
 
@@ -0,0 +1,160 @@
+package com.example.demo.agent;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.model.function.FunctionCallback;
+import org.springframework.ai.model.function.FunctionCallbackWrapper;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.annotation.Description;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * 启动时收集所有 @Agent，为每个 Agent 生成一次 FunctionCallback（包括输入类型的 JSON schema），
+ * 请求时不再扫描 bean 或解析类型。select 按 @Agent.keywords 只挑出和用户消息相关的 Agent，
+ * 避免每次都把全部工具的 schema 放进提示；一个都没匹配上时发送全部 Agent，由模型自己判断。
+ * Agent 抛出的异常转换成 ToolExecutor 的结构化错误返回给模型，不会中断整轮对话
+ */
+@Slf4j
+@Component
+public class AgentRegistry {
+    private final List<AgentEntry> agents;
+    private final List<FunctionCallback> allCallbacks;
+    private final boolean selectionEnabled;
+    private final DistributionSummary selectedTools;
+
+    @Autowired
+    public AgentRegistry(ApplicationContext applicationContext,
+                         ToolExecutor toolExecutor,
+                         MeterRegistry meterRegistry,
+                         @Value("${ai.agent.tool-selection.enabled:true}") boolean selectionEnabled) {
+        this(applicationContext.getBeansWithAnnotation(Agent.class), toolExecutor, meterRegistry, selectionEnabled);
+    }
+
+    AgentRegistry(Map<String, Object> agentBeans, ToolExecutor toolExecutor, MeterRegistry meterRegistry,
+                  boolean selectionEnabled) {
+        List<AgentEntry> entries = new ArrayList<>();
+        agentBeans.forEach((name, bean) -> entries.add(toEntry(name, bean, toolExecutor)));
+        this.agents = List.copyOf(entries);
+        this.allCallbacks = entries.stream().map(AgentEntry::callback).toList();
+        this.selectionEnabled = selectionEnabled;
+        this.selectedTools = DistributionSummary.builder("ai.agent.tools.selected")
+                .description("Agents sent to the model as tools per request")
+                .register(meterRegistry);
+        log.info("Registered {} agents: {}", agents.size(), agents.stream().map(AgentEntry::name).toList());
+    }
+
+    /**
+     * 按用户消息挑选要发给模型的 Agent
+     */
+    public List<FunctionCallback> select(String message) {
+        List<FunctionCallback> selected = selectionEnabled ? matching(message) : allCallbacks;
+        if (selected.isEmpty()) {
+            selected = allCallbacks;
+        }
+        selectedTools.record(selected.size());
+        log.debug("Selected agents {} for message", selected.stream().map(FunctionCallback::getName).toList());
+        return selected;
+    }
+
+    public List<FunctionCallback> all() {
+        return allCallbacks;
+    }
+
+    private List<FunctionCallback> matching(String message) {
+        if (message == null || message.isBlank()) {
+            return List.of();
+        }
+        String normalized = message.toLowerCase(Locale.ROOT);
+        List<FunctionCallback> selected = new ArrayList<>();
+        for (AgentEntry agent : agents) {
+            if (agent.matches(normalized)) {
+                selected.add(agent.callback());
+            }
+        }
+        return selected;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static AgentEntry toEntry(String name, Object bean, ToolExecutor toolExecutor) {
+        Class<?> agentClass = AopUtils.getTargetClass(bean);
+        if (!(bean instanceof Function<?, ?> function)) {
+            throw new IllegalStateException("@Agent " + name + " must implement java.util.function.Function");
+        }
+        Class<?> inputType = ResolvableType.forClass(agentClass).as(Function.class).getGeneric(0).resolve();
+        if (inputType == null) {
+            throw new IllegalStateException("Cannot resolve the request type of @Agent " + name);
+        }
+        Description description = AnnotationUtils.findAnnotation(agentClass, Description.class);
+        Agent agent = AnnotationUtils.findAnnotation(agentClass, Agent.class);
+
+        FunctionCallback callback = FunctionCallbackWrapper.builder((Function<Object, Object>) function)
+                .withName(name)
+                .withDescription(description != null ? description.value() : name)
+                .withInputType((Class) inputType)
+                .withResponseConverter(Object::toString)
+                .build();
+        List<Pattern> keywords = new ArrayList<>();
+        if (agent != null) {
+            for (String keyword : agent.keywords()) {
+                keywords.add(keywordPattern(keyword));
+            }
+        }
+        return new AgentEntry(name, new ErrorReportingCallback(callback, toolExecutor), keywords);
+    }
+
+    // 英文关键词从单词开头匹配（stock 能匹配 stocks），中文没有词边界，按子串匹配
+    private static Pattern keywordPattern(String keyword) {
+        String lower = keyword.toLowerCase(Locale.ROOT);
+        boolean latin = lower.chars().allMatch(c -> c < 128);
+        return Pattern.compile(latin ? "\\b" + Pattern.quote(lower) : Pattern.quote(lower));
+    }
+
+    /**
+     * Agent 失败时返回结构化错误而不是抛出异常，模型可以继续用其他 Agent 的结果回答
+     */
+    private record ErrorReportingCallback(FunctionCallback delegate, ToolExecutor toolExecutor) implements FunctionCallback {
+        @Override
+        public String getName() {
+            return delegate.getName();
+        }
+
+        @Override
+        public String getDescription() {
+            return delegate.getDescription();
+        }
+
+        @Override
+        public String getInputTypeSchema() {
+            return delegate.getInputTypeSchema();
+        }
+
+        @Override
+        public String call(String functionInput) {
+            try {
+                return delegate.call(functionInput);
+            } catch (RuntimeException e) {
+                return toolExecutor.error(delegate.getName(), functionInput, e);
+            }
+        }
+    }
+
+    private record AgentEntry(String name, FunctionCallback callback, List<Pattern> keywords) {
+        // 没有声明关键词的 Agent 总是发送
+        boolean matches(String normalizedMessage) {
+            return keywords.isEmpty() || keywords.stream().anyMatch(k -> k.matcher(normalizedMessage).find());
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo.agent;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.model.function.FunctionCallback;
+import org.springframework.ai.model.function.FunctionCallbackContext;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.retry.support.RetryTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * OpenAiChatModel 在一轮回复里按顺序逐个执行模型发出的 tool call，这里改成交给 ToolExecutor 并发执行：
+ * 每个 tool call 提交到 tools 线程池，共用同一个超时，结果按原来的顺序组成 ToolResponseMessage。
+ * 找不到的函数、失败或超时的调用在对应位置返回结构化错误，其余结果照常返回给模型
+ */
+public class ParallelToolCallingChatModel extends OpenAiChatModel {
+    private final ToolExecutor toolExecutor;
+
+    public ParallelToolCallingChatModel(OpenAiApi openAiApi,
+                                        OpenAiChatOptions options,
+                                        FunctionCallbackContext functionCallbackContext,
+                                        List<FunctionCallback> toolFunctionCallbacks,
+                                        RetryTemplate retryTemplate,
+                                        ToolExecutor toolExecutor) {
+        super(openAiApi, options, functionCallbackContext, toolFunctionCallbacks, retryTemplate);
+        this.toolExecutor = toolExecutor;
+    }
+
+    @Override
+    protected ToolResponseMessage executeFunctions(AssistantMessage assistantMessage) {
+        List<AssistantMessage.ToolCall> toolCalls = assistantMessage.getToolCalls();
+        List<String> results = toolExecutor.invokeAll(toolCalls, this::callFunction);
+
+        List<ToolResponseMessage.ToolResponse> toolResponses = new ArrayList<>(toolCalls.size());
+        for (int i = 0; i < toolCalls.size(); i++) {
+            AssistantMessage.ToolCall toolCall = toolCalls.get(i);
+            toolResponses.add(new ToolResponseMessage.ToolResponse(toolCall.id(), toolCall.name(), results.get(i)));
+        }
+        return new ToolResponseMessage(toolResponses, Map.of());
+    }
+
+    private String callFunction(AssistantMessage.ToolCall toolCall) {
+        FunctionCallback callback = functionCallbackRegister.get(toolCall.name());
+        if (callback == null) {
+            throw new IllegalStateException("No function callback found for function name: " + toolCall.name());
+        }
+        return callback.call(toolCall.arguments());
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.demo.agent;
+
+import com.example.demo.exception.DependencyUnavailableException;
+import com.example.demo.service.resilience.DependencyGuard;
+import com.example.demo.service.resilience.DependencyGuards;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Agent 工具的并发执行：模型在一轮回复里发出的多个 tool call 同时提交到有界的 tools 线程池，
+ * 每个调用最多等待 resilience.tools.timeout-ms，结果按调用顺序合并。
+ * 单个调用失败或超时时在对应位置返回结构化的错误 JSON，不让整轮对话失败
+ */
+@Slf4j
+@Component
+public class ToolExecutor {
+    private final DependencyGuard toolGuard;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Counter failures;
+    // 当前线程是否正在执行某个工具：Agent 内部的 ChatClient 会在工具线程里再发起一轮带工具的对话
+    private final ThreadLocal<Boolean> runningTool = ThreadLocal.withInitial(() -> false);
+
+    @Autowired
+    public ToolExecutor(DependencyGuards dependencyGuards, MeterRegistry meterRegistry) {
+        this.toolGuard = dependencyGuards.tools();
+        this.failures = meterRegistry.counter("ai.agent.tool.failures");
+    }
+
+    /**
+     * 并发执行 invocation，返回与 toolCalls 一一对应的结果；只有一个调用时直接在调用线程执行
+     */
+    public List<String> invokeAll(List<AssistantMessage.ToolCall> toolCalls,
+                                  Function<AssistantMessage.ToolCall, String> invocation) {
+        if (toolCalls.size() == 1) {
+            return List.of(invokeInline(toolCalls.get(0), invocation));
+        }
+        // 所有调用同时开始执行，共用同一个截止时间
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(toolGuard.timeoutMillis());
+        List<FutureTask<String>> futures = new ArrayList<>(toolCalls.size());
+        for (AssistantMessage.ToolCall toolCall : toolCalls) {
+            futures.add(submit(toolCall, invocation));
+        }
+        // 嵌套调用时当前线程本身占着 tools 线程池，先把线程池还没取走的任务自己跑掉，避免池满时互相等待；
+        // 已经开始的任务 FutureTask.run 直接返回
+        if (runningTool.get()) {
+            futures.forEach(FutureTask::run);
+        }
+        List<String> results = new ArrayList<>(toolCalls.size());
+        for (int i = 0; i < toolCalls.size(); i++) {
+            results.add(await(toolCalls.get(i), futures.get(i), deadline));
+        }
+        return results;
+    }
+
+    /**
+     * 工具失败时返回给模型的结构化错误，模型可以据此向用户说明哪一项没有取到
+     */
+    public String error(String tool, Object input, Throwable cause) {
+        failures.increment();
+        log.warn("Tool {} failed for {}: {}", tool, input, cause.toString());
+        ObjectNode error = objectMapper.createObjectNode();
+        error.put("tool", tool);
+        error.put("input", String.valueOf(input));
+        error.put("error", cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+        return error.toString();
+    }
+
+    private String invokeInline(AssistantMessage.ToolCall toolCall,
+                                Function<AssistantMessage.ToolCall, String> invocation) {
+        try {
+            return invocation.apply(toolCall);
+        } catch (RuntimeException e) {
+            return error(toolCall.name(), toolCall.arguments(), e);
+        }
+    }
+
+    private FutureTask<String> submit(AssistantMessage.ToolCall toolCall,
+                                      Function<AssistantMessage.ToolCall, String> invocation) {
+        FutureTask<String> task = new FutureTask<>(() -> {
+            boolean nested = runningTool.get();
+            runningTool.set(true);
+            try {
+                return invocation.apply(toolCall);
+            } finally {
+                runningTool.set(nested);
+            }
+        });
+        try {
+            toolGuard.executor().execute(task);
+        } catch (RejectedExecutionException e) {
+            FutureTask<String> rejected = new FutureTask<>(() -> {
+                throw new DependencyUnavailableException("tools executor queue is full", e);
+            });
+            rejected.run();
+            return rejected;
+        }
+        return task;
+    }
+
+    private String await(AssistantMessage.ToolCall toolCall, Future<String> future, long deadline) {
+        String tool = toolCall.name();
+        String input = toolCall.arguments();
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            return error(tool, input, new TimeoutException("timed out after " + toolGuard.timeoutMillis() + " ms"));
+        } catch (ExecutionException e) {
+            return error(tool, input, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            return error(tool, input, e);
+        }
+    }
+}
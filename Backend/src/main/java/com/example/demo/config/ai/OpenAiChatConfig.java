@@ -0,0 +1,36 @@
+package com.example.demo.config.ai;
+
+import com.example.demo.agent.ParallelToolCallingChatModel;
+import com.example.demo.agent.ToolExecutor;
+import org.springframework.ai.autoconfigure.openai.OpenAiChatProperties;
+import org.springframework.ai.model.function.FunctionCallback;
+import org.springframework.ai.model.function.FunctionCallbackContext;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.retry.support.RetryTemplate;
+
+@Configuration
+public class OpenAiChatConfig {
+
+    /**
+     * 替换自动配置的 OpenAiChatModel：选项、函数注册和重试沿用 spring.ai.openai.* 的配置，
+     * 只把一轮回复里多个 tool call 的执行改成并发。AiChatController、AiAnalyserService
+     * 以及各个 Agent 内部的 ChatClient 注入的都是这个 bean
+     */
+    @Bean
+    @Primary
+    public ParallelToolCallingChatModel openAiChatModel(@Value("${spring.ai.openai.base-url:https://api.openai.com}") String baseUrl,
+                                                        @Value("${spring.ai.openai.api-key}") String apiKey,
+                                                        OpenAiChatProperties chatProperties,
+                                                        FunctionCallbackContext functionCallbackContext,
+                                                        ObjectProvider<FunctionCallback> toolFunctionCallbacks,
+                                                        RetryTemplate retryTemplate,
+                                                        ToolExecutor toolExecutor) {
+        return new ParallelToolCallingChatModel(new OpenAiApi(baseUrl, apiKey), chatProperties.getOptions(),
+                functionCallbackContext, toolFunctionCallbacks.orderedStream().toList(), retryTemplate, toolExecutor);
+    }
+}
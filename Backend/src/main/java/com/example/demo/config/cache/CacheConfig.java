@@ -0,0 +1,82 @@
+package com.example.demo.config.cache;
+
+import com.example.demo.model.dto.AccountSummary;
+import com.example.demo.model.dto.FinancialReportSummary;
+import com.example.demo.model.dto.UserProfile;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.cache.BatchStrategies;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.cache.RedisCacheWriter;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spring Cache 的 CacheManager：Caffeine L1 + Redis L2，只有 CacheNames 里列出的缓存。
+ * 每个缓存按自己的值类型序列化成不带类名的 JSON（不使用 redisObjectMapper 的默认类型信息），
+ * 多出来的字段在读取时忽略，滚动升级期间新旧版本可以共用同一份 L2
+ */
+@Configuration
+public class CacheConfig {
+
+    @Bean
+    public CacheManager cacheManager(RedisConnectionFactory redisConnectionFactory,
+                                     RedisCacheConfiguration cacheConfiguration,
+                                     CacheInvalidationBus cacheInvalidationBus,
+                                     MeterRegistry meterRegistry,
+                                     @Value("${cache.accounts.ttl-seconds:600}") long accountsTtlSeconds,
+                                     @Value("${cache.financial-reports.ttl-seconds:3600}") long reportsTtlSeconds,
+                                     @Value("${cache.users.ttl-seconds:1800}") long usersTtlSeconds,
+                                     @Value("${cache.local.ttl-seconds:60}") long localTtlSeconds,
+                                     @Value("${cache.local.max-size:10000}") long localMaxSize) {
+        ObjectMapper mapper = JsonMapper.builder()
+                .addModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+                .build();
+
+        Map<String, RedisCacheConfiguration> caches = Map.of(
+                CacheNames.ACCOUNTS, cacheFor(cacheConfiguration,
+                        mapper.constructType(AccountSummary.class), mapper, accountsTtlSeconds),
+                CacheNames.FINANCIAL_REPORTS, cacheFor(cacheConfiguration,
+                        mapper.getTypeFactory().constructCollectionType(List.class, FinancialReportSummary.class), mapper, reportsTtlSeconds),
+                CacheNames.USERS, cacheFor(cacheConfiguration,
+                        mapper.constructType(UserProfile.class), mapper, usersTtlSeconds));
+
+        // clear() 用 SCAN 分批删除，不使用会阻塞 Redis 的 KEYS
+        RedisCacheManager remote = RedisCacheManager
+                .builder(RedisCacheWriter.nonLockingRedisCacheWriter(redisConnectionFactory, BatchStrategies.scan(1000)))
+                .cacheDefaults(cacheConfiguration)
+                .withInitialCacheConfigurations(caches)
+                .disableCreateOnMissingCache()
+                .build();
+        remote.afterPropertiesSet();
+
+        return new TwoLevelCacheManager(remote, cacheInvalidationBus, meterRegistry,
+                Duration.ofSeconds(localTtlSeconds), localMaxSize);
+    }
+
+    private static RedisCacheConfiguration cacheFor(RedisCacheConfiguration defaults, JavaType valueType,
+                                                    ObjectMapper mapper, long ttlSeconds) {
+        return defaults
+                .entryTtl(Duration.ofSeconds(ttlSeconds))
+                .computePrefixWith(CacheNames::keyPrefix)
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(
+                        new Jackson2JsonRedisSerializer<>(mapper, valueType)));
+    }
+}
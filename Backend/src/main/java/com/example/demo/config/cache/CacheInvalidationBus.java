@@ -0,0 +1,93 @@
+package com.example.demo.config.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 多实例之间的本地缓存（L1）失效总线。TwoLevelCache 在 put / evict / clear 后发布
+ * "{实例 id} {缓存名} {键}"（clear 时没有键），其他实例收到后丢弃自己 L1 中的对应条目，下次读取时回到 Redis（L2）。
+ * pub/sub 不保证送达，订阅断开期间丢失的消息由 L1 较短的 TTL 兜底；发布失败只记日志，不影响写操作本身
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus implements MessageListener {
+    private final StringRedisTemplate stringRedisTemplate;
+    private final String channel;
+    // 跳过自己发出的消息：本实例的 L1 已经同步失效
+    private final String instanceId;
+    private final Map<String, TwoLevelCache> caches = new ConcurrentHashMap<>();
+
+    private final Counter published;
+    private final Counter received;
+
+    @Autowired
+    public CacheInvalidationBus(StringRedisTemplate stringRedisTemplate,
+                                RedisMessageListenerContainer listenerContainer,
+                                MeterRegistry meterRegistry,
+                                @Value("${cache.invalidation.channel:cache:invalidation}") String channel) {
+        this(stringRedisTemplate, meterRegistry, channel, UUID.randomUUID().toString());
+        listenerContainer.addMessageListener(this, new ChannelTopic(channel));
+    }
+
+    CacheInvalidationBus(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry, String channel, String instanceId) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.channel = channel;
+        this.instanceId = instanceId;
+        this.published = meterRegistry.counter("cache.invalidation.messages", "direction", "published");
+        this.received = meterRegistry.counter("cache.invalidation.messages", "direction", "received");
+    }
+
+    void register(TwoLevelCache cache) {
+        caches.put(cache.getName(), cache);
+    }
+
+    void publishEvict(String cacheName, String key) {
+        publish(instanceId + " " + cacheName + " " + key);
+    }
+
+    void publishClear(String cacheName) {
+        publish(instanceId + " " + cacheName);
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(channel, message);
+            published.increment();
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish cache invalidation '{}': {}", message, e.getMessage());
+        }
+    }
+
+    // 键本身可能包含空格，所以最多切成三段
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split(" ", 3);
+        if (parts.length < 2 || parts[0].equals(instanceId)) {
+            return;
+        }
+        TwoLevelCache cache = caches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+        received.increment();
+        if (parts.length == 2) {
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(parts[2]);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.demo.config.cache;
+
+/**
+ * Spring Cache 的缓存名和键设计。键都是数据库 id，Redis 中的完整键为 cache:v1:{缓存名}:{id}，
+ * 例如 cache:v1:accounts:42。缓存值是不可变的 DTO（record），不缓存 JPA 实体，避免序列化懒加载集合。
+ * 缓存值的结构改变时提升 KEY_VERSION，旧版本的数据直接被忽略并按 TTL 过期，而不是被错误地反序列化
+ */
+public final class CacheNames {
+    static final String KEY_VERSION = "v1";
+
+    // accountId -> AccountSummary
+    public static final String ACCOUNTS = "accounts";
+    // userId -> List<FinancialReportSummary>
+    public static final String FINANCIAL_REPORTS = "financialReports";
+    // userId -> UserProfile
+    public static final String USERS = "users";
+
+    private CacheNames() {
+    }
+
+    static String keyPrefix(String cacheName) {
+        return "cache:" + KEY_VERSION + ":" + cacheName + ":";
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.demo.config.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * 给 Caffeine 本地缓存加上单飞加载：同一个 key 并发未命中时只有一个调用方执行 loader，其余调用方等待它的结果。
+ * loader 在 Caffeine 的 compute 锁外执行（虚拟线程在 synchronized 里阻塞会占住载体线程），
+ * 等待方阻塞在 CompletableFuture 上，不会占住载体线程。
+ * 加载期间该 key 被 invalidate 时，加载结果只返回给已经在等的调用方，不写入缓存
+ */
+public final class SingleFlightCache<K, V> {
+    private final Cache<K, V> cache;
+    private final ConcurrentMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+
+    public SingleFlightCache(Cache<K, V> cache) {
+        this.cache = cache;
+    }
+
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loading.putIfAbsent(key, mine);
+        if (inFlight != null) {
+            return join(inFlight);
+        }
+        V loaded;
+        try {
+            loaded = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            loading.remove(key, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        // 只有登记的加载没有被 invalidate 移除时才写入；compute 里只做内存操作，持锁时间很短
+        if (loaded != null) {
+            cache.asMap().compute(key, (k, current) -> loading.remove(k, mine) ? loaded : current);
+        } else {
+            loading.remove(key, mine);
+        }
+        mine.complete(loaded);
+        return loaded;
+    }
+
+    public V getIfPresent(K key) {
+        return cache.getIfPresent(key);
+    }
+
+    // put 和 invalidate 都先取消进行中的加载登记，再改缓存值：任意交错都不会让之前开始的加载覆盖新值或写回旧值
+    public void put(K key, V value) {
+        loading.remove(key);
+        cache.put(key, value);
+    }
+
+    public void invalidate(K key) {
+        loading.remove(key);
+        cache.invalidate(key);
+    }
+
+    public void invalidateAll() {
+        loading.clear();
+        cache.invalidateAll();
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
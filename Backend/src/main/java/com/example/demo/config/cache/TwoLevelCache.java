@@ -0,0 +1,139 @@
+package com.example.demo.config.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * 两级缓存：L1 是本实例的 Caffeine，L2 是所有实例共享的 Redis（RedisCache）。
+ * 读取先查 L1，未命中再查 L2 并回填 L1；put / evict / clear 同时写 L2 和本地 L1，
+ * 再通过 CacheInvalidationBus 通知其他实例丢弃 L1。L1 的键统一用 key.toString()，和 Redis 键里的形式一致，
+ * 所以只支持 id 这类 toString 稳定的简单键。不缓存 null。
+ * L1 未命中时经 SingleFlightCache 单飞加载：同一个键并发未命中只读一次 Redis（get(key, valueLoader) 只加载一次），
+ * 加载期间该键被 put / evict 时结果不回填 L1；失效按键记录，其他键的写入不影响这次回填
+ */
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+    private final String name;
+    private final Cache<String, Object> nativeCache;
+    private final SingleFlightCache<String, Object> local;
+    private final org.springframework.cache.Cache remote;
+    private final CacheInvalidationBus bus;
+
+    private final Counter localHits;
+    private final Counter remoteHits;
+    private final Counter misses;
+
+    TwoLevelCache(String name, Cache<String, Object> local, org.springframework.cache.Cache remote,
+                  CacheInvalidationBus bus, MeterRegistry meterRegistry) {
+        super(false);
+        this.name = name;
+        this.nativeCache = local;
+        this.local = new SingleFlightCache<>(local);
+        this.remote = remote;
+        this.bus = bus;
+        this.localHits = meterRegistry.counter("cache.two-level.gets", "cache", name, "result", "local");
+        this.remoteHits = meterRegistry.counter("cache.two-level.gets", "cache", name, "result", "remote");
+        this.misses = meterRegistry.counter("cache.two-level.gets", "cache", name, "result", "miss");
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return nativeCache;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = key.toString();
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            localHits.increment();
+            return value;
+        }
+        value = local.get(localKey, k -> {
+            ValueWrapper wrapper = remote.get(key);
+            return wrapper == null ? null : wrapper.get();
+        });
+        if (value == null) {
+            misses.increment();
+        } else {
+            remoteHits.increment();
+        }
+        return value;
+    }
+
+    // 整个 L2 读取 + 加载都在单飞里：并发未命中只有一个调用方执行 valueLoader，其余等待它的结果。
+    // 加载在 Caffeine 的 compute 锁外执行，虚拟线程不会在 synchronized 里阻塞
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String localKey = key.toString();
+        Object value = local.getIfPresent(localKey);
+        if (value != null) {
+            localHits.increment();
+            return (T) fromStoreValue(value);
+        }
+        value = local.get(localKey, k -> {
+            ValueWrapper wrapper = remote.get(key);
+            if (wrapper != null && wrapper.get() != null) {
+                remoteHits.increment();
+                return wrapper.get();
+            }
+            misses.increment();
+            T loaded;
+            try {
+                loaded = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            if (loaded == null) {
+                return null;
+            }
+            Object storeValue = toStoreValue(loaded);
+            remote.put(key, storeValue);
+            bus.publishEvict(name, localKey);
+            return storeValue;
+        });
+        return (T) fromStoreValue(value);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        Object storeValue = toStoreValue(value);
+        remote.put(key, storeValue);
+        String localKey = key.toString();
+        local.put(localKey, storeValue);
+        bus.publishEvict(name, localKey);
+    }
+
+    @Override
+    public void evict(Object key) {
+        remote.evict(key);
+        String localKey = key.toString();
+        evictLocal(localKey);
+        bus.publishEvict(name, localKey);
+    }
+
+    @Override
+    public void clear() {
+        remote.clear();
+        clearLocal();
+        bus.publishClear(name);
+    }
+
+    // 以下两个方法由 CacheInvalidationBus 在收到其他实例的消息时调用，只影响本地 L1
+    void evictLocal(String localKey) {
+        local.invalidate(localKey);
+    }
+
+    void clearLocal() {
+        local.invalidateAll();
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.config.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 为 remote（RedisCacheManager）里预先配置好的每个缓存名创建一个 TwoLevelCache，不在运行时创建未知的缓存。
+ * 开启了事务感知：在事务内的 put / evict 推迟到提交之后执行，避免其他请求在提交前把旧值重新读进缓存
+ */
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager {
+    private final CacheManager remote;
+    private final CacheInvalidationBus bus;
+    private final MeterRegistry meterRegistry;
+    private final Duration localTtl;
+    private final long localMaxSize;
+
+    public TwoLevelCacheManager(CacheManager remote, CacheInvalidationBus bus, MeterRegistry meterRegistry,
+                                Duration localTtl, long localMaxSize) {
+        this.remote = remote;
+        this.bus = bus;
+        this.meterRegistry = meterRegistry;
+        this.localTtl = localTtl;
+        this.localMaxSize = localMaxSize;
+        setTransactionAware(true);
+    }
+
+    @Override
+    protected List<? extends Cache> loadCaches() {
+        List<TwoLevelCache> caches = new ArrayList<>();
+        for (String name : remote.getCacheNames()) {
+            TwoLevelCache cache = new TwoLevelCache(name,
+                    Caffeine.newBuilder()
+                            .expireAfterWrite(localTtl)
+                            .maximumSize(localMaxSize)
+                            .<String, Object>build(),
+                    remote.getCache(name), bus, meterRegistry);
+            bus.register(cache);
+            caches.add(cache);
+        }
+        return caches;
+    }
+}
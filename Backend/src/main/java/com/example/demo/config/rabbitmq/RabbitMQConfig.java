@@ -1,15 +1,38 @@
 package com.example.demo.config.rabbitmq;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class RabbitMQConfig {
+    public static final String ANALYSE_BATCH_CONTAINER_FACTORY = "analyseBatchContainerFactory";
+    public static final String ANALYSE_QUEUE = "new.record.to.ai.analyser";
+    public static final String ANALYSE_RETRY_QUEUE = "new.record.to.ai.analyser.retry";
+
     @Bean
     public Queue orderStateToStoreQueue() {
-        return new Queue("new.record.to.ai.analyser", true);
+        return new Queue(ANALYSE_QUEUE, true);
+    }
+
+    /**
+     * AI 分析的延迟重试队列：没有消费者，消息放满 backoff-ms 后过期，经默认交换机死信回到 AI 分析队列。
+     * 依赖不可用时监听器把没分析的请求发到这里，不用在消费线程上 sleep。
+     * 队列参数在 broker 上声明后不能修改，调整 backoff-ms 需要先删除这个队列
+     */
+    @Bean
+    public Queue analyseRetryQueue(@Value("${analyser.retry.backoff-ms:5000}") int backoffMillis) {
+        return QueueBuilder.durable(ANALYSE_RETRY_QUEUE)
+                .ttl(backoffMillis)
+                .deadLetterExchange("")
+                .deadLetterRoutingKey(ANALYSE_QUEUE)
+                .build();
     }
 
     @Bean
@@ -20,5 +43,29 @@ public class RabbitMQConfig {
     @Bean
     public Queue financialReportToChatbotQueue() {return new Queue("financial.report.to.chatbot", true); }
 
-
+    /**
+     * AI 分析队列的批量消费容器：攒够 batch-size 条，或 window-ms 内没有新消息时交付一批。
+     * 突发导入时同一账户的记录会落在同一批里，由监听器合并成一次模型调用
+     */
+    @Bean(name = ANALYSE_BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory analyseBatchContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            @Value("${analyser.listener.concurrency:1}") int concurrency,
+            @Value("${analyser.listener.max-concurrency:4}") int maxConcurrency,
+            @Value("${analyser.listener.prefetch:100}") int prefetch,
+            @Value("${analyser.batch.size:50}") int batchSize,
+            @Value("${analyser.batch.window-ms:500}") long windowMillis) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(Math.max(concurrency, maxConcurrency));
+        // prefetch 小于批大小时一批永远攒不满
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(windowMillis);
+        return factory;
+    }
 }
@@ -0,0 +1,312 @@
+package com.example.demo.config.redis;
+
+import com.example.demo.model.redis.RedisAccount;
+import com.example.demo.model.redis.RedisUser;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 会话数据的紧凑二进制序列化。已知类型（RedisUser、RedisAccount、Long、List&lt;Long&gt;）编码为
+ * [MAGIC][VERSION][TYPE][字段...]：字段按固定顺序写入，不写类名和字段名；
+ * 整数为 ZigZag varint，字符串为 varint 长度 + UTF-8，double 为 8 字节，可空字段用开头的位图标记。
+ * 其他类型仍交给原来的 JSON 序列化。
+ * <p>
+ * 读取时按首字节区分格式：MAGIC 不是合法的 UTF-8 首字节，不会和 JSON 冲突，所以旧的 JSON 数据可以继续读取。
+ * 默认 redis.serializer.binary-writes=false（两种格式都能读，只写 JSON）；滚动升级时全部实例都换成新版本后再打开二进制写入。
+ * 以后给类型增加字段时提升 VERSION 并只在末尾追加，读取旧版本数据时新字段保持 null；
+ * 遇到比自己新的版本直接报错，而不是读出错位的数据
+ */
+public class CompactSessionRedisSerializer implements RedisSerializer<Object> {
+    static final byte MAGIC = (byte) 0xB5;
+    static final byte VERSION = 1;
+
+    static final byte TYPE_LONG = 1;
+    static final byte TYPE_LONG_LIST = 2;
+    static final byte TYPE_ACCOUNT = 3;
+    static final byte TYPE_USER = 4;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final RedisSerializer<Object> fallback;
+    private final boolean binaryWrites;
+
+    public CompactSessionRedisSerializer(RedisSerializer<Object> fallback, boolean binaryWrites) {
+        this.fallback = fallback;
+        this.binaryWrites = binaryWrites;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY;
+        }
+        if (!binaryWrites) {
+            return fallback.serialize(value);
+        }
+        if (value instanceof Long number) {
+            return header(TYPE_LONG, 10).writeLong(number).toByteArray();
+        }
+        if (value instanceof RedisAccount account) {
+            return writeAccount(account);
+        }
+        if (value instanceof RedisUser user) {
+            return writeUser(user);
+        }
+        if (value instanceof List<?> list && isLongList(list)) {
+            Output out = header(TYPE_LONG_LIST, 4 + list.size() * 4).writeLength(list.size());
+            for (Object element : list) {
+                out.writeLong((Long) element);
+            }
+            return out.toByteArray();
+        }
+        return fallback.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        if (bytes[0] != MAGIC) {
+            return fallback.deserialize(bytes);
+        }
+        try {
+            Input in = new Input(bytes, 1);
+            int version = in.readByte();
+            if (version < 1 || version > VERSION) {
+                throw new SerializationException("Unsupported session encoding version " + version + ", this node reads up to " + VERSION);
+            }
+            int type = in.readByte();
+            return switch (type) {
+                case TYPE_LONG -> in.readLong();
+                case TYPE_LONG_LIST -> readLongList(in);
+                case TYPE_ACCOUNT -> readAccount(in);
+                case TYPE_USER -> readUser(in);
+                default -> throw new SerializationException("Unknown session encoding type " + type);
+            };
+        } catch (IndexOutOfBoundsException e) {
+            throw new SerializationException("Truncated session value (" + bytes.length + " bytes)", e);
+        }
+    }
+
+    private static byte[] writeAccount(RedisAccount account) {
+        Output out = header(TYPE_ACCOUNT, 48);
+        out.writeByte(presence(account.getId(), account.getName(), account.getTotal_income(), account.getTotal_expense()));
+        if (account.getId() != null) {
+            out.writeLong(account.getId());
+        }
+        if (account.getName() != null) {
+            out.writeString(account.getName());
+        }
+        if (account.getTotal_income() != null) {
+            out.writeDouble(account.getTotal_income());
+        }
+        if (account.getTotal_expense() != null) {
+            out.writeDouble(account.getTotal_expense());
+        }
+        return out.toByteArray();
+    }
+
+    private static RedisAccount readAccount(Input in) {
+        int present = in.readByte();
+        RedisAccount account = new RedisAccount();
+        account.setId(has(present, 0) ? in.readLong() : null);
+        account.setName(has(present, 1) ? in.readString() : null);
+        account.setTotal_income(has(present, 2) ? in.readDouble() : null);
+        account.setTotal_expense(has(present, 3) ? in.readDouble() : null);
+        return account;
+    }
+
+    private static byte[] writeUser(RedisUser user) {
+        Output out = header(TYPE_USER, 256);
+        out.writeByte(presence(user.getUserId(), user.getUsername(), user.getEmail(), user.getPhone(),
+                user.getAvatar(), user.getToken(), user.getLoginTime(), user.getExpireTime()));
+        if (user.getUserId() != null) {
+            out.writeLong(user.getUserId());
+        }
+        for (String text : new String[]{user.getUsername(), user.getEmail(), user.getPhone(), user.getAvatar(), user.getToken()}) {
+            if (text != null) {
+                out.writeString(text);
+            }
+        }
+        if (user.getLoginTime() != null) {
+            out.writeLong(user.getLoginTime());
+        }
+        if (user.getExpireTime() != null) {
+            out.writeLong(user.getExpireTime());
+        }
+        return out.toByteArray();
+    }
+
+    private static RedisUser readUser(Input in) {
+        int present = in.readByte();
+        RedisUser user = new RedisUser();
+        user.setUserId(has(present, 0) ? in.readLong() : null);
+        user.setUsername(has(present, 1) ? in.readString() : null);
+        user.setEmail(has(present, 2) ? in.readString() : null);
+        user.setPhone(has(present, 3) ? in.readString() : null);
+        user.setAvatar(has(present, 4) ? in.readString() : null);
+        user.setToken(has(present, 5) ? in.readString() : null);
+        user.setLoginTime(has(present, 6) ? in.readLong() : null);
+        user.setExpireTime(has(present, 7) ? in.readLong() : null);
+        return user;
+    }
+
+    private static List<Long> readLongList(Input in) {
+        int size = in.readLength();
+        List<Long> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(in.readLong());
+        }
+        return list;
+    }
+
+    // List 里只要有一个不是 Long（或是 null）就整体交给 JSON
+    private static boolean isLongList(List<?> list) {
+        for (Object element : list) {
+            if (!(element instanceof Long)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Output header(byte type, int expectedSize) {
+        return new Output(expectedSize).writeByte(MAGIC).writeByte(VERSION).writeByte(type);
+    }
+
+    private static int presence(Object... fields) {
+        int bits = 0;
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] != null) {
+                bits |= 1 << i;
+            }
+        }
+        return bits;
+    }
+
+    private static boolean has(int present, int field) {
+        return (present & (1 << field)) != 0;
+    }
+
+    private static final class Output {
+        private byte[] buffer;
+        private int size;
+
+        Output(int expectedSize) {
+            this.buffer = new byte[expectedSize];
+        }
+
+        Output writeByte(int value) {
+            ensure(1);
+            buffer[size++] = (byte) value;
+            return this;
+        }
+
+        Output writeLength(int length) {
+            return writeVarLong(length);
+        }
+
+        // ZigZag 之后按 varint 写入，小的正负数都只占一两个字节
+        Output writeLong(long value) {
+            return writeVarLong((value << 1) ^ (value >> 63));
+        }
+
+        Output writeDouble(double value) {
+            long bits = Double.doubleToLongBits(value);
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buffer[size++] = (byte) (bits >>> shift);
+            }
+            return this;
+        }
+
+        Output writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeLength(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+            return this;
+        }
+
+        private Output writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+            return this;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class Input {
+        private final byte[] buffer;
+        private int position;
+
+        Input(byte[] buffer, int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int readByte() {
+            return buffer[position++] & 0xFF;
+        }
+
+        int readLength() {
+            long length = readVarLong();
+            if (length < 0 || length > buffer.length - position) {
+                throw new SerializationException("Invalid length " + length + " in session value");
+            }
+            return (int) length;
+        }
+
+        long readLong() {
+            long raw = readVarLong();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        double readDouble() {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                bits = (bits << 8) | (buffer[position++] & 0xFF);
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        String readString() {
+            int length = readLength();
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                byte b = buffer[position++];
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new SerializationException("Malformed varint in session value");
+        }
+    }
+}
@@ -3,20 +3,34 @@ package com.example.demo.config.weather;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+
 @Configuration
 public class WeatherApiConfig {
     @Value("${weather.api.key}")
     private String apiKey;
-    
+
+    /**
+     * JDK HttpClient 自带连接池，keep-alive 连接在调用之间复用，不用每次都重新建立 TCP/TLS；
+     * 读超时要小于 resilience.weather.timeout-ms，让慢请求先在这里失败
+     */
     @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    public RestTemplate weatherRestTemplate(@Value("${weather.api.connect-timeout-ms:2000}") long connectTimeoutMillis,
+                                            @Value("${weather.api.read-timeout-ms:4000}") long readTimeoutMillis) {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMillis));
+        return new RestTemplate(requestFactory);
     }
-    
+
     @Bean
     public String weatherApiKey() {
         return apiKey;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,33 @@
+package com.example.demo.config.web;
+
+import com.example.demo.model.security.CurrentUserContext;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * controller 方法声明 CurrentUserContext 参数时，注入 JwtAuthenticationTokenFilter 为本次请求创建的上下文
+ */
+public class CurrentUserContextArgumentResolver implements HandlerMethodArgumentResolver {
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return CurrentUserContext.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                  NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        Object context = webRequest.getAttribute(CurrentUserContext.REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (context == null) {
+            // 公开端点不经过 JWT 解析，不能声明 CurrentUserContext 参数
+            throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Not authenticated");
+        }
+        return context;
+    }
+}
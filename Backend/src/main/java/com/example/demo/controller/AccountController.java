@@ -1,10 +1,10 @@
 package com.example.demo.controller;
+import java.time.LocalDate;
 import java.util.List;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -14,9 +14,12 @@ import com.example.demo.exception.AccountAlreadyExistException;
 import com.example.demo.exception.AccountNotFoundException;
 import com.example.demo.exception.UserNotFoundException;
 import com.example.demo.model.Account;
+import com.example.demo.model.AccountDailyRollup;
 import com.example.demo.model.dto.AccountDTO;
+import com.example.demo.model.dto.AccountSummary;
+import com.example.demo.model.security.CurrentUserContext;
+import com.example.demo.service.AccountAggregateService;
 import com.example.demo.service.AccountService;
-import com.example.demo.utility.jwt.JwtUtil;
 
 import jakarta.validation.Valid;
 
@@ -25,15 +28,13 @@ import jakarta.validation.Valid;
 @Validated
 @Slf4j
 public class AccountController {
-    private final JwtUtil jwtUtil;
     private final AccountService accountService;
-    private final StringRedisTemplate stringRedisTemplate;
+    private final AccountAggregateService accountAggregateService;
 
     @Autowired
-    public AccountController(AccountService accountService, JwtUtil jwtUtil, RedisTemplate<String, Object> redisTemplate, StringRedisTemplate stringRedisTemplate) {
+    public AccountController(AccountService accountService, AccountAggregateService accountAggregateService) {
         this.accountService = accountService;
-        this.jwtUtil = jwtUtil;
-        this.stringRedisTemplate = stringRedisTemplate;
+        this.accountAggregateService = accountAggregateService;
     }
 
     @GetMapping("/all")
@@ -50,11 +51,8 @@ public class AccountController {
     }
 
     @PostMapping("/create")
-    public ResponseEntity<String> createAccount(@RequestHeader("Authorization") String token, @Valid @RequestBody AccountDTO account) {
-        if (token == null || token.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("未提供令牌");
-        }
-        Long userId = jwtUtil.getUserIdFromToken(token.replace("Bearer ", ""));
+    public ResponseEntity<String> createAccount(CurrentUserContext currentUser, @Valid @RequestBody AccountDTO account) {
+        Long userId = currentUser.userId();
 
         try {
             // 尝试创建账户
@@ -74,12 +72,13 @@ public class AccountController {
     }
 
     @GetMapping("/current")
-    public ResponseEntity<Account> getAccountByAccountId(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<AccountSummary> getAccountByAccountId(CurrentUserContext currentUser) {
         try {
-            Long userId = jwtUtil.getUserIdFromToken(token.replace("Bearer ", ""));
-            String pattern = "login_user:" + userId +":current_account";
-            String accountId = stringRedisTemplate.opsForValue().get(pattern);
-            Account account = accountService.getAccountByAccountId(Long.valueOf(accountId));
+            Long accountId = currentUser.currentAccountId();
+            if (accountId == null) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+            }
+            AccountSummary account = accountService.getAccountByAccountId(accountId);
 
             return ResponseEntity.ok(account);
         } catch (AccountNotFoundException e) {
@@ -88,6 +87,18 @@ public class AccountController {
         }
     }
 
+    // 当前账户按天、分类汇总的收支，直接读取预聚合表
+    @GetMapping("/rollups")
+    public ResponseEntity<List<AccountDailyRollup>> getDailyRollups(CurrentUserContext currentUser,
+                                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                                    @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        Long accountId = currentUser.currentAccountId();
+        if (accountId == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }
+        return ResponseEntity.ok(accountAggregateService.getDailyRollups(accountId, from, to));
+    }
+
     @PutMapping("/update/{id}")
     public ResponseEntity<Object> updateAccount(@PathVariable Long id, @RequestBody @Valid AccountDTO accountDetails) {
 
@@ -121,10 +132,9 @@ public class AccountController {
     }
 
     @GetMapping("/switch")
-    public ResponseEntity<String> switchAccount(@RequestParam Long accountId, @RequestHeader("Authorization") String token) {
+    public ResponseEntity<String> switchAccount(@RequestParam Long accountId, CurrentUserContext currentUser) {
         try {
-            Long userId = jwtUtil.getUserIdFromToken(token.replace("Bearer ", ""));
-            accountService.setCurrentAccountToRedis(accountId, userId);
+            accountService.setCurrentAccountToRedis(accountId, currentUser.userId());
             return ResponseEntity.ok("设置成功");
         } catch (Exception e) {
             return ResponseEntity.status(400).body("设置失败");
@@ -0,0 +1,79 @@
+package com.example.demo.controller;
+
+import com.example.demo.exception.ImportCapacityExceededException;
+import com.example.demo.model.dto.CsvImportProgress;
+import com.example.demo.service.CsvImportService;
+import com.example.demo.utility.GetCurrentUserInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+@RestController
+@RequestMapping("/records/import")
+@Slf4j
+public class CsvImportController {
+
+    private final CsvImportService csvImportService;
+    private final GetCurrentUserInfo getCurrentUserInfo;
+
+    public CsvImportController(CsvImportService csvImportService, GetCurrentUserInfo getCurrentUserInfo) {
+        this.csvImportService = csvImportService;
+        this.getCurrentUserInfo = getCurrentUserInfo;
+    }
+
+    // 上传账单 CSV 导入到当前账户，后台执行，返回任务进度；支付宝账单一般需要 charset=GBK
+    @PostMapping
+    public ResponseEntity<CsvImportProgress> importCsv(@RequestHeader("Authorization") String token,
+                                                       @RequestParam("file") MultipartFile file,
+                                                       @RequestParam(defaultValue = "UTF-8") String charset) {
+        Long userId = getCurrentUserInfo.getCurrentUserId(token);
+        Long accountId = getCurrentUserInfo.getCurrentAccountId(userId);
+        if (accountId == null || file.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        Path tempFile = null;
+        try {
+            Charset fileCharset = Charset.forName(charset);
+            // 先落盘再导入，请求结束后 multipart 临时文件会被清理
+            tempFile = Files.createTempFile("statement-", ".csv");
+            file.transferTo(tempFile);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(csvImportService.submit(userId, accountId, tempFile, fileCharset));
+        } catch (ImportCapacityExceededException e) {
+            // 服务端已经删除了临时文件
+            log.warn("CSV import rejected: {}", e.getMessage());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to start CSV import", e);
+            deleteQuietly(tempFile);
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<CsvImportProgress> getImportProgress(@RequestHeader("Authorization") String token,
+                                                               @PathVariable String jobId) {
+        Long userId = getCurrentUserInfo.getCurrentUserId(token);
+        return csvImportService.getProgress(jobId, userId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary CSV {}", file);
+        }
+    }
+}
@@ -1,13 +1,13 @@
 package com.example.demo.controller;
 
-import com.example.demo.model.FinancialReport;
+import com.example.demo.model.dto.FinancialReportSummary;
+import com.example.demo.model.security.CurrentUserContext;
 import com.example.demo.service.FinancialReportService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -25,9 +25,9 @@ public class FinancialReportController {
     }
 
     @GetMapping
-    public ResponseEntity<List<FinancialReport>> getFinancialReport(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<List<FinancialReportSummary>> getFinancialReport(CurrentUserContext currentUser) {
         try {
-            List<FinancialReport> reports = financialReportService.getFinancialReports(token);
+            List<FinancialReportSummary> reports = financialReportService.getFinancialReports(currentUser);
             if (reports == null || reports.isEmpty()) {
                 return ResponseEntity.noContent().build(); // 无内容
             }
@@ -38,4 +38,4 @@ public class FinancialReportController {
                     .body(Collections.emptyList()); // 空列表表示错误处理
         }
     }
-}
\ No newline at end of file
+}
@@ -1,24 +1,26 @@
 package com.example.demo.controller;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.Arrays;
 import java.util.List;
 
 
+import com.example.demo.model.dto.RecordPage;
 import com.example.demo.model.dto.TransactionRecordDTO;
-import com.example.demo.service.AccountService;
-import com.example.demo.utility.jwt.JwtUtil;
-import jakarta.transaction.Transactional;
+import com.example.demo.model.security.CurrentUserContext;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 
-import com.example.demo.model.TransactionRecord;
 import com.example.demo.service.TransactionRecordService;
 @RestController
 @RequestMapping("/records")
@@ -26,34 +28,38 @@ import com.example.demo.service.TransactionRecordService;
 @Slf4j
 public class TransactionRecordController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     private final TransactionRecordService recordService;
-    private final JwtUtil jwtUtil;
-    @Autowired
-    private StringRedisTemplate stringRedisTemplate;
-    @Autowired
-    private AccountService accountService;
+    private final ObjectMapper objectMapper;
 
-    public TransactionRecordController(TransactionRecordService recordService, JwtUtil jwtUtil, RedisTemplate<String, Object> redisTemplate) {
+    public TransactionRecordController(TransactionRecordService recordService, ObjectMapper objectMapper) {
         this.recordService = recordService;
-        this.jwtUtil = jwtUtil;
+        this.objectMapper = objectMapper;
     }
 
+    // 按交易时间倒序分页，cursor 传上一页返回的 nextCursor
     @GetMapping("/all")
-    public ResponseEntity<List<TransactionRecord>> getAllRecordByAccountId(@RequestHeader("Authorization") String token) {
-        Long userId = jwtUtil.getUserIdFromToken(token.replace("Bearer ", ""));
-        String pattern = "login_user:" + userId + ":current_account";
-        String accountId = stringRedisTemplate.opsForValue().get(pattern);
-        List<TransactionRecord> transactions = recordService.getAllRecordsByAccountId(Long.valueOf(accountId));
-        return ResponseEntity.ok(transactions);
+    public ResponseEntity<RecordPage> getAllRecordByAccountId(CurrentUserContext currentUser,
+                                                              @RequestParam(required = false) String cursor,
+                                                              @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(recordService.getRecordPage(currentUser.requireCurrentAccountId(), null, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    // 导出全部记录，每行一个 JSON 对象（NDJSON），边查询边写出
+    @GetMapping(value = "/all", params = "format=ndjson", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportAllRecords(CurrentUserContext currentUser) {
+        return exportRecords(currentUser, null);
     }
 
     @PostMapping("/create")
-    public ResponseEntity<String> addTransactionRecord(@RequestHeader("Authorization") String token, @RequestBody TransactionRecordDTO transactionRecordDTO) {
-        if (token == null || token.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("未提供令牌");
-        }
+    public ResponseEntity<String> addTransactionRecord(CurrentUserContext currentUser, @RequestBody TransactionRecordDTO transactionRecordDTO) {
         try {
-            recordService.addTransactionRecord(token, transactionRecordDTO);
+            recordService.addTransactionRecord(currentUser.userId(), currentUser.requireCurrentAccountId(), transactionRecordDTO);
             return ResponseEntity.status(HttpStatus.CREATED).body("Transaction record has been created successfully.");
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Error creating transaction record: " + e.getMessage());
@@ -81,12 +87,9 @@ public class TransactionRecordController {
     }
 
     @DeleteMapping("/batch")
-    public ResponseEntity<String> deleteRecordsInBatch(@RequestHeader("Authorization") String token, @RequestBody List<Long> recordIds) {
-        if (token == null || token.isEmpty()) {
-            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("未提供令牌");
-        }
+    public ResponseEntity<String> deleteRecordsInBatch(CurrentUserContext currentUser, @RequestBody List<Long> recordIds) {
         try {
-            recordService.deleteTransactionRecordsInBatch(token, recordIds);
+            recordService.deleteTransactionRecordsInBatch(currentUser.requireCurrentAccountId(), recordIds);
             return ResponseEntity.ok("Records deleted successfully.");
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Failed to delete records: " + e.getMessage());
@@ -94,29 +97,58 @@ public class TransactionRecordController {
     }
 
     @GetMapping("/by-type/{type}")
-    public ResponseEntity<List<TransactionRecord>> getRecordsByAccountIdAndType(@RequestHeader("Authorization") String token, @PathVariable String type) {
+    public ResponseEntity<RecordPage> getRecordsByAccountIdAndType(CurrentUserContext currentUser,
+                                                                   @PathVariable String type,
+                                                                   @RequestParam(required = false) String cursor,
+                                                                   @RequestParam(defaultValue = "50") int limit) {
         try {
             String incomeOrExpense = type.toUpperCase();
-            Long userId = jwtUtil.getUserIdFromToken(token.replace("Bearer ", ""));
-            String pattern = "login_user:" + userId + ":current_account";
-            String accountId = stringRedisTemplate.opsForValue().get(pattern);
-            List<TransactionRecord> records = recordService.findRecordByAccountIdAndType(incomeOrExpense, Long.valueOf(accountId));
-            return ResponseEntity.ok(records);
+            return ResponseEntity.ok(recordService.getRecordPage(currentUser.requireCurrentAccountId(), incomeOrExpense, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping(value = "/by-type/{type}", params = "format=ndjson", produces = NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportRecordsByType(CurrentUserContext currentUser,
+                                                                     @PathVariable String type) {
+        return exportRecords(currentUser, type.toUpperCase());
+    }
+
+    private ResponseEntity<StreamingResponseBody> exportRecords(CurrentUserContext currentUser, String type) {
+        Long accountId;
+        try {
+            accountId = currentUser.requireCurrentAccountId();
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
+        StreamingResponseBody body = outputStream -> {
+            // 每写满一页刷新一次，客户端可以边下载边处理
+            BufferedOutputStream out = new BufferedOutputStream(outputStream);
+            recordService.exportRecords(accountId, type, record -> {
+                try {
+                    // writeValue(OutputStream) 会关闭输出流，先序列化成字节再写
+                    out.write(objectMapper.writeValueAsBytes(record));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(NDJSON))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"records.ndjson\"")
+                .body(body);
     }
 
     @GetMapping("/recent")
-    public ResponseEntity<List<TransactionRecordDTO>> getCertainDaysRecord(@RequestHeader("Authorization") String token, @RequestParam int duration) {
+    public ResponseEntity<List<TransactionRecordDTO>> getCertainDaysRecord(CurrentUserContext currentUser, @RequestParam int duration) {
         if (duration < 1 || duration > 30) {
             return ResponseEntity.badRequest().build();
         }
         try {
-            Long userId = jwtUtil.getUserIdFromToken(token.replace("Bearer ", ""));
-            String pattern = "login_user:" + userId + ":current_account";
-            String accountId = stringRedisTemplate.opsForValue().get(pattern);
-            List<TransactionRecordDTO> records = recordService.getCertainDaysRecords(Long.valueOf(accountId), duration);
+            List<TransactionRecordDTO> records = recordService.getCertainDaysRecords(currentUser.requireCurrentAccountId(), duration);
             return ResponseEntity.ok(records);
         } catch (IllegalArgumentException e) {
             System.out.println(e.getMessage());
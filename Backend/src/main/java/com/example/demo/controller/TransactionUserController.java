@@ -24,6 +24,7 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.example.demo.exception.UserNotFoundException;
 import com.example.demo.model.dto.TransactionUserDTO;
+import com.example.demo.model.dto.UserProfile;
 import com.example.demo.model.TransactionUser;
 import com.example.demo.service.TransactionUserService;
 
@@ -52,8 +53,8 @@ public class TransactionUserController {
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<TransactionUser> getUserById(@PathVariable Long id) {
-        Optional<TransactionUser> userOptional = transactionUserService.findById(id);
+    public ResponseEntity<UserProfile> getUserById(@PathVariable Long id) {
+        Optional<UserProfile> userOptional = transactionUserService.findById(id);
         return userOptional.map(ResponseEntity::ok).orElseGet(() -> new ResponseEntity<>(HttpStatus.NOT_FOUND));
     }
 
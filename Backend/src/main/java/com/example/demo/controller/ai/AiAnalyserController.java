@@ -8,6 +8,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 @RestController
@@ -18,9 +19,10 @@ public class AiAnalyserController {
     @Autowired public final AiAnalyserService aiAnalyserService;
 
     @PostMapping("/financial-report")
-    public ResponseEntity<String> generateOverAllFinancialReport(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<String> generateOverAllFinancialReport(@RequestHeader("Authorization") String token,
+                                                                 @RequestParam(required = false) String conversationId) {
         log.info("Generating overall financial report");
-        return ResponseEntity.ok(aiAnalyserService.generateOverAllFinancialReport(token));
+        return ResponseEntity.ok(aiAnalyserService.generateOverAllFinancialReport(token, conversationId));
     }
 
 }
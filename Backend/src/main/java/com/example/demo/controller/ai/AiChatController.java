@@ -1,27 +1,44 @@
 package com.example.demo.controller.ai;
 
-import com.example.demo.agent.Agent;
+import com.example.demo.agent.AgentRegistry;
 import com.example.demo.model.ai.AiMessageWrapper;
+import com.example.demo.model.message.FinancialReportMessage;
+import com.example.demo.service.ai.cache.SemanticCacheAdvisor;
+import com.example.demo.service.ai.memory.FinancialReportMemory;
+import com.example.demo.service.resilience.DependencyGuard;
+import com.example.demo.service.resilience.DependencyGuards;
 import com.example.demo.utility.GetCurrentUserInfo;
 import com.example.demo.utility.PromptManager;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 import org.springframework.ai.chat.client.advisor.QuestionAnswerAdvisor;
 import org.springframework.ai.chat.memory.ChatMemory;
-import org.springframework.ai.chat.memory.InMemoryChatMemory;
-import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.model.function.FunctionCallback;
 import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.ApplicationContext;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.Map;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @RestController
 @RequestMapping("/ai/chat")
@@ -30,47 +47,77 @@ public class AiChatController {
     @Autowired
     VectorStore vectorStore;
     private final OpenAiChatModel openAiChatModel;
-    private final ChatMemory chatMemory = new InMemoryChatMemory();
-    private final ApplicationContext applicationContext;
+    private final ChatMemory chatMemory;
+    private final AgentRegistry agentRegistry;
     private final GetCurrentUserInfo getCurrentUserInfo;
+    private final SemanticCacheAdvisor semanticCacheAdvisor;
+    private final Timer firstTokenTimer;
+    private final DependencyGuard openAiGuard;
+    // 记忆 advisor 带上的历史条数
+    private static final int HISTORY_WINDOW = 10;
+    private static final ObjectMapper REPORT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
+    private final FinancialReportMemory financialReportMemory;
 
-    private String currentConversationId = "";
     @Autowired
     private PromptManager promptManager;
 
-    public AiChatController(OpenAiChatModel openAiChatModel, ApplicationContext applicationContext, GetCurrentUserInfo getCurrentUserInfo) {
+    public AiChatController(OpenAiChatModel openAiChatModel, ChatMemory chatMemory, FinancialReportMemory financialReportMemory, AgentRegistry agentRegistry, GetCurrentUserInfo getCurrentUserInfo, SemanticCacheAdvisor semanticCacheAdvisor, DependencyGuards dependencyGuards, MeterRegistry meterRegistry) {
         this.openAiChatModel = openAiChatModel;
-        this.applicationContext = applicationContext;
+        this.chatMemory = chatMemory;
+        this.financialReportMemory = financialReportMemory;
+        this.agentRegistry = agentRegistry;
         this.getCurrentUserInfo = getCurrentUserInfo;
+        this.semanticCacheAdvisor = semanticCacheAdvisor;
+        this.openAiGuard = dependencyGuards.openAi();
+        this.firstTokenTimer = Timer.builder("ai.chat.first-token")
+                .description("Time from request to the first streamed token")
+                .register(meterRegistry);
     }
 
 
     @SneakyThrows
     @PostMapping(value = "/rag")
     public String chat(@RequestBody AiMessageWrapper input, @RequestHeader("Authorization") String token) {
-        String[] functionBeanNames = new String[0];
-        // 如果启用Agent则获取Agent的bean
+        ChatClient.ChatClientRequestSpec request = ragRequest(input, token);
+        return openAiGuard.call(() -> request.call().content());
+    }
+
+    // 与 /rag 相同的请求，按 token 以 SSE 推送，首个 token 到达即可显示
+    @PostMapping(value = "/rag/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> chatRagStream(@RequestBody AiMessageWrapper input, @RequestHeader("Authorization") String token) {
+        ChatClient.ChatClientRequestSpec request = ragRequest(input, token);
+        return toServerSentEvents(openAiGuard.stream(() -> request.stream().content()), input.getInputMessage().getConversationId());
+    }
+
+    private ChatClient.ChatClientRequestSpec ragRequest(AiMessageWrapper input, String token) {
+        Long userId = getCurrentUserInfo.getCurrentUserId(token);
+        String conversationId = input.getInputMessage().getConversationId();
+        ChatClient.ChatClientRequestSpec request = ChatClient.create(openAiChatModel).prompt();
+        // 启用Agent时只把和这条消息相关的Agent作为工具发送，回调在启动时已由 AgentRegistry 生成
         if (input.getParams().getEnableAgent()) {
-            // 获取带有Agent注解的bean
-            Map<String, Object> beansWithAnnotation = applicationContext.getBeansWithAnnotation(Agent.class);
-            functionBeanNames = new String[beansWithAnnotation.keySet().size()];
-            functionBeanNames = beansWithAnnotation.keySet().toArray(functionBeanNames);
-            System.out.printf("================functionBeanNames: %s\n", functionBeanNames);
-            input.getInputMessage().setAccountId(String.valueOf(getCurrentUserInfo.getCurrentAccountId(getCurrentUserInfo.getCurrentUserId(token))));
+            List<FunctionCallback> agents = agentRegistry.select(input.getInputMessage().getMessage());
+            request.options(OpenAiChatOptions.builder().withFunctionCallbacks(agents).build());
+            input.getInputMessage().setAccountId(String.valueOf(getCurrentUserInfo.getCurrentAccountId(userId)));
         }
 
-        return ChatClient.create(openAiChatModel).prompt()
+        String reportContext = financialReportMemory.contextFor(userId, conversationId);
+        // Agent 的回答依赖实时的账户数据，不走语义缓存
+        String cacheScope = input.getParams().getEnableAgent() ? null
+                : cacheScopeFor(userId, conversationId, reportContext);
+
+        useFinancialReport(request, reportContext);
+        return request
                 .user(promptUserSpec -> buildPrompt(promptUserSpec, input))
-                .functions(functionBeanNames)
                 .advisors(advisorSpec -> {
+                    // semantic cache must run before memory / vector store advisors
+                    useSemanticCache(advisorSpec, cacheScope);
                     // use chat memory
                     useChatHistory(advisorSpec, input.getInputMessage().getConversationId());
                     // use vectore store
                     useVectorStore(advisorSpec, input.getParams().getEnableVectorStore());
-                })
-                .call()
-                .content();
+                });
     }
 
     private void buildPrompt(ChatClient.PromptUserSpec promptUserSpec, AiMessageWrapper message) {
@@ -84,27 +131,77 @@ public class AiChatController {
 
 
     @GetMapping(value = "/general", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public String chatStream(@RequestParam String prompt, @RequestParam String sessionId) {
-        MessageChatMemoryAdvisor messageChatMemoryAdvisor = new MessageChatMemoryAdvisor(chatMemory, sessionId, 10);
-        return ChatClient.create(openAiChatModel).prompt()
-                .user(prompt)
-                .advisors(messageChatMemoryAdvisor)
-                .call()
-                .content();
+    public Flux<ServerSentEvent<String>> chatStream(@RequestParam String prompt, @RequestParam String sessionId,
+                                                    @RequestHeader(value = "Authorization", required = false) String token) {
+        Long userId = token == null ? null : getCurrentUserInfo.getCurrentUserId(token);
+        String reportContext = financialReportMemory.contextFor(userId, sessionId);
+        String cacheScope = cacheScopeFor(userId, sessionId, reportContext);
+        MessageChatMemoryAdvisor messageChatMemoryAdvisor = new MessageChatMemoryAdvisor(chatMemory, sessionId, HISTORY_WINDOW);
+        ChatClient.ChatClientRequestSpec request = ChatClient.create(openAiChatModel).prompt();
+        useFinancialReport(request, reportContext);
+        request.user(prompt)
+                .advisors(advisorSpec -> {
+                    useSemanticCache(advisorSpec, cacheScope);
+                    advisorSpec.advisors(messageChatMemoryAdvisor);
+                });
+        Flux<String> tokens = openAiGuard.stream(() -> request.stream().content());
+        return toServerSentEvents(tokens, sessionId);
+    }
+
+    /**
+     * 把模型的 token 流转换成 SSE：每个 token 一个 "token" 事件，结束时发送 "done"，出错时发送 "error"。
+     * Spring MVC 按客户端写出速度逐个请求元素，上游 WebClient 随之背压，不占用 Tomcat 线程；
+     * 客户端断开时取消订阅，OpenAI 的连接随之关闭。记忆 advisor 在流完整结束后才写入回答
+     */
+    Flux<ServerSentEvent<String>> toServerSentEvents(Flux<String> tokens, String conversationId) {
+        long start = System.nanoTime();
+        AtomicBoolean firstToken = new AtomicBoolean(true);
+        return tokens
+                .doOnNext(token -> {
+                    if (firstToken.compareAndSet(true, false)) {
+                        firstTokenTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                })
+                .map(token -> ServerSentEvent.<String>builder().event("token").data(token).build())
+                .concatWith(Mono.fromSupplier(() -> ServerSentEvent.<String>builder().event("done").data("[DONE]").build()))
+                .onErrorResume(e -> {
+                    log.error("Chat stream {} failed", conversationId, e);
+                    return Mono.just(ServerSentEvent.<String>builder().event("error").data("Chat failed: " + e.getMessage()).build());
+                })
+                .doOnCancel(() -> log.info("Client left chat stream {}, cancelling model request", conversationId));
     }
 
     //normal chat
     @GetMapping("/chatWithoutMemory")
     public String chat(@RequestParam String prompt) {
         ChatClient chatClient = ChatClient.create(openAiChatModel);
-        return chatClient.prompt()
+        // 没有对话历史，回答只取决于问题本身，可以全局共享
+        return openAiGuard.call(() -> chatClient.prompt()
                 .user(prompt)
+                .advisors(advisorSpec -> useSemanticCache(advisorSpec, SemanticCacheAdvisor.GLOBAL_SCOPE))
                 .call()
-                .content();
+                .content());
+    }
+
+    // 回答还取决于注入的报告和记忆 advisor 带上的历史窗口，两者都参与缓存作用域，见 SemanticCacheAdvisor
+    private String cacheScopeFor(Long userId, String conversationId, String reportContext) {
+        List<Message> history = conversationId == null ? List.of() : chatMemory.get(conversationId, HISTORY_WINDOW);
+        return semanticCacheAdvisor.scopeFor(userId, conversationId, reportContext, history);
+    }
+
+    public void useSemanticCache(ChatClient.AdvisorSpec advisorSpec, String cacheScope) {
+        if (cacheScope == null) return;
+        advisorSpec.advisors(semanticCacheAdvisor).param(SemanticCacheAdvisor.CACHE_SCOPE_KEY, cacheScope);
     }
 
     public void useChatHistory(ChatClient.AdvisorSpec advisorSpec, String sessionId) {
-        advisorSpec.advisors(new MessageChatMemoryAdvisor(chatMemory, sessionId, 10));
+        advisorSpec.advisors(new MessageChatMemoryAdvisor(chatMemory, sessionId, HISTORY_WINDOW));
+    }
+
+    // 把该用户最近的财务报告作为系统提示注入，报告存放在 FinancialReportMemory 的独立 Redis 列表里，长度有界
+    public void useFinancialReport(ChatClient.ChatClientRequestSpec request, String reportContext) {
+        if (reportContext == null) return;
+        request.system(reportContext);
     }
 
     public void useVectorStore(ChatClient.AdvisorSpec advisorSpec, Boolean enableVectorStore) {
@@ -113,9 +210,22 @@ public class AiChatController {
         advisorSpec.advisors(new QuestionAnswerAdvisor(vectorStore, SearchRequest.defaults(), context));
     }
 
+    // 自己解析消息体：滚动升级期间队列里可能还有旧版本发出的纯字符串报告（JSON 字符串，不带 userId），
+    // 无法归属到任何用户，记录后确认丢弃，报告本身已经存进数据库；格式错误的消息直接拒绝，不重新入队
     @RabbitListener(queues = "financial.report.to.chatbot")
-    public void receiveFinancialReport(String report) {
-        log.info("Chat bot received financial report from AI analyser");
-        chatMemory.add(currentConversationId, new SystemMessage(report));
+    public void receiveFinancialReport(org.springframework.amqp.core.Message message) {
+        JsonNode payload;
+        try {
+            payload = REPORT_MAPPER.readTree(message.getBody());
+        } catch (IOException e) {
+            throw new AmqpRejectAndDontRequeueException("Malformed financial report message", e);
+        }
+        if (payload == null || payload.isTextual()) {
+            log.warn("Dropping legacy financial report without user, it stays available in the report history");
+            return;
+        }
+        FinancialReportMessage report = REPORT_MAPPER.convertValue(payload, FinancialReportMessage.class);
+        log.info("Chat bot received financial report from AI analyser for userId: {}", report.getUserId());
+        financialReportMemory.record(report);
     }
 }
@@ -1,11 +1,13 @@
 package com.example.demo.controller.ai;
 
 
+import com.example.demo.exception.DependencyUnavailableException;
 import com.example.demo.service.aws.S3Service;
 import com.example.demo.utility.GetCurrentUserInfo;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.reader.tika.TikaDocumentReader;
@@ -27,6 +29,7 @@ import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("vector-db")
+@Slf4j
 public class VectorDBController {
     private static final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
 
@@ -68,7 +71,7 @@ public class VectorDBController {
 
         for (Document doc : splitDocuments) {
             documentIds.add(doc.getId());
-            System.out.printf("Document id: %s\n", doc.getId());
+            log.debug("Document id: {}", doc.getId());
         }
         // 保存文件名和对应的文档ID列表
         fileDocumentIdsMap.put(fileName, documentIds);
@@ -77,6 +80,9 @@ public class VectorDBController {
         try {
             Long userId = getCurrentUserInfo.getCurrentUserId(token);
             s3Service.uploadFile(userId, file.getInputStream(), file.getSize(), file.getContentType(), fileName);
+        } catch (DependencyUnavailableException e) {
+            // S3 暂时不可用，原样抛出由 @ResponseStatus 映射为 503
+            throw e;
         } catch (RuntimeException e) {
             throw new RuntimeException("Failed to upload file to S3", e);
         }
@@ -91,7 +97,7 @@ public class VectorDBController {
         }
 
         try {
-            System.out.printf("Deleting %d documents for file '%s' from vector database...\n", documentIds.size(), fileName);
+            log.info("Deleting {} documents for file '{}' from vector database", documentIds.size(), fileName);
             chromaVectorStore.doDelete(documentIds);
             fileDocumentIdsMap.remove(fileName);
             return ResponseEntity.ok("File '" + fileName + "' deleted successfully from vector database.");
@@ -107,7 +113,7 @@ public class VectorDBController {
                     .flatMap(List::stream)
                     .collect(Collectors.toList());
 
-            System.out.printf("Deleting %d documents from vector database...\n", allDocumentIds.size());
+            log.info("Deleting {} documents from vector database", allDocumentIds.size());
             chromaVectorStore.doDelete(allDocumentIds);
             fileDocumentIdsMap.clear();
             return ResponseEntity.ok("Vector database cleared successfully.");
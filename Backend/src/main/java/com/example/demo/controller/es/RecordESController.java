@@ -1,10 +1,14 @@
 package com.example.demo.controller.es;
 
 import org.springframework.data.elasticsearch.core.SearchHits;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import com.example.demo.model.TransactionRecordES;
 import com.example.demo.service.es.RecordSearchService;
+import com.example.demo.service.es.RecordSyncService;
+import com.example.demo.utility.GetCurrentUserInfo;
 
 import java.util.List;
 
@@ -13,9 +17,15 @@ import java.util.List;
 public class RecordESController {
 
     private final RecordSearchService recordSearchService;
+    private final RecordSyncService recordSyncService;
+    private final GetCurrentUserInfo getCurrentUserInfo;
 
-    public RecordESController(RecordSearchService recordSearchService) {
+    public RecordESController(RecordSearchService recordSearchService,
+                              RecordSyncService recordSyncService,
+                              GetCurrentUserInfo getCurrentUserInfo) {
         this.recordSearchService = recordSearchService;
+        this.recordSyncService = recordSyncService;
+        this.getCurrentUserInfo = getCurrentUserInfo;
     }
 
     @GetMapping("/search")
@@ -36,4 +46,20 @@ public class RecordESController {
         return recordSearchService.advancedSearch(token, description, type, minAmount, maxAmount);
     }
 
-}
\ No newline at end of file
+    // 从数据库重新索引当前账户的全部记录
+    @PostMapping("/reindex")
+    public ResponseEntity<Long> reindexCurrentAccount(@RequestHeader("Authorization") String token) {
+        Long userId = getCurrentUserInfo.getCurrentUserId(token);
+        Long accountId = getCurrentUserInfo.getCurrentAccountId(userId);
+        return ResponseEntity.ok(recordSyncService.reindexAccount(accountId));
+    }
+
+    // 全量重建索引，仅管理员可用
+    @PostMapping("/reindex/all")
+    public ResponseEntity<Long> reindexAll(@RequestHeader("Authorization") String token) {
+        if (!"ROLE_ADMIN".equals(getCurrentUserInfo.getCurrentUserRole(token))) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return ResponseEntity.ok(recordSyncService.reindexAll());
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.demo.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * 同时排队的 CSV 导入任务已满，客户端稍后重试
+ */
+@ResponseStatus(HttpStatus.TOO_MANY_REQUESTS)
+public class ImportCapacityExceededException extends RuntimeException {
+    public ImportCapacityExceededException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.demo.exception;
+
+/**
+ * 外部依赖自身出错但没有通过 HTTP 状态码表现出来，例如 AlphaVantage 以 200 返回的限流提示、空响应。
+ * 和请求本身的错误（不存在的股票代码、城市）区分开，只有这类错误计入熔断统计
+ */
+public class UpstreamFailureException extends RuntimeException {
+    public UpstreamFailureException(String message) {
+        super(message);
+    }
+}
@@ -1,16 +1,41 @@
 package com.example.demo.listener;
 
+import com.example.demo.config.rabbitmq.RabbitMQConfig;
+import com.example.demo.exception.DependencyUnavailableException;
 import com.example.demo.model.message.AnalyseRequest;
 import com.example.demo.service.ai.AiAnalyserService;
 import com.example.demo.service.TransactionRecordService;
+import com.example.demo.service.rabbitmq.MessageDeduplicator;
+import com.example.demo.service.rabbitmq.RabbitMQService;
 import com.example.demo.utility.converter.PromptConverter;
 import com.example.demo.utility.GetCurrentUserInfo;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.Message;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 批量消费 AnalyseRequest：容器在一个短窗口内攒批（见 RabbitMQConfig.analyseBatchContainerFactory），
+ * 同一账户的记录合并成一次模型调用，每个账户每批只推送一条 WebSocket 结果。
+ * 投递是至少一次的，处理前按 messageId 去重（见 {@link MessageDeduplicator}），同一条消息重复投递不会再次调用模型和推送。
+ * OpenAI 不可用时停止处理本批，把剩下账户的请求带着原来的 messageId 发到延迟重试队列
+ * （RabbitMQConfig.ANALYSE_RETRY_QUEUE，backoff-ms 后死信回到分析队列），消费线程不等待；
+ * 重试消息没有全部 confirm 时抛出异常让容器把整批重新入队，已经分析过的消息会被去重跳过
+ */
 @Slf4j
 @Component
 public class WarningRecordAnalyser {
@@ -18,40 +43,118 @@ public class WarningRecordAnalyser {
     public final GetCurrentUserInfo getCurrentUserInfo;
     public final TransactionRecordService transactionRecordService;
     public final SimpMessagingTemplate messagingTemplate;
+    private final RabbitMQService rabbitMQService;
+    private final MessageDeduplicator messageDeduplicator;
+    private final long confirmTimeoutMillis;
+
+    private final Counter requestCounter;
+    private final Counter llmCallCounter;
+    private final Counter deferredCounter;
+    private final Counter duplicateCounter;
 
     @Autowired
-    public WarningRecordAnalyser(AiAnalyserService aiAnalyserService, GetCurrentUserInfo getCurrentUserInfo, TransactionRecordService transactionRecordService, SimpMessagingTemplate messagingTemplate) {
+    public WarningRecordAnalyser(AiAnalyserService aiAnalyserService, GetCurrentUserInfo getCurrentUserInfo, TransactionRecordService transactionRecordService, SimpMessagingTemplate messagingTemplate, RabbitMQService rabbitMQService, MessageDeduplicator messageDeduplicator, MeterRegistry meterRegistry,
+                                 @Value("${analyser.retry.confirm-timeout-ms:5000}") long confirmTimeoutMillis) {
         this.aiAnalyserService = aiAnalyserService;
         this.getCurrentUserInfo = getCurrentUserInfo;
         this.transactionRecordService = transactionRecordService;
         this.messagingTemplate = messagingTemplate;
+        this.rabbitMQService = rabbitMQService;
+        this.messageDeduplicator = messageDeduplicator;
+        this.confirmTimeoutMillis = confirmTimeoutMillis;
+        this.requestCounter = meterRegistry.counter("analyser.requests");
+        this.llmCallCounter = meterRegistry.counter("analyser.llm.calls");
+        this.deferredCounter = meterRegistry.counter("analyser.deferred");
+        this.duplicateCounter = meterRegistry.counter("analyser.duplicates");
         log.info("WarningRecordAnalyser initialized with dependencies");
     }
 
-    @RabbitListener(queues = "new.record.to.ai.analyser")
-    public void handleCurrentRecordAnalyse(AnalyseRequest request) {
-        log.info("Received AnalyseRequest for accountId: {}", request.getAccountId());
+    @RabbitListener(queues = RabbitMQConfig.ANALYSE_QUEUE, containerFactory = RabbitMQConfig.ANALYSE_BATCH_CONTAINER_FACTORY)
+    public void handleAnalyseBatch(List<Message<AnalyseRequest>> messages) {
+        // 按账户分组，保持到达顺序；已经处理过的 messageId 直接跳过
+        Map<Long, List<String>> recordsByAccount = new LinkedHashMap<>();
+        Map<Long, List<String>> messageIdsByAccount = new LinkedHashMap<>();
+        for (Message<AnalyseRequest> message : messages) {
+            AnalyseRequest request = message.getPayload();
+            if (request.getAccountId() == null || request.getContent() == null) {
+                log.warn("Skipping malformed AnalyseRequest: {}", request);
+                continue;
+            }
+            String messageId = message.getHeaders().get(AmqpHeaders.MESSAGE_ID, String.class);
+            if (!messageDeduplicator.claim(messageId)) {
+                log.info("Skipping duplicate AnalyseRequest {} for accountId: {}", messageId, request.getAccountId());
+                duplicateCounter.increment();
+                continue;
+            }
+            recordsByAccount.computeIfAbsent(request.getAccountId(), id -> new ArrayList<>()).add(request.getContent());
+            messageIdsByAccount.computeIfAbsent(request.getAccountId(), id -> new ArrayList<>()).add(messageId);
+        }
+        requestCounter.increment(messages.size());
+        log.info("Received {} AnalyseRequests for {} accounts", messages.size(), recordsByAccount.size());
 
-        String currentRecord = request.getContent();
-        long accountId = request.getAccountId();
-        log.debug("Processing current record: {}", currentRecord);
-        log.info("Fetching recent records for accountId: {}", accountId);
-        String recentRecords = PromptConverter.parseRecentTransactionRecordsToPrompt(transactionRecordService.getCertainDaysRecords(accountId, 10), false);
-        log.info("Recent records parsed: {}", recentRecords);
+        List<Long> accountIds = new ArrayList<>(recordsByAccount.keySet());
+        for (int i = 0; i < accountIds.size(); i++) {
+            try {
+                analyseAccount(accountIds.get(i), recordsByAccount.get(accountIds.get(i)));
+            } catch (DependencyUnavailableException e) {
+                // 没分析的消息会再次投递，先撤销它们的去重标记
+                List<Long> remaining = accountIds.subList(i, accountIds.size());
+                messageDeduplicator.release(remaining.stream().flatMap(id -> messageIdsByAccount.get(id).stream()).toList());
+                defer(recordsByAccount, messageIdsByAccount, remaining, e);
+                return;
+            }
+        }
+    }
 
-        log.info("Analyzing current record with AI service");
-        String result = aiAnalyserService.analyseCurrentRecord(currentRecord, recentRecords);
-        log.info("Analysis result: {}", result);
+    // 发到延迟重试队列而不是在消费线程上 sleep；先发完整批再统一等待 confirm
+    private void defer(Map<Long, List<String>> recordsByAccount, Map<Long, List<String>> messageIdsByAccount,
+                       List<Long> remaining, DependencyUnavailableException cause) {
+        log.warn("AI analyser unavailable, deferring {} accounts: {}", remaining.size(), cause.getMessage());
+        List<CorrelationData> pendingConfirms = new ArrayList<>();
+        try {
+            for (Long accountId : remaining) {
+                List<String> contents = recordsByAccount.get(accountId);
+                List<String> messageIds = messageIdsByAccount.get(accountId);
+                for (int i = 0; i < contents.size(); i++) {
+                    String messageId = messageIds.get(i) != null ? messageIds.get(i) : UUID.randomUUID().toString();
+                    pendingConfirms.add(rabbitMQService.sendAnalyseRetryWithConfirm(new AnalyseRequest(accountId, contents.get(i)), messageId));
+                }
+            }
+            for (CorrelationData correlationData : pendingConfirms) {
+                CorrelationData.Confirm confirm = correlationData.getFuture().get(confirmTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (!confirm.isAck() || correlationData.getReturned() != null) {
+                    throw new IllegalStateException("Retry message " + correlationData.getId() + " was not accepted: " + confirm.getReason());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while deferring AnalyseRequests", e);
+        } catch (Exception e) {
+            // 整批重新入队：没分析的消息已经撤销了去重标记，已经分析过的仍会被跳过
+            throw new RuntimeException("Failed to defer AnalyseRequests: " + e.getMessage(), e);
+        }
+        deferredCounter.increment(pendingConfirms.size());
+    }
 
-        String destination = "/topic/analysis-result/" + accountId;
-        log.info("Sending analysis result to WebSocket destination: {}", destination);
+    private void analyseAccount(Long accountId, List<String> currentRecords) {
+        // 单个账户的普通失败不影响同批的其他账户，也不让整批重新入队（否则已分析的账户会重复调用模型）；
+        // 依赖不可用时向上抛出，由 handleAnalyseBatch 统一延后
         try {
+            log.info("Fetching recent records for accountId: {}", accountId);
+            String recentRecords = PromptConverter.parseRecentTransactionRecordsToPrompt(transactionRecordService.getCertainDaysRecords(accountId, 10), false);
+
+            log.info("Analyzing {} records for accountId: {}", currentRecords.size(), accountId);
+            String result = aiAnalyserService.analyseRecordBatch(currentRecords, recentRecords);
+            llmCallCounter.increment();
+            log.info("Analysis result: {}", result);
+
+            String destination = "/topic/analysis-result/" + accountId;
             messagingTemplate.convertAndSend(destination, result);
             log.info("Analysis result sent successfully to accountId: {}", accountId);
+        } catch (DependencyUnavailableException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("Error sending analysis result to WebSocket for accountId: {}", accountId, e);
+            log.error("Error analysing records for accountId: {}", accountId, e);
         }
     }
-
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,44 @@
+package com.example.demo.model;
+
+import java.time.LocalDate;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import lombok.Data;
+
+/**
+ * 按 账户 / 分类 / 日期 / 收支类型 预聚合的交易汇总，
+ * 由 AccountAggregateService 随交易记录的增删改增量维护，仪表盘直接读取，不再扫描 transaction_record
+ */
+@Entity
+@Data
+@Table(name = "account_daily_rollup",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"account_id", "category", "rollup_date", "type"}))
+public class AccountDailyRollup {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private String category;
+
+    @Column(name = "rollup_date", nullable = false)
+    private LocalDate rollupDate;
+
+    @Column(nullable = false)
+    private String type;  // income, expense
+
+    @Column(name = "total_amount", nullable = false)
+    private double totalAmount;
+
+    @Column(name = "record_count", nullable = false)
+    private long recordCount;
+}
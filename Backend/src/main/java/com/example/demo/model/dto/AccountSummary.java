@@ -0,0 +1,11 @@
+package com.example.demo.model.dto;
+
+/**
+ * 登录时写入会话的账户摘要，由 JPQL 构造表达式直接生成，不加载用户的 accounts 集合
+ */
+public record AccountSummary(
+        Long id,
+        String accountName,
+        double totalIncome,
+        double totalExpense) {
+}
@@ -0,0 +1,118 @@
+package com.example.demo.model.dto;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.Getter;
+
+/**
+ * 一次 CSV 导入任务的进度。导入线程写，查询进度的请求线程读，所以计数器都是原子的
+ */
+public class CsvImportProgress {
+    // 只保留前若干条被拒绝行的原因，避免大文件把错误信息全部堆在内存里
+    public static final int MAX_ERRORS = 100;
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED }
+
+    @Getter private final String jobId;
+    @Getter @JsonIgnore private final Long userId;
+    @Getter private final Long accountId;
+    @Getter private final long totalBytes;
+    @Getter private volatile Status status = Status.QUEUED;
+    @Getter private volatile Instant startedAt;
+    @Getter private volatile Instant finishedAt;
+    @Getter private volatile String message;
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong rowsRead = new AtomicLong();
+    private final AtomicLong rowsImported = new AtomicLong();
+    private final AtomicLong rowsRejected = new AtomicLong();
+    private final List<String> errors = new ArrayList<>();
+
+    public CsvImportProgress(String jobId, Long userId, Long accountId, long totalBytes) {
+        this.jobId = jobId;
+        this.userId = userId;
+        this.accountId = accountId;
+        this.totalBytes = totalBytes;
+    }
+
+    public void start() {
+        startedAt = Instant.now();
+        status = Status.RUNNING;
+    }
+
+    public void complete() {
+        finishedAt = Instant.now();
+        status = Status.COMPLETED;
+    }
+
+    public void fail(String message) {
+        this.message = message;
+        finishedAt = Instant.now();
+        status = Status.FAILED;
+    }
+
+    public void addBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    public void rowRead() {
+        rowsRead.incrementAndGet();
+    }
+
+    public void addRowsImported(int rows) {
+        rowsImported.addAndGet(rows);
+    }
+
+    public void rowRejected(long lineNumber, String error) {
+        rowsRejected.incrementAndGet();
+        synchronized (errors) {
+            if (errors.size() < MAX_ERRORS) {
+                errors.add("line " + lineNumber + ": " + error);
+            }
+        }
+    }
+
+    public long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    public long getRowsRead() {
+        return rowsRead.get();
+    }
+
+    public long getRowsImported() {
+        return rowsImported.get();
+    }
+
+    public long getRowsRejected() {
+        return rowsRejected.get();
+    }
+
+    public List<String> getErrors() {
+        synchronized (errors) {
+            return List.copyOf(errors);
+        }
+    }
+
+    // 按已读字节估算，未知文件大小时为 -1
+    public double getPercent() {
+        if (status == Status.COMPLETED) {
+            return 100.0;
+        }
+        return totalBytes > 0 ? Math.min(100.0, getBytesRead() * 100.0 / totalBytes) : -1;
+    }
+
+    public double getRowsPerSecond() {
+        if (startedAt == null) {
+            return 0;
+        }
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        long millis = Math.max(Duration.between(startedAt, end).toMillis(), 1);
+        return getRowsRead() * 1000.0 / millis;
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.demo.model.dto;
+
+/**
+ * 财务报告列表返回给前端的字段，由 JPQL 构造表达式直接生成，可以安全地放进缓存
+ */
+public record FinancialReportSummary(
+        Long id,
+        String content) {
+}
@@ -0,0 +1,9 @@
+package com.example.demo.model.dto;
+
+import java.util.List;
+
+/**
+ * 一页交易记录；nextCursor 为 null 表示已经是最后一页
+ */
+public record RecordPage(List<TransactionRecordView> items, String nextCursor) {
+}
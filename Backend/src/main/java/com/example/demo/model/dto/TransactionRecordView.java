@@ -0,0 +1,16 @@
+package com.example.demo.model.dto;
+
+import java.time.ZonedDateTime;
+
+/**
+ * 交易记录列表的只读投影，由 JPQL 构造表达式直接生成，不加载 Account 关联
+ */
+public record TransactionRecordView(
+        long id,
+        String type,
+        String category,
+        Double amount,
+        String transactionMethod,
+        ZonedDateTime transactionTime,
+        String transactionDescription) {
+}
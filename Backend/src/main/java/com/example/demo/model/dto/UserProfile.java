@@ -0,0 +1,31 @@
+package com.example.demo.model.dto;
+
+import com.example.demo.model.TransactionUser;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+import java.time.LocalDate;
+
+/**
+ * 按 id 查询用户时返回的资料，不包含密码和 accounts / financialReports 懒加载集合，可以安全地放进缓存
+ */
+public record UserProfile(
+        Long id,
+        String username,
+        String email,
+        String phone,
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "yyyy-MM-dd")
+        LocalDate dob,
+        String avatar,
+        String role) {
+
+    public static UserProfile from(TransactionUser user) {
+        return new UserProfile(
+                user.getId(),
+                user.getUsername(),
+                user.getEmail(),
+                user.getPhone(),
+                user.getDob(),
+                user.getAvatar(),
+                user.getRole() == null ? null : user.getRole().getRoleName());
+    }
+}
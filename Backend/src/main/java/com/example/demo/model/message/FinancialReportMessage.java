@@ -0,0 +1,25 @@
+package com.example.demo.model.message;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 发给聊天机器人的财务报告，带上报告所属的用户和会话；conversationId 为空时报告对该用户的所有会话可见
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FinancialReportMessage implements Serializable {
+    @JsonProperty("userId")
+    private Long userId;
+    @JsonProperty("conversationId")
+    private String conversationId;
+    @JsonProperty("report")
+    private String report;
+    @JsonProperty("generatedAt")
+    private Long generatedAt;
+}
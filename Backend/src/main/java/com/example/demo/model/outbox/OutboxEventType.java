@@ -0,0 +1,10 @@
+package com.example.demo.model.outbox;
+
+public enum OutboxEventType {
+    // 交易记录有变化，需要把 Elasticsearch 同步到数据库里的最新状态（aggregateId = 记录 id）
+    RECORD_CHANGED,
+    // 发给 AI 分析服务的 AnalyseRequest（aggregateId = 账户 id，payload = JSON）
+    ANALYSE_REQUEST,
+    // 账户批量导入了记录，整体重建该账户的 ES 索引（aggregateId = 账户 id）
+    ACCOUNT_REINDEX
+}
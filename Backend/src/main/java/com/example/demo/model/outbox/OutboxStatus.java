@@ -0,0 +1,8 @@
+package com.example.demo.model.outbox;
+
+public enum OutboxStatus {
+    // 等待投递或等待重试
+    PENDING,
+    // 超过最大重试次数，保留下来人工排查
+    FAILED
+}
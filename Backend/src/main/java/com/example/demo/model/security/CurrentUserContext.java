@@ -0,0 +1,63 @@
+package com.example.demo.model.security;
+
+import java.util.function.Function;
+
+/**
+ * 当前请求的用户上下文：JwtAuthenticationTokenFilter 解析 token 后为每个请求创建一次，保存在 request attribute 中，
+ * controller 直接声明 CurrentUserContext 参数即可注入。当前账户 id 第一次用到时才读取，同一个请求里只读一次
+ */
+public final class CurrentUserContext {
+    public static final String REQUEST_ATTRIBUTE = CurrentUserContext.class.getName();
+
+    private final JwtPrincipal principal;
+    private final Function<Long, Long> currentAccountLoader;
+    private boolean currentAccountLoaded;
+    private Long currentAccountId;
+
+    public CurrentUserContext(JwtPrincipal principal, Function<Long, Long> currentAccountLoader) {
+        this.principal = principal;
+        this.currentAccountLoader = currentAccountLoader;
+    }
+
+    public JwtPrincipal principal() {
+        return principal;
+    }
+
+    public Long userId() {
+        return principal.userId();
+    }
+
+    public String username() {
+        return principal.username();
+    }
+
+    public String role() {
+        return principal.role();
+    }
+
+    public String token() {
+        return principal.token();
+    }
+
+    /**
+     * 当前选择的账户 id，还没有选择账户时返回 null
+     */
+    public Long currentAccountId() {
+        if (!currentAccountLoaded) {
+            currentAccountId = currentAccountLoader.apply(principal.userId());
+            currentAccountLoaded = true;
+        }
+        return currentAccountId;
+    }
+
+    /**
+     * 当前选择的账户 id，还没有选择账户时抛出 IllegalArgumentException
+     */
+    public Long requireCurrentAccountId() {
+        Long accountId = currentAccountId();
+        if (accountId == null) {
+            throw new IllegalArgumentException("No current account selected");
+        }
+        return accountId;
+    }
+}
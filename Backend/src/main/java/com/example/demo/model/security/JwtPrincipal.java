@@ -0,0 +1,9 @@
+package com.example.demo.model.security;
+
+/**
+ * JWT 过滤器解析出的当前请求身份，保存在 request attribute 中，
+ * 后续的 controller / service 直接读取，不再重复解析 token
+ */
+public record JwtPrincipal(Long userId, String username, String role, String token) {
+    public static final String REQUEST_ATTRIBUTE = JwtPrincipal.class.getName();
+}
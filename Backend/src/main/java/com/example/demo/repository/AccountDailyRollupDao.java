@@ -0,0 +1,15 @@
+package com.example.demo.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import com.example.demo.model.AccountDailyRollup;
+
+@Repository
+public interface AccountDailyRollupDao extends JpaRepository<AccountDailyRollup, Long> {
+    // 获取账户在某个日期区间内的每日汇总
+    List<AccountDailyRollup> findByAccountIdAndRollupDateBetweenOrderByRollupDateAsc(Long accountId, LocalDate from, LocalDate to);
+}
@@ -5,6 +5,8 @@ import com.example.demo.model.TransactionUser;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import com.example.demo.model.Account;
+import com.example.demo.model.dto.AccountSummary;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -20,7 +22,23 @@ public interface AccountDao extends JpaRepository<Account, Long> {
 
     List<Account> findByTransactionUser(TransactionUser user);
 
+    // 登录时一次查询取出会话需要的账户字段
+    @Query("SELECT new com.example.demo.model.dto.AccountSummary(a.id, a.accountName, a.totalIncome, a.totalExpense) " +
+            "FROM Account a WHERE a.transactionUser.id = ?1 ORDER BY a.id")
+    List<AccountSummary> findSummariesByUserId(Long userId);
+
+    // 当前账户的收支摘要，不加载 transactionRecords
+    @Query("SELECT new com.example.demo.model.dto.AccountSummary(a.id, a.accountName, a.totalIncome, a.totalExpense) " +
+            "FROM Account a WHERE a.id = ?1")
+    Optional<AccountSummary> findSummaryById(Long accountId);
+
     @Query(value = "SELECT a.id FROM Account a WHERE a.accountName = ?1 AND a.transactionUser.id = ?2")
     Long findAccountIdByAccountNameAndTransactionUserId(String accountName, Long userId);
 
+    // 原子地累加收支总额，避免并发读-改-写丢失更新。
+    // 不清空持久化上下文（调用方的其他实体不会被 detach），已加载的 Account 由 AccountAggregateService 单独 refresh
+    @Modifying(flushAutomatically = true)
+    @Query("UPDATE Account a SET a.totalIncome = a.totalIncome + :incomeDelta, a.totalExpense = a.totalExpense + :expenseDelta WHERE a.id = :accountId")
+    int applyTotalsDelta(Long accountId, double incomeDelta, double expenseDelta);
+
 }
@@ -1,6 +1,7 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.FinancialReport;
+import com.example.demo.model.dto.FinancialReportSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -12,4 +13,9 @@ public interface FinancialReportRepository extends JpaRepository<FinancialReport
     @Query(value = "SELECT * FROM financial_report WHERE user_id = ?1", nativeQuery = true)
     List<FinancialReport> findAllFinancialReportsByUserId(Long userId);
 
+    // 只取前端需要的 id 和内容，不经过 TransactionUser.financialReports 懒加载集合
+    @Query("SELECT new com.example.demo.model.dto.FinancialReportSummary(r.id, r.content) " +
+            "FROM FinancialReport r WHERE r.transactionUser.id = ?1 ORDER BY r.id")
+    List<FinancialReportSummary> findSummariesByUserId(Long userId);
+
 }
@@ -0,0 +1,35 @@
+package com.example.demo.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.model.outbox.OutboxEvent;
+import com.example.demo.model.outbox.OutboxStatus;
+
+@Repository
+public interface OutboxEventDao extends JpaRepository<OutboxEvent, Long> {
+    // 到期待投递的事件 id，按写入顺序
+    @Query("SELECT e.id FROM OutboxEvent e WHERE e.status = :status AND e.nextAttemptAt <= :now ORDER BY e.id")
+    List<Long> findDueIds(OutboxStatus status, Instant now, Pageable pageable);
+
+    // 认领一批事件：把 next_attempt_at 推迟到租约结束，只有仍然到期的行会被当前批次认领
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE OutboxEvent e SET e.claimToken = :claimToken, e.nextAttemptAt = :leaseUntil " +
+            "WHERE e.id IN :ids AND e.status = :status AND e.nextAttemptAt <= :now")
+    int claim(List<Long> ids, OutboxStatus status, Instant now, Instant leaseUntil, String claimToken);
+
+    List<OutboxEvent> findByClaimTokenOrderByIdAsc(String claimToken);
+
+    long countByStatus(OutboxStatus status);
+
+    @Query("SELECT MIN(e.createdAt) FROM OutboxEvent e WHERE e.status = :status")
+    Instant findOldestCreatedAt(OutboxStatus status);
+}
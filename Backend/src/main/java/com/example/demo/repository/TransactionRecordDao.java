@@ -1,26 +1,48 @@
 package com.example.demo.repository;
 
 import com.example.demo.model.TransactionRecord;
+import com.example.demo.model.dto.TransactionRecordView;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.ZonedDateTime;
 import java.util.List;
 
 @Repository
 public interface TransactionRecordDao extends JpaRepository<TransactionRecord, Long> {
-    // 根据账户ID获取所有交易记录
-    @Query(value = "SELECT * FROM transaction_record WHERE account_id = ?1", nativeQuery = true)
-    List<TransactionRecord> findAllByAccountId(Long accountId);
+    String RECORD_VIEW = "SELECT new com.example.demo.model.dto.TransactionRecordView(r.id, r.type, r.category, r.amount, " +
+            "r.TransactionMethod, r.transactionTime, r.transactionDescription) FROM TransactionRecord r ";
 
-    // 根据ID和账户ID获取记录
-    @org.springframework.data.jpa.repository.Query(value = "SELECT * FROM transaction_record WHERE type = ?1 AND account_id = ?2", nativeQuery = true)
-    List<TransactionRecord> findByAccountIdAndType(String type, Long accountId);
+    // 按 (transaction_time, id) 倒序的 keyset 分页，走 (account_id, transaction_time DESC, id DESC) 索引
+    @Query(RECORD_VIEW + "WHERE r.account.id = :accountId ORDER BY r.transactionTime DESC, r.id DESC")
+    List<TransactionRecordView> findFirstPage(Long accountId, Pageable pageable);
+
+    @Query(RECORD_VIEW + "WHERE r.account.id = :accountId " +
+            "AND (r.transactionTime < :time OR (r.transactionTime = :time AND r.id < :id)) " +
+            "ORDER BY r.transactionTime DESC, r.id DESC")
+    List<TransactionRecordView> findPageAfter(Long accountId, ZonedDateTime time, long id, Pageable pageable);
+
+    @Query(RECORD_VIEW + "WHERE r.account.id = :accountId AND r.type = :type ORDER BY r.transactionTime DESC, r.id DESC")
+    List<TransactionRecordView> findFirstPageByType(Long accountId, String type, Pageable pageable);
+
+    @Query(RECORD_VIEW + "WHERE r.account.id = :accountId AND r.type = :type " +
+            "AND (r.transactionTime < :time OR (r.transactionTime = :time AND r.id < :id)) " +
+            "ORDER BY r.transactionTime DESC, r.id DESC")
+    List<TransactionRecordView> findPageAfterByType(Long accountId, String type, ZonedDateTime time, long id, Pageable pageable);
 
     // 根据多个ID和账户ID批量获取记录
     List<TransactionRecord> findAllByIdInAndAccountId(List<Long> ids, Long accountId);
 
     @Query(value = "SELECT * FROM transaction_record WHERE account_id = :accountId ORDER BY transaction_time DESC, id DESC LIMIT :duration", nativeQuery = true)
     List<TransactionRecord> findCertainDaysRecords(Long accountId, Integer duration);
+
+    // keyset 分页：按 id 顺序取 lastId 之后的一批记录，用于全量 / 按账户重建索引
+    @Query("SELECT r FROM TransactionRecord r JOIN FETCH r.account WHERE r.id > :lastId ORDER BY r.id")
+    List<TransactionRecord> findNextChunk(long lastId, Pageable pageable);
+
+    @Query("SELECT r FROM TransactionRecord r JOIN FETCH r.account a WHERE a.id = :accountId AND r.id > :lastId ORDER BY r.id")
+    List<TransactionRecord> findNextChunkByAccountId(Long accountId, long lastId, Pageable pageable);
 }
@@ -0,0 +1,218 @@
+package com.example.demo.service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.config.cache.CacheNames;
+import com.example.demo.model.Account;
+import com.example.demo.model.AccountDailyRollup;
+import com.example.demo.model.TransactionRecord;
+import com.example.demo.repository.AccountDailyRollupDao;
+import com.example.demo.repository.AccountDao;
+
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 账户聚合引擎：把交易记录的增删改转换成带符号的增量，
+ * 用原子 SQL 累加到 account 的收支总额和 account_daily_rollup 的每日分类汇总上。
+ * 不再在 Java 里读-改-写 Account，并发写同一账户不会丢失更新。
+ *
+ * 必须在调用方的事务内执行，和交易记录的写入一起提交或回滚；
+ * 被修改账户的 accounts 缓存在提交之后失效（CacheManager 是事务感知的）。
+ * 账户行和汇总行的行锁一直持有到调用方的事务提交，所以总是按 accountId（汇总行再按分类、日期、类型）
+ * 的固定顺序加锁，涉及多个账户的并发批次不会互相死锁
+ */
+@Slf4j
+@Service
+public class AccountAggregateService {
+    static final String UNCATEGORIZED = "uncategorized";
+
+    private static final String UPDATE_ROLLUP_SQL =
+            "UPDATE account_daily_rollup SET total_amount = total_amount + ?, record_count = record_count + ? " +
+            "WHERE account_id = ? AND category = ? AND rollup_date = ? AND type = ?";
+    private static final String INSERT_ROLLUP_SQL =
+            "INSERT INTO account_daily_rollup (account_id, category, rollup_date, type, total_amount, record_count) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
+
+    private final AccountDao accountDao;
+    private final AccountDailyRollupDao accountDailyRollupDao;
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache accountCache;
+    private final EntityManager entityManager;
+
+    @Autowired
+    public AccountAggregateService(AccountDao accountDao, AccountDailyRollupDao accountDailyRollupDao, JdbcTemplate jdbcTemplate,
+                                   CacheManager cacheManager, EntityManager entityManager) {
+        this.accountDao = accountDao;
+        this.accountDailyRollupDao = accountDailyRollupDao;
+        this.jdbcTemplate = jdbcTemplate;
+        this.accountCache = cacheManager.getCache(CacheNames.ACCOUNTS);
+        this.entityManager = entityManager;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAdded(TransactionRecord record) {
+        apply(List.of(), List.of(record));
+    }
+
+    // 批量写入时整批合并成一次增量
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordsAdded(Collection<TransactionRecord> records) {
+        apply(List.of(), records);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordUpdated(TransactionRecord before, TransactionRecord after) {
+        apply(List.of(before), List.of(after));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordsRemoved(Collection<TransactionRecord> records) {
+        apply(records, List.of());
+    }
+
+    /**
+     * 先在内存里合并所有增量，每个账户只执行一条 UPDATE，每个汇总键只 upsert 一次；
+     * 账户行的更新放在最前面，它持有的行锁同时串行化了同一账户的汇总 upsert。
+     * 两个 TreeMap 保证加锁顺序固定
+     */
+    private void apply(Collection<TransactionRecord> removed, Collection<TransactionRecord> added) {
+        Map<Long, double[]> accountDeltas = new TreeMap<>();
+        Map<RollupKey, RollupDelta> rollupDeltas = new TreeMap<>(RollupKey.ORDER);
+        removed.forEach(record -> accumulate(record, -1, accountDeltas, rollupDeltas));
+        added.forEach(record -> accumulate(record, 1, accountDeltas, rollupDeltas));
+
+        accountDeltas.forEach((accountId, delta) -> {
+            if (delta[0] != 0 || delta[1] != 0) {
+                int updated = accountDao.applyTotalsDelta(accountId, delta[0], delta[1]);
+                if (updated == 0) {
+                    throw new RuntimeException("Account not found for id: " + accountId);
+                }
+                refreshIfLoaded(accountId);
+                // 一次调用可能涉及多个账户，没法用 @CacheEvict 表达，直接逐个失效
+                accountCache.evict(accountId);
+            }
+        });
+        rollupDeltas.forEach(this::upsertRollup);
+    }
+
+    // 批量 UPDATE 绕过了持久化上下文：本事务已经加载过这个账户时重新读取它的总额，没加载过就不查库
+    private void refreshIfLoaded(Long accountId) {
+        Account account = entityManager.getReference(Account.class, accountId);
+        if (entityManager.getEntityManagerFactory().getPersistenceUnitUtil().isLoaded(account)) {
+            entityManager.refresh(account);
+        }
+    }
+
+    private void accumulate(TransactionRecord record, int sign,
+                            Map<Long, double[]> accountDeltas, Map<RollupKey, RollupDelta> rollupDeltas) {
+        Long accountId = record.getAccount().getId();
+        String type = record.getType().toLowerCase(Locale.ROOT);
+        double amount = sign * record.getAmount();
+
+        double[] totals = accountDeltas.computeIfAbsent(accountId, id -> new double[2]);
+        if (type.equals("income")) {
+            totals[0] += amount;
+        } else if (type.equals("expense")) {
+            totals[1] += amount;
+        }
+
+        RollupKey key = new RollupKey(accountId, categoryOf(record), dayOf(record), type);
+        RollupDelta delta = rollupDeltas.computeIfAbsent(key, k -> new RollupDelta());
+        delta.amount += amount;
+        delta.count += sign;
+    }
+
+    private void upsertRollup(RollupKey key, RollupDelta delta) {
+        if (delta.amount == 0 && delta.count == 0) {
+            return;
+        }
+        if (updateRollup(key, delta) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT_ROLLUP_SQL,
+                    key.accountId(), key.category(), Date.valueOf(key.day()), key.type(), delta.amount, delta.count);
+        } catch (DuplicateKeyException e) {
+            // 另一个事务刚插入了同一行，改为累加
+            log.debug("Rollup row {} created concurrently, retrying as update", key);
+            updateRollup(key, delta);
+        }
+    }
+
+    private int updateRollup(RollupKey key, RollupDelta delta) {
+        return jdbcTemplate.update(UPDATE_ROLLUP_SQL,
+                delta.amount, delta.count, key.accountId(), key.category(), Date.valueOf(key.day()), key.type());
+    }
+
+    @Transactional(readOnly = true)
+    public List<AccountDailyRollup> getDailyRollups(Long accountId, LocalDate from, LocalDate to) {
+        return accountDailyRollupDao.findByAccountIdAndRollupDateBetweenOrderByRollupDateAsc(accountId, from, to);
+    }
+
+    /**
+     * 从 transaction_record 重新计算账户的总额和每日汇总，用于历史数据迁移或对账修复
+     */
+    @Transactional
+    @CacheEvict(cacheNames = CacheNames.ACCOUNTS, key = "#accountId")
+    public void rebuildAggregates(Long accountId) {
+        jdbcTemplate.update("DELETE FROM account_daily_rollup WHERE account_id = ?", accountId);
+        List<TransactionRecord> records = jdbcTemplate.query(
+                "SELECT type, category, amount, transaction_time FROM transaction_record WHERE account_id = ?",
+                (rs, rowNum) -> {
+                    TransactionRecord record = new TransactionRecord();
+                    record.setType(rs.getString("type"));
+                    record.setCategory(rs.getString("category"));
+                    record.setAmount(rs.getDouble("amount"));
+                    record.setTransactionTime(rs.getTimestamp("transaction_time").toInstant()
+                            .atZone(ZoneId.systemDefault()));
+                    return record;
+                },
+                accountId);
+        jdbcTemplate.update("UPDATE account SET total_income = 0, total_expense = 0 WHERE id = ?", accountId);
+
+        Account account = new Account();
+        account.setId(accountId);
+        records.forEach(record -> record.setAccount(account));
+        apply(List.of(), records);
+    }
+
+    private static String categoryOf(TransactionRecord record) {
+        String category = record.getCategory();
+        return category == null || category.isBlank() ? UNCATEGORIZED : category;
+    }
+
+    private static LocalDate dayOf(TransactionRecord record) {
+        return record.getTransactionTime() != null ? record.getTransactionTime().toLocalDate() : LocalDate.now();
+    }
+
+    private record RollupKey(Long accountId, String category, LocalDate day, String type) {
+        static final Comparator<RollupKey> ORDER = Comparator.comparing(RollupKey::accountId)
+                .thenComparing(RollupKey::category)
+                .thenComparing(RollupKey::day)
+                .thenComparing(RollupKey::type);
+    }
+
+    private static final class RollupDelta {
+        private double amount;
+        private long count;
+    }
+}
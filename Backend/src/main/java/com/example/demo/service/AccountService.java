@@ -1,23 +1,25 @@
 package com.example.demo.service;
 
+import com.example.demo.config.cache.CacheNames;
 import com.example.demo.repository.TransactionUserDao;
 import com.example.demo.exception.AccountAlreadyExistException;
 import com.example.demo.exception.AccountNotFoundException;
 import com.example.demo.model.Account;
 import com.example.demo.model.dto.AccountDTO;
+import com.example.demo.model.dto.AccountSummary;
 import com.example.demo.model.redis.RedisAccount;
 import com.example.demo.model.TransactionUser;
 import com.example.demo.utility.GetCurrentUserInfo;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.demo.service.session.UserSessionStore;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Autowired;
 import com.example.demo.repository.AccountDao;
 
 import java.util.List;
-import java.util.Set;
 
 
-import org.springframework.data.redis.core.RedisTemplate;
 import com.example.demo.exception.UserNotFoundException;
 
 
@@ -25,17 +27,15 @@ import com.example.demo.exception.UserNotFoundException;
 public class AccountService {
 
     private final AccountDao accountDao;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final UserSessionStore userSessionStore;
     private final TransactionUserDao transactionUserDao;
-    private final ObjectMapper objectMapper;
     private final GetCurrentUserInfo getCurrentUserInfo;
 
     @Autowired
-    public AccountService(AccountDao accountDao, RedisTemplate<String, Object> redisTemplate, TransactionUserDao transactionUserDao, ObjectMapper objectMapper, GetCurrentUserInfo getCurrentUserInfo) {
+    public AccountService(AccountDao accountDao, UserSessionStore userSessionStore, TransactionUserDao transactionUserDao, GetCurrentUserInfo getCurrentUserInfo) {
         this.accountDao = accountDao;
-        this.redisTemplate = redisTemplate;
+        this.userSessionStore = userSessionStore;
         this.transactionUserDao = transactionUserDao;
-        this.objectMapper = objectMapper;
         this.getCurrentUserInfo = getCurrentUserInfo;
     }
 
@@ -53,29 +53,25 @@ public class AccountService {
         return accounts;
     }
 
-    public Account getAccountByAccountId(Long id) throws AccountNotFoundException {
+    // 缓存的是收支摘要而不是实体，账户不存在时抛出异常，不会缓存
+    @Cacheable(cacheNames = CacheNames.ACCOUNTS, key = "#id")
+    public AccountSummary getAccountByAccountId(Long id) throws AccountNotFoundException {
+        return accountDao.findSummaryById(id)
+                .orElseThrow(() -> new AccountNotFoundException("账户未找到，ID: " + id));
+    }
+
+    private Account findAccount(Long id) throws AccountNotFoundException {
         return accountDao.findById(id)
                 .orElseThrow(() -> new AccountNotFoundException("账户未找到，ID: " + id));
     }
 
     public String createAccount(AccountDTO accountDTO, Long userId) throws UserNotFoundException, AccountAlreadyExistException, AccountNotFoundException {
-        String pattern = "login_user:" + userId + ":account*" ;
-        // 获取redis用户信息
-        Set<String> keys = redisTemplate.keys(pattern);
-        assert keys != null;
-        if (keys.isEmpty()) {
+        if (!userSessionStore.isActive(userId)) {
             throw new RuntimeException("用户未登录或会话已过期");
         }
-        // 检查账户名是否已存在
-        for (String key : keys){
-            if (key.equals("login_user:" + userId + ":account:initial placeholder")){
-                continue;
-            }
-            Object obj = redisTemplate.opsForValue().get(key);
-            RedisAccount redisAccount = convertToRedisAccount(obj);
-            if (redisAccount.getName().equals(accountDTO.getName())){
-                throw new AccountAlreadyExistException("账户名已存在");
-            }
+        // 检查账户名是否已存在，会话里保存了账户名到 id 的索引
+        if (userSessionStore.accountNameExists(userId, accountDTO.getName())) {
+            throw new AccountAlreadyExistException("账户名已存在");
         }
 
         // 获取用户,从token里找到的id
@@ -99,8 +95,9 @@ public class AccountService {
 
 
     // 这前端似乎没用上过
+    @CacheEvict(cacheNames = CacheNames.ACCOUNTS, key = "#id")
     public Account updateAccount(Long id, AccountDTO accountDTO) throws AccountNotFoundException {
-        Account existingAccount = getAccountByAccountId(id);
+        Account existingAccount = findAccount(id);
         TransactionUser user = existingAccount.getTransactionUser();
 
         List<Account> existingAccounts = accountDao.findByTransactionUser(user)
@@ -131,39 +128,29 @@ public class AccountService {
     }
 
 
+    @CacheEvict(cacheNames = CacheNames.ACCOUNTS, key = "#id")
     public void deleteAccount(Long id) throws AccountNotFoundException {
-        Account account = getAccountByAccountId(id);
+        Account account = findAccount(id);
 
         // 删除数据库中的账户
         accountDao.delete(account);
 
         // 删除 Redis 中的缓存
-        String redisKey = "login_user:" + account.getTransactionUser().getId() + ":account:" + id;
-        redisTemplate.delete(redisKey);
+        userSessionStore.removeAccount(account.getTransactionUser().getId(), id);
 
     }
 
     public void setCurrentAccountToRedis(Long accountId, Long userId) {
-        String pattern = "login_user:" + userId + ":current_account";
-        redisTemplate.opsForValue().set(pattern, accountId);
+        userSessionStore.setCurrentAccount(userId, accountId);
     }
 
     public void updateRedisAccount(Long userId, Long accountId, Account account) {
-        String redisKey = "login_user:" + userId + ":account:" + accountId;
         RedisAccount redisAccount = new RedisAccount(
                 account.getId(),
                 account.getAccountName(),
                 account.getTotalIncome(),
                 account.getTotalExpense());
-        redisTemplate.opsForValue().set(redisKey, redisAccount);
-    }
-
-    private RedisAccount convertToRedisAccount(Object obj) {
-        if (obj instanceof RedisAccount) {
-            return (RedisAccount) obj;
-        } else {
-            return objectMapper.convertValue(obj, RedisAccount.class);
-        }
+        userSessionStore.putAccount(userId, redisAccount);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,286 @@
+package com.example.demo.service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.exception.ImportCapacityExceededException;
+import com.example.demo.model.Account;
+import com.example.demo.model.TransactionRecord;
+import com.example.demo.model.dto.CsvImportProgress;
+import com.example.demo.service.outbox.TransactionOutboxService;
+import com.example.demo.utility.CsvFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 流式导入银行账单 CSV：
+ * CsvFilter 逐行解析校验，有效记录攒满 batchSize 条后用一条多行 INSERT 写入，
+ * 同一个事务里把整批记录合并成一次账户增量。内存里最多只有一批记录，与文件大小无关。
+ * 导入完成后写一条 ACCOUNT_REINDEX outbox 事件，由 relay 重建该账户的 ES 索引
+ */
+@Slf4j
+@Service
+public class CsvImportService {
+    private static final String INSERT_PREFIX = "INSERT INTO transaction_record " +
+            "(type, category, amount, transaction_method, transaction_time, transaction_description, account_id, user_id) VALUES ";
+    private static final String ROW_PLACEHOLDERS = "(?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final int COLUMNS = 8;
+    private static final int MAX_QUEUED_JOBS = 10;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AccountAggregateService accountAggregateService;
+    private final TransactionOutboxService transactionOutboxService;
+    private final TransactionRecordService transactionRecordService;
+    private final CsvFilter csvFilter = new CsvFilter();
+    private final int batchSize;
+    private final String batchInsertSql;
+    private final ExecutorService executor;
+    // 任务进度只保存在本实例内存里，完成后保留一段时间供查询
+    private final Cache<String, CsvImportProgress> jobs = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .expireAfterWrite(Duration.ofHours(6))
+            .build();
+
+    @Autowired
+    public CsvImportService(JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            AccountAggregateService accountAggregateService,
+                            TransactionOutboxService transactionOutboxService,
+                            TransactionRecordService transactionRecordService,
+                            @Value("${csv.import.batch-size:500}") int batchSize,
+                            @Value("${csv.import.max-concurrent-jobs:2}") int maxConcurrentJobs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.accountAggregateService = accountAggregateService;
+        this.transactionOutboxService = transactionOutboxService;
+        this.transactionRecordService = transactionRecordService;
+        this.batchSize = batchSize;
+        this.batchInsertSql = insertSql(batchSize);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(MAX_QUEUED_JOBS),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "csv-import-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * 在后台导入已经落盘的 CSV 文件，导入结束后删除该文件。立即返回任务进度
+     *
+     * @throws ImportCapacityExceededException 同时排队的导入任务过多
+     */
+    public CsvImportProgress submit(Long userId, Long accountId, Path file, Charset charset) {
+        long totalBytes;
+        try {
+            totalBytes = Files.size(file);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read uploaded CSV: " + e.getMessage(), e);
+        }
+        CsvImportProgress progress = new CsvImportProgress(UUID.randomUUID().toString(), userId, accountId, totalBytes);
+        jobs.put(progress.getJobId(), progress);
+        try {
+            executor.execute(() -> {
+                try (InputStream input = Files.newInputStream(file)) {
+                    importStatement(input, charset, progress);
+                } catch (IOException e) {
+                    progress.fail("Failed to read uploaded CSV: " + e.getMessage());
+                } finally {
+                    deleteQuietly(file);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            jobs.invalidate(progress.getJobId());
+            deleteQuietly(file);
+            throw new ImportCapacityExceededException("Too many CSV imports in progress, please retry later");
+        }
+        return progress;
+    }
+
+    // 只有发起导入的用户可以查看进度
+    public Optional<CsvImportProgress> getProgress(String jobId, Long userId) {
+        return Optional.ofNullable(jobs.getIfPresent(jobId))
+                .filter(progress -> progress.getUserId().equals(userId));
+    }
+
+    /**
+     * 在当前线程同步导入，进度实时写入 progress。
+     * 每一批单独提交，中途失败时已提交的批次保留，progress 里记录失败原因
+     */
+    public void importStatement(InputStream input, Charset charset, CsvImportProgress progress) {
+        progress.start();
+        Account account = new Account();
+        account.setId(progress.getAccountId());
+        List<TransactionRecord> batch = new ArrayList<>(batchSize);
+
+        try (Stream<CsvFilter.CsvRow> rows = csvFilter.stream(new InputStreamReader(new CountingInputStream(input, progress), charset))) {
+            rows.forEach(row -> {
+                progress.rowRead();
+                if (!row.isValid()) {
+                    progress.rowRejected(row.lineNumber(), row.error());
+                    return;
+                }
+                TransactionRecord record = row.record();
+                record.setUserId(progress.getUserId());
+                record.setAccount(account);
+                batch.add(record);
+                if (batch.size() == batchSize) {
+                    persistBatch(batch, progress, false);
+                    batch.clear();
+                }
+            });
+            persistBatch(batch, progress, true);
+            progress.complete();
+        } catch (RuntimeException e) {
+            log.error("CSV import {} failed after {} rows: {}", progress.getJobId(), progress.getRowsRead(), e.getMessage());
+            progress.fail(e.getMessage());
+            if (progress.getRowsImported() > 0) {
+                enqueueReindex(progress.getAccountId());
+            }
+        }
+
+        if (progress.getRowsImported() > 0) {
+            try {
+                transactionRecordService.refreshCachedAccount(progress.getAccountId());
+            } catch (RuntimeException e) {
+                log.warn("Failed to refresh cached account {} after import: {}", progress.getAccountId(), e.getMessage());
+            }
+        }
+        log.info("CSV import {} finished: {} rows read, {} imported, {} rejected, {} rows/s",
+                progress.getJobId(), progress.getRowsRead(), progress.getRowsImported(),
+                progress.getRowsRejected(), Math.round(progress.getRowsPerSecond()));
+    }
+
+    // 最后一批和 ACCOUNT_REINDEX 事件在同一个事务里提交
+    private void persistBatch(List<TransactionRecord> batch, CsvImportProgress progress, boolean last) {
+        boolean reindex = last && progress.getRowsImported() + batch.size() > 0;
+        if (batch.isEmpty() && !reindex) {
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!batch.isEmpty()) {
+                insert(batch);
+                accountAggregateService.recordsAdded(batch);
+            }
+            if (reindex) {
+                transactionOutboxService.accountReindex(progress.getAccountId());
+            }
+        });
+        progress.addRowsImported(batch.size());
+    }
+
+    private void insert(List<TransactionRecord> batch) {
+        String sql = batch.size() == batchSize ? batchInsertSql : insertSql(batch.size());
+        Object[] args = new Object[batch.size() * COLUMNS];
+        int i = 0;
+        for (TransactionRecord record : batch) {
+            args[i++] = record.getType();
+            args[i++] = record.getCategory();
+            args[i++] = BigDecimal.valueOf(record.getAmount());
+            args[i++] = record.getTransactionMethod();
+            args[i++] = Timestamp.from(record.getTransactionTime().toInstant());
+            args[i++] = record.getTransactionDescription();
+            args[i++] = record.getAccount().getId();
+            args[i++] = record.getUserId();
+        }
+        jdbcTemplate.update(sql, args);
+    }
+
+    private void enqueueReindex(Long accountId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> transactionOutboxService.accountReindex(accountId));
+        } catch (RuntimeException e) {
+            log.error("Failed to enqueue Elasticsearch reindex for account {}: {}", accountId, e.getMessage());
+        }
+    }
+
+    static String insertSql(int rows) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + rows * (ROW_PLACEHOLDERS.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < rows; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(ROW_PLACEHOLDERS);
+        }
+        return sql.toString();
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete temporary CSV {}: {}", file, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    // 统计已读取的字节数，用来估算导入进度
+    private static final class CountingInputStream extends FilterInputStream {
+        private final CsvImportProgress progress;
+
+        CountingInputStream(InputStream input, CsvImportProgress progress) {
+            super(input);
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                progress.addBytesRead(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                progress.addBytesRead(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            progress.addBytesRead(skipped);
+            return skipped;
+        }
+    }
+}
@@ -1,39 +1,39 @@
 package com.example.demo.service;
 
+import com.example.demo.config.cache.CacheNames;
 import com.example.demo.model.FinancialReport;
 import com.example.demo.model.TransactionUser;
+import com.example.demo.model.dto.FinancialReportSummary;
+import com.example.demo.model.security.CurrentUserContext;
 import com.example.demo.repository.FinancialReportRepository;
-import com.example.demo.repository.TransactionUserDao;
-import com.example.demo.utility.GetCurrentUserInfo;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 
 @Service
 public class FinancialReportService {
-    private final GetCurrentUserInfo getCurrentUserInfo;
-    private final TransactionUserDao transactionUserDao;
     private final FinancialReportRepository financialReportRepository;
 
     @Autowired
-    public FinancialReportService(GetCurrentUserInfo getCurrentUserInfo, TransactionUserDao transactionUserDao, FinancialReportRepository financialReportRepository) {
-        this.getCurrentUserInfo = getCurrentUserInfo;
-        this.transactionUserDao = transactionUserDao;
+    public FinancialReportService(FinancialReportRepository financialReportRepository) {
         this.financialReportRepository = financialReportRepository;
     }
 
-    public List<FinancialReport> getFinancialReports(String token) {
-        if (getCurrentUserInfo.getCurrentUserRole(token).equals("ROLE_USER")){
-            TransactionUser user = transactionUserDao.findById(getCurrentUserInfo.getCurrentUserId(token)).get();
-            return user.getFinancialReports();
+    // 按 userId 缓存；只有普通用户能查看自己的报告，其他角色直接返回空列表，不缓存
+    @Cacheable(cacheNames = CacheNames.FINANCIAL_REPORTS, key = "#currentUser.userId()",
+            condition = "#currentUser.role() == 'ROLE_USER'")
+    public List<FinancialReportSummary> getFinancialReports(CurrentUserContext currentUser) {
+        if (!"ROLE_USER".equals(currentUser.role())) {
+            return List.of();
         }
-//        else if (getCurrentUserInfo.getCurrentUserRole(token).equals("ROLE_ADMIN")){
-//            Optional<TransactionUser> user = transactionUserDao.findById(getCurrentUserInfo.getCurrentUserId(token));
-//            if (user.isPresent()){
-//                return user.get().getFinancialReports();
-//            }
-//        }
-        return List.of();
+        return List.copyOf(financialReportRepository.findSummariesByUserId(currentUser.userId()));
+    }
+
+    @CacheEvict(cacheNames = CacheNames.FINANCIAL_REPORTS, key = "#user.id")
+    public FinancialReport saveFinancialReport(TransactionUser user, String content) {
+        return financialReportRepository.save(new FinancialReport(content, user));
     }
 }
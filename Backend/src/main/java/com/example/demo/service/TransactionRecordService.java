@@ -1,147 +1,205 @@
 package com.example.demo.service;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Base64;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 
 import com.example.demo.model.message.AnalyseRequest;
 import com.example.demo.repository.TransactionUserDao;
 import com.example.demo.model.Account;
+import com.example.demo.model.dto.RecordPage;
 import com.example.demo.model.dto.TransactionRecordDTO;
+import com.example.demo.model.dto.TransactionRecordView;
 import com.example.demo.model.redis.RedisAccount;
 import com.example.demo.model.TransactionUser;
-import com.example.demo.service.es.RecordSyncService;
-import com.example.demo.service.rabbitmq.RabbitMQService;
-import com.example.demo.utility.jwt.JwtUtil;
+import com.example.demo.service.fraud.FraudPreScreener;
+import com.example.demo.service.fraud.FraudScore;
+import com.example.demo.service.outbox.TransactionOutboxService;
+import com.example.demo.service.session.UserSessionStore;
 import com.example.demo.utility.converter.TransactionRecordConverter;
 import com.example.demo.utility.converter.PromptConverter;
-import com.example.demo.utility.GetCurrentUserInfo;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
 import com.example.demo.repository.TransactionRecordDao;
 import com.example.demo.repository.AccountDao;
 import com.example.demo.model.TransactionRecord;
-import org.springframework.web.bind.annotation.RequestHeader;
 
 @Slf4j
 @Service
 public class TransactionRecordService {
+    static final int MAX_PAGE_SIZE = 200;
+    static final int EXPORT_PAGE_SIZE = 1000;
+
     private final TransactionRecordDao transactionRecordDao;
     private final TransactionUserDao transactionUserDao;
     private final AccountDao accountDao;
-    private final RecordSyncService recordSyncService;
-    private final JwtUtil jwtUtil;
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final GetCurrentUserInfo getCurrentUserInfo;
-    private final RabbitMQService rabbitMQService;
+    private final UserSessionStore userSessionStore;
+    private final AccountAggregateService accountAggregateService;
+    private final TransactionOutboxService transactionOutboxService;
+    private final FraudPreScreener fraudPreScreener;
 
     @Autowired private StringRedisTemplate stringRedisTemplate;
 
 
     @Autowired
-    public TransactionRecordService(TransactionRecordDao transactionRecordDao, JwtUtil jwtUtil, RedisTemplate<String, Object> redisTemplate, AccountDao accountDao, TransactionUserDao transactionUserDao, RecordSyncService recordSyncService, GetCurrentUserInfo getCurrentUserInfo, RabbitMQService rabbitMQService) {
+    public TransactionRecordService(TransactionRecordDao transactionRecordDao, UserSessionStore userSessionStore, AccountDao accountDao, TransactionUserDao transactionUserDao, AccountAggregateService accountAggregateService, TransactionOutboxService transactionOutboxService, FraudPreScreener fraudPreScreener) {
         this.transactionRecordDao = transactionRecordDao;
         this.transactionUserDao = transactionUserDao;
-        this.jwtUtil = jwtUtil;
-        this.redisTemplate = redisTemplate;
+        this.userSessionStore = userSessionStore;
         this.accountDao = accountDao;
-        this.recordSyncService = recordSyncService;
-        this.getCurrentUserInfo = getCurrentUserInfo;
-        this.rabbitMQService = rabbitMQService;
+        this.accountAggregateService = accountAggregateService;
+        this.transactionOutboxService = transactionOutboxService;
+        this.fraudPreScreener = fraudPreScreener;
     }
 
 
 
-    public List<TransactionRecord> getAllRecordsByAccountId(Long accountId) {
-        return transactionRecordDao.findAllByAccountId(accountId);
+    /**
+     * 按交易时间倒序分页读取账户的记录，type 为 null 时不按类型筛选。
+     * cursor 是上一页返回的 nextCursor，第一页传 null
+     *
+     * @throws IllegalArgumentException cursor 无法解析
+     */
+    @Transactional(readOnly = true)
+    public RecordPage getRecordPage(Long accountId, String type, String cursor, int limit) {
+        int pageSize = Math.min(Math.max(limit, 1), MAX_PAGE_SIZE);
+        // 多取一条，用来判断后面是否还有数据
+        List<TransactionRecordView> items = fetchPage(accountId, type, decodeCursor(cursor), pageSize + 1);
+        if (items.size() <= pageSize) {
+            return new RecordPage(items, null);
+        }
+        items = items.subList(0, pageSize);
+        return new RecordPage(List.copyOf(items), encodeCursor(items.get(pageSize - 1)));
     }
 
-    @Transactional
-    public void addTransactionRecord(@RequestHeader String token, TransactionRecordDTO transactionRecordDTO) {
-        Long userId = jwtUtil.getUserIdFromToken(token.replace("Bearer ", ""));
-        Long accountId = getCurrentUserInfo.getCurrentAccountId(userId);
-        Account account = findAccountById(accountId);
+    /**
+     * 按页遍历账户的全部记录用于导出，每页是一次独立的短查询，内存占用与记录总数无关。
+     * 返回导出的记录数
+     */
+    public long exportRecords(Long accountId, String type, Consumer<TransactionRecordView> consumer) {
+        long exported = 0;
+        TransactionRecordView last = null;
+        List<TransactionRecordView> page;
+        do {
+            page = fetchPage(accountId, type, last, EXPORT_PAGE_SIZE);
+            page.forEach(consumer);
+            exported += page.size();
+            last = page.isEmpty() ? null : page.get(page.size() - 1);
+        } while (page.size() == EXPORT_PAGE_SIZE);
+        return exported;
+    }
+
+    private List<TransactionRecordView> fetchPage(Long accountId, String type, TransactionRecordView after, int size) {
+        PageRequest pageRequest = PageRequest.of(0, size);
+        if (after == null) {
+            return type == null
+                    ? transactionRecordDao.findFirstPage(accountId, pageRequest)
+                    : transactionRecordDao.findFirstPageByType(accountId, type, pageRequest);
+        }
+        return type == null
+                ? transactionRecordDao.findPageAfter(accountId, after.transactionTime(), after.id(), pageRequest)
+                : transactionRecordDao.findPageAfterByType(accountId, type, after.transactionTime(), after.id(), pageRequest);
+    }
+
+    // 游标只包含最后一条记录的 (transaction_time, id)，对客户端是不透明的字符串
+    static String encodeCursor(TransactionRecordView last) {
+        String raw = last.transactionTime().toInstant() + "|" + last.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
 
-        if (transactionRecordDTO.getType().equalsIgnoreCase("expense")) {
-            account.setTotalExpense(account.getTotalExpense() + transactionRecordDTO.getAmount());
+    static TransactionRecordView decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
         }
-        if (transactionRecordDTO.getType().equalsIgnoreCase("income")) {
-            account.setTotalIncome(account.getTotalIncome() + transactionRecordDTO.getAmount());
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            ZonedDateTime time = Instant.parse(raw.substring(0, separator)).atZone(ZoneId.systemDefault());
+            long id = Long.parseLong(raw.substring(separator + 1));
+            return new TransactionRecordView(id, null, null, null, null, time, null);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
         }
+    }
+
+    // userId 和当前账户由 controller 从请求上下文传入，见 CurrentUserContext
+    @Transactional
+    public void addTransactionRecord(Long userId, Long accountId, TransactionRecordDTO transactionRecordDTO) {
+        Account account = findAccountById(accountId);
+
         TransactionRecord transactionRecord = TransactionRecordConverter.toTransactionRecord(transactionRecordDTO);
         transactionRecord.setAccount(account);
         transactionRecord.setUserId(userId);
         // save DB
         transactionRecordDao.save(transactionRecord);
-        // save to elastic search
-        recordSyncService.syncToElasticsearch(transactionRecord);
-        // send to AI analyser
+        // 原子累加账户总额和每日汇总
+        accountAggregateService.recordAdded(transactionRecord);
+        updateRedisAccount(findAccountById(accountId));
+        // sync to elastic search and send to AI analyser after commit, via the outbox
+        transactionOutboxService.recordChanged(transactionRecord.getId());
+        // 规则预筛，普通记录不再调用 AI 分析
+        FraudScore fraudScore = fraudPreScreener.screen(accountId, transactionRecord);
+        if (!fraudPreScreener.shouldEscalate(fraudScore)) {
+            log.debug("Record {} passed pre-screening with score {}", transactionRecord.getId(), fraudScore.score());
+            return;
+        }
         String currentRecord = PromptConverter.parseLatestTransactionRecordToPrompt(transactionRecordDTO);
+        if (!fraudScore.reasons().isEmpty()) {
+            currentRecord += "\nPre-screening flags: " + String.join("; ", fraudScore.reasons());
+        }
         AnalyseRequest request = new AnalyseRequest(accountId, currentRecord);
-        log.info("Sending AnalyseRequest to AI analyser for accountId: {}", accountId);
-        rabbitMQService.sendAnalyseRequestToAIAnalyser(request);
+        log.info("Queueing AnalyseRequest to AI analyser for accountId: {} (pre-screen score {})", accountId, fraudScore.score());
+        transactionOutboxService.analyseRequest(request);
     }
 
     @Transactional
     public void updateTransactionRecord(Long id, TransactionRecordDTO newTransactionRecordDTO){
         TransactionRecord existingRecord = findTransactionRecordById(id);
-        Account account = findAccountById(existingRecord.getAccount().getId());
-
-        // Subtract the amount of the original record before updating
-        if (existingRecord.getType().equalsIgnoreCase("expense")) {
-            account.setTotalExpense(account.getTotalExpense() - existingRecord.getAmount());
-        } else if (existingRecord.getType().equalsIgnoreCase("income")) {
-            account.setTotalIncome(account.getTotalIncome() - existingRecord.getAmount());
-        }
+        Long accountId = existingRecord.getAccount().getId();
+        // Keep the original values so the aggregates can subtract them
+        TransactionRecord originalRecord = snapshotOf(existingRecord);
 
-        // Update the amount of the account according to income and expense
-        if (newTransactionRecordDTO.getType().equalsIgnoreCase("expense")) {
-            account.setTotalExpense(account.getTotalExpense() + newTransactionRecordDTO.getAmount());
-        } else if (newTransactionRecordDTO.getType().equalsIgnoreCase("income")) {
-            account.setTotalIncome(account.getTotalIncome() + newTransactionRecordDTO.getAmount());
-        }
         TransactionRecordConverter.updateTransactionRecordFromDTO(existingRecord, newTransactionRecordDTO);
         transactionRecordDao.save(existingRecord);
+        accountAggregateService.recordUpdated(originalRecord, existingRecord);
+        fraudPreScreener.invalidate(accountId);
 //      update record in the elastic search
-        recordSyncService.updateInElasticsearch(existingRecord);
-
-        updateRedisAccount(account);
-    }
-
+        transactionOutboxService.recordChanged(existingRecord.getId());
 
-    public List<TransactionRecord> findRecordByAccountIdAndType(String type, Long accountId) {
-        return transactionRecordDao.findByAccountIdAndType(type, accountId);
+        updateRedisAccount(findAccountById(accountId));
     }
 
 
+    @Transactional
     public void deleteTransactionRecord(Long id) {
         TransactionRecord record = findTransactionRecordById(id);
-        Account account = findAccountById(record.getAccount().getId());
-
-        if (record.getType().equalsIgnoreCase("expense")) {
-            account.setTotalExpense(account.getTotalExpense() - record.getAmount());
-        } else if (record.getType().equalsIgnoreCase("income")) {
-            account.setTotalIncome(account.getTotalIncome() - record.getAmount());
-        }
+        Long accountId = record.getAccount().getId();
 
         transactionRecordDao.delete(record);
+        accountAggregateService.recordsRemoved(List.of(record));
+        fraudPreScreener.invalidate(accountId);
 //      delete records from elastic search
-        recordSyncService.deleteFromElasticsearch(id);
+        transactionOutboxService.recordChanged(id);
 
-        updateRedisAccount(account);
+        updateRedisAccount(findAccountById(accountId));
     }
 
     @Transactional
-    public void deleteTransactionRecordsInBatch(String token, List<Long> recordIds) {
-        Long userId = jwtUtil.getUserIdFromToken(token.replace("Bearer ", ""));
-        Long accountId = getCurrentUserInfo.getCurrentAccountId(userId);
-        Account account = findAccountById(accountId);
+    public void deleteTransactionRecordsInBatch(Long accountId, List<Long> recordIds) {
 
 
         List<TransactionRecord> records = transactionRecordDao.findAllByIdInAndAccountId(recordIds, accountId);
@@ -152,26 +210,21 @@ public class TransactionRecordService {
         }
 
 
-        // Update total income and expense based on the records to be deleted
-        for (TransactionRecord record : records) {
-            if (record.getType().equalsIgnoreCase("expense")) {
-                account.setTotalExpense(account.getTotalExpense() - record.getAmount());
-            } else if (record.getType().equalsIgnoreCase("income")) {
-                account.setTotalIncome(account.getTotalIncome() - record.getAmount());
-            }
-        }
-
-
         // Delete records from database
         transactionRecordDao.deleteAll(records);
 
 
+        // Subtract the deleted records from the account totals and daily rollups
+        accountAggregateService.recordsRemoved(records);
+        fraudPreScreener.invalidate(accountId);
+
+
         // Delete batch of records from Elasticsearch
-        recordSyncService.deleteFromElasticsearchInBatch(recordIds);
+        transactionOutboxService.recordsChanged(records.stream().map(TransactionRecord::getId).collect(Collectors.toList()));
 
 
         // Update Redis cache with the modified account information
-        updateRedisAccount(account);
+        updateRedisAccount(findAccountById(accountId));
     }
 
 
@@ -184,24 +237,52 @@ public class TransactionRecordService {
     }
 
 
+    // 账户总额被其他途径（如批量导入）修改后，刷新 Redis 中缓存的账户，并让预筛窗口重新加载
+    public void refreshCachedAccount(Long accountId) {
+        fraudPreScreener.invalidate(accountId);
+        updateRedisAccount(findAccountById(accountId));
+    }
+
+    // 在事务内取快照，提交之后再写 Redis：回滚时不会把没生效的总额写进会话缓存
     private void updateRedisAccount(Account account) {
-        String redisAccountKey = "login_user:" + account.getTransactionUser().getId() + ":account:" + account.getId();
-//        System.out.println("Redis Key: " + redisAccountKey);
+        Long userId = account.getTransactionUser().getId();
         RedisAccount redisAccount = new RedisAccount(
                 account.getId(),
                 account.getAccountName(),
                 account.getTotalIncome(),
                 account.getTotalExpense());
 
-//        System.out.println("Redis Account: " + redisAccount);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    putRedisAccount(userId, redisAccount);
+                }
+            });
+        } else {
+            putRedisAccount(userId, redisAccount);
+        }
+    }
 
+    private void putRedisAccount(Long userId, RedisAccount redisAccount) {
         try {
-            redisTemplate.opsForValue().set(redisAccountKey, redisAccount);
+            userSessionStore.putAccount(userId, redisAccount);
         } catch (Exception e) {
-            System.err.println("Error updating Redis account: " + e.getMessage());
+            log.warn("Error updating Redis account {}: {}", redisAccount.getId(), e.getMessage());
         }
     }
 
+    private static TransactionRecord snapshotOf(TransactionRecord record) {
+        TransactionRecord snapshot = new TransactionRecord();
+        snapshot.setId(record.getId());
+        snapshot.setType(record.getType());
+        snapshot.setCategory(record.getCategory());
+        snapshot.setAmount(record.getAmount());
+        snapshot.setTransactionTime(record.getTransactionTime());
+        snapshot.setAccount(record.getAccount());
+        return snapshot;
+    }
+
     private TransactionRecord findTransactionRecordById(Long id) {
         return transactionRecordDao.findById(id)
                 .orElseThrow(() -> new RuntimeException("Record not found for id: " + id));
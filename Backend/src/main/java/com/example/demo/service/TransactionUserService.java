@@ -3,16 +3,16 @@ package com.example.demo.service;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.Set;
-import java.util.concurrent.TimeUnit;
 
-import com.example.demo.model.redis.RedisAccount;
+import com.example.demo.config.cache.CacheNames;
 import com.example.demo.utility.GetCurrentUserInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.dao.DataIntegrityViolationException;
-import org.springframework.data.redis.core.RedisTemplate;
 
 import org.springframework.security.crypto.password.PasswordEncoder;
 
@@ -23,8 +23,12 @@ import com.example.demo.repository.TransactionUserDao;
 import com.example.demo.exception.UserNotFoundException;
 import com.example.demo.model.Account;
 import com.example.demo.model.dto.TransactionUserDTO;
+import com.example.demo.model.dto.UserProfile;
 import com.example.demo.model.redis.RedisUser;
 import com.example.demo.model.TransactionUser;
+import com.example.demo.service.security.UserDetailService;
+import com.example.demo.service.session.UserSession;
+import com.example.demo.service.session.UserSessionStore;
 import com.example.demo.utility.jwt.JwtUtil;
 
 
@@ -36,17 +40,19 @@ public class TransactionUserService {
     private static final Logger logger = LoggerFactory.getLogger(TransactionUserService.class);
     private final TransactionUserDao transactionUserDao;
     private final JwtUtil jwtUtil;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final UserSessionStore userSessionStore;
     private final GetCurrentUserInfo  getCurrentUserInfo;
 
     private final PasswordEncoder passwordEncoder;
+    private final UserDetailService userDetailService;
     @Autowired
-    public TransactionUserService(TransactionUserDao transactionUserDao, JwtUtil jwtUtil, RedisTemplate<String, Object> redisTemplate, PasswordEncoder passwordEncoder, GetCurrentUserInfo  getCurrentUserInfo) {
+    public TransactionUserService(TransactionUserDao transactionUserDao, JwtUtil jwtUtil, UserSessionStore userSessionStore, PasswordEncoder passwordEncoder, GetCurrentUserInfo  getCurrentUserInfo, UserDetailService userDetailService) {
         this.transactionUserDao = transactionUserDao;
         this.jwtUtil = jwtUtil;
-        this.redisTemplate = redisTemplate;
+        this.userSessionStore = userSessionStore;
         this.passwordEncoder = passwordEncoder;
         this.getCurrentUserInfo = getCurrentUserInfo;
+        this.userDetailService = userDetailService;
 
     }
 
@@ -54,14 +60,18 @@ public class TransactionUserService {
         return transactionUserDao.findAll();
     }
 
-    public Optional<TransactionUser> findById(Long id) {
-        return transactionUserDao.findById(id);
+    // 缓存的是不含密码和懒加载集合的用户资料，用户不存在时不缓存
+    @Cacheable(cacheNames = CacheNames.USERS, key = "#id", unless = "#result == null")
+    public Optional<UserProfile> findById(Long id) {
+        return transactionUserDao.findById(id).map(UserProfile::from);
     }
 
     public Optional<TransactionUser> findByUsername(String username) {
         return transactionUserDao.findByUsername(username);
     }
 
+    // 缓存键是 token 对应的 userId，和方法体里一样通过 GetCurrentUserInfo 解析
+    @CacheEvict(cacheNames = CacheNames.USERS, key = "@getCurrentUserInfo.getCurrentUserId(#token)")
     public void updateUser(String token, TransactionUserDTO updatedUser) throws UserNotFoundException {
         Long userId = getCurrentUserInfo.getCurrentUserId(token);
         Optional<TransactionUser> existingUserOptional = transactionUserDao.findById(userId);
@@ -76,29 +86,17 @@ public class TransactionUserService {
         existingUser.setPhone(updatedUser.getPhone());
 
         transactionUserDao.save(existingUser);
-
-        String redisUserKey = "login_user:" + userId + ":info";
-        RedisUser redisUser = (RedisUser) redisTemplate.opsForValue().get(redisUserKey);
-
-        if (redisUser != null) {
-            // update user info in redis
-            RedisUser updatedRedisUser = new RedisUser(
-                    redisUser.getUserId(),
-                    updatedUser.getUsername(),
-                    updatedUser.getEmail(),
-                    updatedUser.getPhone(),
-                    redisUser.getAvatar(),
-                    redisUser.getToken()
-            );
-
-            // save update user info into redis with same login session
-            Long ttl = redisTemplate.getExpire(redisUserKey);
-            if (ttl > 0) {
-                redisTemplate.opsForValue().set(redisUserKey, updatedRedisUser, ttl, TimeUnit.SECONDS);
-            } else {
-                redisTemplate.opsForValue().set(redisUserKey, updatedRedisUser, 1, TimeUnit.HOURS);
-            }
-        }
+        userDetailService.evictUser(userId);
+
+        // 只更新会话里的用户信息，会话的 TTL 保持不变
+        userSessionStore.updateInfo(userId, redisUser -> new RedisUser(
+                redisUser.getUserId(),
+                updatedUser.getUsername(),
+                updatedUser.getEmail(),
+                updatedUser.getPhone(),
+                redisUser.getAvatar(),
+                redisUser.getToken()
+        ));
     }
 
     // **提取的查找现有用户的方法
@@ -115,6 +113,10 @@ public class TransactionUserService {
         }
     }
 
+    @Caching(evict = {
+            @CacheEvict(cacheNames = CacheNames.USERS, key = "#id"),
+            @CacheEvict(cacheNames = CacheNames.FINANCIAL_REPORTS, key = "#id")
+    })
     public void deleteUser(Long id) throws UserNotFoundException, DataIntegrityViolationException {
         Optional<TransactionUser> userOptional = transactionUserDao.findById(id);
 
@@ -123,8 +125,10 @@ public class TransactionUserService {
         }
 
         transactionUserDao.deleteById(id);
+        userDetailService.evictUser(id);
     }
 
+    @CacheEvict(cacheNames = CacheNames.USERS, key = "@getCurrentUserInfo.getCurrentUserId(#token)")
     public void updateAvatar(String token, String avatar) throws UserNotFoundException {
         token = token.replace("Bearer ", "");
         Long userId = jwtUtil.getUserIdFromToken(token);
@@ -137,6 +141,7 @@ public class TransactionUserService {
         TransactionUser user = userOptional.get();
         user.setAvatar(avatar);
         transactionUserDao.save(user);
+        userDetailService.evictUser(userId);
     }
 
 
@@ -144,35 +149,16 @@ public class TransactionUserService {
     public Optional<TransactionUserDTO> getUserInfoByUserId(String token) {
         token = token.replace("Bearer ", "");
         Long userId = jwtUtil.getUserIdFromToken(token);
-        String userRedisKey = "login_user:" + userId + ":info";
-
-
-        RedisUser redisUser = (RedisUser) redisTemplate.opsForValue().get(userRedisKey);
 
-        // 如果 Redis 中有用户信息，直接返回
-        if (redisUser != null) {
-            return Optional.of(getUserInfoFromRedis(redisUser, userId));
-        } else {
-            // 如果 Redis 中没有用户信息，从数据库中获取
-            return transactionUserDao.findById(userId)
-                    .map(this::convertToDTO);
-        }
+        // 已登录时一次 HGETALL 读出用户信息和账户名，否则从数据库中获取
+        return userSessionStore.load(userId)
+                .map(this::getUserInfoFromSession)
+                .or(() -> transactionUserDao.findById(userId).map(this::convertToDTO));
     }
 
-    private TransactionUserDTO getUserInfoFromRedis(RedisUser redisUser, Long userId) {
-        TransactionUserDTO userDTO = setTransactionUserDTO(redisUser);
-
-        List<String> accountNames = new ArrayList<>();
-        String keyPattern = "login_user:" + userId + ":account*";
-        Set<String> accountKeys = redisTemplate.keys(keyPattern);
-        for (String key : accountKeys){
-            if (key.equals("login_user:" + userId + ":account:initial placeholder")){
-                continue;
-            }
-            String accountName = ((RedisAccount) redisTemplate.opsForValue().get(key)).getName();
-            accountNames.add(accountName);
-        }
-        userDTO.setAccountName(accountNames);
+    private TransactionUserDTO getUserInfoFromSession(UserSession session) {
+        TransactionUserDTO userDTO = setTransactionUserDTO(session.info());
+        userDTO.setAccountName(new ArrayList<>(session.accountNames()));
         return userDTO;
     }
 
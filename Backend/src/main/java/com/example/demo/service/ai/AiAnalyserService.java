@@ -1,11 +1,13 @@
 package com.example.demo.service.ai;
 
-import com.example.demo.model.FinancialReport;
 import com.example.demo.model.TransactionUser;
 import com.example.demo.model.dto.TransactionRecordDTO;
-import com.example.demo.repository.FinancialReportRepository;
+import com.example.demo.model.message.FinancialReportMessage;
+import com.example.demo.service.FinancialReportService;
 import com.example.demo.service.TransactionRecordService;
 import com.example.demo.service.rabbitmq.RabbitMQService;
+import com.example.demo.service.resilience.DependencyGuard;
+import com.example.demo.service.resilience.DependencyGuards;
 import com.example.demo.utility.PromptManager;
 import com.example.demo.utility.converter.PromptConverter;
 import com.example.demo.utility.jwt.JwtUtil;
@@ -22,11 +24,14 @@ import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.vectorstore.ChromaVectorStore;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 @Service
 @Slf4j
@@ -38,9 +43,14 @@ public class AiAnalyserService {
     public final ChromaVectorStore vectorStore;
     public final PromptManager promptManager;
     public final RabbitMQService rabbitMQService;
-    public final FinancialReportRepository financialReportRepository;
+    public final FinancialReportService financialReportService;
+    // Spring 的 applicationTaskExecutor：开启 spring.threads.virtual.enabled 时每个任务一个虚拟线程，否则是有界线程池
+    private final Executor taskExecutor;
+    private final DependencyGuard openAiGuard;
+    // 交易预警分析走独立的隔离舱，不和交互式聊天抢许可
+    private final DependencyGuard analyserGuard;
 
-    @Autowired        String context = """
+    private static final String WARNING_PROMPT = """
     You are reviewing a recent bank transaction to assess if it's potentially a scam or bank card fraud.
     
     Recent transaction records for reference:
@@ -59,21 +69,10 @@ public class AiAnalyserService {
     Remember, keep your response concise and under 50 words.
     
     """;
-    public AiAnalyserService(OpenAiChatModel openAiChatModel, JwtUtil jwtUtil, GetCurrentUserInfo getCurrentUserInfo, TransactionRecordService recordService, ChromaVectorStore vectorStore, PromptManager promptManager, RabbitMQService rabbitMQService, FinancialReportRepository financialReportRepository) {
-        this.openAiChatModel = openAiChatModel;
-        this.jwtUtil = jwtUtil;
-        this.getCurrentUserInfo = getCurrentUserInfo;
-        this.recordService = recordService;
-        this.vectorStore = vectorStore;
-        this.promptManager = promptManager;
-        this.rabbitMQService = rabbitMQService;
-        this.financialReportRepository = financialReportRepository;
-    }
-
 
-    public String analyseCurrentRecord(String currentRecord, String recentRecords) {
-        String context = """
-    You are reviewing a recent bank transaction to assess if it's potentially a scam or bank card fraud.
+    // 一次审查同一账户的多条新记录，逐条给出结论，有可疑记录时整条回复以 WARNING 开头
+    private static final String BATCH_WARNING_PROMPT = """
+    You are reviewing a burst of new bank transactions from the same account to assess if any of them is potentially a scam or bank card fraud.
     
     Recent transaction records for reference:
     ---------------------
@@ -82,31 +81,78 @@ public class AiAnalyserService {
     Do not include recent records directly in your response.
     
     Instructions:
-    - Begin your reply with 'WARNING' only if the current record has strong indicators of fraud. Examples include:
-        - Multiple transactions with the same amount or recipient within a short time frame (e.g., two similar transactions within the same day).
-        - A sudden large withdrawal or purchase from an unfamiliar location.
-        - Unusual patterns or purposes compared to recent records.
-    - If the transaction seems legitimate, provide a brief explanation, such as "No unusual patterns detected."
+    - The new records are numbered. Judge them together: repeated amounts or recipients inside the burst are themselves a fraud indicator.
+    - Begin your reply with 'WARNING' if any new record has strong indicators of fraud, then list only the suspicious record numbers with a short reason each, e.g. "#2: same amount as #1 within minutes."
+    - If all new records seem legitimate, reply with a brief explanation, such as "No unusual patterns detected in {count} records."
     
-    Remember, keep your response concise and under 50 words.
+    Remember, keep your response concise and under 100 words.
     
     """;
-        try {
-            Message userMessage = new UserMessage("Here is my current record: " + currentRecord);
 
-            SystemPromptTemplate systemPromptTemplate = new SystemPromptTemplate(context);
+    @Autowired
+    public AiAnalyserService(OpenAiChatModel openAiChatModel, JwtUtil jwtUtil, GetCurrentUserInfo getCurrentUserInfo, TransactionRecordService recordService, ChromaVectorStore vectorStore, PromptManager promptManager, RabbitMQService rabbitMQService, FinancialReportService financialReportService,
+                             @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME) Executor taskExecutor,
+                             DependencyGuards dependencyGuards) {
+        this.openAiChatModel = openAiChatModel;
+        this.jwtUtil = jwtUtil;
+        this.getCurrentUserInfo = getCurrentUserInfo;
+        this.recordService = recordService;
+        this.vectorStore = vectorStore;
+        this.promptManager = promptManager;
+        this.rabbitMQService = rabbitMQService;
+        this.financialReportService = financialReportService;
+        this.taskExecutor = taskExecutor;
+        this.openAiGuard = dependencyGuards.openAi();
+        this.analyserGuard = dependencyGuards.openAiAnalyser();
+    }
+
+
+    /**
+     * 失败时直接抛出（OpenAI 不可用时是 DependencyUnavailableException），不把错误信息当作分析结果返回，
+     * 由调用方决定重试还是放弃
+     */
+    public String analyseCurrentRecord(String currentRecord, String recentRecords) {
+        Message userMessage = new UserMessage("Here is my current record: " + currentRecord);
+
+        SystemPromptTemplate systemPromptTemplate = new SystemPromptTemplate(WARNING_PROMPT);
 
-            Message systemMessage = systemPromptTemplate.createMessage(Map.of("context", recentRecords) );
+        Message systemMessage = systemPromptTemplate.createMessage(Map.of("context", recentRecords) );
 
-            Prompt prompt = new Prompt(List.of(userMessage, systemMessage));
-            List<Generation> generations = openAiChatModel.call(prompt).getResults();
-            return generations.toString();
-        } catch (Exception e) {
-            return "Error: " + e.getMessage();
+        Prompt prompt = new Prompt(List.of(userMessage, systemMessage));
+        List<Generation> generations = analyserGuard.call(() -> openAiChatModel.call(prompt)).getResults();
+        return generations.toString();
+    }
+
+    /**
+     * 同一账户一批新记录只调用一次模型；单条时退化为 analyseCurrentRecord
+     */
+    public String analyseRecordBatch(List<String> currentRecords, String recentRecords) {
+        if (currentRecords.size() == 1) {
+            return analyseCurrentRecord(currentRecords.get(0), recentRecords);
+        }
+        StringBuilder records = new StringBuilder("Here are my new records:\n");
+        for (int i = 0; i < currentRecords.size(); i++) {
+            records.append('#').append(i + 1).append(": ").append(currentRecords.get(i)).append('\n');
         }
+        Message userMessage = new UserMessage(records.toString());
+
+        SystemPromptTemplate systemPromptTemplate = new SystemPromptTemplate(BATCH_WARNING_PROMPT);
+        Message systemMessage = systemPromptTemplate.createMessage(
+                Map.of("context", recentRecords, "count", currentRecords.size()));
+
+        Prompt prompt = new Prompt(List.of(userMessage, systemMessage));
+        List<Generation> generations = analyserGuard.call(() -> openAiChatModel.call(prompt)).getResults();
+        return generations.toString();
     }
 
     public String generateOverAllFinancialReport(String token) {
+        return generateOverAllFinancialReport(token, null);
+    }
+
+    /**
+     * 生成财务报告并发给聊天机器人；conversationId 不为空时报告只注入该会话，否则注入该用户的所有会话
+     */
+    public String generateOverAllFinancialReport(String token, String conversationId) {
         Long userId = getCurrentUserInfo.getCurrentUserId(token);
         Long accountId = getCurrentUserInfo.getCurrentAccountId(userId);
         List<TransactionRecordDTO> records = recordService.getCertainDaysRecords(accountId, 10);
@@ -116,30 +162,31 @@ public class AiAnalyserService {
         String prompt = String.format(promptManager.getRAGPromptTemplate(), recentRecords);
 
         ChatClient chatClient = ChatClient.create(openAiChatModel);
-        String response = chatClient.prompt()
+        String response = openAiGuard.call(() -> chatClient.prompt()
                 .user(prompt)
                 .advisors(new QuestionAnswerAdvisor(vectorStore, SearchRequest.defaults(), context))
                 .call()
-                .content();
+                .content());
 
         // Async sending message to chatbot
         CompletableFuture.runAsync(() -> {
             try {
-                rabbitMQService.sendTransactionReportToChatbot(response);
+                rabbitMQService.sendTransactionReportToChatbot(
+                        new FinancialReportMessage(userId, conversationId, response, System.currentTimeMillis()));
             } catch (Exception e) {
                 log.error("Error sending financial report to chatbot: ", e);
             }
-        });
+        }, taskExecutor);
 
         // Async saving report to database
         CompletableFuture.runAsync(() -> {
             try {
                 TransactionUser user = getCurrentUserInfo.getCurrentUserEntity(token);
-                financialReportRepository.save(new FinancialReport(response, user));
+                financialReportService.saveFinancialReport(user, response);
             } catch (Exception e) {
                 log.error("Error sending financial report to chatbot: ", e);
             }
-        });
+        }, taskExecutor);
         return response;
     }
 }
@@ -0,0 +1,206 @@
+package com.example.demo.service.ai.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.ai.chat.client.AdvisedRequest;
+import org.springframework.ai.chat.client.RequestResponseAdvisor;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.model.MessageAggregator;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 语义缓存 advisor，需要放在 MessageChatMemoryAdvisor / QuestionAnswerAdvisor 之前，
+ * 这样比较的是用户原始问题，而不是拼接了历史和检索结果的文本。
+ * 命中时把请求的模型换成直接返回缓存答案的模型，不再调用 OpenAI；后面的记忆 advisor 照常记录这一轮对话。
+ * 未命中时在响应返回后写入缓存
+ */
+@Component
+public class SemanticCacheAdvisor implements RequestResponseAdvisor {
+    public static final String CACHE_SCOPE_KEY = "semantic_cache_scope";
+    public static final String GLOBAL_SCOPE = "global";
+
+    private static final String LOOKUP_KEY = "semantic_cache_lookup";
+    private static final String CACHED_RESPONSE_KEY = "semantic_cache_response";
+    private static final String START_KEY = "semantic_cache_start";
+
+    private final SemanticResponseCache cache;
+    private final String scopeMode;
+    private final Timer hitLatency;
+    private final Timer missLatency;
+
+    @Autowired
+    public SemanticCacheAdvisor(SemanticResponseCache cache,
+                                MeterRegistry meterRegistry,
+                                @Value("${ai.semantic-cache.scope:user}") String scopeMode) {
+        this.cache = cache;
+        this.scopeMode = scopeMode;
+        this.hitLatency = meterRegistry.timer("ai.chat.latency", "cache", "hit");
+        this.missLatency = meterRegistry.timer("ai.chat.latency", "cache", "miss");
+    }
+
+    /**
+     * 按配置的作用域（global / user / conversation）生成缓存作用域，缺少对应的标识时返回 null，表示不使用缓存
+     */
+    public String scopeFor(Long userId, String conversationId) {
+        return switch (scopeMode) {
+            case "global" -> GLOBAL_SCOPE;
+            case "conversation" -> conversationId == null ? null : "conversation:" + conversationId;
+            default -> userId == null ? null : "user:" + userId;
+        };
+    }
+
+    /**
+     * 回答不只取决于用户的问题，还取决于注入的系统上下文（财务报告）和记忆 advisor 带上的历史窗口。
+     * 有这些上下文时在作用域后面追加它们的 SHA-256 摘要：报告更新或对话往前推进后落在新的作用域里，
+     * 不会拿到按另一份报告或另一段历史生成的回答
+     */
+    public String scopeFor(Long userId, String conversationId, String systemContext, List<Message> history) {
+        String scope = scopeFor(userId, conversationId);
+        if (scope == null || (systemContext == null && history.isEmpty())) {
+            return scope;
+        }
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            update(sha256, systemContext == null ? "" : systemContext);
+            for (Message message : history) {
+                update(sha256, message.getMessageType().getValue());
+                update(sha256, message.getContent() == null ? "" : message.getContent());
+            }
+            return scope + ":ctx:" + HexFormat.of().formatHex(sha256.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // 每段前面写入长度，不同的切分方式不会得到相同的摘要
+    private static void update(MessageDigest digest, String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+        digest.update(bytes);
+    }
+
+    @Override
+    public AdvisedRequest adviseRequest(AdvisedRequest request, Map<String, Object> context) {
+        Object scope = context.get(CACHE_SCOPE_KEY);
+        if (scope == null) {
+            return request;
+        }
+        context.put(START_KEY, System.nanoTime());
+        SemanticResponseCache.Lookup lookup = cache.lookup(scope.toString(), request.userText());
+        if (lookup == null) {
+            return request;
+        }
+        if (!lookup.isHit()) {
+            context.put(LOOKUP_KEY, lookup);
+            return request;
+        }
+        ChatResponse cached = new ChatResponse(List.of(new Generation(lookup.answer())));
+        context.put(CACHED_RESPONSE_KEY, cached);
+        return AdvisedRequest.from(request)
+                .withChatModel(new CachedAnswerChatModel(cached, request.chatModel()))
+                .build();
+    }
+
+    @Override
+    public ChatResponse adviseResponse(ChatResponse response, Map<String, Object> context) {
+        ChatResponse cached = (ChatResponse) context.get(CACHED_RESPONSE_KEY);
+        if (cached != null) {
+            recordLatency(hitLatency, context);
+            return cached;
+        }
+        store(response, context);
+        return response;
+    }
+
+    @Override
+    public Flux<ChatResponse> adviseResponse(Flux<ChatResponse> fluxResponse, Map<String, Object> context) {
+        ChatResponse cached = (ChatResponse) context.get(CACHED_RESPONSE_KEY);
+        if (cached != null) {
+            recordLatency(hitLatency, context);
+            return Flux.just(cached);
+        }
+        if (!context.containsKey(LOOKUP_KEY)) {
+            return fluxResponse;
+        }
+        // 流式响应在全部片段到达后再合并写入缓存
+        return new MessageAggregator().aggregate(fluxResponse, response -> store(response, context));
+    }
+
+    private void store(ChatResponse response, Map<String, Object> context) {
+        SemanticResponseCache.Lookup lookup = (SemanticResponseCache.Lookup) context.get(LOOKUP_KEY);
+        if (lookup == null) {
+            return;
+        }
+        recordLatency(missLatency, context);
+        String answer = textOf(response);
+        // 工具调用的中间结果不缓存
+        if (answer != null && !hasToolCalls(response)) {
+            cache.put(lookup, answer);
+        }
+    }
+
+    private static void recordLatency(Timer timer, Map<String, Object> context) {
+        Object start = context.get(START_KEY);
+        if (start instanceof Long startNanos) {
+            timer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String textOf(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        return response.getResult().getOutput().getContent();
+    }
+
+    private static boolean hasToolCalls(ChatResponse response) {
+        AssistantMessage output = response.getResult().getOutput();
+        return output.getToolCalls() != null && !output.getToolCalls().isEmpty();
+    }
+
+    /**
+     * 命中缓存时替换请求里的 ChatModel，直接返回缓存的回答
+     */
+    private static final class CachedAnswerChatModel implements ChatModel {
+        private final ChatResponse response;
+        private final ChatModel original;
+
+        private CachedAnswerChatModel(ChatResponse response, ChatModel original) {
+            this.response = response;
+            this.original = original;
+        }
+
+        @Override
+        public ChatResponse call(Prompt prompt) {
+            return response;
+        }
+
+        @Override
+        public Flux<ChatResponse> stream(Prompt prompt) {
+            return Flux.just(response);
+        }
+
+        @Override
+        public ChatOptions getDefaultOptions() {
+            return original.getDefaultOptions();
+        }
+    }
+}
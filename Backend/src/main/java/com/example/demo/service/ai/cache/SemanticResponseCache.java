@@ -0,0 +1,243 @@
+package com.example.demo.service.ai.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+/**
+ * 语义响应缓存：按作用域（全局 / 用户 / 会话）保存最近的 问题 → 回答。
+ * 查询时先比较归一化后的原文，不一致再计算 embedding，与同作用域内最近的问题做余弦相似度，
+ * 超过阈值即视为同一个问题。每个作用域最多保留 max-entries-per-scope 条，按最近使用淘汰，条目超过 TTL 后失效
+ */
+@Slf4j
+@Component
+public class SemanticResponseCache {
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern TRAILING_PUNCTUATION = Pattern.compile("[\\p{Punct}\\s？。！，]+$");
+
+    private final Function<String, float[]> embedder;
+    private final double similarityThreshold;
+    private final long ttlMillis;
+    private final int maxEntriesPerScope;
+    private final int minPromptLength;
+    private final LongSupplier clock;
+    private final Cache<String, ScopeEntries> scopes;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Timer lookupTimer;
+
+    @Autowired
+    public SemanticResponseCache(EmbeddingModel embeddingModel,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${ai.semantic-cache.similarity-threshold:0.95}") double similarityThreshold,
+                                 @Value("${ai.semantic-cache.ttl-minutes:60}") long ttlMinutes,
+                                 @Value("${ai.semantic-cache.max-entries-per-scope:200}") int maxEntriesPerScope,
+                                 @Value("${ai.semantic-cache.max-scopes:10000}") long maxScopes,
+                                 @Value("${ai.semantic-cache.min-prompt-length:12}") int minPromptLength) {
+        this(text -> toVector(embeddingModel.embed(text)), meterRegistry, similarityThreshold,
+                Duration.ofMinutes(ttlMinutes).toMillis(), maxEntriesPerScope, maxScopes, minPromptLength, System::currentTimeMillis);
+    }
+
+    SemanticResponseCache(Function<String, float[]> embedder, MeterRegistry meterRegistry, double similarityThreshold,
+                          long ttlMillis, int maxEntriesPerScope, long maxScopes, int minPromptLength, LongSupplier clock) {
+        this.embedder = embedder;
+        this.similarityThreshold = similarityThreshold;
+        this.ttlMillis = ttlMillis;
+        this.maxEntriesPerScope = maxEntriesPerScope;
+        this.minPromptLength = minPromptLength;
+        this.clock = clock;
+        this.scopes = Caffeine.newBuilder()
+                .maximumSize(maxScopes)
+                .expireAfterAccess(Duration.ofMillis(ttlMillis))
+                .build();
+
+        this.hitCounter = meterRegistry.counter("ai.semantic-cache.lookups", "result", "hit");
+        this.missCounter = meterRegistry.counter("ai.semantic-cache.lookups", "result", "miss");
+        this.lookupTimer = Timer.builder("ai.semantic-cache.lookup")
+                .description("Time to normalise, embed and search a prompt in the semantic cache")
+                .register(meterRegistry);
+        Gauge.builder("ai.semantic-cache.hit-ratio", this, SemanticResponseCache::hitRatio)
+                .description("Share of cacheable chat prompts answered from the semantic cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 查找语义相近的已缓存回答。返回 null 表示这个问题不参与缓存（太短或作用域为空），
+     * 否则返回的 Lookup 在未命中时用于随后的 put，避免重复计算 embedding
+     */
+    public Lookup lookup(String scope, String prompt) {
+        String normalized = normalize(prompt);
+        if (scope == null || normalized.length() < minPromptLength) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            ScopeEntries entries = scopes.getIfPresent(scope);
+            long now = clock.getAsLong();
+            if (entries != null) {
+                Entry exact = entries.findExact(normalized, now - ttlMillis);
+                if (exact != null) {
+                    hitCounter.increment();
+                    return new Lookup(scope, normalized, exact.embedding(), exact.answer());
+                }
+            }
+            float[] embedding = embedder.apply(normalized);
+            if (entries != null) {
+                Entry nearest = entries.findNearest(embedding, similarityThreshold, now - ttlMillis);
+                if (nearest != null) {
+                    hitCounter.increment();
+                    log.debug("Semantic cache hit in scope {}: '{}' ~ '{}'", scope, normalized, nearest.prompt());
+                    return new Lookup(scope, normalized, embedding, nearest.answer());
+                }
+            }
+            missCounter.increment();
+            return new Lookup(scope, normalized, embedding, null);
+        } finally {
+            lookupTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void put(Lookup lookup, String answer) {
+        if (lookup == null || answer == null || answer.isBlank()) {
+            return;
+        }
+        scopes.get(lookup.scope(), scope -> new ScopeEntries(maxEntriesPerScope))
+                .add(new Entry(lookup.normalizedPrompt(), lookup.embedding(), answer, clock.getAsLong()));
+    }
+
+    public double hitRatio() {
+        double hits = hitCounter.count();
+        double total = hits + missCounter.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    // 大小写、连续空白和句末标点不影响匹配
+    static String normalize(String prompt) {
+        if (prompt == null) {
+            return "";
+        }
+        String collapsed = WHITESPACE.matcher(prompt.trim().toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return TRAILING_PUNCTUATION.matcher(collapsed).replaceAll("");
+    }
+
+    // 转成单位向量（不修改 embed 返回的数组），相似度只需点积
+    static float[] toVector(float[] embedding) {
+        float[] vector = embedding.clone();
+        double norm = 0;
+        for (float value : vector) {
+            norm += value * value;
+        }
+        norm = Math.sqrt(norm);
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                vector[i] /= (float) norm;
+            }
+        }
+        return vector;
+    }
+
+    static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return -1;
+        }
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    public record Lookup(String scope, String normalizedPrompt, float[] embedding, String answer) {
+        public boolean isHit() {
+            return answer != null;
+        }
+    }
+
+    record Entry(String prompt, float[] embedding, String answer, long createdAt) {
+    }
+
+    /**
+     * 单个作用域内的条目，队尾是最近使用的；写满后淘汰队头
+     */
+    static final class ScopeEntries {
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private final int capacity;
+
+        ScopeEntries(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized Entry findExact(String prompt, long notBefore) {
+            evictExpired(notBefore);
+            for (Entry entry : entries) {
+                if (entry.prompt().equals(prompt)) {
+                    touch(entry);
+                    return entry;
+                }
+            }
+            return null;
+        }
+
+        synchronized Entry findNearest(float[] embedding, double threshold, long notBefore) {
+            evictExpired(notBefore);
+            Entry best = null;
+            double bestScore = threshold;
+            for (Entry entry : entries) {
+                double score = dot(embedding, entry.embedding());
+                if (score >= bestScore) {
+                    best = entry;
+                    bestScore = score;
+                }
+            }
+            if (best != null) {
+                touch(best);
+            }
+            return best;
+        }
+
+        synchronized void add(Entry entry) {
+            entries.removeIf(existing -> existing.prompt().equals(entry.prompt()));
+            entries.addLast(entry);
+            while (entries.size() > capacity) {
+                entries.removeFirst();
+            }
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        private void touch(Entry entry) {
+            entries.remove(entry);
+            entries.addLast(entry);
+        }
+
+        // 队列按最近使用排序，不按写入时间，过期条目要整体扫描
+        private void evictExpired(long notBefore) {
+            Iterator<Entry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().createdAt() < notBefore) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demo.service.ai.memory;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+
+/**
+ * 对话消息在 Redis 里的紧凑格式：一个字符的类型标记加上原文，例如 "uHello"。
+ * 相比带类型信息的 JSON（metadata、media、messageType 等字段）每条消息只多一个字符
+ */
+final class ChatMessageCodec {
+    private static final char USER = 'u';
+    private static final char ASSISTANT = 'a';
+    private static final char SYSTEM = 's';
+
+    private ChatMessageCodec() {
+    }
+
+    /**
+     * 编码一条消息；工具调用等非文本消息不进入记忆，返回 null
+     */
+    static String encode(Message message) {
+        String content = message.getContent() == null ? "" : message.getContent();
+        return switch (message.getMessageType()) {
+            case USER -> USER + content;
+            case ASSISTANT -> ASSISTANT + content;
+            case SYSTEM -> SYSTEM + content;
+            default -> null;
+        };
+    }
+
+    static Message decode(String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return null;
+        }
+        String content = encoded.substring(1);
+        return switch (encoded.charAt(0)) {
+            case USER -> new UserMessage(content);
+            case ASSISTANT -> new AssistantMessage(content);
+            case SYSTEM -> new SystemMessage(content);
+            default -> null;
+        };
+    }
+
+    // 粗略估算 token 数，够用于裁剪预算：英文等约 4 个字符一个 token，
+    // 中日韩文字的分词器几乎是一字一个 token，按 4 个字符算会把中文对话的长度低估约四倍
+    static int estimateTokens(String content) {
+        if (content == null) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < content.length(); ) {
+            int codePoint = content.codePointAt(i);
+            if (isCjk(codePoint)) {
+                cjk++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.demo.service.ai.memory;
+
+import com.example.demo.model.message.FinancialReportMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * 按用户（可选再按会话）把财务报告放进独立的 Redis 列表 financial_report:{userId}[:{conversationId}]。
+ * 这些 key 不在 ChatMemory 的命名空间里，客户端传入的 conversationId / sessionId 读写不到别人的报告。
+ * 列表头部是最新报告，最多保留 1 + max-earlier 份；注入对话时最新报告给全文，更早的每份压缩成一行摘要，
+ * 所以不管生成多少次报告，注入到对话里的长度都是有界的
+ */
+@Slf4j
+@Component
+public class FinancialReportMemory {
+    static final String KEY_PREFIX = "financial_report:";
+    static final String LATEST_HEADER = "Latest financial report";
+    static final String EARLIER_HEADER = "Earlier financial reports:";
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneOffset.UTC);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final int maxEarlier;
+    private final int digestLength;
+
+    @Autowired
+    public FinancialReportMemory(StringRedisTemplate stringRedisTemplate,
+                                 @Value("${ai.report-memory.max-earlier:3}") int maxEarlier,
+                                 @Value("${ai.report-memory.digest-length:200}") int digestLength) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.maxEarlier = maxEarlier;
+        this.digestLength = digestLength;
+    }
+
+    /**
+     * 写入一份新报告：LPUSH 和 LTRIM 放在同一个 MULTI/EXEC 里，没有读改写，多实例并发写入也不会互相覆盖
+     */
+    public void record(FinancialReportMessage message) {
+        if (message.getUserId() == null || message.getReport() == null) {
+            log.warn("Ignoring financial report without user or content");
+            return;
+        }
+        String key = keyFor(message.getUserId(), message.getConversationId());
+        long generatedAt = message.getGeneratedAt() != null ? message.getGeneratedAt() : System.currentTimeMillis();
+        String entry = generatedAt + "\n" + message.getReport();
+        stringRedisTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> redis = (RedisOperations<String, String>) operations;
+                redis.multi();
+                redis.opsForList().leftPush(key, entry);
+                redis.opsForList().trim(key, 0, maxEarlier);
+                return redis.exec();
+            }
+        });
+        log.info("Stored financial report for user {} under {}", message.getUserId(), key);
+    }
+
+    /**
+     * 对话时注入的报告上下文：优先取该会话的报告，没有时取用户级的报告；都没有返回 null
+     */
+    public String contextFor(Long userId, String conversationId) {
+        if (userId == null) {
+            return null;
+        }
+        List<String> entries = conversationId == null || conversationId.isBlank()
+                ? List.of() : read(keyFor(userId, conversationId));
+        if (entries.isEmpty()) {
+            entries = read(keyFor(userId, null));
+        }
+        if (entries.isEmpty()) {
+            return null;
+        }
+
+        StringBuilder context = new StringBuilder();
+        if (entries.size() > 1) {
+            // 列表按新到旧排列，摘要按时间顺序输出
+            context.append(EARLIER_HEADER);
+            for (int i = entries.size() - 1; i >= 1; i--) {
+                context.append('\n').append(digest(entries.get(i)));
+            }
+            context.append("\n\n");
+        }
+        String latest = entries.get(0);
+        context.append(LATEST_HEADER).append(" (").append(dateOf(latest)).append(" UTC):\n").append(bodyOf(latest));
+        return context.toString();
+    }
+
+    private List<String> read(String key) {
+        List<String> entries = stringRedisTemplate.opsForList().range(key, 0, maxEarlier);
+        return entries == null ? List.of() : entries;
+    }
+
+    static String keyFor(Long userId, String conversationId) {
+        return conversationId == null || conversationId.isBlank()
+                ? KEY_PREFIX + userId
+                : KEY_PREFIX + userId + ":" + conversationId;
+    }
+
+    // "generatedAt\n正文" -> "- date UTC: 正文前 digest-length 个字符"，换行压成空格
+    private String digest(String entry) {
+        String body = bodyOf(entry).replaceAll("\\s+", " ").strip();
+        if (body.length() > digestLength) {
+            body = body.substring(0, digestLength) + "...";
+        }
+        return "- " + dateOf(entry) + " UTC: " + body;
+    }
+
+    private static String dateOf(String entry) {
+        int newline = entry.indexOf('\n');
+        try {
+            return DATE.format(Instant.ofEpochMilli(Long.parseLong(entry.substring(0, Math.max(newline, 0)))));
+        } catch (NumberFormatException e) {
+            return "unknown date";
+        }
+    }
+
+    private static String bodyOf(String entry) {
+        int newline = entry.indexOf('\n');
+        return newline < 0 ? entry : entry.substring(newline + 1);
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.demo.service.ai.memory;
+
+import com.example.demo.config.cache.SingleFlightCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.ToLongFunction;
+
+/**
+ * 两级对话记忆，替代进程内无上限的 InMemoryChatMemory：
+ * 本地 Caffeine 热层按会话数限制大小、空闲过期；Redis 列表 chat_memory:{conversationId} 是持久层，
+ * 每条消息用 ChatMessageCodec 的紧凑格式保存，空闲 idle-ttl 后由 Redis 自动删除。
+ * 每个会话最多保留 max-messages 条消息，估算 token 超过 max-tokens 时从最旧的开始裁剪。
+ * 写入后通过 pub/sub 通知其他实例丢弃本地副本，负载均衡到任意实例都能读到完整历史
+ */
+@Slf4j
+@Component
+public class TieredChatMemory implements ChatMemory, MessageListener {
+    static final String KEY_PREFIX = "chat_memory:";
+    static final String CHANNEL = "chat_memory_events";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final int maxMessages;
+    private final int maxTokens;
+    private final Duration idleTtl;
+    private final Cache<String, Conversation> local;
+    private final SingleFlightCache<String, Conversation> conversations;
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private final Counter localReads;
+    private final Counter redisReads;
+    private final Counter trimmedMessages;
+    private final DistributionSummary redisBytesWritten;
+
+    @Autowired
+    public TieredChatMemory(StringRedisTemplate stringRedisTemplate,
+                            RedisMessageListenerContainer listenerContainer,
+                            MeterRegistry meterRegistry,
+                            @Value("${ai.chat-memory.max-messages:40}") int maxMessages,
+                            @Value("${ai.chat-memory.max-tokens:4000}") int maxTokens,
+                            @Value("${ai.chat-memory.idle-ttl-minutes:1440}") long idleTtlMinutes,
+                            @Value("${ai.chat-memory.local.max-conversations:5000}") long maxLocalConversations,
+                            @Value("${ai.chat-memory.local.idle-minutes:30}") long localIdleMinutes) {
+        this(stringRedisTemplate, meterRegistry, maxMessages, maxTokens, Duration.ofMinutes(idleTtlMinutes),
+                maxLocalConversations, Duration.ofMinutes(localIdleMinutes), Ticker.systemTicker());
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    TieredChatMemory(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry,
+                     int maxMessages, int maxTokens, Duration idleTtl,
+                     long maxLocalConversations, Duration localIdle, Ticker ticker) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.maxMessages = maxMessages;
+        this.maxTokens = maxTokens;
+        this.idleTtl = idleTtl;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maxLocalConversations)
+                .expireAfterAccess(localIdle)
+                .ticker(ticker)
+                .build();
+        this.conversations = new SingleFlightCache<>(local);
+
+        this.localReads = meterRegistry.counter("ai.chat.memory.reads", "tier", "local");
+        this.redisReads = meterRegistry.counter("ai.chat.memory.reads", "tier", "redis");
+        this.trimmedMessages = meterRegistry.counter("ai.chat.memory.trimmed");
+        this.redisBytesWritten = DistributionSummary.builder("ai.chat.memory.bytes.written")
+                .description("Encoded message bytes appended to the durable tier per write")
+                .tag("tier", "redis")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("ai.chat.memory.conversations", local, Cache::estimatedSize)
+                .description("Conversations held in the local hot tier")
+                .tag("tier", "local")
+                .register(meterRegistry);
+        registerLocalGauge(meterRegistry, "ai.chat.memory.messages", "Messages held in the local hot tier", null,
+                conversation -> conversation.size);
+        registerLocalGauge(meterRegistry, "ai.chat.memory.bytes", "Approximate heap used by message text in the local hot tier", "bytes",
+                conversation -> conversation.chars * 2L);
+        registerLocalGauge(meterRegistry, "ai.chat.memory.tokens", "Estimated tokens held in the local hot tier", null,
+                conversation -> conversation.tokens);
+    }
+
+    @Override
+    public void add(String conversationId, List<Message> messages) {
+        Conversation conversation = conversation(conversationId);
+        List<String> encoded = new ArrayList<>(messages.size());
+        int kept;
+        synchronized (conversation) {
+            for (Message message : messages) {
+                String value = ChatMessageCodec.encode(message);
+                if (value == null) {
+                    continue;
+                }
+                conversation.append(message);
+                encoded.add(value);
+            }
+            trimmedMessages.increment(conversation.trim(maxMessages, maxTokens));
+            kept = conversation.size;
+        }
+        if (!encoded.isEmpty()) {
+            persist(conversationId, encoded, kept);
+        }
+    }
+
+    @Override
+    public List<Message> get(String conversationId, int lastN) {
+        Conversation conversation = conversation(conversationId);
+        synchronized (conversation) {
+            return conversation.last(lastN);
+        }
+    }
+
+    @Override
+    public void clear(String conversationId) {
+        conversations.invalidate(conversationId);
+        try {
+            stringRedisTemplate.delete(KEY_PREFIX + conversationId);
+            stringRedisTemplate.convertAndSend(CHANNEL, instanceId + ":" + conversationId);
+        } catch (DataAccessException e) {
+            log.warn("Failed to clear chat memory {} in Redis: {}", conversationId, e.getMessage());
+        }
+    }
+
+    // 其他实例写入了某个会话，格式为 {instanceId}:{conversationId}，丢弃本地副本，下次读取时从 Redis 重新加载
+    @Override
+    public void onMessage(org.springframework.data.redis.connection.Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf(':');
+        if (separator <= 0) {
+            log.warn("Ignoring malformed chat memory message: {}", body);
+            return;
+        }
+        if (!body.startsWith(instanceId + ":")) {
+            conversations.invalidate(body.substring(separator + 1));
+        }
+    }
+
+    private Conversation conversation(String conversationId) {
+        Conversation cached = conversations.getIfPresent(conversationId);
+        if (cached != null) {
+            localReads.increment();
+            return cached;
+        }
+        // 同一会话并发未命中时只读一次 Redis；读取期间收到失效通知的结果不会写回本地热层
+        return conversations.get(conversationId, this::load);
+    }
+
+    private Conversation load(String conversationId) {
+        redisReads.increment();
+        Conversation conversation = new Conversation();
+        try {
+            List<String> stored = stringRedisTemplate.opsForList().range(KEY_PREFIX + conversationId, 0, -1);
+            if (stored != null) {
+                for (String value : stored) {
+                    Message message = ChatMessageCodec.decode(value);
+                    if (message != null) {
+                        conversation.append(message);
+                    }
+                }
+            }
+            // 配置调小后，旧会话加载时按新的上限裁剪
+            conversation.trim(maxMessages, maxTokens);
+        } catch (DataAccessException e) {
+            log.warn("Failed to load chat memory {} from Redis, starting empty: {}", conversationId, e.getMessage());
+        }
+        return conversation;
+    }
+
+    /**
+     * 追加、裁剪、续期和通知放在一个 pipeline 里，只有一次网络往返
+     */
+    private void persist(String conversationId, List<String> encoded, int kept) {
+        String key = KEY_PREFIX + conversationId;
+        try {
+            stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, String> redis = (RedisOperations<String, String>) operations;
+                    redis.opsForList().rightPushAll(key, encoded);
+                    redis.opsForList().trim(key, -kept, -1);
+                    redis.expire(key, idleTtl);
+                    redis.convertAndSend(CHANNEL, instanceId + ":" + conversationId);
+                    return null;
+                }
+            });
+            long bytes = 0;
+            for (String value : encoded) {
+                bytes += value.getBytes(StandardCharsets.UTF_8).length;
+            }
+            redisBytesWritten.record(bytes);
+        } catch (DataAccessException e) {
+            log.warn("Failed to persist chat memory {} to Redis: {}", conversationId, e.getMessage());
+        }
+    }
+
+    private void registerLocalGauge(MeterRegistry meterRegistry, String name, String description, String baseUnit,
+                                    ToLongFunction<Conversation> metric) {
+        Gauge.builder(name, local, cache -> cache.asMap().values().stream().mapToLong(metric).sum())
+                .description(description)
+                .tag("tier", "local")
+                .baseUnit(baseUnit)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 一个会话的本地副本，调用方负责同步；计数字段用 volatile 供指标线程无锁读取
+     */
+    private static final class Conversation {
+        private final ArrayDeque<Message> messages = new ArrayDeque<>();
+        private volatile int size;
+        private volatile long chars;
+        private volatile long tokens;
+
+        void append(Message message) {
+            messages.addLast(message);
+            size++;
+            chars += length(message);
+            tokens += ChatMessageCodec.estimateTokens(message.getContent());
+        }
+
+        // 超过条数或 token 预算时丢弃最旧的消息，至少保留最新一条；返回丢弃的条数
+        int trim(int maxMessages, long maxTokens) {
+            int removed = 0;
+            while (size > maxMessages || (tokens > maxTokens && size > 1)) {
+                Message oldest = messages.removeFirst();
+                size--;
+                chars -= length(oldest);
+                tokens -= ChatMessageCodec.estimateTokens(oldest.getContent());
+                removed++;
+            }
+            return removed;
+        }
+
+        List<Message> last(int lastN) {
+            int skip = Math.max(0, size - lastN);
+            List<Message> result = new ArrayList<>(size - skip);
+            Iterator<Message> iterator = messages.iterator();
+            for (int i = 0; iterator.hasNext(); i++) {
+                Message message = iterator.next();
+                if (i >= skip) {
+                    result.add(message);
+                }
+            }
+            return result;
+        }
+
+        private static int length(Message message) {
+            return message.getContent() == null ? 0 : message.getContent().length();
+        }
+    }
+}
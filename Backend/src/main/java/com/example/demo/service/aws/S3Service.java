@@ -4,10 +4,11 @@ import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.*;
 import com.example.demo.exception.S3DownloadException;
 import com.example.demo.model.aws.S3FileMetadata;
+import com.example.demo.service.resilience.DependencyGuard;
+import com.example.demo.service.resilience.DependencyGuards;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.io.FileNotFoundException;
@@ -20,33 +21,38 @@ import java.util.stream.Collectors;
 @Slf4j
 public class S3Service {
     private final AmazonS3 amazonS3;
+    private final DependencyGuard s3Guard;
     @Autowired
-    public S3Service(AmazonS3 amazonS3) {
+    public S3Service(AmazonS3 amazonS3, DependencyGuards dependencyGuards) {
         this.amazonS3 = amazonS3;
+        this.s3Guard = dependencyGuards.s3();
     }
 
     @Value("${aws.s3.bucket}")
     private String bucketName;
 
-    @Async
+    /**
+     * 经过 S3 的隔离舱、超时和线程池同步上传：调用方在请求结束前拿到结果，MultipartFile 的临时文件此时仍然有效。
+     * 排队已满、隔离舱满或超时时抛出 DependencyUnavailableException，S3 返回的错误原样抛出
+     */
     public void uploadFile(Long userId, InputStream inputStream, long contentLength, String contentType, String fileName) {
+        String s3Key = S3Service.generateS3Key(userId, fileName);
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(contentLength);
+        metadata.setContentType(contentType);
+        PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, s3Key, inputStream, metadata);
         try {
-            String s3Key = S3Service.generateS3Key(userId, fileName);
-            ObjectMetadata metadata = new ObjectMetadata();
-            metadata.setContentLength(contentLength);
-            metadata.setContentType(contentType);
-
-            PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, s3Key, inputStream, metadata);
-            amazonS3.putObject(putObjectRequest);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to upload file to S3", e);
+            s3Guard.call(() -> amazonS3.putObject(putObjectRequest));
+        } catch (RuntimeException e) {
+            log.error("Failed to upload file to S3. Bucket: {}, Key: {}", bucketName, s3Key, e);
+            throw e;
         }
     }
 
     public S3ObjectInputStream downloadFile(Long userId, String fileName) throws S3DownloadException, FileNotFoundException {
         String s3Key = S3Service.generateS3Key(userId, fileName);
         try {
-            S3Object s3Object = amazonS3.getObject(bucketName, s3Key);
+            S3Object s3Object = s3Guard.call(() -> amazonS3.getObject(bucketName, s3Key));
             // Log successful download
             log.info("File successfully retrieved from S3. Bucket: {}, Key: {}", bucketName, s3Key);
             return s3Object.getObjectContent();
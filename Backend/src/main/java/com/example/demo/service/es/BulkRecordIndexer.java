@@ -0,0 +1,171 @@
+package com.example.demo.service.es;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.model.TransactionRecordES;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 交易记录的 ES 批量写入缓冲：
+ * 同一个文档 id 的多次写入 / 删除在缓冲区里合并成最后一次操作，
+ * 缓冲达到 maxActions 条时由调用线程立即 flush，否则由定时任务按 flushInterval 刷出，
+ * 每次 flush 发送一个 _bulk 请求
+ */
+@Slf4j
+@Component
+public class BulkRecordIndexer {
+
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final int maxActions;
+
+    private final Object bufferMonitor = new Object();
+    // 文档 id -> 待写入的文档，null 表示删除
+    private LinkedHashMap<String, Document> buffer = new LinkedHashMap<>();
+    // 同一时间只允许一个 _bulk 请求在途，保证同一文档的新旧操作不会乱序落盘
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    @Autowired
+    public BulkRecordIndexer(ElasticsearchClient elasticsearchClient,
+                             ElasticsearchOperations elasticsearchOperations,
+                             @Value("${es.bulk.max-actions:1000}") int maxActions) {
+        this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.maxActions = maxActions;
+    }
+
+    public void index(TransactionRecordES record) {
+        // 用 Spring Data 的转换器生成文档，字段格式（日期等）和 RecordESDao 写入的一致
+        Document document = elasticsearchOperations.getElasticsearchConverter().mapObject(record);
+        buffer(record.getId(), document);
+    }
+
+    public void delete(String id) {
+        buffer(id, null);
+    }
+
+    private void buffer(String id, Document document) {
+        boolean full;
+        synchronized (bufferMonitor) {
+            // 先删除再放入，让合并后的操作排在最新的位置
+            buffer.remove(id);
+            buffer.put(id, document);
+            full = buffer.size() >= maxActions;
+        }
+        if (full) {
+            flush();
+        }
+    }
+
+    public int pendingActions() {
+        synchronized (bufferMonitor) {
+            return buffer.size();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${es.bulk.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.warn("Scheduled Elasticsearch bulk flush failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        scheduledFlush();
+    }
+
+    /**
+     * 把当前缓冲区作为一个 _bulk 请求发送出去。
+     * 请求失败或有可重试的条目（429 / 5xx）时，这些操作会放回缓冲区等待下次 flush，并抛出异常；
+     * 其他失败（如 mapping 错误）重试也不会成功，只记录日志
+     *
+     * @throws RuntimeException 仍有操作没有写入成功
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            LinkedHashMap<String, Document> actions;
+            synchronized (bufferMonitor) {
+                if (buffer.isEmpty()) {
+                    return;
+                }
+                actions = buffer;
+                buffer = new LinkedHashMap<>();
+            }
+            send(actions);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void send(LinkedHashMap<String, Document> actions) {
+        String indexName = elasticsearchOperations.getIndexCoordinatesFor(TransactionRecordES.class).getIndexName();
+        BulkRequest.Builder request = new BulkRequest.Builder();
+        actions.forEach((id, document) -> {
+            if (document != null) {
+                request.operations(op -> op.index(idx -> idx.index(indexName).id(id).document(document)));
+            } else {
+                request.operations(op -> op.delete(del -> del.index(indexName).id(id)));
+            }
+        });
+
+        BulkResponse response;
+        try {
+            response = elasticsearchClient.bulk(request.build());
+        } catch (IOException | RuntimeException e) {
+            requeue(actions);
+            throw new RuntimeException("Elasticsearch bulk request failed: " + e.getMessage(), e);
+        }
+        if (!response.errors()) {
+            return;
+        }
+
+        LinkedHashMap<String, Document> retryable = new LinkedHashMap<>();
+        for (BulkResponseItem item : response.items()) {
+            // 删除一个本来就不存在的文档时 ES 返回 not_found，但没有 error，不算失败
+            if (item.error() == null) {
+                continue;
+            }
+            if (item.status() == 429 || item.status() >= 500) {
+                retryable.put(item.id(), actions.get(item.id()));
+            } else {
+                log.error("Dropping Elasticsearch {} of record {}: {}", item.operationType(), item.id(), item.error().reason());
+            }
+        }
+        if (!retryable.isEmpty()) {
+            requeue(retryable);
+            throw new RuntimeException(retryable.size() + " Elasticsearch bulk items failed and were re-queued");
+        }
+    }
+
+    // 放回缓冲区；flush 期间同一文档如果已经有更新的操作，以新的为准
+    private void requeue(Map<String, Document> actions) {
+        synchronized (bufferMonitor) {
+            LinkedHashMap<String, Document> merged = new LinkedHashMap<>(actions);
+            buffer.forEach((id, document) -> {
+                merged.remove(id);
+                merged.put(id, document);
+            });
+            buffer = merged;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.example.demo.service.es;
 
 import com.example.demo.repository.es.RecordESDao;
 import com.example.demo.model.TransactionRecordES;
+import com.example.demo.service.resilience.DependencyGuard;
+import com.example.demo.service.resilience.DependencyGuards;
 import com.example.demo.utility.GetCurrentUserInfo;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -21,13 +23,16 @@ public class RecordSearchService {
     private final RecordESDao recordESDao;
     private final ElasticsearchOperations elasticsearchOperations;
     private final GetCurrentUserInfo getCurrentUserInfo;
+    private final DependencyGuard elasticsearchGuard;
 
     public RecordSearchService(RecordESDao recordESDao,
                                ElasticsearchOperations elasticsearchOperations,
-                               GetCurrentUserInfo getCurrentUserInfo) {
+                               GetCurrentUserInfo getCurrentUserInfo,
+                               DependencyGuards dependencyGuards) {
         this.recordESDao = recordESDao;
         this.elasticsearchOperations = elasticsearchOperations;
         this.getCurrentUserInfo = getCurrentUserInfo;
+        this.elasticsearchGuard = dependencyGuards.elasticsearch();
     }
 
     // general search
@@ -40,10 +45,10 @@ public class RecordSearchService {
         Page<TransactionRecordES> searchResult;
 
         if (keyword != null && !keyword.isEmpty()) {
-            searchResult = recordESDao.findByAccountIdAndTransactionDescriptionContainingOrAccountIdAndCategoryContaining(
-                    accountIdStr, keyword, accountIdStr, keyword, pageRequest);
+            searchResult = elasticsearchGuard.call(() -> recordESDao.findByAccountIdAndTransactionDescriptionContainingOrAccountIdAndCategoryContaining(
+                    accountIdStr, keyword, accountIdStr, keyword, pageRequest));
         } else {
-            searchResult = recordESDao.findByAccountId(accountIdStr, pageRequest);
+            searchResult = elasticsearchGuard.call(() -> recordESDao.findByAccountId(accountIdStr, pageRequest));
         }
 
         return searchResult.getContent();
@@ -76,9 +81,9 @@ public class RecordSearchService {
         }
 
         // transfer SearchHits to List<TransactionRecordES>
-        return elasticsearchOperations.search(query, TransactionRecordES.class)
+        return elasticsearchGuard.call(() -> elasticsearchOperations.search(query, TransactionRecordES.class)
                 .stream()
                 .map(SearchHit::getContent)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 }
\ No newline at end of file
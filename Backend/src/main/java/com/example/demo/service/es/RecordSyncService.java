@@ -1,58 +1,191 @@
 package com.example.demo.service.es;
 
 import com.example.demo.repository.TransactionRecordDao;
-import com.example.demo.repository.es.RecordESDao;
 import com.example.demo.model.TransactionRecordES;
 import com.example.demo.model.TransactionRecord;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Conflicts;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.function.LongFunction;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 public class RecordSyncService {
 
     private final TransactionRecordDao transactionRecordDao;
-    private final RecordESDao recordESDao;
+    private final BulkRecordIndexer bulkRecordIndexer;
+    private final ElasticsearchClient elasticsearchClient;
+    private final ElasticsearchOperations elasticsearchOperations;
+    private final int reindexPageSize;
 
+    @Autowired
     public RecordSyncService(TransactionRecordDao transactionRecordDao,
-                             RecordESDao recordESDao) {
+                             BulkRecordIndexer bulkRecordIndexer,
+                             ElasticsearchClient elasticsearchClient,
+                             ElasticsearchOperations elasticsearchOperations,
+                             @Value("${es.reindex.page-size:1000}") int reindexPageSize) {
         this.transactionRecordDao = transactionRecordDao;
-        this.recordESDao = recordESDao;
+        this.bulkRecordIndexer = bulkRecordIndexer;
+        this.elasticsearchClient = elasticsearchClient;
+        this.elasticsearchOperations = elasticsearchOperations;
+        this.reindexPageSize = reindexPageSize;
     }
 
-    @Transactional
     public void syncToElasticsearch(TransactionRecord record) {
-        TransactionRecordES esRecord = convertToESEntity(record);
-        recordESDao.save(esRecord);
+        bulkRecordIndexer.index(convertToESEntity(record));
     }
 
-    @Transactional
     public void deleteFromElasticsearch(Long recordId) {
-        String esRecordId = String.valueOf(recordId);
-        recordESDao.deleteById(esRecordId);
+        bulkRecordIndexer.delete(String.valueOf(recordId));
     }
 
-    @Transactional
 //  delete batch of records from elastic search
     public void deleteFromElasticsearchInBatch(List<Long> recordIds) {
-        List<String> esRecordIds = recordIds.stream()
-                .map(String::valueOf)
-                .collect(Collectors.toList());
-        recordESDao.deleteAllById(esRecordIds);
+        recordIds.forEach(id -> bulkRecordIndexer.delete(String.valueOf(id)));
     }
 
-    @Transactional
+    // index 本身就是 upsert，不需要先查询文档是否存在
     public void updateInElasticsearch(TransactionRecord record) {
-        TransactionRecordES esRecord = convertToESEntity(record);
-        String esRecordId = String.valueOf(record.getId());
-
-        if (recordESDao.existsById(esRecordId)) {
-            // fi record exist
-            recordESDao.save(esRecord);
-        } else {
-            throw new RuntimeException("Record not found in Elasticsearch: " + esRecordId);
+        bulkRecordIndexer.index(convertToESEntity(record));
+    }
+
+    /**
+     * 把一批记录在 ES 中同步成数据库里的当前状态：仍存在的记录写入，已删除的记录删除，
+     * 并立即 flush，返回时这些操作已经写入 ES。
+     * 只依赖数据库的最新状态，重复执行或乱序执行结果都一样
+     */
+    @Transactional(readOnly = true)
+    public void syncRecordsToElasticsearch(Collection<Long> recordIds) {
+        List<TransactionRecord> records = transactionRecordDao.findAllById(recordIds);
+        records.forEach(record -> bulkRecordIndexer.index(convertToESEntity(record)));
+        Set<Long> existingIds = records.stream().map(TransactionRecord::getId).collect(Collectors.toSet());
+        recordIds.stream()
+                .filter(id -> !existingIds.contains(id))
+                .forEach(id -> bulkRecordIndexer.delete(String.valueOf(id)));
+        bulkRecordIndexer.flush();
+    }
+
+    /**
+     * 按 id keyset 分页重新索引一个账户的全部记录，返回索引的记录数。
+     * 先用 delete-by-query 清掉该账户在 ES 里的全部文档，数据库里已经不存在的记录不会残留在索引里；
+     * 清理之后到重建完成之前，该账户的搜索结果不完整
+     */
+    public long reindexAccount(Long accountId) {
+        String indexName = indexName();
+        // 先写出缓冲区里的操作，避免它们在清理之后才落到 ES
+        bulkRecordIndexer.flush();
+        try {
+            elasticsearchClient.deleteByQuery(d -> d
+                    .index(indexName)
+                    .query(q -> q.term(t -> t.field("accountId").value(String.valueOf(accountId))))
+                    .conflicts(Conflicts.Proceed)
+                    .refresh(true));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to clear documents of account " + accountId + ": " + e.getMessage(), e);
+        }
+        return reindex(lastId -> transactionRecordDao.findNextChunkByAccountId(accountId, lastId, PageRequest.of(0, reindexPageSize)));
+    }
+
+    /**
+     * 全量重建索引：重建期间关闭索引的自动 refresh，完成后恢复成原来的 refresh_interval 并手动 refresh 一次。
+     * 读不到原来的值时不修改设置，只影响重建速度
+     */
+    public long reindexAll() {
+        String indexName = indexName();
+        String previousInterval = currentRefreshInterval(indexName);
+        if (previousInterval != null) {
+            setRefreshInterval(indexName, "-1");
+        }
+        try {
+            return reindex(lastId -> transactionRecordDao.findNextChunk(lastId, PageRequest.of(0, reindexPageSize)));
+        } finally {
+            if (previousInterval != null) {
+                setRefreshInterval(indexName, previousInterval);
+            }
+            try {
+                elasticsearchClient.indices().refresh(r -> r.index(indexName));
+            } catch (Exception e) {
+                log.warn("Failed to refresh index {} after rebuild: {}", indexName, e.getMessage());
+            }
+        }
+    }
+
+    // 每一页在独立的只读查询里读取，处理完即可回收，内存占用与总记录数无关
+    private long reindex(LongFunction<List<TransactionRecord>> nextChunk) {
+        long lastId = 0;
+        long indexed = 0;
+        List<TransactionRecord> chunk = nextChunk.apply(lastId);
+        while (!chunk.isEmpty()) {
+            chunk.forEach(record -> bulkRecordIndexer.index(convertToESEntity(record)));
+            indexed += chunk.size();
+            lastId = chunk.get(chunk.size() - 1).getId();
+            chunk = chunk.size() < reindexPageSize ? List.of() : nextChunk.apply(lastId);
+        }
+        bulkRecordIndexer.flush();
+        log.info("Reindexed {} transaction records", indexed);
+        return indexed;
+    }
+
+    private String indexName() {
+        return elasticsearchOperations.getIndexCoordinatesFor(TransactionRecordES.class).getIndexName();
+    }
+
+    // 显式设置的值优先，没有设置过时取 ES 的默认值
+    private String currentRefreshInterval(String indexName) {
+        try {
+            IndexState state = elasticsearchClient.indices()
+                    .getSettings(g -> g.index(indexName).includeDefaults(true))
+                    .get(indexName);
+            if (state == null) {
+                return null;
+            }
+            Time interval = refreshIntervalOf(state.settings());
+            if (interval == null) {
+                interval = refreshIntervalOf(state.defaults());
+            }
+            if (interval == null) {
+                return null;
+            }
+            return interval.isTime() ? interval.time() : String.valueOf(interval.offset());
+        } catch (Exception e) {
+            log.warn("Failed to read refresh_interval of index {}: {}", indexName, e.getMessage());
+            return null;
+        }
+    }
+
+    // 设置可能是扁平的 refresh_interval，也可能嵌套在 index 下面
+    private static Time refreshIntervalOf(IndexSettings settings) {
+        if (settings == null) {
+            return null;
+        }
+        if (settings.refreshInterval() != null) {
+            return settings.refreshInterval();
+        }
+        return settings.index() == null ? null : settings.index().refreshInterval();
+    }
+
+    private void setRefreshInterval(String indexName, String interval) {
+        try {
+            elasticsearchClient.indices().putSettings(p -> p
+                    .index(indexName)
+                    .settings(s -> s.refreshInterval(t -> t.time(interval))));
+        } catch (Exception e) {
+            log.warn("Failed to set refresh_interval={} on index {}: {}", interval, indexName, e.getMessage());
         }
     }
 
@@ -69,4 +202,4 @@ public class RecordSyncService {
         esRecord.setAccountId(String.valueOf(record.getAccount().getId()));
         return esRecord;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,208 @@
+package com.example.demo.service.fraud;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 单个账户最近 capacity 条交易的环形缓冲区，字段按列存成基本类型数组，
+ * 文本（类型 + 分类、支付方式、交易对方）只保存哈希值。
+ * 每个分类维护缓冲区内记录的 count / sum / sumSq，用于 O(1) 计算均值和标准差。
+ *
+ * 非线程安全，由 FraudPreScreener 按账户加锁
+ */
+public final class AccountActivityWindow {
+    private final long[] times;
+    private final long[] amountCents;
+    private final int[] categoryKeys;
+    private final int[] methodKeys;
+    private final int[] counterpartyKeys;
+    private int head;
+    private int size;
+
+    // 缓冲区内不同分类最多 capacity 个，槽位计数为 0 时可复用
+    private final int[] statKeys;
+    private final int[] statCounts;
+    private final double[] statSums;
+    private final double[] statSumSqs;
+
+    public AccountActivityWindow(int capacity) {
+        times = new long[capacity];
+        amountCents = new long[capacity];
+        categoryKeys = new int[capacity];
+        methodKeys = new int[capacity];
+        counterpartyKeys = new int[capacity];
+        statKeys = new int[capacity];
+        statCounts = new int[capacity];
+        statSums = new double[capacity];
+        statSumSqs = new double[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 用已有记录打分，再把当前记录写入缓冲区
+     */
+    public FraudScore scoreAndAdd(FraudRules rules, long timeMillis, String type, String category,
+                                  double amount, String method, String counterparty) {
+        long cents = Math.round(amount * 100);
+        int categoryKey = key(type) * 31 + key(category);
+        int methodKey = key(method);
+        int counterpartyKey = key(counterparty);
+
+        FraudScore score = score(rules, timeMillis, cents, amount, categoryKey, methodKey, counterpartyKey);
+        add(timeMillis, cents, categoryKey, methodKey, counterpartyKey);
+        return score;
+    }
+
+    /**
+     * 只打分不写入，记录在事务提交后再通过 add 写入
+     */
+    public FraudScore score(FraudRules rules, long timeMillis, String type, String category,
+                            double amount, String method, String counterparty) {
+        return score(rules, timeMillis, Math.round(amount * 100), amount,
+                key(type) * 31 + key(category), key(method), key(counterparty));
+    }
+
+    /**
+     * 只写入不打分，用于从数据库回放历史记录，以及写入已提交的新记录
+     */
+    public void add(long timeMillis, String type, String category, double amount, String method, String counterparty) {
+        add(timeMillis, Math.round(amount * 100), key(type) * 31 + key(category), key(method), key(counterparty));
+    }
+
+    private FraudScore score(FraudRules rules, long timeMillis, long cents, double amount,
+                             int categoryKey, int methodKey, int counterpartyKey) {
+        int sameAmount = 0;
+        int sameCounterparty = 0;
+        int recent = 0;
+        boolean methodSeen = false;
+        for (int i = 0; i < size; i++) {
+            long gap = Math.abs(timeMillis - times[i]);
+            if (gap <= rules.duplicateWindowMillis()) {
+                if (amountCents[i] == cents && categoryKeys[i] == categoryKey) {
+                    sameAmount++;
+                }
+                if (counterpartyKey != 0 && counterpartyKeys[i] == counterpartyKey) {
+                    sameCounterparty++;
+                }
+            }
+            if (gap <= rules.velocityWindowMillis()) {
+                recent++;
+            }
+            methodSeen |= methodKeys[i] == methodKey;
+        }
+
+        int points = 0;
+        List<String> reasons = null;
+        if (sameAmount > 0) {
+            points += FraudRules.DUPLICATE_AMOUNT_POINTS;
+            reasons = reason(reasons, sameAmount + " earlier record(s) with the same amount and category within the duplicate window");
+        }
+        if (sameCounterparty > 0) {
+            points += FraudRules.DUPLICATE_COUNTERPARTY_POINTS;
+            reasons = reason(reasons, sameCounterparty + " earlier record(s) with the same description within the duplicate window");
+        }
+        if (recent + 1 >= rules.velocityLimit()) {
+            points += FraudRules.VELOCITY_POINTS;
+            reasons = reason(reasons, (recent + 1) + " records within the velocity window");
+        }
+        int slot = findStat(categoryKey);
+        if (slot >= 0 && statCounts[slot] >= rules.minCategorySamples()) {
+            double mean = statSums[slot] / statCounts[slot];
+            double std = Math.sqrt(Math.max(0, statSumSqs[slot] / statCounts[slot] - mean * mean));
+            // 同类金额完全一致时标准差为 0，按超过均值 3 倍处理
+            double z = std > 1e-9 ? (amount - mean) / std : (amount > mean * 3 ? Double.MAX_VALUE : 0);
+            if (z >= rules.zScoreThreshold() * 2) {
+                points += FraudRules.EXTREME_OUTLIER_POINTS;
+                reasons = reason(reasons, outlierReason(amount, mean, z));
+            } else if (z >= rules.zScoreThreshold()) {
+                points += FraudRules.AMOUNT_OUTLIER_POINTS;
+                reasons = reason(reasons, outlierReason(amount, mean, z));
+            }
+        }
+        if (!methodSeen && methodKey != 0 && size >= rules.minHistory()) {
+            points += FraudRules.NEW_METHOD_POINTS;
+            reasons = reason(reasons, "transaction method not used in recent history");
+        }
+        return points == 0 ? FraudScore.CLEAN : new FraudScore(points, reasons);
+    }
+
+    private void add(long timeMillis, long cents, int categoryKey, int methodKey, int counterpartyKey) {
+        int index;
+        if (size < times.length) {
+            index = (head + size) % times.length;
+            size++;
+        } else {
+            // 缓冲区已满，覆盖最旧的一条并从分类统计中扣除
+            index = head;
+            head = (head + 1) % times.length;
+            removeStat(categoryKeys[index], amountCents[index] / 100.0);
+        }
+        times[index] = timeMillis;
+        amountCents[index] = cents;
+        categoryKeys[index] = categoryKey;
+        methodKeys[index] = methodKey;
+        counterpartyKeys[index] = counterpartyKey;
+        addStat(categoryKey, cents / 100.0);
+    }
+
+    private int findStat(int categoryKey) {
+        for (int i = 0; i < statKeys.length; i++) {
+            if (statCounts[i] > 0 && statKeys[i] == categoryKey) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void addStat(int categoryKey, double amount) {
+        int slot = findStat(categoryKey);
+        if (slot < 0) {
+            slot = 0;
+            while (statCounts[slot] > 0) {
+                slot++;
+            }
+            statKeys[slot] = categoryKey;
+            statSums[slot] = 0;
+            statSumSqs[slot] = 0;
+        }
+        statCounts[slot]++;
+        statSums[slot] += amount;
+        statSumSqs[slot] += amount * amount;
+    }
+
+    private void removeStat(int categoryKey, double amount) {
+        int slot = findStat(categoryKey);
+        if (slot >= 0) {
+            statCounts[slot]--;
+            statSums[slot] -= amount;
+            statSumSqs[slot] -= amount * amount;
+        }
+    }
+
+    private static List<String> reason(List<String> reasons, String reason) {
+        if (reasons == null) {
+            reasons = new ArrayList<>(4);
+        }
+        reasons.add(reason);
+        return reasons;
+    }
+
+    private static String outlierReason(double amount, double mean, double z) {
+        return z == Double.MAX_VALUE
+                ? String.format(Locale.ROOT, "amount %.2f is far above the category average %.2f", amount, mean)
+                : String.format(Locale.ROOT, "amount %.2f is %.1f standard deviations above the category average %.2f", amount, z, mean);
+    }
+
+    // 空文本记为 0，大小写和首尾空格不影响匹配
+    private static int key(String text) {
+        if (text == null || text.isBlank()) {
+            return 0;
+        }
+        int hash = text.trim().toLowerCase(Locale.ROOT).hashCode();
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.demo.service.fraud;
+
+import com.example.demo.config.cache.SingleFlightCache;
+import com.example.demo.model.TransactionRecord;
+import com.example.demo.model.dto.TransactionRecordView;
+import com.example.demo.repository.TransactionRecordDao;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * AI 欺诈分析前的规则预筛：同金额 / 同对方重复、交易频率、同类金额 z-score、新支付方式。
+ * 每个账户在进程内保留最近 history-size 条记录的 AccountActivityWindow，
+ * 缓存未命中时从数据库回放最近的记录；只有分数达到 threshold 的记录才发给 AI 分析。
+ * 窗口只包含已提交的记录
+ */
+@Slf4j
+@Service
+public class FraudPreScreener {
+    private final TransactionRecordDao transactionRecordDao;
+    private final FraudRules rules;
+    private final boolean enabled;
+    private final int threshold;
+    private final int historySize;
+    private final SingleFlightCache<Long, AccountActivityWindow> windows;
+    private final Counter screenedCounter;
+    private final Counter escalatedCounter;
+
+    @Autowired
+    public FraudPreScreener(TransactionRecordDao transactionRecordDao,
+                            MeterRegistry meterRegistry,
+                            @Value("${fraud.prescreen.enabled:true}") boolean enabled,
+                            @Value("${fraud.prescreen.threshold:50}") int threshold,
+                            @Value("${fraud.prescreen.history-size:64}") int historySize,
+                            @Value("${fraud.prescreen.max-accounts:100000}") long maxAccounts,
+                            @Value("${fraud.prescreen.duplicate-window-minutes:1440}") long duplicateWindowMinutes,
+                            @Value("${fraud.prescreen.velocity-window-minutes:10}") long velocityWindowMinutes,
+                            @Value("${fraud.prescreen.velocity-limit:5}") int velocityLimit,
+                            @Value("${fraud.prescreen.z-score-threshold:3.0}") double zScoreThreshold) {
+        this.transactionRecordDao = transactionRecordDao;
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.historySize = historySize;
+        FraudRules defaults = FraudRules.defaults();
+        this.rules = new FraudRules(Duration.ofMinutes(duplicateWindowMinutes).toMillis(),
+                Duration.ofMinutes(velocityWindowMinutes).toMillis(), velocityLimit, zScoreThreshold,
+                defaults.minCategorySamples(), defaults.minHistory());
+        this.windows = new SingleFlightCache<>(Caffeine.newBuilder()
+                .maximumSize(maxAccounts)
+                .expireAfterAccess(Duration.ofDays(1))
+                .<Long, AccountActivityWindow>build());
+        this.screenedCounter = meterRegistry.counter("fraud.prescreen.screened");
+        this.escalatedCounter = meterRegistry.counter("fraud.prescreen.escalated");
+    }
+
+    /**
+     * 给刚保存的记录打分并写入账户的滑动窗口。record 必须已有 id，回放历史时会跳过它本身。
+     * 在事务里调用时只打分，记录在事务提交后才写入窗口，回滚不会在窗口里留下不存在的记录
+     */
+    public FraudScore screen(Long accountId, TransactionRecord record) {
+        screenedCounter.increment();
+        AccountActivityWindow window = window(accountId, record.getId());
+        long timeMillis = record.getTransactionTime() != null
+                ? record.getTransactionTime().toInstant().toEpochMilli()
+                : System.currentTimeMillis();
+        double amount = record.getAmount() != null ? record.getAmount() : 0;
+        String type = record.getType();
+        String category = record.getCategory();
+        String method = record.getTransactionMethod();
+        String counterparty = record.getTransactionDescription();
+        FraudScore score;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            synchronized (window) {
+                score = window.score(rules, timeMillis, type, category, amount, method, counterparty);
+            }
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    addCommitted(accountId, window, timeMillis, type, category, amount, method, counterparty);
+                }
+            });
+        } else {
+            synchronized (window) {
+                score = window.scoreAndAdd(rules, timeMillis, type, category, amount, method, counterparty);
+            }
+        }
+        if (shouldEscalate(score)) {
+            escalatedCounter.increment();
+        }
+        return score;
+    }
+
+    public boolean shouldEscalate(FraudScore score) {
+        return !enabled || score.score() >= threshold;
+    }
+
+    // 记录被修改或删除后窗口里的数据不再准确，下次打分时重新从数据库回放
+    public void invalidate(Long accountId) {
+        windows.invalidate(accountId);
+    }
+
+    // 打分之后窗口被失效或重新加载过时，新窗口可能是在提交前从数据库回放的，缺少这条记录，直接让它下次重新回放
+    private void addCommitted(Long accountId, AccountActivityWindow scored, long timeMillis, String type, String category,
+                              double amount, String method, String counterparty) {
+        if (windows.getIfPresent(accountId) != scored) {
+            windows.invalidate(accountId);
+            return;
+        }
+        synchronized (scored) {
+            scored.add(timeMillis, type, category, amount, method, counterparty);
+        }
+    }
+
+    // 同一账户并发未命中时只回放一次；回放期间被 invalidate 的窗口不会写回缓存
+    private AccountActivityWindow window(Long accountId, Long excludeRecordId) {
+        return windows.get(accountId, id -> loadWindow(id, excludeRecordId));
+    }
+
+    private AccountActivityWindow loadWindow(Long accountId, Long excludeRecordId) {
+        AccountActivityWindow window = new AccountActivityWindow(historySize);
+        List<TransactionRecordView> recent = transactionRecordDao.findFirstPage(accountId, PageRequest.of(0, historySize + 1));
+        // 查询结果按时间倒序，回放时从最旧的开始
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            TransactionRecordView view = recent.get(i);
+            if (excludeRecordId != null && view.id() == excludeRecordId) {
+                continue;
+            }
+            window.add(view.transactionTime() != null ? view.transactionTime().toInstant().toEpochMilli() : 0,
+                    view.type(), view.category(), view.amount() != null ? view.amount() : 0,
+                    view.transactionMethod(), view.transactionDescription());
+        }
+        log.debug("Loaded {} recent records into the fraud window of account {}", window.size(), accountId);
+        return window;
+    }
+}
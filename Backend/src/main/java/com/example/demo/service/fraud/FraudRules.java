@@ -0,0 +1,29 @@
+package com.example.demo.service.fraud;
+
+/**
+ * 预筛规则的参数，时间窗口都以毫秒计
+ *
+ * @param duplicateWindowMillis  同金额 / 同对方的重复交易窗口
+ * @param velocityWindowMillis   交易频率窗口
+ * @param velocityLimit          窗口内（含当前记录）达到多少笔算高频
+ * @param zScoreThreshold        金额相对同类交易的 z-score 阈值
+ * @param minCategorySamples     同类交易少于这个数时不计算 z-score
+ * @param minHistory             账户历史少于这个数时不判断“新支付方式”
+ */
+public record FraudRules(long duplicateWindowMillis,
+                         long velocityWindowMillis,
+                         int velocityLimit,
+                         double zScoreThreshold,
+                         int minCategorySamples,
+                         int minHistory) {
+    static final int DUPLICATE_AMOUNT_POINTS = 35;
+    static final int DUPLICATE_COUNTERPARTY_POINTS = 25;
+    static final int VELOCITY_POINTS = 30;
+    static final int AMOUNT_OUTLIER_POINTS = 40;
+    static final int EXTREME_OUTLIER_POINTS = 60;
+    static final int NEW_METHOD_POINTS = 20;
+
+    public static FraudRules defaults() {
+        return new FraudRules(24 * 60 * 60 * 1000L, 10 * 60 * 1000L, 5, 3.0, 5, 5);
+    }
+}
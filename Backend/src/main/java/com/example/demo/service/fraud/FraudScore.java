@@ -0,0 +1,10 @@
+package com.example.demo.service.fraud;
+
+import java.util.List;
+
+/**
+ * 规则预筛的结果：score 是命中规则的分数之和，reasons 是命中的规则说明，会附在发给 AI 分析的内容里
+ */
+public record FraudScore(int score, List<String> reasons) {
+    public static final FraudScore CLEAN = new FraudScore(0, List.of());
+}
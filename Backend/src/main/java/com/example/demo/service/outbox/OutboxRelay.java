@@ -0,0 +1,255 @@
+package com.example.demo.service.outbox;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.example.demo.model.message.AnalyseRequest;
+import com.example.demo.model.outbox.OutboxEvent;
+import com.example.demo.model.outbox.OutboxStatus;
+import com.example.demo.repository.OutboxEventDao;
+import com.example.demo.service.es.RecordSyncService;
+import com.example.demo.service.rabbitmq.RabbitMQService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 后台投递 transaction_outbox：
+ * RECORD_CHANGED 按批合并后走 ES bulk，ANALYSE_REQUEST 逐条发送并等待 publisher confirm。
+ * 投递成功的事件直接删除，失败的按指数退避重试，超过最大次数标记为 FAILED。
+ * 投递是至少一次语义：ES 按记录当前状态同步，重复同步没有副作用；消息带固定的 messageId（outbox-{事件 id}），
+ * confirm 超时重发或发送后来不及删除事件造成的重复消息由 WarningRecordAnalyser 通过 MessageDeduplicator 跳过
+ */
+@Slf4j
+@Service
+public class OutboxRelay {
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxEventDao outboxEventDao;
+    private final RecordSyncService recordSyncService;
+    private final RabbitMQService rabbitMQService;
+    private final ObjectMapper objectMapper;
+
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+    private final long confirmTimeoutMillis;
+
+    private final AtomicLong pendingEvents = new AtomicLong();
+    private final AtomicLong failedEvents = new AtomicLong();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final Counter deliveredCounter;
+    private final Counter retriedCounter;
+    private final Counter deadCounter;
+
+    @Autowired
+    public OutboxRelay(OutboxEventDao outboxEventDao,
+                       RecordSyncService recordSyncService,
+                       RabbitMQService rabbitMQService,
+                       ObjectMapper objectMapper,
+                       MeterRegistry meterRegistry,
+                       @Value("${outbox.relay.batch-size:200}") int batchSize,
+                       @Value("${outbox.relay.max-attempts:10}") int maxAttempts,
+                       @Value("${outbox.relay.initial-backoff-ms:1000}") long initialBackoffMillis,
+                       @Value("${outbox.relay.max-backoff-ms:300000}") long maxBackoffMillis,
+                       @Value("${outbox.relay.lease-ms:60000}") long leaseMillis,
+                       @Value("${outbox.relay.confirm-timeout-ms:5000}") long confirmTimeoutMillis) {
+        this.outboxEventDao = outboxEventDao;
+        this.recordSyncService = recordSyncService;
+        this.rabbitMQService = rabbitMQService;
+        this.objectMapper = objectMapper;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoff = Duration.ofMillis(initialBackoffMillis);
+        this.maxBackoff = Duration.ofMillis(maxBackoffMillis);
+        this.lease = Duration.ofMillis(leaseMillis);
+        this.confirmTimeoutMillis = confirmTimeoutMillis;
+
+        Gauge.builder("outbox.pending", pendingEvents, AtomicLong::get)
+                .description("Outbox events waiting to be delivered")
+                .register(meterRegistry);
+        Gauge.builder("outbox.failed", failedEvents, AtomicLong::get)
+                .description("Outbox events that exhausted their retries")
+                .register(meterRegistry);
+        Gauge.builder("outbox.lag", lagMillis, AtomicLong::get)
+                .description("Age of the oldest pending outbox event")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        this.deliveredCounter = meterRegistry.counter("outbox.delivered");
+        this.retriedCounter = meterRegistry.counter("outbox.retried");
+        this.deadCounter = meterRegistry.counter("outbox.dead");
+    }
+
+    @Scheduled(fixedDelayString = "${outbox.relay.interval-ms:500}")
+    public void relay() {
+        try {
+            // 一次最多连续处理 10 批，避免长时间占用调度线程
+            for (int i = 0; i < 10 && relayBatch() == batchSize; i++) {
+                // 上一批是满的，说明还有积压，继续处理
+            }
+        } catch (Exception e) {
+            log.error("Outbox relay failed: {}", e.getMessage());
+        } finally {
+            refreshMetrics();
+        }
+    }
+
+    /**
+     * 认领并投递一批到期事件，返回本批认领到的事件数
+     */
+    int relayBatch() {
+        Instant now = Instant.now();
+        List<Long> dueIds = outboxEventDao.findDueIds(OutboxStatus.PENDING, now, PageRequest.of(0, batchSize));
+        if (dueIds.isEmpty()) {
+            return 0;
+        }
+        String claimToken = UUID.randomUUID().toString();
+        outboxEventDao.claim(dueIds, OutboxStatus.PENDING, now, now.plus(lease), claimToken);
+        List<OutboxEvent> events = outboxEventDao.findByClaimTokenOrderByIdAsc(claimToken);
+
+        List<OutboxEvent> recordEvents = new ArrayList<>();
+        List<OutboxEvent> reindexEvents = new ArrayList<>();
+        List<OutboxEvent> messageEvents = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            switch (event.getEventType()) {
+                case RECORD_CHANGED -> recordEvents.add(event);
+                case ACCOUNT_REINDEX -> reindexEvents.add(event);
+                default -> messageEvents.add(event);
+            }
+        }
+
+        List<OutboxEvent> delivered = new ArrayList<>();
+        List<OutboxEvent> failed = new ArrayList<>();
+        deliverRecordEvents(recordEvents, delivered, failed);
+        deliverReindexEvents(reindexEvents, delivered, failed);
+        deliverMessageEvents(messageEvents, delivered, failed);
+
+        if (!delivered.isEmpty()) {
+            outboxEventDao.deleteAllInBatch(delivered);
+            deliveredCounter.increment(delivered.size());
+        }
+        if (!failed.isEmpty()) {
+            failed.forEach(event -> scheduleRetry(event, now));
+            outboxEventDao.saveAll(failed);
+        }
+        return events.size();
+    }
+
+    // 同一条记录在一批里可能有多次变更，合并后只同步一次
+    private void deliverRecordEvents(List<OutboxEvent> events, List<OutboxEvent> delivered, List<OutboxEvent> failed) {
+        if (events.isEmpty()) {
+            return;
+        }
+        Set<Long> recordIds = new LinkedHashSet<>();
+        events.forEach(event -> recordIds.add(Long.valueOf(event.getAggregateId())));
+        try {
+            recordSyncService.syncRecordsToElasticsearch(recordIds);
+            delivered.addAll(events);
+        } catch (Exception e) {
+            log.warn("Elasticsearch sync of {} records failed: {}", recordIds.size(), e.getMessage());
+            events.forEach(event -> markFailed(event, e.getMessage(), failed));
+        }
+    }
+
+    // 同一账户在一批里只重建一次
+    private void deliverReindexEvents(List<OutboxEvent> events, List<OutboxEvent> delivered, List<OutboxEvent> failed) {
+        Map<Long, List<OutboxEvent>> byAccount = new LinkedHashMap<>();
+        events.forEach(event -> byAccount.computeIfAbsent(Long.valueOf(event.getAggregateId()), id -> new ArrayList<>()).add(event));
+        byAccount.forEach((accountId, accountEvents) -> {
+            try {
+                recordSyncService.reindexAccount(accountId);
+                delivered.addAll(accountEvents);
+            } catch (Exception e) {
+                log.warn("Elasticsearch reindex of account {} failed: {}", accountId, e.getMessage());
+                accountEvents.forEach(event -> markFailed(event, e.getMessage(), failed));
+            }
+        });
+    }
+
+    // 先把整批消息发出去，再统一等待 confirm，不用每条消息都等一次往返
+    private void deliverMessageEvents(List<OutboxEvent> events, List<OutboxEvent> delivered, List<OutboxEvent> failed) {
+        List<Map.Entry<OutboxEvent, CorrelationData>> pendingConfirms = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            try {
+                AnalyseRequest request = objectMapper.readValue(event.getPayload(), AnalyseRequest.class);
+                pendingConfirms.add(Map.entry(event, rabbitMQService.sendAnalyseRequestWithConfirm(request, "outbox-" + event.getId())));
+            } catch (Exception e) {
+                markFailed(event, e.getMessage(), failed);
+            }
+        }
+        for (Map.Entry<OutboxEvent, CorrelationData> pending : pendingConfirms) {
+            OutboxEvent event = pending.getKey();
+            CorrelationData correlationData = pending.getValue();
+            try {
+                CorrelationData.Confirm confirm = correlationData.getFuture().get(confirmTimeoutMillis, TimeUnit.MILLISECONDS);
+                if (confirm.isAck() && correlationData.getReturned() == null) {
+                    delivered.add(event);
+                } else {
+                    markFailed(event, confirm.isAck() ? "Message returned as unroutable" : "Broker nack: " + confirm.getReason(), failed);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                markFailed(event, "Interrupted while waiting for publisher confirm", failed);
+            } catch (Exception e) {
+                markFailed(event, "Publisher confirm not received: " + e.getMessage(), failed);
+            }
+        }
+    }
+
+    private void markFailed(OutboxEvent event, String error, List<OutboxEvent> failed) {
+        event.setLastError(error == null ? null : error.substring(0, Math.min(error.length(), MAX_ERROR_LENGTH)));
+        failed.add(event);
+    }
+
+    private void scheduleRetry(OutboxEvent event, Instant now) {
+        event.setAttempts(event.getAttempts() + 1);
+        event.setClaimToken(null);
+        if (event.getAttempts() >= maxAttempts) {
+            event.setStatus(OutboxStatus.FAILED);
+            deadCounter.increment();
+            log.error("Outbox event {} ({}) failed after {} attempts: {}", event.getId(), event.getEventType(), event.getAttempts(), event.getLastError());
+        } else {
+            event.setNextAttemptAt(now.plus(backoff(event.getAttempts())));
+            retriedCounter.increment();
+        }
+    }
+
+    // 指数退避：initial * 2^(attempts - 1)，不超过 maxBackoff
+    Duration backoff(int attempts) {
+        long multiplier = 1L << Math.min(attempts - 1, 30);
+        Duration delay = initialBackoff.multipliedBy(multiplier);
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private void refreshMetrics() {
+        try {
+            pendingEvents.set(outboxEventDao.countByStatus(OutboxStatus.PENDING));
+            failedEvents.set(outboxEventDao.countByStatus(OutboxStatus.FAILED));
+            Instant oldest = outboxEventDao.findOldestCreatedAt(OutboxStatus.PENDING);
+            lagMillis.set(oldest == null ? 0 : Math.max(Duration.between(oldest, Instant.now()).toMillis(), 0));
+        } catch (Exception e) {
+            log.debug("Failed to refresh outbox metrics: {}", e.getMessage());
+        }
+    }
+}
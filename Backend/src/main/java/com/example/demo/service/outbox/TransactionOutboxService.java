@@ -0,0 +1,61 @@
+package com.example.demo.service.outbox;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.demo.model.message.AnalyseRequest;
+import com.example.demo.model.outbox.OutboxEvent;
+import com.example.demo.model.outbox.OutboxEventType;
+import com.example.demo.repository.OutboxEventDao;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * 把 Elasticsearch 同步和 RabbitMQ 消息写入 transaction_outbox，
+ * 和交易记录在同一个数据库事务里提交，请求本身不再等待 ES / MQ
+ */
+@Service
+public class TransactionOutboxService {
+    private final OutboxEventDao outboxEventDao;
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public TransactionOutboxService(OutboxEventDao outboxEventDao, ObjectMapper objectMapper) {
+        this.outboxEventDao = outboxEventDao;
+        this.objectMapper = objectMapper;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordChanged(Long recordId) {
+        recordsChanged(List.of(recordId));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordsChanged(Collection<Long> recordIds) {
+        List<OutboxEvent> events = recordIds.stream()
+                .map(id -> new OutboxEvent(OutboxEventType.RECORD_CHANGED, String.valueOf(id), null))
+                .toList();
+        outboxEventDao.saveAll(events);
+    }
+
+    // 批量导入不逐条写 RECORD_CHANGED，导入完成后重建整个账户的索引
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void accountReindex(Long accountId) {
+        outboxEventDao.save(new OutboxEvent(OutboxEventType.ACCOUNT_REINDEX, String.valueOf(accountId), null));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void analyseRequest(AnalyseRequest request) {
+        try {
+            String payload = objectMapper.writeValueAsString(request);
+            outboxEventDao.save(new OutboxEvent(OutboxEventType.ANALYSE_REQUEST, String.valueOf(request.getAccountId()), payload));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error serializing AnalyseRequest: " + e.getMessage(), e);
+        }
+    }
+}
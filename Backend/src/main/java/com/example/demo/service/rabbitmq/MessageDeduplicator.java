@@ -0,0 +1,60 @@
+package com.example.demo.service.rabbitmq;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 按 messageId 给消费端去重：第一次处理前用 SET NX EX 占住 processed_message:{messageId}，
+ * 占不到说明这条消息已经被处理过（publisher confirm 超时重发、relay 发送后崩溃、容器重新入队等），直接跳过。
+ * 处理没有完成就要交还的消息调用 {@link #release}，下次投递才会重新处理。
+ * Redis 不可用时放行，宁可重复分析也不丢消息
+ */
+@Slf4j
+@Component
+public class MessageDeduplicator {
+    static final String KEY_PREFIX = "processed_message:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final Duration ttl;
+
+    @Autowired
+    public MessageDeduplicator(StringRedisTemplate stringRedisTemplate,
+                               @Value("${rabbitmq.dedupe.ttl-hours:24}") long ttlHours) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.ttl = Duration.ofHours(ttlHours);
+    }
+
+    /**
+     * 占住这条消息，返回 false 表示已经处理过；没有 messageId 的消息无法去重，总是返回 true
+     */
+    public boolean claim(String messageId) {
+        if (messageId == null) {
+            return true;
+        }
+        try {
+            return !Boolean.FALSE.equals(stringRedisTemplate.opsForValue().setIfAbsent(KEY_PREFIX + messageId, "1", ttl));
+        } catch (RuntimeException e) {
+            log.warn("Failed to record message {} as processed, processing it anyway: {}", messageId, e.getMessage());
+            return true;
+        }
+    }
+
+    public void release(Collection<String> messageIds) {
+        List<String> keys = messageIds.stream().filter(id -> id != null).map(id -> KEY_PREFIX + id).toList();
+        if (keys.isEmpty()) {
+            return;
+        }
+        try {
+            stringRedisTemplate.delete(keys);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release {} processed-message markers: {}", keys.size(), e.getMessage());
+        }
+    }
+}
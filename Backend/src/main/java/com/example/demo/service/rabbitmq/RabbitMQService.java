@@ -1,7 +1,10 @@
 package com.example.demo.service.rabbitmq;
 
+import com.example.demo.config.rabbitmq.RabbitMQConfig;
 import com.example.demo.model.message.AnalyseRequest;
+import com.example.demo.model.message.FinancialReportMessage;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -27,10 +30,34 @@ public class RabbitMQService {
         }
     }
 
-    public void sendTransactionReportToChatbot(String report) {
+    /**
+     * 带 publisher confirm 的发送，消费端用 messageId 在 MessageDeduplicator 里去重，重发同一事件时要用同一个 messageId；
+     * 调用方通过返回的 CorrelationData 等待 broker 的 ack / nack
+     */
+    public CorrelationData sendAnalyseRequestWithConfirm(AnalyseRequest request, String messageId) {
+        return sendWithConfirm(RabbitMQConfig.ANALYSE_QUEUE, request, messageId);
+    }
+
+    /**
+     * 发到延迟重试队列，过期后回到 AI 分析队列；沿用原消息的 messageId，已经处理过的消息仍然会被去重
+     */
+    public CorrelationData sendAnalyseRetryWithConfirm(AnalyseRequest request, String messageId) {
+        return sendWithConfirm(RabbitMQConfig.ANALYSE_RETRY_QUEUE, request, messageId);
+    }
+
+    private CorrelationData sendWithConfirm(String queue, AnalyseRequest request, String messageId) {
+        CorrelationData correlationData = new CorrelationData(messageId);
+        rabbitTemplate.convertAndSend("", queue, request, message -> {
+            message.getMessageProperties().setMessageId(messageId);
+            return message;
+        }, correlationData);
+        return correlationData;
+    }
+
+    public void sendTransactionReportToChatbot(FinancialReportMessage report) {
         try {
             rabbitTemplate.convertAndSend("financial.report.to.chatbot", report);
-            log.info("report sent successfully to chatbot: {}", report);
+            log.info("report sent successfully to chatbot for userId: {}, conversationId: {}", report.getUserId(), report.getConversationId());
         } catch (Exception e) {
             log.error("Error sending report to chat bot: {}", e.getMessage());
             throw new RuntimeException("Error sending report to chatbot: " + e.getMessage());
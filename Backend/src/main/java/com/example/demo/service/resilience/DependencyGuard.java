@@ -0,0 +1,297 @@
+package com.example.demo.service.resilience;
+
+import com.example.demo.exception.DependencyUnavailableException;
+import com.example.demo.exception.UpstreamFailureException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * 一类外部依赖的隔离舱：独立命名的有界线程池（队列满时拒绝），
+ * 信号量限制同时在途的调用数，每次调用有超时，可选的熔断器在依赖持续失败时快速失败。
+ * 被拒绝、超时和熔断打开都抛出 DependencyUnavailableException，不会占住调用方的线程等待一个已经挂掉的依赖。
+ * 调用抛出的异常是否计入熔断由调用方传入的分类决定，见 {@link #isUpstreamFailure}
+ */
+@Slf4j
+public class DependencyGuard {
+    /**
+     * poolSize / queueCapacity: 线程池大小和排队上限；maxConcurrent / maxWaitMillis: 信号量隔离舱；
+     * timeoutMillis: 单次调用超时；breaker* 为 0 时不启用熔断
+     */
+    public record Settings(int poolSize, int queueCapacity, int maxConcurrent, long maxWaitMillis, long timeoutMillis,
+                           int breakerWindow, int breakerMinimumCalls, int breakerFailureRate,
+                           long breakerOpenMillis, int breakerHalfOpenCalls) {
+        public boolean breakerEnabled() {
+            return breakerWindow > 0;
+        }
+    }
+
+    private final String name;
+    private final Settings settings;
+    private final ThreadPoolExecutor pool;
+    private final ExecutorService monitoredPool;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker breaker;
+
+    private final Counter bulkheadFull;
+    private final Counter queueFull;
+    private final Counter timeouts;
+    private final Counter breakerRejected;
+    private final Timer calls;
+
+    public DependencyGuard(String name, Settings settings, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.settings = settings;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(settings.poolSize(), settings.poolSize(), 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(settings.queueCapacity()),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.pool.allowCoreThreadTimeOut(true);
+        // executor.pool.size / active / queued / completed 等指标，tag name=<依赖名>
+        this.monitoredPool = ExecutorServiceMetrics.monitor(meterRegistry, pool, name, List.of());
+        this.bulkhead = new Semaphore(settings.maxConcurrent(), true);
+        this.breaker = settings.breakerEnabled()
+                ? new CircuitBreaker(settings.breakerWindow(), settings.breakerMinimumCalls(), settings.breakerFailureRate(),
+                settings.breakerOpenMillis(), settings.breakerHalfOpenCalls(), System::currentTimeMillis)
+                : null;
+
+        this.bulkheadFull = rejections(meterRegistry, "bulkhead");
+        this.queueFull = rejections(meterRegistry, "queue");
+        this.timeouts = rejections(meterRegistry, "timeout");
+        this.breakerRejected = rejections(meterRegistry, "circuit-open");
+        this.calls = Timer.builder("dependency.calls")
+                .description("Calls that passed the bulkhead, including failures")
+                .tag("dependency", name)
+                .register(meterRegistry);
+        Gauge.builder("dependency.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("Free bulkhead permits")
+                .tag("dependency", name)
+                .register(meterRegistry);
+        Gauge.builder("dependency.pool.saturation", pool, DependencyGuard::saturation)
+                .description("Busy threads plus queued tasks over pool size plus queue capacity")
+                .tag("dependency", name)
+                .register(meterRegistry);
+        if (breaker != null) {
+            // 0 = CLOSED, 1 = OPEN, 2 = HALF_OPEN
+            Gauge.builder("dependency.circuit.state", breaker, b -> b.state().ordinal())
+                    .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                    .tag("dependency", name)
+                    .register(meterRegistry);
+        }
+    }
+
+    /**
+     * 在该依赖的线程池里执行一次阻塞调用，调用方最多等待 timeout；task 抛出的任何异常都计入熔断统计
+     *
+     * @throws DependencyUnavailableException 熔断打开、隔离舱满、排队被拒绝或超时
+     */
+    public <T> T call(Callable<T> task) {
+        return call(task, error -> true);
+    }
+
+    /**
+     * 同 {@link #call(Callable)}，只有 isFailure 返回 true 的异常计入熔断失败；
+     * 其他异常说明依赖正常应答了一个错误请求，按成功记录，照常抛给调用方。超时总是算失败
+     */
+    public <T> T call(Callable<T> task, Predicate<Throwable> isFailure) {
+        acquire();
+        Future<T> future;
+        try {
+            future = monitoredPool.submit(task);
+        } catch (RejectedExecutionException e) {
+            // 本地排队已满，依赖本身没有被调用，不计入熔断统计
+            bulkhead.release();
+            if (breaker != null) {
+                breaker.cancel();
+            }
+            queueFull.increment();
+            throw new DependencyUnavailableException(name + " executor queue is full", e);
+        }
+        boolean success = false;
+        long start = System.nanoTime();
+        try {
+            try {
+                T result = future.get(settings.timeoutMillis(), TimeUnit.MILLISECONDS);
+                success = true;
+                return result;
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                timeouts.increment();
+                throw new DependencyUnavailableException(name + " call timed out after " + settings.timeoutMillis() + " ms", e);
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw new DependencyUnavailableException(name + " call interrupted", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                success = !isFailure.test(cause);
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new RuntimeException(cause);
+            }
+        } finally {
+            calls.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            release(success);
+        }
+    }
+
+    /**
+     * 流式调用：订阅时占用一个许可（不等待），流结束、出错或取消时释放；相邻两个元素间隔超过 timeout 视为超时
+     */
+    public <T> Flux<T> stream(Supplier<Flux<T>> source) {
+        return Flux.defer(() -> {
+            if (breaker != null && !breaker.tryAcquire()) {
+                breakerRejected.increment();
+                return Flux.error(new DependencyUnavailableException(name + " circuit breaker is open"));
+            }
+            if (!bulkhead.tryAcquire()) {
+                bulkheadFull.increment();
+                // 未实际调用，不计入熔断统计
+                if (breaker != null) {
+                    breaker.cancel();
+                }
+                return Flux.error(new DependencyUnavailableException(name + " bulkhead is full"));
+            }
+            long start = System.nanoTime();
+            return source.get()
+                    .timeout(Duration.ofMillis(settings.timeoutMillis()))
+                    .doOnComplete(() -> onOutcome(true))
+                    .doOnError(e -> {
+                        if (e instanceof TimeoutException) {
+                            timeouts.increment();
+                        }
+                        onOutcome(false);
+                    })
+                    .doOnCancel(() -> {
+                        // 客户端断开，结果未知，归还熔断许可
+                        if (breaker != null) {
+                            breaker.cancel();
+                        }
+                    })
+                    .doFinally(signal -> {
+                        calls.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        bulkhead.release();
+                    });
+        });
+    }
+
+    /**
+     * 供 @Async 使用的线程池本身（同样有界，队列满时抛 RejectedExecutionException）
+     */
+    public ExecutorService executor() {
+        return monitoredPool;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long timeoutMillis() {
+        return settings.timeoutMillis();
+    }
+
+    /**
+     * HTTP 依赖的失败分类：网络 / I/O 错误、5xx、429 限流、超时和 {@link UpstreamFailureException} 算依赖失败；
+     * 其他 4xx 和业务异常（不存在的股票代码、城市等）是请求本身的问题，不应该让所有用户都被熔断
+     */
+    public static boolean isUpstreamFailure(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            if (t instanceof RestClientResponseException response) {
+                int status = response.getStatusCode().value();
+                return status >= 500 || status == 429;
+            }
+            if (t instanceof UpstreamFailureException || t instanceof RestClientException
+                    || t instanceof IOException || t instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public CircuitBreaker.State circuitState() {
+        return breaker == null ? CircuitBreaker.State.CLOSED : breaker.state();
+    }
+
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    private void acquire() {
+        if (breaker != null && !breaker.tryAcquire()) {
+            breakerRejected.increment();
+            throw new DependencyUnavailableException(name + " circuit breaker is open");
+        }
+        boolean acquired;
+        try {
+            acquired = bulkhead.tryAcquire(settings.maxWaitMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            bulkheadFull.increment();
+            if (breaker != null) {
+                breaker.cancel();
+            }
+            throw new DependencyUnavailableException(name + " bulkhead is full");
+        }
+    }
+
+    private void release(boolean success) {
+        bulkhead.release();
+        onOutcome(success);
+    }
+
+    private void onOutcome(boolean success) {
+        if (breaker == null) {
+            return;
+        }
+        if (success) {
+            breaker.onSuccess();
+        } else {
+            breaker.onFailure();
+        }
+    }
+
+    private Counter rejections(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("dependency.rejected")
+                .description("Calls refused without reaching the dependency")
+                .tag("dependency", name)
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    private static double saturation(ThreadPoolExecutor pool) {
+        int capacity = pool.getMaximumPoolSize() + pool.getQueue().size() + pool.getQueue().remainingCapacity();
+        return (double) (pool.getActiveCount() + pool.getQueue().size()) / capacity;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.demo.service.resilience;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 每类外部依赖一个 DependencyGuard，参数从 resilience.{name}.* 读取，没有配置时使用这里的默认值。
+ * OpenAI、AlphaVantage、WeatherAPI 带熔断；ES、S3 和 Agent 工具只有线程池、隔离舱和超时。
+ * 后台交易分析单独使用 openai-analyser，突发导入时不会占满交互式聊天的 OpenAI 许可
+ */
+@Component
+public class DependencyGuards {
+    public static final String OPENAI = "openai";
+    public static final String OPENAI_ANALYSER = "openai-analyser";
+    public static final String ALPHA_VANTAGE = "alphavantage";
+    public static final String WEATHER = "weather";
+    public static final String ELASTICSEARCH = "elasticsearch";
+    public static final String S3 = "s3";
+    public static final String TOOLS = "tools";
+
+    private final Map<String, DependencyGuard> guards = new LinkedHashMap<>();
+
+    @Autowired
+    public DependencyGuards(Environment environment, MeterRegistry meterRegistry) {
+        // LLM 调用慢但并发高：长超时，较大的池
+        register(environment, meterRegistry, OPENAI,
+                new DependencyGuard.Settings(32, 64, 48, 500, 60_000, 20, 10, 50, 30_000, 2));
+        // 后台分析没有用户在等：并发小、可以排队等久一些，熔断独立于聊天
+        register(environment, meterRegistry, OPENAI_ANALYSER,
+                new DependencyGuard.Settings(8, 64, 8, 10_000, 60_000, 20, 10, 50, 30_000, 2));
+        // AlphaVantage 免费额度每分钟 5 次，并发给太多只会更快被限流
+        register(environment, meterRegistry, ALPHA_VANTAGE,
+                new DependencyGuard.Settings(4, 16, 8, 200, 10_000, 10, 5, 50, 60_000, 1));
+        register(environment, meterRegistry, WEATHER,
+                new DependencyGuard.Settings(8, 32, 16, 200, 5_000, 20, 10, 50, 30_000, 2));
+        register(environment, meterRegistry, ELASTICSEARCH,
+                new DependencyGuard.Settings(16, 64, 32, 200, 5_000, 0, 0, 0, 0, 0));
+        register(environment, meterRegistry, S3,
+                new DependencyGuard.Settings(8, 100, 16, 1_000, 120_000, 0, 0, 0, 0, 0));
+        // Agent 工具的并发执行池，工具内部再经过各自依赖的隔离舱；超时是单次工具调用的上限
+        register(environment, meterRegistry, TOOLS,
+                new DependencyGuard.Settings(16, 64, 32, 200, 15_000, 0, 0, 0, 0, 0));
+    }
+
+    public DependencyGuard get(String name) {
+        DependencyGuard guard = guards.get(name);
+        if (guard == null) {
+            throw new IllegalArgumentException("Unknown dependency: " + name);
+        }
+        return guard;
+    }
+
+    public DependencyGuard openAi() {
+        return get(OPENAI);
+    }
+
+    public DependencyGuard openAiAnalyser() {
+        return get(OPENAI_ANALYSER);
+    }
+
+    public DependencyGuard alphaVantage() {
+        return get(ALPHA_VANTAGE);
+    }
+
+    public DependencyGuard weather() {
+        return get(WEATHER);
+    }
+
+    public DependencyGuard elasticsearch() {
+        return get(ELASTICSEARCH);
+    }
+
+    public DependencyGuard s3() {
+        return get(S3);
+    }
+
+    public DependencyGuard tools() {
+        return get(TOOLS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        guards.values().forEach(DependencyGuard::shutdown);
+    }
+
+    private void register(Environment environment, MeterRegistry meterRegistry, String name, DependencyGuard.Settings defaults) {
+        String prefix = "resilience." + name + ".";
+        DependencyGuard.Settings settings = new DependencyGuard.Settings(
+                environment.getProperty(prefix + "pool-size", Integer.class, defaults.poolSize()),
+                environment.getProperty(prefix + "queue-capacity", Integer.class, defaults.queueCapacity()),
+                environment.getProperty(prefix + "max-concurrent", Integer.class, defaults.maxConcurrent()),
+                environment.getProperty(prefix + "max-wait-ms", Long.class, defaults.maxWaitMillis()),
+                environment.getProperty(prefix + "timeout-ms", Long.class, defaults.timeoutMillis()),
+                environment.getProperty(prefix + "breaker.window", Integer.class, defaults.breakerWindow()),
+                environment.getProperty(prefix + "breaker.minimum-calls", Integer.class, defaults.breakerMinimumCalls()),
+                environment.getProperty(prefix + "breaker.failure-rate", Integer.class, defaults.breakerFailureRate()),
+                environment.getProperty(prefix + "breaker.open-ms", Long.class, defaults.breakerOpenMillis()),
+                environment.getProperty(prefix + "breaker.half-open-calls", Integer.class, defaults.breakerHalfOpenCalls()));
+        guards.put(name, new DependencyGuard(name, settings, meterRegistry));
+    }
+}
@@ -1,16 +1,12 @@
 package com.example.demo.service.security;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
@@ -21,21 +17,26 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.demo.repository.AccountDao;
 import com.example.demo.repository.TransactionUserDao;
 import com.example.demo.repository.UserRoleDao;
 import com.example.demo.exception.PasswordNotCorrectException;
 import com.example.demo.exception.UserAlreadyExistsException;
 import com.example.demo.exception.UserNotFoundException;
-import com.example.demo.model.Account;
+import com.example.demo.model.dto.AccountSummary;
 import com.example.demo.model.dto.TransactionUserDTO;
 import com.example.demo.model.redis.RedisAccount;
 import com.example.demo.model.redis.RedisUser;
 import com.example.demo.model.security.UserDetail;
 import com.example.demo.model.TransactionUser;
+import com.example.demo.service.session.UserSessionStore;
 import com.example.demo.model.security.UserRole;
 import com.example.demo.utility.jwt.JwtUtil;
 import com.example.demo.model.security.LoginVo;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
 @Service
 public class SecurityService {
     private static final Logger logger = LoggerFactory.getLogger(SecurityService.class);
@@ -43,17 +44,36 @@ public class SecurityService {
     private final TransactionUserDao transactionUserDao;
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final UserSessionStore userSessionStore;
     private final UserRoleDao userRoleDao;
+    private final UserDetailService userDetailService;
+    private final AccountDao accountDao;
+    // 登录耗时按阶段拆分（失败的调用同样计时）：auth = 按用户名查用户 + BCrypt 校验，BCrypt 占绝大部分；
+    // db = 账户摘要查询；redis = UserSessionStore.open：一次 HGET 读旧的 current_account，再一个 MULTI/EXEC 事务重写会话哈希
+    private final Timer authPhase;
+    private final Timer dbPhase;
+    private final Timer redisPhase;
 
     @Autowired
-    public SecurityService(PasswordEncoder passwordEncoder, TransactionUserDao transactionUserDao, AuthenticationManager authenticationManager, JwtUtil jwtUtil, RedisTemplate<String, Object> redisTemplate, UserRoleDao userRoleDao) {
+    public SecurityService(PasswordEncoder passwordEncoder, TransactionUserDao transactionUserDao, AuthenticationManager authenticationManager, JwtUtil jwtUtil, UserSessionStore userSessionStore, UserRoleDao userRoleDao, UserDetailService userDetailService, AccountDao accountDao, MeterRegistry meterRegistry) {
         this.passwordEncoder = passwordEncoder;
         this.transactionUserDao = transactionUserDao;
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
-        this.redisTemplate = redisTemplate;
+        this.userSessionStore = userSessionStore;
         this.userRoleDao = userRoleDao;
+        this.userDetailService = userDetailService;
+        this.accountDao = accountDao;
+        this.authPhase = loginPhaseTimer(meterRegistry, "auth");
+        this.dbPhase = loginPhaseTimer(meterRegistry, "db");
+        this.redisPhase = loginPhaseTimer(meterRegistry, "redis");
+    }
+
+    private static Timer loginPhaseTimer(MeterRegistry meterRegistry, String phase) {
+        return Timer.builder("auth.login.phase")
+                .description("Time spent in each phase of a login request")
+                .tag("phase", phase)
+                .register(meterRegistry);
     }
 
     @Transactional
@@ -79,7 +99,7 @@ public class SecurityService {
         logger.info("尝试登录用户: {}", loginVo.getUsername());
         try {
             UsernamePasswordAuthenticationToken authenticationToken = new UsernamePasswordAuthenticationToken(loginVo.getUsername(), loginVo.getPassword());
-            Authentication authentication = authenticationManager.authenticate(authenticationToken);
+            Authentication authentication = authPhase.record(() -> authenticationManager.authenticate(authenticationToken));
 
             UserDetail userDetail = (UserDetail) authentication.getPrincipal();
             TransactionUser transactionUser = userDetail.getTransactionUser();
@@ -87,9 +107,10 @@ public class SecurityService {
             // **生成token
             String token = jwtUtil.generateToken(transactionUser.getId(), transactionUser.getUsername(), transactionUser.getRole().getRoleName());
 
-            // **Redis 部分
-            saveRedisUser(transactionUser, token);
-            saveUserAccounts(transactionUser);
+            // **Redis 部分：账户用投影查询一次取出，不触发 accounts 的懒加载
+            List<AccountSummary> accounts = dbPhase.record(() -> accountDao.findSummariesByUserId(transactionUser.getId()));
+            redisPhase.record(() -> openSession(transactionUser, token, accounts));
+            userDetailService.cacheUser(transactionUser);
 
             //**保存
             logger.info("用户 {} 登录成功", loginVo.getUsername());
@@ -103,9 +124,8 @@ public class SecurityService {
         }
     }
 
-    // 提取的保存 Redis 用户信息的方法
-    private void saveRedisUser(TransactionUser transactionUser, String token) {
-        List<Account> accounts = transactionUser.getAccounts();
+    // 登录会话写入用户自己的 Redis 哈希，见 UserSessionStore
+    private void openSession(TransactionUser transactionUser, String token, List<AccountSummary> accounts) {
         RedisUser redisUser = new RedisUser(
                 transactionUser.getId(),
                 transactionUser.getUsername(),
@@ -114,32 +134,14 @@ public class SecurityService {
                 transactionUser.getAvatar(),
                 token
         );
-
-        String redisUserKey = "login_user:" + transactionUser.getId() + ":info";
-        redisTemplate.opsForValue().set(redisUserKey, redisUser, 1, TimeUnit.HOURS);
-    }
-
-    // 提取的保存用户账户信息的方法
-    private void saveUserAccounts(TransactionUser transactionUser) {
-        List<Account> accounts = transactionUser.getAccounts();
-        String userAccountsKey = "login_user:" + transactionUser.getId() + ":account:" + "initial placeholder";
-        if (accounts.isEmpty()) {
-            redisTemplate.opsForValue().set(userAccountsKey, new ArrayList<>(), 1, TimeUnit.HOURS);
-        } else {
-            List<Long> accountIds = accounts.stream().map(Account::getId).collect(Collectors.toList());
-            redisTemplate.opsForValue().set(userAccountsKey, accountIds, 1, TimeUnit.HOURS);
-
-            for (Account account : accounts) {
-                String redisAccountKey = "login_user:" + transactionUser.getId() + ":account:" + account.getId();
-                RedisAccount redisAccount = new RedisAccount(
-                        account.getId(),
-                        account.getAccountName(),
-                        account.getTotalIncome(),
-                        account.getTotalExpense()
-                );
-                redisTemplate.opsForValue().set(redisAccountKey, redisAccount, 1, TimeUnit.HOURS);
-            }
-        }
+        List<RedisAccount> redisAccounts = accounts.stream()
+                .map(account -> new RedisAccount(
+                        account.id(),
+                        account.accountName(),
+                        account.totalIncome(),
+                        account.totalExpense()))
+                .toList();
+        userSessionStore.open(redisUser, redisAccounts);
     }
 
     // update password
@@ -161,5 +163,6 @@ public class SecurityService {
         String encodedNewPassword = passwordEncoder.encode(newPassword);
         user.setPassword(encodedNewPassword);
         transactionUserDao.save(user);
+        userDetailService.evictUser(userId);
     }
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package com.example.demo.service.security;
 
+import com.example.demo.config.cache.SingleFlightCache;
 import com.example.demo.utility.jwt.JwtUtil;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -14,17 +17,34 @@ import com.example.demo.model.TransactionUser;
 import com.example.demo.model.security.UserDetail;
 import com.example.demo.model.security.UserRole;
 
+import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
 
 @Service
 public class UserDetailService implements UserDetailsService {
+    private static final long DEFAULT_CACHE_TTL_SECONDS = 30;
+    private static final long DEFAULT_CACHE_MAX_SIZE = 10_000;
+
     private final TransactionUserDao transactionUserDao;
     private final JwtUtil jwtUtil;
-    @Autowired
+    // 短 TTL 的本地 UserDetail 缓存，只服务于确实需要用户实体的场景
+    private final SingleFlightCache<Long, UserDetail> userDetailCache;
+
     public UserDetailService(TransactionUserDao transactionUserDao, JwtUtil jwtUtil) {
+        this(transactionUserDao, jwtUtil, DEFAULT_CACHE_TTL_SECONDS, DEFAULT_CACHE_MAX_SIZE);
+    }
+
+    @Autowired
+    public UserDetailService(TransactionUserDao transactionUserDao, JwtUtil jwtUtil,
+                             @Value("${security.user-detail-cache.ttl-seconds:30}") long cacheTtlSeconds,
+                             @Value("${security.user-detail-cache.max-size:10000}") long cacheMaxSize) {
         this.transactionUserDao = transactionUserDao;
         this.jwtUtil = jwtUtil;
+        this.userDetailCache = new SingleFlightCache<>(Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .maximumSize(cacheMaxSize)
+                .<Long, UserDetail>build());
     }
 
     @Override
@@ -32,16 +52,33 @@ public class UserDetailService implements UserDetailsService {
         // 通过用户名查找用户
         TransactionUser transactionUser = transactionUserDao.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-        //给用户赋予一个角色，并将其封装成UserDetail对象
-        UserRole userRole = transactionUser.getRole();
-        Collection<? extends GrantedAuthority> authorities = Collections.singleton(new SimpleGrantedAuthority(userRole.getRoleName()));
-        return new UserDetail(transactionUser, authorities);
+        return toUserDetail(transactionUser);
     }
 
     public UserDetails loadUserById(Long id) throws UsernameNotFoundException {
+        // 同一用户并发未命中时只查一次数据库；加载期间被 evictUser 的结果不会写回缓存
+        return userDetailCache.get(id, this::loadUserDetailFromDatabase);
+    }
+
+    // 登录成功后放入认证时刚从数据库读出的用户实体，登录后的第一批请求不必再查询数据库。
+    // 不能直接缓存认证返回的 principal：AuthenticationManager 认证后会擦除它的密码，
+    // 这里用实体重新构造一个 UserDetail，缓存里的副本保留完整的凭据
+    public void cacheUser(TransactionUser transactionUser) {
+        userDetailCache.put(transactionUser.getId(), toUserDetail(transactionUser));
+    }
+
+    // 用户密码、资料变更或被删除时调用，保证缓存里不会留下过期的用户实体
+    public void evictUser(Long id) {
+        userDetailCache.invalidate(id);
+    }
+
+    private UserDetail loadUserDetailFromDatabase(Long id) {
         TransactionUser transactionUser = transactionUserDao.findById(id)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        return toUserDetail(transactionUser);
+    }
 
+    private static UserDetail toUserDetail(TransactionUser transactionUser) {
         //给用户赋予一个角色，并将其封装成UserDetail对象
         UserRole userRole = transactionUser.getRole();
         Collection<? extends GrantedAuthority> authorities = Collections.singleton(new SimpleGrantedAuthority(userRole.getRoleName()));
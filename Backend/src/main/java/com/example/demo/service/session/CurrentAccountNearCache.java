@@ -0,0 +1,213 @@
+package com.example.demo.service.session;
+
+import com.example.demo.config.cache.SingleFlightCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * 每个实例本地的 current_account 近端缓存，userId -> 当前账户 id（没有选择账户时缓存 Optional.empty()）。
+ * 失效有两个来源：
+ * <ul>
+ *     <li>UserSessionStore 修改 current_account 字段后调用 {@link #currentAccountChanged}，本实例同步失效，
+ *     其他实例通过 session:current-account 频道收到 "{实例 id} {userId}" 后失效；</li>
+ *     <li>login_user:{userId} 被删除、过期或淘汰时的 Redis 键空间通知（del / expired / evicted ...）。
+ *     哈希字段命令（hset / hdel ...）的通知不带字段名，写账户、写用户信息也会触发，所以直接忽略。</li>
+ * </ul>
+ * 键空间通知需要 Redis 预先配置 notify-keyspace-events 至少包含 K、g、x、e（例如 "Kgxe"，或包含 A 的 "KA"）。
+ * 启动时只用 CONFIG GET 检查，不会修改共享 Redis 的配置；配置缺失或不允许 CONFIG 时近端缓存自动关闭，每次都直接读 Redis。
+ * ttl 只是订阅断开丢失消息时的兜底
+ */
+@Slf4j
+@Component
+public class CurrentAccountNearCache implements MessageListener {
+    static final String NOTIFY_CONFIG = "notify-keyspace-events";
+
+    private final SingleFlightCache<Long, Optional<Long>> cache;
+    private final boolean enabled;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final String channel;
+    // 跳过自己发出的消息：本实例已经同步失效
+    private final String instanceId;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter notifications;
+
+    @Autowired
+    public CurrentAccountNearCache(StringRedisTemplate stringRedisTemplate,
+                                   RedisMessageListenerContainer listenerContainer,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${session.current-account-cache.enabled:true}") boolean enabled,
+                                   @Value("${session.current-account-cache.ttl-seconds:300}") long ttlSeconds,
+                                   @Value("${session.current-account-cache.max-size:100000}") long maxSize,
+                                   @Value("${session.current-account-cache.channel:session:current-account}") String channel,
+                                   @Value("${spring.data.redis.database:0}") int database) {
+        this(stringRedisTemplate, meterRegistry, Duration.ofSeconds(ttlSeconds), maxSize,
+                enabled && keyspaceNotificationsConfigured(stringRedisTemplate), channel, UUID.randomUUID().toString());
+        if (this.enabled) {
+            listenerContainer.addMessageListener(this, List.of(
+                    new ChannelTopic(channel),
+                    new PatternTopic("__keyspace@" + database + "__:" + UserSessionStore.KEY_PREFIX + "*")));
+        }
+    }
+
+    CurrentAccountNearCache(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry, Duration ttl, long maxSize,
+                            boolean enabled, String channel, String instanceId) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.enabled = enabled;
+        this.channel = channel;
+        this.instanceId = instanceId;
+        this.cache = new SingleFlightCache<>(Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumSize(maxSize)
+                .<Long, Optional<Long>>build());
+        this.hits = meterRegistry.counter("session.current-account.cache", "result", "hit");
+        this.misses = meterRegistry.counter("session.current-account.cache", "result", "miss");
+        this.notifications = meterRegistry.counter("session.current-account.cache.invalidations");
+    }
+
+    /**
+     * 不使用近端缓存，每次都调用 loader
+     */
+    public static CurrentAccountNearCache disabled(MeterRegistry meterRegistry) {
+        return new CurrentAccountNearCache(null, meterRegistry, Duration.ZERO, 0, false, null, null);
+    }
+
+    /**
+     * 单飞加载，loader 在锁外执行；加载期间该用户被失效时结果不写入缓存，其他用户的失效不影响这次加载
+     */
+    public Long get(Long userId, Function<Long, Long> loader) {
+        if (!enabled) {
+            return loader.apply(userId);
+        }
+        Optional<Long> cached = cache.getIfPresent(userId);
+        if (cached != null) {
+            hits.increment();
+            return cached.orElse(null);
+        }
+        misses.increment();
+        return cache.get(userId, id -> Optional.ofNullable(loader.apply(id))).orElse(null);
+    }
+
+    public void invalidate(Long userId) {
+        cache.invalidate(userId);
+    }
+
+    /**
+     * current_account 字段已被修改：本实例立即失效，并通知其他实例。发布失败只记日志，由 ttl 兜底
+     */
+    public void currentAccountChanged(Long userId) {
+        invalidate(userId);
+        if (!enabled) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(channel, instanceId + " " + userId);
+        } catch (RuntimeException e) {
+            log.warn("Failed to publish current_account change of user {}: {}", userId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String source = new String(message.getChannel(), StandardCharsets.UTF_8);
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        Long userId = source.equals(channel) ? userIdOfChange(body) : userIdOfKeyEvent(source, body);
+        if (userId != null) {
+            notifications.increment();
+            invalidate(userId);
+        }
+    }
+
+    // 消息体是 "{实例 id} {userId}"，自己发出的消息忽略
+    private Long userIdOfChange(String body) {
+        int space = body.indexOf(' ');
+        if (space < 0 || body.substring(0, space).equals(instanceId)) {
+            return null;
+        }
+        try {
+            return Long.valueOf(body.substring(space + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // 频道是 __keyspace@{db}__:login_user:{userId}，消息体是命令名；h 开头的哈希字段命令不代表 current_account 变化
+    private static Long userIdOfKeyEvent(String source, String event) {
+        int keyStart = source.indexOf("__:");
+        if (keyStart < 0 || event.startsWith("h")) {
+            return null;
+        }
+        return userIdOf(source.substring(keyStart + 3));
+    }
+
+    // 新格式 login_user:{userId}，旧格式 login_user:{userId}:xxx 也按用户失效
+    static Long userIdOf(String key) {
+        if (!key.startsWith(UserSessionStore.KEY_PREFIX)) {
+            return null;
+        }
+        int start = UserSessionStore.KEY_PREFIX.length();
+        int end = key.indexOf(':', start);
+        try {
+            return Long.valueOf(end < 0 ? key.substring(start) : key.substring(start, end));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 需要键空间通知（K）里的通用命令（g，DEL/RENAME）、过期（x）和淘汰（e），A 包含 g、x、e
+     */
+    static String missingNotifyFlags(String current) {
+        StringBuilder missing = new StringBuilder();
+        if (current.indexOf('K') < 0) {
+            missing.append('K');
+        }
+        if (current.indexOf('A') < 0) {
+            for (char flag : new char[]{'g', 'x', 'e'}) {
+                if (current.indexOf(flag) < 0) {
+                    missing.append(flag);
+                }
+            }
+        }
+        return missing.toString();
+    }
+
+    private static boolean keyspaceNotificationsConfigured(StringRedisTemplate stringRedisTemplate) {
+        try {
+            Properties config = stringRedisTemplate.execute((RedisCallback<Properties>) connection ->
+                    connection.serverCommands().getConfig(NOTIFY_CONFIG));
+            String current = config == null ? "" : config.getProperty(NOTIFY_CONFIG, "");
+            String missing = missingNotifyFlags(current);
+            if (!missing.isEmpty()) {
+                log.warn("Redis notify-keyspace-events is '{}' and lacks '{}', current_account near cache disabled; "
+                        + "configure notify-keyspace-events to include Kgxe to enable it", current, missing);
+                return false;
+            }
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Cannot read Redis notify-keyspace-events, current_account near cache disabled: {}", e.getMessage());
+            return false;
+        }
+    }
+}
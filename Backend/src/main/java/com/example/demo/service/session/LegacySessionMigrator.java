@@ -0,0 +1,97 @@
+package com.example.demo.service.session;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 启动后把旧格式的会话 key（login_user:{userId}:info / :current_account / :account:xxx）一次性迁移到
+ * UserSessionStore 的哈希里。旧 key 用 SCAN 分批遍历，不会像 KEYS 那样阻塞 Redis；
+ * 没有 info 的旧 key（会话已过期，但登录后创建的账户 key 没有 TTL）直接删除。
+ * 迁移在虚拟线程中执行，不影响启动；所有实例都升级后可以关闭 session.legacy-migration.enabled
+ */
+@Slf4j
+@Component
+public class LegacySessionMigrator {
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final UserSessionStore userSessionStore;
+    private final boolean enabled;
+
+    @Autowired
+    public LegacySessionMigrator(RedisTemplate<String, Object> redisTemplate,
+                                 UserSessionStore userSessionStore,
+                                 @Value("${session.legacy-migration.enabled:true}") boolean enabled) {
+        this.redisTemplate = redisTemplate;
+        this.userSessionStore = userSessionStore;
+        this.enabled = enabled;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (enabled) {
+            Thread.ofVirtual().name("legacy-session-migration").start(this::migrateAll);
+        }
+    }
+
+    /**
+     * @return 迁移出的有效会话数
+     */
+    public int migrateAll() {
+        try {
+            Map<Long, List<String>> keysByUser = scanLegacyKeys();
+            int migrated = 0;
+            for (Map.Entry<Long, List<String>> entry : keysByUser.entrySet()) {
+                if (userSessionStore.migrateLegacy(entry.getKey(), entry.getValue())) {
+                    migrated++;
+                }
+            }
+            log.info("Legacy session migration finished: {} users scanned, {} sessions migrated", keysByUser.size(), migrated);
+            return migrated;
+        } catch (Exception e) {
+            log.warn("Legacy session migration failed: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    // 新格式的哈希 key 是 login_user:{userId}，不会匹配 login_user:*:*
+    private Map<Long, List<String>> scanLegacyKeys() {
+        Map<Long, List<String>> keysByUser = new HashMap<>();
+        ScanOptions options = ScanOptions.scanOptions().match(UserSessionStore.KEY_PREFIX + "*:*").count(SCAN_BATCH_SIZE).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                Long userId = userIdOf(key);
+                if (userId != null) {
+                    keysByUser.computeIfAbsent(userId, id -> new ArrayList<>()).add(key);
+                }
+            }
+        }
+        return keysByUser;
+    }
+
+    static Long userIdOf(String legacyKey) {
+        int start = UserSessionStore.KEY_PREFIX.length();
+        int end = legacyKey.indexOf(':', start);
+        if (end <= start) {
+            return null;
+        }
+        try {
+            return Long.valueOf(legacyKey.substring(start, end));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
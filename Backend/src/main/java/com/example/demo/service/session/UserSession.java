@@ -0,0 +1,16 @@
+package com.example.demo.service.session;
+
+import com.example.demo.model.redis.RedisAccount;
+import com.example.demo.model.redis.RedisUser;
+
+import java.util.List;
+
+/**
+ * 一次 HGETALL 读出的登录会话：用户信息、当前账户（未选择时为 null）和登录用户的全部账户
+ */
+public record UserSession(RedisUser info, Long currentAccountId, List<RedisAccount> accounts) {
+
+    public List<String> accountNames() {
+        return accounts.stream().map(RedisAccount::getName).toList();
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.demo.service.session;
+
+import com.example.demo.model.dto.AccountSummary;
+import com.example.demo.model.redis.RedisAccount;
+import com.example.demo.model.redis.RedisUser;
+import com.example.demo.repository.AccountDao;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+/**
+ * 登录会话存储：每个登录用户一个 Redis 哈希 login_user:{userId}，字段为
+ * info（RedisUser）、current_account（当前账户 id）、account:{accountId}（RedisAccount）
+ * 以及用于账户名查重的 account_name:{name}（账户 id）。
+ * 读取整个会话是一次 HGETALL，账户名查重是一次 HEXISTS，登出只删除一个 key，不再需要 KEYS/SCAN；
+ * 整个哈希共用一个 TTL，登录时设置，后续写入不会延长也不会让过期的会话复活：
+ * 登录后的写入都通过 WRITE_IF_ACTIVE 脚本，在 Redis 里原子地检查会话仍然存在再 HSET。
+ * <p>
+ * 旧版本把每项数据存成独立的 login_user:{userId}:xxx 字符串 key，
+ * 开启 session.legacy-migration.enabled 时，查不到哈希的用户按数据库里的账户拼出该用户全部旧 key 名，一次 MGET 懒迁移；
+ * 启动时 LegacySessionMigrator 会 SCAN 整个 keyspace，把剩余的旧 key 全部迁移或清理
+ */
+@Slf4j
+@Component
+public class UserSessionStore {
+    static final String KEY_PREFIX = "login_user:";
+    static final String INFO = "info";
+    static final String CURRENT_ACCOUNT = "current_account";
+    static final String ACCOUNT_PREFIX = "account:";
+    static final String ACCOUNT_NAME_PREFIX = "account_name:";
+    static final String LEGACY_PLACEHOLDER = "account:initial placeholder";
+
+    /**
+     * 只有会话存在（有 info 字段）时才写入。检查、删除旧字段和 HSET 在同一个脚本里执行，中间不会插入其他命令：
+     * 会话在检查之后过期也不会被 HSET 重新创建成没有 TTL 的哈希，已有 key 的 TTL 不受 HSET 影响。
+     * ARGV = [要删除的字段数 n, n 个待删除字段, 字段1, 值1, 字段2, 值2 ...]，返回 1 表示已写入
+     */
+    static final RedisScript<Long> WRITE_IF_ACTIVE = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], 'info') == 0 then
+                return 0
+            end
+            local deletes = tonumber(ARGV[1])
+            if deletes > 0 then
+                redis.call('HDEL', KEYS[1], unpack(ARGV, 2, deletes + 1))
+            end
+            redis.call('HSET', KEYS[1], unpack(ARGV, deletes + 2))
+            return 1
+            """, Long.class);
+    private static final RedisSerializer<Long> LONG_RESULT = new GenericToStringSerializer<>(Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final HashOperations<String, Object, Object> hash;
+    private final Duration ttl;
+    private final boolean legacyMigration;
+    private final Counter migratedSessions;
+    private final CurrentAccountNearCache currentAccountCache;
+    private final AccountDao accountDao;
+    // 脚本参数按哈希的序列化方式预先编码，和 HashOperations 写入的数据格式一致
+    private final RedisSerializer<Object> hashKeySerializer;
+    private final RedisSerializer<Object> hashValueSerializer;
+
+    @Autowired
+    public UserSessionStore(RedisTemplate<String, Object> redisTemplate,
+                            MeterRegistry meterRegistry,
+                            CurrentAccountNearCache currentAccountCache,
+                            AccountDao accountDao,
+                            @Value("${session.ttl-minutes:60}") long ttlMinutes,
+                            @Value("${session.legacy-migration.enabled:true}") boolean legacyMigration) {
+        this(redisTemplate, meterRegistry, currentAccountCache, accountDao, Duration.ofMinutes(ttlMinutes), legacyMigration);
+    }
+
+    @SuppressWarnings("unchecked")
+    UserSessionStore(RedisTemplate<String, Object> redisTemplate, MeterRegistry meterRegistry,
+                     CurrentAccountNearCache currentAccountCache, AccountDao accountDao, Duration ttl, boolean legacyMigration) {
+        this.redisTemplate = redisTemplate;
+        this.currentAccountCache = currentAccountCache;
+        this.accountDao = accountDao;
+        this.hash = redisTemplate.opsForHash();
+        this.hashKeySerializer = (RedisSerializer<Object>) redisTemplate.getHashKeySerializer();
+        this.hashValueSerializer = (RedisSerializer<Object>) redisTemplate.getHashValueSerializer();
+        this.ttl = ttl;
+        this.legacyMigration = legacyMigration;
+        this.migratedSessions = meterRegistry.counter("session.legacy.migrated");
+    }
+
+    public static String key(Long userId) {
+        return KEY_PREFIX + userId;
+    }
+
+    /**
+     * 登录时写入新的会话，替换该用户原有的会话；重新登录时保留仍然属于该用户的当前账户。
+     * 先读出旧的当前账户并算好全部字段，再把 DEL、HSET 和 EXPIRE 放在一个 MULTI/EXEC 里提交：
+     * 其他客户端不会看到删除后、写入前的空会话，也不会留下没有 TTL 的哈希
+     */
+    public void open(RedisUser info, Collection<RedisAccount> accounts) {
+        String key = key(info.getUserId());
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put(INFO, info);
+        Set<Long> accountIds = new HashSet<>();
+        for (RedisAccount account : accounts) {
+            putAccountFields(fields, account);
+            accountIds.add(account.getId());
+        }
+        Long currentAccountId = toLong(hash.get(key, CURRENT_ACCOUNT));
+        if (currentAccountId != null && accountIds.contains(currentAccountId)) {
+            fields.put(CURRENT_ACCOUNT, currentAccountId);
+        }
+
+        redisTemplate.execute(new SessionCallback<List<Object>>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> List<Object> execute(RedisOperations<K, V> operations) {
+                RedisOperations<String, Object> redis = (RedisOperations<String, Object>) operations;
+                redis.multi();
+                redis.delete(key);
+                redis.opsForHash().putAll(key, fields);
+                redis.expire(key, ttl);
+                return redis.exec();
+            }
+        });
+        currentAccountCache.currentAccountChanged(info.getUserId());
+    }
+
+    public Optional<UserSession> load(Long userId) {
+        Map<Object, Object> entries = hash.entries(key(userId));
+        if (!entries.containsKey(INFO) && migrateLegacyIfPresent(userId)) {
+            entries = hash.entries(key(userId));
+        }
+        if (!(entries.get(INFO) instanceof RedisUser info)) {
+            return Optional.empty();
+        }
+        List<RedisAccount> accounts = new ArrayList<>();
+        for (Object value : entries.values()) {
+            if (value instanceof RedisAccount account) {
+                accounts.add(account);
+            }
+        }
+        accounts.sort(Comparator.comparing(RedisAccount::getId));
+        return Optional.of(new UserSession(info, toLong(entries.get(CURRENT_ACCOUNT)), accounts));
+    }
+
+    public boolean isActive(Long userId) {
+        return hash.hasKey(key(userId), INFO) || migrateLegacyIfPresent(userId);
+    }
+
+    /**
+     * 修改会话中的用户信息，用户未登录时不做任何事
+     */
+    public void updateInfo(Long userId, UnaryOperator<RedisUser> update) {
+        Object info = hash.get(key(userId), INFO);
+        if (info == null && migrateLegacyIfPresent(userId)) {
+            info = hash.get(key(userId), INFO);
+        }
+        if (info instanceof RedisUser current) {
+            writeIfActive(userId, List.of(), Map.of(INFO, update.apply(current)));
+        }
+    }
+
+    public boolean accountNameExists(Long userId, String accountName) {
+        return hash.hasKey(key(userId), ACCOUNT_NAME_PREFIX + accountName);
+    }
+
+    /**
+     * 新增或更新会话中的账户，账户改名时同时替换查重字段；用户未登录时不写入，避免留下没有 TTL 的哈希
+     */
+    public void putAccount(Long userId, RedisAccount account) {
+        List<String> deletes = new ArrayList<>();
+        if (hash.get(key(userId), ACCOUNT_PREFIX + account.getId()) instanceof RedisAccount previous
+                && !previous.getName().equals(account.getName())) {
+            deletes.add(ACCOUNT_NAME_PREFIX + previous.getName());
+        }
+        Map<String, Object> fields = new LinkedHashMap<>();
+        putAccountFields(fields, account);
+        if (!writeIfActive(userId, deletes, fields) && migrateLegacyIfPresent(userId)) {
+            writeIfActive(userId, deletes, fields);
+        }
+    }
+
+    public void removeAccount(Long userId, Long accountId) {
+        String key = key(userId);
+        List<Object> current = hash.multiGet(key, List.of(ACCOUNT_PREFIX + accountId, CURRENT_ACCOUNT));
+        List<Object> fields = new ArrayList<>(List.of(ACCOUNT_PREFIX + accountId));
+        if (current.get(0) instanceof RedisAccount previous) {
+            fields.add(ACCOUNT_NAME_PREFIX + previous.getName());
+        }
+        boolean wasCurrent = accountId.equals(toLong(current.get(1)));
+        if (wasCurrent) {
+            fields.add(CURRENT_ACCOUNT);
+        }
+        hash.delete(key, fields.toArray());
+        if (wasCurrent) {
+            currentAccountCache.currentAccountChanged(userId);
+        }
+    }
+
+    public void setCurrentAccount(Long userId, Long accountId) {
+        Map<String, Object> fields = Map.of(CURRENT_ACCOUNT, accountId);
+        boolean written = writeIfActive(userId, List.of(), fields)
+                || (migrateLegacyIfPresent(userId) && writeIfActive(userId, List.of(), fields));
+        if (written) {
+            currentAccountCache.currentAccountChanged(userId);
+        }
+    }
+
+    /**
+     * 当前选择的账户 id，未登录或还没有选择账户时返回 null。优先读取本地近端缓存，见 CurrentAccountNearCache
+     */
+    public Long getCurrentAccountId(Long userId) {
+        return currentAccountCache.get(userId, this::readCurrentAccountId);
+    }
+
+    private Long readCurrentAccountId(Long userId) {
+        Object accountId = hash.get(key(userId), CURRENT_ACCOUNT);
+        if (accountId == null && migrateLegacyIfPresent(userId)) {
+            accountId = hash.get(key(userId), CURRENT_ACCOUNT);
+        }
+        return toLong(accountId);
+    }
+
+    /**
+     * 登出时删除会话，同时删除旧格式里位置固定的 key
+     */
+    public void close(Long userId) {
+        List<String> keys = new ArrayList<>(List.of(key(userId)));
+        if (legacyMigration) {
+            String prefix = legacyPrefix(userId);
+            keys.addAll(List.of(prefix + INFO, prefix + CURRENT_ACCOUNT, prefix + LEGACY_PLACEHOLDER));
+        }
+        redisTemplate.delete(keys);
+        currentAccountCache.invalidate(userId);
+    }
+
+    private boolean writeIfActive(Long userId, Collection<String> deletes, Map<String, Object> fields) {
+        List<byte[]> args = new ArrayList<>();
+        args.add(String.valueOf(deletes.size()).getBytes(StandardCharsets.UTF_8));
+        for (String field : deletes) {
+            args.add(hashKeySerializer.serialize(field));
+        }
+        fields.forEach((field, value) -> {
+            args.add(hashKeySerializer.serialize(field));
+            args.add(hashValueSerializer.serialize(value));
+        });
+        Long written = redisTemplate.execute(WRITE_IF_ACTIVE, RedisSerializer.byteArray(), LONG_RESULT,
+                List.of(key(userId)), args.toArray());
+        return written != null && written == 1L;
+    }
+
+    /**
+     * 把旧格式的 login_user:{userId}:xxx key 写入哈希并删除旧 key。
+     * 哈希已经存在时（用户已在新版本上重新登录）以哈希为准，旧 key 直接删除
+     *
+     * @return 是否迁移出了有效的会话
+     */
+    boolean migrateLegacy(Long userId, List<String> legacyKeys) {
+        if (legacyKeys.isEmpty()) {
+            return false;
+        }
+        String key = key(userId);
+        if (hash.hasKey(key, INFO)) {
+            redisTemplate.delete(legacyKeys);
+            return false;
+        }
+
+        String prefix = legacyPrefix(userId);
+        List<Object> values = redisTemplate.opsForValue().multiGet(legacyKeys);
+        Map<String, Object> fields = new LinkedHashMap<>();
+        for (int i = 0; i < legacyKeys.size(); i++) {
+            Object value = values == null ? null : values.get(i);
+            String field = legacyKeys.get(i).substring(prefix.length());
+            if (value == null) {
+                continue;
+            }
+            if (field.equals(INFO)) {
+                fields.put(INFO, value);
+            } else if (field.equals(CURRENT_ACCOUNT)) {
+                fields.put(CURRENT_ACCOUNT, toLong(value));
+            } else if (value instanceof RedisAccount account) {
+                putAccountFields(fields, account);
+            }
+            // initial placeholder 只是旧格式的占位，不再需要
+        }
+
+        boolean migrated = fields.containsKey(INFO);
+        if (migrated) {
+            Long remaining = redisTemplate.getExpire(prefix + INFO, TimeUnit.SECONDS);
+            hash.putAll(key, fields);
+            redisTemplate.expire(key, remaining != null && remaining > 0 ? Duration.ofSeconds(remaining) : ttl);
+            migratedSessions.increment();
+            log.debug("Migrated legacy session of user {} ({} keys)", userId, legacyKeys.size());
+        }
+        redisTemplate.delete(legacyKeys);
+        return migrated;
+    }
+
+    // 只有旧的 info key 还在时才迁移。initial placeholder 只记录了登录时的账户，登录后创建的账户不在里面，
+    // 所以按数据库里该用户的全部账户拼出 account:{id} 的 key 名，和固定的 key 一起 MGET，不用 SCAN 整个 keyspace；
+    // 已删除账户残留的旧 key 由 LegacySessionMigrator 清理
+    private boolean migrateLegacyIfPresent(Long userId) {
+        if (!legacyMigration) {
+            return false;
+        }
+        String prefix = legacyPrefix(userId);
+        if (!Boolean.TRUE.equals(redisTemplate.hasKey(prefix + INFO))) {
+            return false;
+        }
+        List<String> legacyKeys = new ArrayList<>(List.of(prefix + INFO, prefix + CURRENT_ACCOUNT, prefix + LEGACY_PLACEHOLDER));
+        for (AccountSummary account : accountDao.findSummariesByUserId(userId)) {
+            legacyKeys.add(prefix + ACCOUNT_PREFIX + account.id());
+        }
+        return migrateLegacy(userId, legacyKeys);
+    }
+
+    private static void putAccountFields(Map<String, Object> fields, RedisAccount account) {
+        fields.put(ACCOUNT_PREFIX + account.getId(), account);
+        fields.put(ACCOUNT_NAME_PREFIX + account.getName(), account.getId());
+    }
+
+    static String legacyPrefix(Long userId) {
+        return KEY_PREFIX + userId + ":";
+    }
+
+    // JSON 反序列化后较小的数字是 Integer，旧版本通过 StringRedisTemplate 读到的是字符串
+    private static Long toLong(Object value) {
+        if (value instanceof Number number) {
+            return number.longValue();
+        }
+        if (value instanceof String text && !text.isBlank()) {
+            return Long.valueOf(text.trim());
+        }
+        return null;
+    }
+}
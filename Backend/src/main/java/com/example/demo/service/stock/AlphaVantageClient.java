@@ -0,0 +1,110 @@
+package com.example.demo.service.stock;
+
+import com.example.demo.exception.UpstreamFailureException;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AlphaVantage REST 接口的精简客户端，只解析 StockService 用到的日线和公司概况。
+ * base-url 可配置，测试里指向本地的桩服务器
+ */
+@Component
+public class AlphaVantageClient {
+    private final RestTemplate restTemplate;
+    private final String baseUrl;
+    private final String apiKey;
+
+    @Autowired
+    public AlphaVantageClient(RestTemplateBuilder restTemplateBuilder,
+                              @Value("${alphavantage.api.base-url:https://www.alphavantage.co}") String baseUrl,
+                              @Value("${alphavantage.api.key}") String apiKey,
+                              @Value("${alphavantage.api.timeout-ms:10000}") long timeoutMillis) {
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(timeoutMillis))
+                .setReadTimeout(Duration.ofMillis(timeoutMillis))
+                .build();
+        this.baseUrl = baseUrl;
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * TIME_SERIES_DAILY，full 为 false 时只返回最近 100 个交易日
+     * @return 按日期倒序的日线
+     */
+    public List<StockBar> fetchDaily(String symbol, boolean full) {
+        JsonNode body = query("TIME_SERIES_DAILY", symbol, full ? "full" : "compact");
+        JsonNode series = body.get("Time Series (Daily)");
+        if (series == null || !series.isObject()) {
+            throw new RuntimeException("No daily series returned for symbol: " + symbol);
+        }
+        List<StockBar> bars = new ArrayList<>(series.size());
+        Iterator<Map.Entry<String, JsonNode>> days = series.fields();
+        while (days.hasNext()) {
+            Map.Entry<String, JsonNode> day = days.next();
+            JsonNode unit = day.getValue();
+            bars.add(new StockBar(day.getKey(),
+                    unit.path("1. open").asDouble(),
+                    unit.path("2. high").asDouble(),
+                    unit.path("3. low").asDouble(),
+                    unit.path("4. close").asDouble(),
+                    unit.path("5. volume").asLong()));
+        }
+        bars.sort(Comparator.comparing(StockBar::date).reversed());
+        return bars;
+    }
+
+    public Map<String, Object> fetchOverview(String symbol) {
+        JsonNode body = query("OVERVIEW", symbol, null);
+        if (!body.hasNonNull("Symbol")) {
+            throw new RuntimeException("No data returned for symbol: " + symbol);
+        }
+        Map<String, Object> result = new HashMap<>();
+        result.put("Symbol", symbol);
+        result.put("Name", body.path("Name").asText(null));
+        result.put("Description", body.path("Description").asText(null));
+        result.put("Exchange", body.path("Exchange").asText(null));
+        result.put("Industry", body.path("Industry").asText(null));
+        result.put("PERatio", body.path("PERatio").asText(null));
+        result.put("MarketCap", body.path("MarketCapitalization").asText(null));
+        return result;
+    }
+
+    private JsonNode query(String function, String symbol, String outputSize) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(baseUrl)
+                .path("/query")
+                .queryParam("function", function)
+                .queryParam("symbol", symbol)
+                .queryParam("apikey", apiKey);
+        if (outputSize != null) {
+            uri.queryParam("outputsize", outputSize);
+        }
+        URI target = uri.encode().build().toUri();
+        JsonNode body = restTemplate.getForObject(target, JsonNode.class);
+        if (body == null) {
+            throw new UpstreamFailureException("Empty response from AlphaVantage for " + function + " " + symbol);
+        }
+        // AlphaVantage 出错和限流时仍然返回 200，错误信息放在这几个字段里；Error Message 是请求本身的问题（如无效代码），限流才算依赖失败
+        if (body.has("Error Message")) {
+            throw new RuntimeException("AlphaVantage error for " + symbol + ": " + body.get("Error Message").asText());
+        }
+        if (body.has("Note") || body.has("Information")) {
+            String message = body.has("Note") ? body.get("Note").asText() : body.get("Information").asText();
+            throw new UpstreamFailureException("AlphaVantage rate limit reached: " + message);
+        }
+        return body;
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.demo.service.stock;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiPredicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * 行情数据的两级缓存：本地 Caffeine 在前，Redis market_data:{key} 在后，多个实例共享同一份行情。
+ * 是否新鲜由调用方按取数时间判断（交易时段和收盘后的有效期不同），Redis 里保留更久，
+ * 过期的值交给 loader 做增量刷新，上游失败（通常是限流）时退回旧值。
+ * 同一个 key 同时只有一个线程去上游取数，其他线程等待它的结果
+ */
+@Slf4j
+@Component
+public class MarketDataCache {
+    static final String KEY_PREFIX = "market_data:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Cache<String, Cached> local;
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Duration retention;
+    private final Clock clock;
+
+    private final Counter localHits;
+    private final Counter redisHits;
+    private final Counter loads;
+    private final Counter coalesced;
+    private final Counter staleServed;
+
+    @Autowired
+    public MarketDataCache(StringRedisTemplate stringRedisTemplate,
+                           MeterRegistry meterRegistry,
+                           @Value("${stock.cache.local.max-entries:1000}") long maxLocalEntries,
+                           @Value("${stock.cache.retention-hours:168}") long retentionHours) {
+        this(stringRedisTemplate, meterRegistry, maxLocalEntries, Duration.ofHours(retentionHours), Clock.systemUTC());
+    }
+
+    MarketDataCache(StringRedisTemplate stringRedisTemplate, MeterRegistry meterRegistry,
+                    long maxLocalEntries, Duration retention, Clock clock) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.retention = retention;
+        this.clock = clock;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maxLocalEntries)
+                .expireAfterWrite(retention)
+                .build();
+        this.localHits = meterRegistry.counter("stock.cache.requests", "result", "local");
+        this.redisHits = meterRegistry.counter("stock.cache.requests", "result", "redis");
+        this.loads = meterRegistry.counter("stock.cache.requests", "result", "load");
+        this.coalesced = meterRegistry.counter("stock.cache.requests", "result", "coalesced");
+        this.staleServed = meterRegistry.counter("stock.cache.stale.served");
+    }
+
+    /**
+     * 返回 key 对应的值，两级缓存都不新鲜时调用 loader
+     * @param isFresh (值, 取数时间毫秒) -> 是否还能直接使用
+     * @param loader 参数是已过期的旧值（没有时为 null），返回新值
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, JavaType type, BiPredicate<T, Long> isFresh, UnaryOperator<T> loader) {
+        Cached cached = local.getIfPresent(key);
+        if (cached != null && isFresh.test((T) cached.value(), cached.fetchedAt())) {
+            localHits.increment();
+            return (T) cached.value();
+        }
+
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, mine);
+        if (leader != null) {
+            coalesced.increment();
+            return (T) join(leader);
+        }
+        try {
+            T value = loadThrough(key, type, isFresh, loader, cached);
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    public void invalidate(String key) {
+        local.invalidate(key);
+        try {
+            stringRedisTemplate.delete(KEY_PREFIX + key);
+        } catch (DataAccessException e) {
+            log.warn("Failed to delete market data {} from Redis: {}", key, e.getMessage());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T loadThrough(String key, JavaType type, BiPredicate<T, Long> isFresh, UnaryOperator<T> loader,
+                              Cached localCopy) {
+        Cached shared = readRedis(key, type);
+        if (shared != null && isFresh.test((T) shared.value(), shared.fetchedAt())) {
+            redisHits.increment();
+            local.put(key, shared);
+            return (T) shared.value();
+        }
+
+        Cached stale = newer(localCopy, shared);
+        T value;
+        try {
+            loads.increment();
+            value = loader.apply(stale != null ? (T) stale.value() : null);
+        } catch (RuntimeException e) {
+            if (stale == null) {
+                throw e;
+            }
+            // 限流或上游故障时宁可返回旧行情，也不让工具调用直接失败
+            staleServed.increment();
+            log.warn("Serving stale market data {} fetched at {}: {}", key, stale.fetchedAt(), e.getMessage());
+            return (T) stale.value();
+        }
+        Cached fresh = new Cached(value, clock.millis());
+        local.put(key, fresh);
+        writeRedis(key, fresh);
+        return value;
+    }
+
+    private Cached readRedis(String key, JavaType type) {
+        try {
+            String json = stringRedisTemplate.opsForValue().get(KEY_PREFIX + key);
+            if (json == null) {
+                return null;
+            }
+            JsonNode node = objectMapper.readTree(json);
+            Object value = objectMapper.convertValue(node.get("value"), type);
+            return new Cached(value, node.get("fetchedAt").asLong());
+        } catch (DataAccessException | JsonProcessingException | IllegalArgumentException e) {
+            log.warn("Failed to read market data {} from Redis: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRedis(String key, Cached cached) {
+        try {
+            ObjectNode node = objectMapper.createObjectNode();
+            node.put("fetchedAt", cached.fetchedAt());
+            node.set("value", objectMapper.valueToTree(cached.value()));
+            stringRedisTemplate.opsForValue().set(KEY_PREFIX + key, objectMapper.writeValueAsString(node), retention);
+        } catch (DataAccessException | JsonProcessingException e) {
+            log.warn("Failed to write market data {} to Redis: {}", key, e.getMessage());
+        }
+    }
+
+    private static Cached newer(Cached a, Cached b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        return a.fetchedAt() >= b.fetchedAt() ? a : b;
+    }
+
+    private static Object join(CompletableFuture<Object> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private record Cached(Object value, long fetchedAt) {
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.demo.service.stock;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * 美股常规交易时段（纽约时间工作日 9:30 - 16:00），用于决定行情缓存的有效期。
+ * 不处理节假日：节假日按交易日算只会多刷新几次，不会返回过期数据
+ */
+final class MarketHours {
+    static final ZoneId EXCHANGE_ZONE = ZoneId.of("America/New_York");
+    static final LocalTime OPEN = LocalTime.of(9, 30);
+    static final LocalTime CLOSE = LocalTime.of(16, 0);
+
+    private MarketHours() {
+    }
+
+    static boolean isOpen(Instant now) {
+        ZonedDateTime local = now.atZone(EXCHANGE_ZONE);
+        LocalTime time = local.toLocalTime();
+        return isTradingDay(local.toLocalDate()) && !time.isBefore(OPEN) && time.isBefore(CLOSE);
+    }
+
+    /**
+     * 不晚于 now 的最近一次收盘时间
+     */
+    static Instant lastClose(Instant now) {
+        LocalDate date = now.atZone(EXCHANGE_ZONE).toLocalDate();
+        for (int i = 0; i < 7; i++, date = date.minusDays(1)) {
+            if (!isTradingDay(date)) {
+                continue;
+            }
+            Instant close = date.atTime(CLOSE).atZone(EXCHANGE_ZONE).toInstant();
+            if (!close.isAfter(now)) {
+                return close;
+            }
+        }
+        throw new IllegalStateException("No trading day in the last week before " + now);
+    }
+
+    private static boolean isTradingDay(LocalDate date) {
+        DayOfWeek day = date.getDayOfWeek();
+        return day != DayOfWeek.SATURDAY && day != DayOfWeek.SUNDAY;
+    }
+}
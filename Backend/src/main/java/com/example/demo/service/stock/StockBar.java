@@ -0,0 +1,7 @@
+package com.example.demo.service.stock;
+
+/**
+ * 一个交易日的日线数据，date 为 yyyy-MM-dd
+ */
+public record StockBar(String date, double open, double high, double low, double close, long volume) {
+}
@@ -0,0 +1,22 @@
+package com.example.demo.service.stock;
+
+import java.util.List;
+
+/**
+ * 单只股票缓存的日线序列，bars 按日期倒序（最新的在前）。
+ * complete 表示已经拿到过 FULL 历史（或该股票上市不足一个 COMPACT 窗口），更早的数据不需要再拉取
+ */
+public record StockSeries(String symbol, List<StockBar> bars, boolean complete) {
+
+    public StockBar latest() {
+        return bars.get(0);
+    }
+
+    public String newestDate() {
+        return bars.isEmpty() ? null : bars.get(0).date();
+    }
+
+    public String oldestDate() {
+        return bars.isEmpty() ? null : bars.get(bars.size() - 1).date();
+    }
+}
@@ -1,22 +1,70 @@
 package com.example.demo.service.stock;
 
-import com.crazzyghost.alphavantage.AlphaVantage;
-import com.crazzyghost.alphavantage.AlphaVantageException;
-import com.crazzyghost.alphavantage.fundamentaldata.response.CompanyOverviewResponse;
-import com.crazzyghost.alphavantage.parameters.OutputSize;
-import com.crazzyghost.alphavantage.timeseries.response.StockUnit;
-import com.crazzyghost.alphavantage.timeseries.response.TimeSeriesResponse;
+import com.example.demo.service.resilience.DependencyGuard;
+import com.example.demo.service.resilience.DependencyGuards;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+/**
+ * 股票行情查询。每只股票的日线序列只在 MarketDataCache 里存一份，最新价格和历史都从它读取：
+ * 交易时段内序列缓存 open-ttl，收盘后到下一次收盘前一直有效；过期时用 COMPACT（最近 100 个交易日）
+ * 增量合并，只有请求的天数超过已缓存的长度时才拉一次 FULL
+ */
 @Service
 @Slf4j
 public class StockService {
+    // AlphaVantage COMPACT 返回的交易日数
+    static final int COMPACT_DAYS = 100;
+    // 收盘后数据稳定下来需要的时间，这段时间内仍按交易时段的有效期刷新
+    static final Duration SETTLE_DELAY = Duration.ofMinutes(15);
+
+    private static final JavaType SERIES_TYPE = TypeFactory.defaultInstance().constructType(StockSeries.class);
+    private static final JavaType OVERVIEW_TYPE =
+            TypeFactory.defaultInstance().constructMapType(HashMap.class, String.class, Object.class);
+
+    private final AlphaVantageClient alphaVantageClient;
+    private final MarketDataCache marketDataCache;
+    private final DependencyGuard alphaVantageGuard;
+    private final Duration openTtl;
+    private final Duration overviewTtl;
+    private final int maxStoredDays;
+    private final Clock clock;
+
+    @Autowired
+    public StockService(AlphaVantageClient alphaVantageClient,
+                        MarketDataCache marketDataCache,
+                        DependencyGuards dependencyGuards,
+                        @Value("${stock.cache.open-ttl-seconds:300}") long openTtlSeconds,
+                        @Value("${stock.cache.overview-ttl-hours:24}") long overviewTtlHours,
+                        @Value("${stock.history.max-days:1300}") int maxStoredDays) {
+        this(alphaVantageClient, marketDataCache, dependencyGuards, Duration.ofSeconds(openTtlSeconds),
+                Duration.ofHours(overviewTtlHours), maxStoredDays, Clock.systemUTC());
+    }
+
+    StockService(AlphaVantageClient alphaVantageClient, MarketDataCache marketDataCache,
+                 DependencyGuards dependencyGuards, Duration openTtl, Duration overviewTtl, int maxStoredDays,
+                 Clock clock) {
+        this.alphaVantageClient = alphaVantageClient;
+        this.marketDataCache = marketDataCache;
+        this.alphaVantageGuard = dependencyGuards.alphaVantage();
+        this.openTtl = openTtl;
+        this.overviewTtl = overviewTtl;
+        this.maxStoredDays = maxStoredDays;
+        this.clock = clock;
+    }
 
     /**
      * Get current stock price data
@@ -24,29 +72,19 @@ public class StockService {
      * @return Stock market data
      */
     public Map<String, Object> getStockPrice(String symbol) {
-        try {
-            TimeSeriesResponse response = AlphaVantage.api()
-                    .timeSeries()
-                    .daily()
-                    .forSymbol(symbol)
-                    .outputSize(OutputSize.COMPACT)
-                    .fetchSync();
-
-            List<StockUnit> stockUnits = response.getStockUnits();
-
-            Map<String, Object> result = new HashMap<>();
-            result.put("symbol", symbol);
-            result.put("lastUpdated", stockUnits.get(0).getDate());
-            result.put("price", stockUnits.get(0).getClose());
-            result.put("volume", stockUnits.get(0).getVolume());
-            result.put("change", stockUnits.get(0).getClose() - stockUnits.get(0).getOpen());
-
-            return result;
-
-        } catch (AlphaVantageException e) {
-            log.error("Failed to fetch stock price for {}: {}", symbol, e.getMessage());
-            throw new RuntimeException("Failed to fetch stock data", e);
+        StockSeries series = series(symbol, 1);
+        if (series.bars().isEmpty()) {
+            throw new RuntimeException("No price data for symbol: " + symbol);
         }
+        StockBar latest = series.latest();
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("symbol", symbol);
+        result.put("lastUpdated", latest.date());
+        result.put("price", latest.close());
+        result.put("volume", latest.volume());
+        result.put("change", latest.close() - latest.open());
+        return result;
     }
 
     /**
@@ -55,41 +93,9 @@ public class StockService {
      * @return Company information
      */
     public Map<String, Object> getCompanyOverview(String symbol) {
-        try {
-            var response = AlphaVantage.api()
-                    .fundamentalData()
-                    .companyOverview()
-                    .forSymbol(symbol)
-                    .fetchSync();
-
-            if (response == null) {
-                throw new RuntimeException("No data returned for symbol: " + symbol);
-            }
-
-            return getStringObjectMap(symbol, response);
-
-        } catch (AlphaVantageException e) {
-            log.error("Failed to fetch company overview for {}: {}", symbol, e.getMessage());
-            throw new RuntimeException("Failed to fetch company data", e);
-        }
-    }
-
-    /**
-     * Convert company overview response to map format
-     * @param symbol Stock symbol code
-     * @param response Company overview response
-     * @return Formatted company data map
-     */
-    public static Map<String, Object> getStringObjectMap(String symbol, CompanyOverviewResponse response) {
-        Map<String, Object> result = new HashMap<>();
-        result.put("Symbol", symbol);
-        result.put("Name", response.getOverview().getName());
-        result.put("Description", response.getOverview().getDescription());
-        result.put("Exchange", response.getOverview().getExchange());
-        result.put("Industry", response.getOverview().getIndustry());
-        result.put("PERatio", response.getOverview().getPERatio());
-        result.put("MarketCap", response.getOverview().getMarketCapitalization());
-        return result;
+        return marketDataCache.<Map<String, Object>>get("overview:" + symbol, OVERVIEW_TYPE,
+                (overview, fetchedAt) -> clock.millis() - fetchedAt < overviewTtl.toMillis(),
+                stale -> alphaVantageGuard.call(() -> alphaVantageClient.fetchOverview(symbol), DependencyGuard::isUpstreamFailure));
     }
 
     /**
@@ -99,32 +105,87 @@ public class StockService {
      * @return List of historical stock data
      */
     public List<Map<String, Object>> getStockHistory(String symbol, int days) {
-        try {
-            TimeSeriesResponse response = AlphaVantage.api()
-                    .timeSeries()
-                    .daily()
-                    .forSymbol(symbol)
-                    .outputSize(OutputSize.FULL)
-                    .fetchSync();
-
-            return response.getStockUnits()
-                    .stream()
-                    .limit(days)
-                    .map(unit -> {
-                        Map<String, Object> data = new HashMap<>();
-                        data.put("date", unit.getDate());
-                        data.put("open", unit.getOpen());
-                        data.put("high", unit.getHigh());
-                        data.put("low", unit.getLow());
-                        data.put("close", unit.getClose());
-                        data.put("volume", unit.getVolume());
-                        return data;
-                    })
-                    .collect(Collectors.toList());
-
-        } catch (AlphaVantageException e) {
-            log.error("Failed to fetch stock history for {}: {}", symbol, e.getMessage());
-            throw new RuntimeException("Failed to fetch stock history", e);
+        return series(symbol, days).bars()
+                .stream()
+                .limit(days)
+                .map(bar -> {
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("date", bar.date());
+                    data.put("open", bar.open());
+                    data.put("high", bar.high());
+                    data.put("low", bar.low());
+                    data.put("close", bar.close());
+                    data.put("volume", bar.volume());
+                    return data;
+                })
+                .collect(Collectors.toList());
+    }
+
+    private StockSeries series(String symbol, int days) {
+        int wanted = Math.min(Math.max(days, 1), maxStoredDays);
+        StockSeries series = cachedSeries(symbol, wanted);
+        // 合并进来的并发请求可能要的天数更少，拿到的序列不够长时再取一次
+        if (!covers(series, wanted)) {
+            series = cachedSeries(symbol, wanted);
+        }
+        return series;
+    }
+
+    private StockSeries cachedSeries(String symbol, int wanted) {
+        return marketDataCache.get("series:" + symbol, SERIES_TYPE,
+                (series, fetchedAt) -> isSeriesFresh(fetchedAt) && covers(series, wanted),
+                stale -> refreshSeries(symbol, stale, wanted));
+    }
+
+    private StockSeries refreshSeries(String symbol, StockSeries stale, int wanted) {
+        boolean needFull = wanted > COMPACT_DAYS && (stale == null || !covers(stale, wanted));
+        if (needFull) {
+            log.info("Fetching full daily history of {} ({} days requested)", symbol, wanted);
+            List<StockBar> bars = fetchDaily(symbol, true);
+            return new StockSeries(symbol, trim(bars), true);
+        }
+
+        List<StockBar> recent = fetchDaily(symbol, false);
+        if (recent.isEmpty()) {
+            return stale != null ? stale : new StockSeries(symbol, recent, true);
+        }
+        String oldestRecent = recent.get(recent.size() - 1).date();
+        if (stale == null || stale.bars().isEmpty() || oldestRecent.compareTo(stale.newestDate()) > 0) {
+            // 旧序列和最近 100 天接不上，只保留新的部分
+            return new StockSeries(symbol, trim(recent), recent.size() < COMPACT_DAYS);
+        }
+        List<StockBar> merged = new ArrayList<>(recent);
+        for (StockBar bar : stale.bars()) {
+            if (bar.date().compareTo(oldestRecent) < 0) {
+                merged.add(bar);
+            }
+        }
+        log.debug("Merged {} recent bars of {} into {} cached bars", recent.size(), symbol, stale.bars().size());
+        return new StockSeries(symbol, trim(merged), stale.complete());
+    }
+
+    private List<StockBar> fetchDaily(String symbol, boolean full) {
+        return alphaVantageGuard.call(() -> alphaVantageClient.fetchDaily(symbol, full), DependencyGuard::isUpstreamFailure);
+    }
+
+    private List<StockBar> trim(List<StockBar> bars) {
+        return bars.size() <= maxStoredDays ? bars : new ArrayList<>(bars.subList(0, maxStoredDays));
+    }
+
+    private static boolean covers(StockSeries series, int wanted) {
+        return series.complete() || series.bars().size() >= wanted;
+    }
+
+    /**
+     * 交易时段（以及收盘后的 SETTLE_DELAY 内）按 open-ttl 过期；
+     * 收盘后只要是在本次收盘稳定之后取的数，就一直有效到下一次收盘
+     */
+    boolean isSeriesFresh(long fetchedAt) {
+        Instant now = clock.instant();
+        Instant settled = MarketHours.lastClose(now).plus(SETTLE_DELAY);
+        if (MarketHours.isOpen(now) || now.isBefore(settled)) {
+            return now.toEpochMilli() - fetchedAt < openTtl.toMillis();
         }
+        return fetchedAt >= settled.toEpochMilli();
     }
-}
\ No newline at end of file
+}
@@ -1,49 +1,221 @@
 package com.example.demo.service.weather;
 
+import com.example.demo.exception.DependencyUnavailableException;
+import com.example.demo.service.resilience.DependencyGuard;
+import com.example.demo.service.resilience.DependencyGuards;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Ticker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 天气查询。按规范化后的地点缓存 weatherapi 的响应：实况缓存 current-ttl，预报缓存 forecast-ttl，
+ * 预报一次按 prefetch-days 拉取，之后更短天数的请求直接截取；预报里本身带实况，
+ * 取回时间在 current-ttl 之内时实况查询直接复用它。同一地点的并发请求只发一次上游调用
+ */
 @Service
 @Slf4j
 public class WeatherService {
+    private static final String BASE_URL = "https://api.weatherapi.com/v1";
+    private static final Pattern COORDINATES = Pattern.compile("(-?\\d+(?:\\.\\d+)?),(-?\\d+(?:\\.\\d+)?)");
+
     private final RestTemplate restTemplate;
     private final String apiKey;
-    private static final String BASE_URL = "http://api.weatherapi.com/v1";
+    private final DependencyGuard weatherGuard;
+    private final int prefetchDays;
+    private final long currentTtlNanos;
+    private final Ticker ticker;
+    private final Cache<String, Snapshot> currentCache;
+    private final Cache<String, Snapshot> forecastCache;
+    private final ConcurrentHashMap<String, CompletableFuture<Snapshot>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter cacheHits;
+    private final Counter forecastReuses;
+    private final Counter coalescedRequests;
+    private final Counter upstreamCalls;
 
     @Autowired
-    public WeatherService(RestTemplate restTemplate, @Qualifier("weatherApiKey") String apiKey) {
+    public WeatherService(@Qualifier("weatherRestTemplate") RestTemplate restTemplate,
+                          @Qualifier("weatherApiKey") String apiKey,
+                          DependencyGuards dependencyGuards,
+                          MeterRegistry meterRegistry,
+                          @Value("${weather.cache.current-ttl-seconds:300}") long currentTtlSeconds,
+                          @Value("${weather.cache.forecast-ttl-seconds:1800}") long forecastTtlSeconds,
+                          @Value("${weather.cache.prefetch-days:3}") int prefetchDays,
+                          @Value("${weather.cache.max-locations:1000}") long maxLocations) {
+        this(restTemplate, apiKey, dependencyGuards, meterRegistry, Duration.ofSeconds(currentTtlSeconds),
+                Duration.ofSeconds(forecastTtlSeconds), prefetchDays, maxLocations, Ticker.systemTicker());
+    }
+
+    WeatherService(RestTemplate restTemplate, String apiKey, DependencyGuards dependencyGuards,
+                   MeterRegistry meterRegistry, Duration currentTtl, Duration forecastTtl, int prefetchDays,
+                   long maxLocations, Ticker ticker) {
         this.restTemplate = restTemplate;
         this.apiKey = apiKey;
+        this.weatherGuard = dependencyGuards.weather();
+        this.prefetchDays = prefetchDays;
+        this.currentTtlNanos = currentTtl.toNanos();
+        this.ticker = ticker;
+        this.currentCache = Caffeine.newBuilder()
+                .maximumSize(maxLocations)
+                .expireAfterWrite(currentTtl)
+                .ticker(ticker)
+                .build();
+        this.forecastCache = Caffeine.newBuilder()
+                .maximumSize(maxLocations)
+                .expireAfterWrite(forecastTtl)
+                .ticker(ticker)
+                .build();
+        this.cacheHits = meterRegistry.counter("weather.cache.requests", "result", "hit");
+        this.forecastReuses = meterRegistry.counter("weather.cache.requests", "result", "forecast");
+        this.coalescedRequests = meterRegistry.counter("weather.cache.requests", "result", "coalesced");
+        this.upstreamCalls = meterRegistry.counter("weather.cache.requests", "result", "load");
     }
 
-
     public JsonNode getCurrentWeather(String location) {
-        String url = String.format("%s/current.json?key=%s&q=%s", BASE_URL, apiKey, location);
-        try {
-            ResponseEntity<JsonNode> response = restTemplate.getForEntity(url, JsonNode.class);
-            return response.getBody();
-        } catch (Exception e) {
-            log.error("Error fetching current weather for {}: {}", location, e.getMessage());
-            throw new RuntimeException("Weather service error", e);
+        String key = normalizeLocation(location);
+        Snapshot forecast = forecastCache.getIfPresent(key);
+        if (forecast != null && ticker.read() - forecast.fetchedAt() < currentTtlNanos && forecast.body().has("current")) {
+            forecastReuses.increment();
+            return currentView(forecast.body());
+        }
+        Snapshot cached = currentCache.getIfPresent(key);
+        if (cached != null) {
+            cacheHits.increment();
+            return cached.body();
         }
+        return load("current:" + key, currentCache, key, () -> fetch("current.json", key, 0)).body();
     }
 
-
     public JsonNode getForecast(String location, int days) {
-        String url = String.format("%s/forecast.json?key=%s&q=%s&days=%d", BASE_URL, apiKey, location, days);
+        String key = normalizeLocation(location);
+        int wanted = Math.max(days, 1);
+        Snapshot cached = forecastCache.getIfPresent(key);
+        if (cached != null && cached.days() >= wanted) {
+            cacheHits.increment();
+            return firstDays(cached.body(), wanted);
+        }
+        // 一次取够 prefetch-days，之后 1 到 prefetch-days 天的请求都能复用
+        int fetchDays = Math.max(wanted, prefetchDays);
+        Supplier<Snapshot> fetchForecast = () -> fetch("forecast.json", key, fetchDays);
+        Snapshot loaded = load("forecast:" + key, forecastCache, key, fetchForecast);
+        if (loaded.days() < wanted) {
+            // 合并到了一个天数更少的并发请求
+            loaded = load("forecast:" + key, forecastCache, key, fetchForecast);
+        }
+        return firstDays(loaded.body(), wanted);
+    }
+
+    /**
+     * 缓存键：小写、合并空白、去掉逗号两侧空格，坐标保留两位小数（约 1 公里）
+     */
+    static String normalizeLocation(String location) {
+        if (location == null || location.isBlank()) {
+            throw new IllegalArgumentException("Location must not be empty");
+        }
+        String normalized = location.trim()
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("\\s+", " ")
+                .replaceAll(" ?, ?", ",");
+        Matcher coordinates = COORDINATES.matcher(normalized);
+        if (coordinates.matches()) {
+            return String.format(Locale.ROOT, "%.2f,%.2f",
+                    Double.parseDouble(coordinates.group(1)), Double.parseDouble(coordinates.group(2)));
+        }
+        return normalized;
+    }
+
+    private Snapshot load(String flightKey, Cache<String, Snapshot> cache, String cacheKey, Supplier<Snapshot> loader) {
+        CompletableFuture<Snapshot> mine = new CompletableFuture<>();
+        CompletableFuture<Snapshot> leader = inFlight.putIfAbsent(flightKey, mine);
+        if (leader != null) {
+            coalescedRequests.increment();
+            try {
+                return leader.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+            }
+        }
         try {
-            ResponseEntity<JsonNode> response = restTemplate.getForEntity(url, JsonNode.class);
-            return response.getBody();
+            Snapshot snapshot = loader.get();
+            cache.put(cacheKey, snapshot);
+            mine.complete(snapshot);
+            return snapshot;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(flightKey, mine);
+        }
+    }
+
+    private Snapshot fetch(String endpoint, String location, int days) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromHttpUrl(BASE_URL)
+                .path("/" + endpoint)
+                .queryParam("key", apiKey)
+                .queryParam("q", location);
+        if (days > 0) {
+            builder.queryParam("days", days);
+        }
+        URI uri = builder.encode().build().toUri();
+        try {
+            upstreamCalls.increment();
+            JsonNode body = weatherGuard.call(() -> restTemplate.getForObject(uri, JsonNode.class), DependencyGuard::isUpstreamFailure);
+            if (body == null) {
+                throw new IllegalStateException("Empty response from " + endpoint);
+            }
+            return new Snapshot(body, days, ticker.read());
+        } catch (DependencyUnavailableException e) {
+            throw e;
         } catch (Exception e) {
-            log.error("Error fetching forecast for {}: {}", location, e.getMessage());
+            log.error("Error fetching {} for {}: {}", endpoint, location, e.getMessage());
             throw new RuntimeException("Weather service error", e);
         }
     }
 
+    private static JsonNode currentView(JsonNode forecast) {
+        ObjectNode view = JsonNodeFactory.instance.objectNode();
+        view.set("location", forecast.get("location"));
+        view.set("current", forecast.get("current"));
+        return view;
+    }
 
-}
\ No newline at end of file
+    // 缓存里的节点被多个调用方共享，截取时复制一份，不修改原节点
+    private static JsonNode firstDays(JsonNode forecast, int days) {
+        JsonNode forecastDays = forecast.path("forecast").path("forecastday");
+        if (!forecastDays.isArray() || forecastDays.size() <= days) {
+            return forecast;
+        }
+        ObjectNode copy = forecast.deepCopy();
+        ArrayNode trimmed = ((ObjectNode) copy.get("forecast")).putArray("forecastday");
+        for (int i = 0; i < days; i++) {
+            trimmed.add(forecastDays.get(i));
+        }
+        return copy;
+    }
+
+    private record Snapshot(JsonNode body, int days, long fetchedAt) {
+    }
+}
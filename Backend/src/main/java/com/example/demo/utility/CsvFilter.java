@@ -3,59 +3,287 @@ package com.example.demo.utility;
 import com.example.demo.model.TransactionRecord;
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvValidationException;
+
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+/**
+ * 银行 / 支付平台账单 CSV 解析器。
+ * 表头只解析一次，数据行按需逐行读取、校验并转换成 TransactionRecord，
+ * 内存占用与文件大小无关。userId / account 由调用方填写
+ */
 public class CsvFilter {
+    // 微信、支付宝导出的账单在表头前有若干行说明文字
+    private static final int MAX_PREAMBLE_ROWS = 50;
+    private static final int MAX_TEXT_LENGTH = 255;
+    private static final BigDecimal MAX_AMOUNT = new BigDecimal("99999999.99");
+    private static final String UNCATEGORIZED = "uncategorized";
+
+    // 同一字段可能的列名，按优先级排列
+    private static final List<String> TYPE_COLUMNS = List.of("收/支", "收支类型", "交易类型", "type");
+    private static final List<String> AMOUNT_COLUMNS = List.of("金额(元)", "金额（元）", "金额", "amount");
+    private static final List<String> TIME_COLUMNS = List.of("交易时间", "交易创建时间", "交易日期", "time", "date");
+    private static final List<String> CATEGORY_COLUMNS = List.of("交易分类", "分类", "category", "交易类型");
+    private static final List<String> METHOD_COLUMNS = List.of("支付方式", "收/付款方式", "method", "payment method");
+    private static final List<String> DESCRIPTION_COLUMNS = List.of("商品", "商品说明", "备注", "交易对方", "description");
+
+    private static final List<DateTimeFormatter> DATE_TIME_FORMATS = List.of(
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"),
+            DateTimeFormatter.ofPattern("yyyy/M/d H:mm:ss"),
+            DateTimeFormatter.ofPattern("yyyy/M/d H:mm"),
+            DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+    private static final List<DateTimeFormatter> DATE_FORMATS = List.of(
+            DateTimeFormatter.ISO_LOCAL_DATE,
+            DateTimeFormatter.ofPattern("yyyy/M/d"),
+            DateTimeFormatter.BASIC_ISO_DATE);
+
+    private final ZoneId zoneId;
+
+    public CsvFilter() {
+        this(ZoneId.systemDefault());
+    }
+
+    public CsvFilter(ZoneId zoneId) {
+        this.zoneId = zoneId;
+    }
+
+    /**
+     * 解析结果：record 和 error 只有一个不为 null
+     */
+    public record CsvRow(long lineNumber, TransactionRecord record, String error) {
+        public boolean isValid() {
+            return record != null;
+        }
+    }
+
+    /**
+     * 把 CSV 解析成一个惰性的 Stream，每次只从 reader 读取一行。
+     * 使用完必须关闭 Stream，关闭时同时关闭 reader
+     *
+     * @throws IllegalArgumentException 找不到包含必需列的表头
+     */
+    public Stream<CsvRow> stream(Reader reader) {
+        CSVReader csvReader = new CSVReader(reader);
+        try {
+            HeaderMapping mapping = resolveHeader(csvReader);
+            if (mapping == null) {
+                csvReader.close();
+                return Stream.empty();
+            }
+            Spliterator<CsvRow> rows = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super CsvRow> action) {
+                    String[] values = readNext(csvReader);
+                    while (values != null && isBlank(values)) {
+                        values = readNext(csvReader);
+                    }
+                    if (values == null) {
+                        return false;
+                    }
+                    action.accept(convert(mapping, csvReader.getLinesRead(), values));
+                    return true;
+                }
+            };
+            return StreamSupport.stream(rows, false).onClose(() -> closeQuietly(csvReader));
+        } catch (RuntimeException e) {
+            closeQuietly(csvReader);
+            throw e;
+        }
+    }
 
+    /**
+     * 一次性读取整个文件中的有效记录，只适合小文件；大文件请用 stream
+     */
     public List<TransactionRecord> importCsv(String filePath) {
-        List<TransactionRecord> records = new ArrayList<>();
+        try (Stream<CsvRow> rows = stream(new FileReader(filePath))) {
+            return rows.filter(CsvRow::isValid).map(CsvRow::record).collect(Collectors.toList());
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Failed to import CSV " + filePath + ": " + e.getMessage());
+            return new ArrayList<>();
+        }
+    }
+
+    // 空文件返回 null；跳过表头前的说明行，直到某一行包含类型、金额、时间三列
+    private HeaderMapping resolveHeader(CSVReader csvReader) {
+        for (int i = 0; i < MAX_PREAMBLE_ROWS; i++) {
+            String[] headers = readNext(csvReader);
+            if (headers == null) {
+                if (i == 0) {
+                    return null;
+                }
+                break;
+            }
+            HeaderMapping mapping = HeaderMapping.of(headers);
+            if (mapping != null) {
+                return mapping;
+            }
+        }
+        throw new IllegalArgumentException("CSV header must contain type, amount and transaction time columns, e.g. "
+                + TYPE_COLUMNS.get(0) + " / " + AMOUNT_COLUMNS.get(0) + " / " + TIME_COLUMNS.get(0));
+    }
 
-        try (CSVReader csvReader = new CSVReader(new FileReader(filePath))) {
-            String[] headers = csvReader.readNext();  // 读取第一行，假设是列标题
-            String[] values;
+    private CsvRow convert(HeaderMapping mapping, long lineNumber, String[] values) {
+        String type = parseType(value(values, mapping.type));
+        if (type == null) {
+            return new CsvRow(lineNumber, null, "Unsupported transaction type: " + value(values, mapping.type));
+        }
+        BigDecimal amount = parseAmount(value(values, mapping.amount));
+        if (amount == null) {
+            return new CsvRow(lineNumber, null, "Invalid amount: " + value(values, mapping.amount));
+        }
+        ZonedDateTime time = parseTime(value(values, mapping.time));
+        if (time == null) {
+            return new CsvRow(lineNumber, null, "Invalid transaction time: " + value(values, mapping.time));
+        }
 
-            while ((values = csvReader.readNext()) != null) {
-                // 假设我们需要 "交易类型", "金额(元)", 和 "交易时间" 这几列
-                int transactionTypeIndex = findColumnIndex(headers, "交易类型");
-                int amountIndex = findColumnIndex(headers, "金额(元)");
-                int transactionTimeIndex = findColumnIndex(headers, "交易时间");
+        TransactionRecord record = new TransactionRecord();
+        record.setType(type);
+        record.setAmount(amount.doubleValue());
+        record.setTransactionTime(time);
+        String category = truncate(value(values, mapping.category));
+        record.setCategory(category == null ? UNCATEGORIZED : category);
+        record.setTransactionMethod(truncate(value(values, mapping.method)));
+        record.setTransactionDescription(truncate(value(values, mapping.description)));
+        return new CsvRow(lineNumber, record, null);
+    }
 
-                String transactionType = transactionTypeIndex != -1 ? values[transactionTypeIndex] : null;
-                String amount = amountIndex != -1 ? values[amountIndex] : null;
-                String transactionTime = transactionTimeIndex != -1 ? values[transactionTimeIndex] : null;
+    private static String parseType(String value) {
+        if (value == null) {
+            return null;
+        }
+        return switch (value.toLowerCase(Locale.ROOT)) {
+            case "收入", "income" -> "Income";
+            case "支出", "expense" -> "Expense";
+            default -> null;
+        };
+    }
 
-                // 使用 record 生成的构造函数创建实例
-                TransactionRecord record = new TransactionRecord();
+    // 去掉货币符号和千分位，金额必须为正数且不超过 DECIMAL(10, 2)
+    private static BigDecimal parseAmount(String value) {
+        if (value == null) {
+            return null;
+        }
+        String cleaned = value.replace("¥", "").replace("￥", "").replace(",", "").trim();
+        try {
+            BigDecimal amount = new BigDecimal(cleaned).abs().setScale(2, RoundingMode.HALF_UP);
+            return amount.signum() > 0 && amount.compareTo(MAX_AMOUNT) <= 0 ? amount : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 
-                records.add(record);
+    private ZonedDateTime parseTime(String value) {
+        if (value == null) {
+            return null;
+        }
+        for (DateTimeFormatter format : DATE_TIME_FORMATS) {
+            try {
+                return LocalDateTime.parse(value, format).atZone(zoneId);
+            } catch (DateTimeParseException ignored) {
+                // 尝试下一种格式
+            }
+        }
+        for (DateTimeFormatter format : DATE_FORMATS) {
+            try {
+                return LocalDate.parse(value, format).atStartOfDay(zoneId);
+            } catch (DateTimeParseException ignored) {
+                // 尝试下一种格式
             }
+        }
+        return null;
+    }
 
-        } catch (IOException | CsvValidationException e) {
-            e.printStackTrace();
+    private static String value(String[] values, int index) {
+        if (index < 0 || index >= values.length) {
+            return null;
         }
+        String value = values[index].trim();
+        return value.isEmpty() ? null : value;
+    }
 
-        return records;
+    private static String truncate(String value) {
+        return value == null || value.length() <= MAX_TEXT_LENGTH ? value : value.substring(0, MAX_TEXT_LENGTH);
     }
 
-    private int findColumnIndex(String[] headers, String columnName) {
-        for (int i = 0; i < headers.length; i++) {
-            if (headers[i].equals(columnName)) {
-                return i;
+    private static boolean isBlank(String[] values) {
+        for (String value : values) {
+            if (!value.isBlank()) {
+                return false;
             }
         }
-        return -1;
+        return true;
+    }
+
+    private static String[] readNext(CSVReader csvReader) {
+        try {
+            return csvReader.readNext();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (CsvValidationException e) {
+            throw new IllegalArgumentException("Malformed CSV at line " + csvReader.getLinesRead() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static void closeQuietly(CSVReader csvReader) {
+        try {
+            csvReader.close();
+        } catch (IOException ignored) {
+            // 只读流，关闭失败不影响结果
+        }
     }
 
-    public static void main(String[] args) {
-        CsvFilter importer = new CsvFilter();
-        List<TransactionRecord> records = importer.importCsv("path/to/your/file.csv");
+    /**
+     * 表头解析结果：各字段所在的列下标，-1 表示文件中没有这一列
+     */
+    private record HeaderMapping(int type, int amount, int time, int category, int method, int description) {
+
+        static HeaderMapping of(String[] headers) {
+            List<String> normalized = new ArrayList<>(headers.length);
+            for (String header : headers) {
+                // 去掉 UTF-8 BOM 和首尾空白，列名比较不区分大小写
+                normalized.add(header.replace("\uFEFF", "").trim().toLowerCase(Locale.ROOT));
+            }
+            int type = indexOf(normalized, TYPE_COLUMNS, -1);
+            int amount = indexOf(normalized, AMOUNT_COLUMNS, -1);
+            int time = indexOf(normalized, TIME_COLUMNS, -1);
+            if (type < 0 || amount < 0 || time < 0) {
+                return null;
+            }
+            // 微信账单的“交易类型”是分类，“收/支”才是收入 / 支出，同一列不能既当类型又当分类
+            return new HeaderMapping(type, amount, time,
+                    indexOf(normalized, CATEGORY_COLUMNS, type),
+                    indexOf(normalized, METHOD_COLUMNS, -1),
+                    indexOf(normalized, DESCRIPTION_COLUMNS, -1));
+        }
 
-        // 输出导入的记录
-        for (TransactionRecord record : records) {
-            System.out.println(record);
+        private static int indexOf(List<String> headers, List<String> candidates, int excluded) {
+            for (String candidate : candidates) {
+                int index = headers.indexOf(candidate);
+                if (index >= 0 && index != excluded) {
+                    return index;
+                }
+            }
+            return -1;
         }
     }
-}
\ No newline at end of file
+}
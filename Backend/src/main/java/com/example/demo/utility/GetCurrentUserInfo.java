@@ -1,43 +1,47 @@
 package com.example.demo.utility;
 
 import com.example.demo.model.TransactionUser;
+import com.example.demo.model.security.CurrentUserContext;
+import com.example.demo.model.security.JwtPrincipal;
 import com.example.demo.repository.TransactionUserDao;
+import com.example.demo.service.session.UserSessionStore;
 import com.example.demo.utility.jwt.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
-import java.util.Arrays;
+import java.util.Optional;
 
 @Component
 public class GetCurrentUserInfo {
     public final JwtUtil jwtUtil;
-    public final StringRedisTemplate stringRedisTemplate;
+    private final UserSessionStore userSessionStore;
     private final TransactionUserDao transactionUserDao;
 
     @Autowired
-    public GetCurrentUserInfo(JwtUtil jwtUtil, StringRedisTemplate stringRedisTemplate, TransactionUserDao transactionUserDao) {
+    public GetCurrentUserInfo(JwtUtil jwtUtil, UserSessionStore userSessionStore, TransactionUserDao transactionUserDao) {
         this.jwtUtil = jwtUtil;
-        this.stringRedisTemplate = stringRedisTemplate;
+        this.userSessionStore = userSessionStore;
         this.transactionUserDao = transactionUserDao;
     }
 
 
     public Long getCurrentUserId(String token) {
-        return jwtUtil.getUserIdFromToken(token.replace("Bearer ", ""));
+        return getRequestPrincipal(token)
+                .map(JwtPrincipal::userId)
+                .orElseGet(() -> jwtUtil.getUserIdFromToken(token.replace("Bearer ", "")));
     }
 
+    // 未登录或还没有选择账户时返回 null；当前请求就是这个用户时复用请求上下文里已经读取过的值
     public Long getCurrentAccountId(Long userId) {
-        try {
-            String pattern = "login_user:" + userId.toString() + ":current_account";
-            String accountId = stringRedisTemplate.opsForValue().get(pattern);
-            System.out.printf("===============================accountId: %s===============================", accountId);
-            return Long.valueOf(accountId);
-        } catch (IllegalArgumentException e) {
-            System.out.println(e.getMessage());
-            System.out.println(Arrays.toString(e.getStackTrace()));
-            return null;
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes != null
+                && attributes.getAttribute(CurrentUserContext.REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) instanceof CurrentUserContext context
+                && context.userId().equals(userId)) {
+            return context.currentAccountId();
         }
+        return userSessionStore.getCurrentAccountId(userId);
     }
 
     public TransactionUser getCurrentUserEntity(String token){
@@ -46,6 +50,22 @@ public class GetCurrentUserInfo {
     }
 
     public Object getCurrentUserRole(String token) {
-        return jwtUtil.getRoleFromToken(token.replace("Bearer ", ""));
+        return getRequestPrincipal(token)
+                .map(JwtPrincipal::role)
+                .orElseGet(() -> jwtUtil.getRoleFromToken(token.replace("Bearer ", "")));
+    }
+
+    // JwtAuthenticationTokenFilter 已经解析过当前请求的 token，直接复用，避免重复解析
+    private Optional<JwtPrincipal> getRequestPrincipal(String token) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) {
+            return Optional.empty();
+        }
+        Object principal = attributes.getAttribute(JwtPrincipal.REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (principal instanceof JwtPrincipal jwtPrincipal
+                && jwtPrincipal.token().equals(token.replace("Bearer ", "").trim())) {
+            return Optional.of(jwtPrincipal);
+        }
+        return Optional.empty();
     }
 }
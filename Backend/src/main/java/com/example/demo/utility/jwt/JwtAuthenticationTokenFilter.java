@@ -3,8 +3,10 @@ package com.example.demo.utility.jwt;
 import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.lang.NonNull;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.GrantedAuthority;
@@ -14,7 +16,10 @@ import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.example.demo.model.security.CurrentUserContext;
+import com.example.demo.model.security.JwtPrincipal;
 import com.example.demo.service.security.UserDetailService;
+import com.example.demo.service.session.UserSessionStore;
 
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -26,10 +31,18 @@ public class JwtAuthenticationTokenFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
     private final UserDetailService userDetailService;
+    private final UserSessionStore userSessionStore;
+
+    // false(默认): 直接用 token 里的 userId / role 构建认证信息，不查数据库
+    // true: 额外加载 TransactionUser 实体作为 principal（走 UserDetailService 的短 TTL 缓存）
+    @Value("${security.auth.load-user-entity:false}")
+    private boolean loadUserEntity;
+
     @Autowired
-    public JwtAuthenticationTokenFilter(JwtUtil jwtUtil, UserDetailService userDetailService) {
+    public JwtAuthenticationTokenFilter(JwtUtil jwtUtil, UserDetailService userDetailService, UserSessionStore userSessionStore) {
         this.jwtUtil = jwtUtil;
         this.userDetailService = userDetailService;
+        this.userSessionStore = userSessionStore;
     }
 
     @Override
@@ -53,21 +66,19 @@ public class JwtAuthenticationTokenFilter extends OncePerRequestFilter {
             token = token.substring(7).trim();
         }
 
-        // 2. 验证 token
-        if (token != null && jwtUtil.validateToken(token)) {
+        // 2. 验证 token，整个请求只解析这一次
+        Optional<JwtPrincipal> principal = token == null ? Optional.empty() : jwtUtil.resolvePrincipal(token);
+
+        if (principal.isPresent()) {
 
-            // 3. 从 token 中提取用户信息
-            Long userId = jwtUtil.getUserIdFromToken(token);
-            String role = jwtUtil.getRoleFromToken(token);
-            UserDetails userDetails = userDetailService.loadUserById(userId);
-            // 在过滤时直接从token获取用户的角色信息，直接授权，绕开从userdetail里获取role info
-            Collection<? extends GrantedAuthority> authorities =
-                    Collections.singletonList(new SimpleGrantedAuthority(role));
+            // 3. 把解析结果挂到 request 上，下游直接读取，不再重复解析 token；
+            // CurrentUserContext 在本次请求里最多读取一次当前账户，controller 通过参数注入
+            request.setAttribute(JwtPrincipal.REQUEST_ATTRIBUTE, principal.get());
+            request.setAttribute(CurrentUserContext.REQUEST_ATTRIBUTE,
+                    new CurrentUserContext(principal.get(), userSessionStore::getCurrentAccountId));
 
             // 4. 将用户信息存入 SecurityContext，在后续的请求中可以直接获取用户信息
-            UsernamePasswordAuthenticationToken authentication =
-                    new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
-            SecurityContextHolder.getContext().setAuthentication(authentication);
+            SecurityContextHolder.getContext().setAuthentication(buildAuthentication(principal.get()));
         } else {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             response.getWriter().write("Invalid token");
@@ -77,4 +88,15 @@ public class JwtAuthenticationTokenFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    private UsernamePasswordAuthenticationToken buildAuthentication(JwtPrincipal principal) {
+        if (loadUserEntity) {
+            UserDetails userDetails = userDetailService.loadUserById(principal.userId());
+            return new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+        }
+        // token 已经携带 userId 和 role，直接授权，绕开数据库查询
+        Collection<? extends GrantedAuthority> authorities =
+                Collections.singletonList(new SimpleGrantedAuthority(principal.role()));
+        return new UsernamePasswordAuthenticationToken(principal, null, authorities);
+    }
+
 }
\ No newline at end of file
@@ -1,10 +1,7 @@
 package com.example.demo.utility.jwt;
 
+import com.example.demo.service.session.UserSessionStore;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.Cursor;
-import org.springframework.data.redis.core.RedisCallback;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.web.authentication.logout.LogoutHandler;
 import org.springframework.stereotype.Component;
@@ -12,43 +9,27 @@ import org.springframework.stereotype.Component;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
-import java.util.HashSet;
-import java.util.Set;
-
 @Component
 public class JwtLogoutHandler implements LogoutHandler {
 
     private final JwtUtil jwtUtil;
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final UserSessionStore userSessionStore;
 
     @Autowired
-    public JwtLogoutHandler(JwtUtil jwtUtil, RedisTemplate<String, Object> redisTemplate) {
+    public JwtLogoutHandler(JwtUtil jwtUtil, UserSessionStore userSessionStore) {
         this.jwtUtil = jwtUtil;
-        this.redisTemplate = redisTemplate;
+        this.userSessionStore = userSessionStore;
     }
 
     @Override
     public void logout(HttpServletRequest request, HttpServletResponse response, Authentication authentication) {
         String token = jwtUtil.extractTokenFromRequest(request);
-        Long userId = jwtUtil.getUserIdFromToken(token);
-        String keyPattern = "login_user:" + userId + ":*";
-        Set<String> keys = redisTemplate.execute((RedisCallback<Set<String>>) connection -> {
-            Set<String> keySet = new HashSet<>();
-
-            Cursor<byte[]> cursor = connection.scan(ScanOptions.scanOptions().match(keyPattern).build());
-            while (cursor.hasNext()) {
-                keySet.add(new String(cursor.next()));
-            }
-            return keySet;
-        });
-
-        // 删除找到的所有 keys
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
-        }
-        if (token != null) {
-            jwtUtil.invalidateToken(token);
+        if (token == null) {
+            return;
         }
+        // 会话数据都在 login_user:{userId} 一个哈希里，直接删除，不需要扫描 key
+        userSessionStore.close(jwtUtil.getUserIdFromToken(token));
+        jwtUtil.invalidateToken(token);
     }
-}
\ No newline at end of file
+}
@@ -1,34 +1,69 @@
 package com.example.demo.utility.jwt;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.Date;
-import java.util.Hashtable;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.UUID;
 
 import javax.crypto.SecretKey;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.example.demo.model.security.JwtPrincipal;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
 
+@Slf4j
 @Component
 public class JwtUtil {
+    private static final long DEFAULT_CLAIMS_CACHE_SIZE = 10_000;
 
     private final SecretKey key;
     private final long expirationTime;
-    private final Hashtable<String, String> invalidTokens = new Hashtable<>();
-    private final Set<String> tokenBlacklist = ConcurrentHashMap.newKeySet();
+    // JwtParser 构建后不可变且线程安全，全局复用一个即可
+    private final JwtParser jwtParser;
+    // token 摘要 -> 已验签的 claims，条目在 token 的 exp 时刻自动过期
+    private final Cache<String, Claims> claimsCache;
+    // 已注销 token 的记录，按 jti 存储并在 exp 时刻自动清理
+    private final TokenRevocationStore revocationStore;
+
+    public JwtUtil(String secret, long expirationTime) {
+        this(secret, expirationTime, DEFAULT_CLAIMS_CACHE_SIZE);
+    }
+
+    public JwtUtil(String secret, long expirationTime, long claimsCacheSize) {
+        this(secret, expirationTime, claimsCacheSize, new LocalTokenRevocationStore());
+    }
 
-    // 从配置文件中读取密钥和过期时间
+    // 从配置文件中读取密钥、过期时间和 claims 缓存容量
+    @Autowired
     public JwtUtil(@Value("${jwt.secret}") String secret,
-                   @Value("${jwt.expiration}") long expirationTime) {
+                   @Value("${jwt.expiration}") long expirationTime,
+                   @Value("${jwt.claims-cache.max-size:10000}") long claimsCacheSize,
+                   TokenRevocationStore revocationStore) {
         this.key = Keys.hmacShaKeyFor(secret.getBytes());
         this.expirationTime = expirationTime;
-
+        this.revocationStore = revocationStore;
+        this.jwtParser = Jwts.parserBuilder().setSigningKey(key).build();
+        this.claimsCache = Caffeine.newBuilder()
+                .maximumSize(claimsCacheSize)
+                .expireAfter(Expiry.creating((String digest, Claims claims) -> remainingLifetime(claims)))
+                .build();
     }
 
     public String generateToken(Long userId, String username, String roleName) {
@@ -36,6 +71,7 @@ public class JwtUtil {
         Date expiryDate = new Date(now.getTime() + expirationTime);
 
         return Jwts.builder()
+                .setId(UUID.randomUUID().toString())
                 .setSubject(username)
                 .claim("userId", userId)
                 .claim("role", roleName)
@@ -45,47 +81,50 @@ public class JwtUtil {
                 .compact();
     }
 
+    /**
+     * 解析并验签 token，同一个 token 只会真正解析一次，之后直接命中缓存
+     *
+     * @throws JwtException token 无效或已过期
+     */
+    public Claims parseClaims(String token) {
+        String jwt = token.trim();
+        return claimsCache.get(digest(jwt), digest -> jwtParser.parseClaimsJws(jwt).getBody());
+    }
+
+    /**
+     * 把 token 解析成当前请求的身份信息，token 无效或已注销时返回 empty
+     */
+    public Optional<JwtPrincipal> resolvePrincipal(String token) {
+        try {
+            Claims claims = parseClaims(token);
+            if (revocationStore.isRevoked(revocationId(claims, token))) {
+                return Optional.empty();
+            }
+            return Optional.of(new JwtPrincipal(
+                    claims.get("userId", Long.class),
+                    claims.getSubject(),
+                    claims.get("role", String.class),
+                    token.trim()));
+        } catch (JwtException | IllegalArgumentException e) {
+            System.out.println("无效的JWT令牌: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
     public String getUsernameFromToken(String token) {
-        token = token.trim();
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .getSubject();
+        return parseClaims(token).getSubject();
     }
 
     public Long getUserIdFromToken(String token) {
-        token = token.trim();
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("userId", Long.class);
+        return parseClaims(token).get("userId", Long.class);
     }
 
     public String getRoleFromToken(String token) {
-        token = token.trim();
-        return Jwts.parserBuilder()
-                .setSigningKey(key)
-                .build()
-                .parseClaimsJws(token)
-                .getBody()
-                .get("role", String.class);
+        return parseClaims(token).get("role", String.class);
     }
 
     public boolean validateToken(String token) {
-        if (tokenBlacklist.contains(token)) {
-            return false;
-        }
-        try {
-            Jwts.parserBuilder().setSigningKey(key).build().parseClaimsJws(token);
-            return true;
-        } catch (JwtException | IllegalArgumentException e) {
-            System.out.println("无效的JWT令牌: " + e.getMessage());
-            return false;
-        }
+        return resolvePrincipal(token).isPresent();
     }
 
     public String extractTokenFromRequest(HttpServletRequest request) {
@@ -96,8 +135,43 @@ public class JwtUtil {
         return null;
     }
 
+    /**
+     * 注销 token，记录会保留到 token 本身过期为止；已经无效的 token 无需处理
+     */
     public void invalidateToken(String token) {
-        tokenBlacklist.add(token);
+        try {
+            Claims claims = parseClaims(token);
+            Date expiration = claims.getExpiration() != null
+                    ? claims.getExpiration()
+                    : new Date(System.currentTimeMillis() + expirationTime);
+            revocationStore.revoke(revocationId(claims, token), expiration);
+        } catch (JwtException | IllegalArgumentException e) {
+            log.debug("Token being invalidated is already invalid: {}", e.getMessage());
+        }
+    }
+
+    // 优先使用 jti；旧版本签发的 token 没有 jti，退回到 token 摘要
+    private static String revocationId(Claims claims, String token) {
+        return claims.getId() != null ? claims.getId() : digest(token.trim());
+    }
+
+    private Duration remainingLifetime(Claims claims) {
+        Date expiration = claims.getExpiration();
+        if (expiration == null) {
+            return Duration.ofMillis(expirationTime);
+        }
+        long remaining = expiration.getTime() - System.currentTimeMillis();
+        return Duration.ofMillis(Math.max(remaining, 0));
+    }
+
+    // 缓存 key 使用 token 的 SHA-256 摘要，避免在内存里长期保存完整 token
+    private static String digest(String token) {
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,43 @@
+package com.example.demo.utility.jwt;
+
+import java.time.Duration;
+import java.util.Date;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+
+/**
+ * 单机内存版的注销记录，每个条目在对应 token 过期时自动移除，内存占用有上限。
+ * 既可以单独使用（测试 / 单节点），也作为 RedisTokenRevocationStore 的本地近端缓存
+ */
+public class LocalTokenRevocationStore implements TokenRevocationStore {
+    private static final long DEFAULT_MAX_SIZE = 100_000;
+
+    // jti -> token 的过期时间戳(ms)
+    private final Cache<String, Long> revokedTokens;
+
+    public LocalTokenRevocationStore() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public LocalTokenRevocationStore(long maxSize) {
+        this.revokedTokens = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.creating((String tokenId, Long expiresAtMillis) ->
+                        Duration.ofMillis(Math.max(expiresAtMillis - System.currentTimeMillis(), 0))))
+                .build();
+    }
+
+    @Override
+    public void revoke(String tokenId, Date expiresAt) {
+        if (expiresAt.getTime() > System.currentTimeMillis()) {
+            revokedTokens.put(tokenId, expiresAt.getTime());
+        }
+    }
+
+    @Override
+    public boolean isRevoked(String tokenId) {
+        return revokedTokens.getIfPresent(tokenId) != null;
+    }
+}
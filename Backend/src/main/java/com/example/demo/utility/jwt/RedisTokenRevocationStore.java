@@ -0,0 +1,136 @@
+package com.example.demo.utility.jwt;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 以 Redis 为准的分布式 token 注销记录：
+ * revoked_token:{jti} 的 TTL 等于 token 剩余有效期，过期后由 Redis 自动删除；
+ * 本地近端缓存只记录"已注销"：命中直接返回，未命中必须再查一次 Redis，
+ * 因为条目可能因容量被淘汰、广播可能丢失、重启后也可能还没同步完。
+ * 新注销的 token 通过 pub/sub 广播给其他实例，启动时及之后定期从 Redis 全量同步，让大多数校验命中本地。
+ * Redis 不可用时按已注销处理（fail closed），不放行可能已经登出的 token
+ */
+@Slf4j
+@Component
+public class RedisTokenRevocationStore implements TokenRevocationStore, MessageListener {
+    static final String KEY_PREFIX = "revoked_token:";
+    static final String CHANNEL = "revoked_token_events";
+    private static final int SCAN_BATCH_SIZE = 500;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final LocalTokenRevocationStore nearCache;
+
+    @Autowired
+    public RedisTokenRevocationStore(StringRedisTemplate stringRedisTemplate,
+                                     RedisMessageListenerContainer listenerContainer,
+                                     @Value("${jwt.revocation.local-max-size:100000}") long localMaxSize) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.nearCache = new LocalTokenRevocationStore(localMaxSize);
+        listenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+    }
+
+    @Override
+    public void revoke(String tokenId, Date expiresAt) {
+        long ttlMillis = expiresAt.getTime() - System.currentTimeMillis();
+        if (ttlMillis <= 0) {
+            return;
+        }
+        nearCache.revoke(tokenId, expiresAt);
+        String expiresAtMillis = String.valueOf(expiresAt.getTime());
+        stringRedisTemplate.opsForValue().set(KEY_PREFIX + tokenId, expiresAtMillis, Duration.ofMillis(ttlMillis));
+        stringRedisTemplate.convertAndSend(CHANNEL, tokenId + ":" + expiresAtMillis);
+    }
+
+    @Override
+    public boolean isRevoked(String tokenId) {
+        if (nearCache.isRevoked(tokenId)) {
+            return true;
+        }
+        try {
+            String expiresAtMillis = stringRedisTemplate.opsForValue().get(KEY_PREFIX + tokenId);
+            if (expiresAtMillis == null) {
+                return false;
+            }
+            nearCache.revoke(tokenId, new Date(Long.parseLong(expiresAtMillis)));
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Failed to check token revocation in Redis, rejecting token: {}", e.getMessage());
+            return true;
+        }
+    }
+
+    // 其他实例广播的注销消息，格式为 {jti}:{exp 毫秒时间戳}
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.lastIndexOf(':');
+        if (separator <= 0) {
+            log.warn("Ignoring malformed token revocation message: {}", body);
+            return;
+        }
+        try {
+            long expiresAtMillis = Long.parseLong(body.substring(separator + 1));
+            nearCache.revoke(body.substring(0, separator), new Date(expiresAtMillis));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed token revocation message: {}", body);
+        }
+    }
+
+    /**
+     * 从 Redis 同步全部未过期的注销记录到本地缓存，启动时执行一次，之后按固定间隔执行
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${jwt.revocation.resync-interval-ms:60000}")
+    public void resyncFromRedis() {
+        try {
+            ScanOptions options = ScanOptions.scanOptions().match(KEY_PREFIX + "*").count(SCAN_BATCH_SIZE).build();
+            List<String> batch = new ArrayList<>(SCAN_BATCH_SIZE);
+            try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+                while (cursor.hasNext()) {
+                    batch.add(cursor.next());
+                    if (batch.size() == SCAN_BATCH_SIZE) {
+                        loadBatch(batch);
+                        batch.clear();
+                    }
+                }
+            }
+            loadBatch(batch);
+        } catch (Exception e) {
+            log.warn("Failed to resync revoked tokens from Redis: {}", e.getMessage());
+        }
+    }
+
+    private void loadBatch(List<String> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<String> values = stringRedisTemplate.opsForValue().multiGet(keys);
+        if (values == null) {
+            return;
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            String expiresAtMillis = values.get(i);
+            if (expiresAtMillis != null) {
+                String tokenId = keys.get(i).substring(KEY_PREFIX.length());
+                nearCache.revoke(tokenId, new Date(Long.parseLong(expiresAtMillis)));
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.demo.utility.jwt;
+
+import java.util.Date;
+
+/**
+ * 已注销 token 的存储，按 token 的 jti 记录，到 token 自身的 exp 时刻自动失效
+ */
+public interface TokenRevocationStore {
+
+    void revoke(String tokenId, Date expiresAt);
+
+    boolean isRevoked(String tokenId);
+}
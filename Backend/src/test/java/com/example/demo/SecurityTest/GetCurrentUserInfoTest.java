@@ -2,6 +2,7 @@ package com.example.demo.SecurityTest;
 
 import com.example.demo.model.TransactionUser;
 import com.example.demo.repository.TransactionUserDao;
+import com.example.demo.service.session.UserSessionStore;
 import com.example.demo.utility.GetCurrentUserInfo;
 import com.example.demo.utility.jwt.JwtUtil;
 import com.google.common.truth.Truth;
@@ -10,7 +11,6 @@ import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.data.redis.core.StringRedisTemplate;
 
 import java.util.Optional;
 
@@ -22,7 +22,7 @@ public class GetCurrentUserInfoTest {
     private JwtUtil jwtUtil;
 
     @Mock
-    private StringRedisTemplate stringRedisTemplate;
+    private UserSessionStore userSessionStore;
 
     @Mock
     private TransactionUserDao transactionUserDao;
@@ -58,20 +58,18 @@ public class GetCurrentUserInfoTest {
     public void testGetCurrentAccountId() {
         // 准备测试数据
         Long userId = 123L;
-        String accountId = "456";
-        String pattern = "login_user:123:current_account";
 
-        // 模拟 Redis 的行为
-        when(stringRedisTemplate.opsForValue().get(pattern)).thenReturn(accountId);
+        // 模拟会话的行为
+        when(userSessionStore.getCurrentAccountId(userId)).thenReturn(456L);
 
         // 调用被测方法
         Long actualAccountId = getCurrentUserInfo.getCurrentAccountId(userId);
 
         // 验证返回值
-        Truth.assertThat(actualAccountId).isEqualTo(Long.valueOf(accountId));
+        Truth.assertThat(actualAccountId).isEqualTo(456L);
 
-        // 验证是否正确调用了 stringRedisTemplate 的方法
-        verify(stringRedisTemplate).opsForValue().get(pattern);
+        // 验证是否正确调用了 userSessionStore 的方法
+        verify(userSessionStore).getCurrentAccountId(userId);
     }
 
     @Test
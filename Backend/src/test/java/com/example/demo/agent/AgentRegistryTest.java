@@ -0,0 +1,135 @@
+package com.example.demo.agent;
+
+import com.example.demo.service.resilience.DependencyGuards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.model.function.FunctionCallback;
+import org.springframework.context.annotation.Description;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class AgentRegistryTest {
+
+    @Agent(keywords = {"stock", "股票"})
+    @Description("provide user stock information")
+    static class StockAgent implements Function<StockAgent.Request, String> {
+        record Request(String content) {}
+
+        @Override
+        public String apply(Request request) {
+            return "stock:" + request.content();
+        }
+    }
+
+    @Agent(keywords = {"weather"})
+    @Description("provide user weather information")
+    static class WeatherAgent implements Function<WeatherAgent.Request, String> {
+        record Request(String content) {}
+
+        @Override
+        public String apply(Request request) {
+            if (request.content() == null) {
+                throw new IllegalArgumentException("location is required");
+            }
+            return "weather:" + request.content();
+        }
+    }
+
+    private SimpleMeterRegistry meterRegistry;
+    private AgentRegistry registry;
+
+    @BeforeEach
+    public void setUp() {
+        Map<String, Object> agents = new LinkedHashMap<>();
+        agents.put("stockAgent", new StockAgent());
+        agents.put("weatherAgent", new WeatherAgent());
+        meterRegistry = new SimpleMeterRegistry();
+        registry = new AgentRegistry(agents, toolExecutor(meterRegistry), meterRegistry, true);
+    }
+
+    @Test
+    public void constructor_ShouldPrecomputeCallbacksWithSchema() {
+        // Act
+        List<FunctionCallback> all = registry.all();
+
+        // Assert
+        assertThat(all).hasSize(2);
+        assertThat(all.get(0).getName()).isEqualTo("stockAgent");
+        assertThat(all.get(0).getDescription()).isEqualTo("provide user stock information");
+        assertThat(all.get(0).getInputTypeSchema()).contains("content");
+    }
+
+    @Test
+    public void select_ShouldOnlyReturnAgentsMatchingTheMessage() {
+        // Act
+        List<FunctionCallback> english = registry.select("What are Apple's Stocks trading at?");
+        List<FunctionCallback> chinese = registry.select("帮我查一下苹果的股票");
+
+        // Assert
+        assertThat(english).hasSize(1);
+        assertThat(english.get(0).getName()).isEqualTo("stockAgent");
+        assertThat(chinese).hasSize(1);
+        assertThat(chinese.get(0).getName()).isEqualTo("stockAgent");
+        assertThat(meterRegistry.summary("ai.agent.tools.selected").totalAmount()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void select_ShouldMatchOnWordStartOnly() {
+        // Act: livestock 里的 stock 不在词首，不应选中股票 Agent
+        List<FunctionCallback> selected = registry.select("I like livestock farming and the weather today");
+
+        // Assert
+        assertThat(selected).hasSize(1);
+        assertThat(selected.get(0).getName()).isEqualTo("weatherAgent");
+    }
+
+    @Test
+    public void select_WithoutAnyMatch_ShouldFallBackToAllAgents() {
+        // Act
+        List<FunctionCallback> selected = registry.select("hello there");
+
+        // Assert
+        assertThat(selected).hasSize(2);
+    }
+
+    @Test
+    public void select_WhenSelectionDisabled_ShouldReturnAllAgents() {
+        // Arrange
+        AgentRegistry unfiltered = new AgentRegistry(Map.of("stockAgent", new StockAgent(),
+                "weatherAgent", new WeatherAgent()), toolExecutor(new SimpleMeterRegistry()), new SimpleMeterRegistry(), false);
+
+        // Act & Assert
+        assertThat(unfiltered.select("stock price")).hasSize(2);
+    }
+
+    @Test
+    public void callback_ShouldInvokeAgentWithParsedRequest() {
+        // Act
+        String result = registry.all().get(1).call("{\"content\": \"sydney\"}");
+
+        // Assert
+        assertThat(result).isEqualTo("weather:sydney");
+    }
+
+    @Test
+    public void callback_WhenAgentFails_ShouldReturnStructuredError() {
+        // Act
+        String result = registry.all().get(1).call("{}");
+
+        // Assert
+        assertThat(result).contains("\"tool\":\"weatherAgent\"");
+        assertThat(result).contains("\"error\":\"location is required\"");
+        assertThat(meterRegistry.counter("ai.agent.tool.failures").count()).isEqualTo(1.0);
+    }
+
+    private static ToolExecutor toolExecutor(SimpleMeterRegistry meterRegistry) {
+        return new ToolExecutor(new DependencyGuards(new MockEnvironment(), meterRegistry), meterRegistry);
+    }
+}
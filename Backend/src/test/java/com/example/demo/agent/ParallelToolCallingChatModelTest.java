@@ -0,0 +1,103 @@
+package com.example.demo.agent;
+
+import com.example.demo.service.resilience.DependencyGuards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.ToolResponseMessage;
+import org.springframework.ai.model.function.FunctionCallback;
+import org.springframework.ai.model.function.FunctionCallbackContext;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.ai.retry.RetryUtils;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.demo.agent.ToolExecutorTest.sleep;
+import static com.example.demo.agent.ToolExecutorTest.toolCall;
+import static com.google.common.truth.Truth.assertThat;
+
+public class ParallelToolCallingChatModelTest {
+
+    private ParallelToolCallingChatModel chatModel;
+
+    @BeforeEach
+    public void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MockEnvironment environment = new MockEnvironment().withProperty("resilience.tools.timeout-ms", "1000");
+        ToolExecutor toolExecutor = new ToolExecutor(new DependencyGuards(environment, meterRegistry), meterRegistry);
+        chatModel = new ParallelToolCallingChatModel(new OpenAiApi("test-key"), OpenAiChatOptions.builder().build(),
+                new FunctionCallbackContext(),
+                List.of(slowCallback("stock_price_reader"), slowCallback("current_weather_reader")),
+                RetryUtils.DEFAULT_RETRY_TEMPLATE, toolExecutor);
+    }
+
+    @Test
+    public void executeFunctions_ShouldRunToolCallsOfOneTurnConcurrently() {
+        // Arrange: 一轮回复里的三个 tool call，每个耗时 300ms，串行执行需要 900ms 以上
+        AssistantMessage assistantMessage = new AssistantMessage("", Map.of(), List.of(
+                toolCall("call-1", "stock_price_reader", "AAPL"),
+                toolCall("call-2", "current_weather_reader", "Sydney"),
+                toolCall("call-3", "stock_price_reader", "MSFT")));
+
+        // Act
+        long start = System.nanoTime();
+        ToolResponseMessage response = chatModel.executeFunctions(assistantMessage);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert: 结果按 tool call 的顺序返回，id 一一对应
+        List<ToolResponseMessage.ToolResponse> responses = response.getResponses();
+        assertThat(responses.stream().map(ToolResponseMessage.ToolResponse::id).toList())
+                .containsExactly("call-1", "call-2", "call-3").inOrder();
+        assertThat(responses.stream().map(ToolResponseMessage.ToolResponse::responseData).toList())
+                .containsExactly("stock_price_reader:AAPL", "current_weather_reader:Sydney", "stock_price_reader:MSFT")
+                .inOrder();
+        assertThat(elapsedMillis).isLessThan(800L);
+    }
+
+    @Test
+    public void executeFunctions_WhenFunctionIsUnknown_ShouldReturnStructuredErrorForThatCall() {
+        // Arrange
+        AssistantMessage assistantMessage = new AssistantMessage("", Map.of(), List.of(
+                toolCall("call-1", "stock_price_reader", "AAPL"),
+                toolCall("call-2", "crypto_price_reader", "BTC")));
+
+        // Act
+        List<ToolResponseMessage.ToolResponse> responses = chatModel.executeFunctions(assistantMessage).getResponses();
+
+        // Assert
+        assertThat(responses.get(0).responseData()).isEqualTo("stock_price_reader:AAPL");
+        assertThat(responses.get(1).name()).isEqualTo("crypto_price_reader");
+        assertThat(responses.get(1).responseData())
+                .contains("No function callback found for function name: crypto_price_reader");
+    }
+
+    private static FunctionCallback slowCallback(String name) {
+        return new FunctionCallback() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public String getDescription() {
+                return name;
+            }
+
+            @Override
+            public String getInputTypeSchema() {
+                return "{}";
+            }
+
+            @Override
+            public String call(String functionInput) {
+                sleep(300);
+                return name + ":" + functionInput;
+            }
+        };
+    }
+}
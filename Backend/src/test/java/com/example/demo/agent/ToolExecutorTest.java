@@ -0,0 +1,148 @@
+package com.example.demo.agent;
+
+import com.example.demo.service.resilience.DependencyGuards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class ToolExecutorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ToolExecutor toolExecutor;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("resilience.tools.timeout-ms", "1000")
+                .withProperty("resilience.tools.pool-size", "2");
+        toolExecutor = new ToolExecutor(new DependencyGuards(environment, meterRegistry), meterRegistry);
+    }
+
+    @Test
+    public void invokeAll_ShouldRunToolCallsConcurrentlyAndKeepOrder() {
+        // Arrange: 每个调用耗时 300ms，串行执行需要 600ms 以上
+        List<AssistantMessage.ToolCall> toolCalls = List.of(
+                toolCall("call-1", "stock_price_reader", "{\"symbol\":\"AAPL\"}"),
+                toolCall("call-2", "current_weather_reader", "{\"location\":\"Sydney\"}"));
+
+        // Act
+        long start = System.nanoTime();
+        List<String> results = toolExecutor.invokeAll(toolCalls, toolCall -> {
+            sleep(300);
+            return toolCall.name() + " done";
+        });
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert
+        assertThat(results).containsExactly("stock_price_reader done", "current_weather_reader done").inOrder();
+        assertThat(elapsedMillis).isLessThan(550L);
+    }
+
+    @Test
+    public void invokeAll_WhenOneCallFails_ShouldReturnStructuredErrorInItsSlot() {
+        // Arrange
+        List<AssistantMessage.ToolCall> toolCalls = List.of(
+                toolCall("call-1", "stock_price_reader", "AAPL"),
+                toolCall("call-2", "stock_price_reader", "BAD"),
+                toolCall("call-3", "stock_price_reader", "MSFT"));
+
+        // Act
+        List<String> results = toolExecutor.invokeAll(toolCalls, toolCall -> {
+            if (toolCall.arguments().equals("BAD")) {
+                throw new IllegalArgumentException("Unknown symbol");
+            }
+            return "price of " + toolCall.arguments();
+        });
+
+        // Assert
+        assertThat(results.get(0)).isEqualTo("price of AAPL");
+        assertThat(results.get(1)).isEqualTo("{\"tool\":\"stock_price_reader\",\"input\":\"BAD\",\"error\":\"Unknown symbol\"}");
+        assertThat(results.get(2)).isEqualTo("price of MSFT");
+        assertThat(meterRegistry.counter("ai.agent.tool.failures").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void invokeAll_WhenCallExceedsTimeout_ShouldReportTimeoutWithoutWaitingForIt() {
+        // Arrange
+        List<AssistantMessage.ToolCall> toolCalls = List.of(
+                toolCall("call-1", "current_weather_reader", "Sydney"),
+                toolCall("call-2", "current_weather_reader", "Slowtown"));
+
+        // Act
+        long start = System.nanoTime();
+        List<String> results = toolExecutor.invokeAll(toolCalls, toolCall -> {
+            sleep(toolCall.arguments().equals("Slowtown") ? 5_000 : 10);
+            return "weather in " + toolCall.arguments();
+        });
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // Assert
+        assertThat(results.get(0)).isEqualTo("weather in Sydney");
+        assertThat(results.get(1)).contains("timed out after 1000 ms");
+        assertThat(elapsedMillis).isLessThan(3_000L);
+    }
+
+    @Test
+    public void invokeAll_SingleCall_ShouldRunInlineAndCatchFailures() {
+        // Arrange
+        Thread caller = Thread.currentThread();
+        List<AssistantMessage.ToolCall> single = List.of(toolCall("call-1", "stock_price_reader", "AAPL"));
+
+        // Act
+        List<String> results = toolExecutor.invokeAll(single,
+                toolCall -> Thread.currentThread() == caller ? "inline" : "pooled");
+        List<String> failed = toolExecutor.invokeAll(single, toolCall -> {
+            throw new IllegalStateException("rate limit");
+        });
+
+        // Assert
+        assertThat(results).containsExactly("inline");
+        assertThat(failed.get(0)).contains("\"error\":\"rate limit\"");
+    }
+
+    @Test
+    public void invokeAll_WhenNestedInsideToolsOnFullPool_ShouldNotWaitForItself() {
+        // Arrange: 线程池只有 2 个线程，外层两个 Agent 调用占满线程池后各自再发起两个工具调用
+        List<AssistantMessage.ToolCall> agentCalls = List.of(
+                toolCall("call-1", "stockAnalyzer", "AAPL"),
+                toolCall("call-2", "stockAnalyzer", "MSFT"));
+
+        // Act
+        List<String> results = toolExecutor.invokeAll(agentCalls, agentCall -> {
+            List<AssistantMessage.ToolCall> readerCalls = List.of(
+                    toolCall("inner-1", "stock_price_reader", agentCall.arguments()),
+                    toolCall("inner-2", "company_overview_reader", agentCall.arguments()));
+            List<String> inner = toolExecutor.invokeAll(readerCalls, readerCall -> {
+                sleep(50);
+                return readerCall.name() + ":" + readerCall.arguments();
+            });
+            return String.join(",", inner);
+        });
+
+        // Assert
+        assertThat(results).containsExactly(
+                "stock_price_reader:AAPL,company_overview_reader:AAPL",
+                "stock_price_reader:MSFT,company_overview_reader:MSFT").inOrder();
+    }
+
+    static AssistantMessage.ToolCall toolCall(String id, String name, String arguments) {
+        return new AssistantMessage.ToolCall(id, "function", name, arguments);
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", e);
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.demo.config;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.web.embedded.TomcatVirtualThreadsWebServerFactoryCustomizer;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServer;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * 两种线程模式下同时在途的"AI 请求"数量对比：
+ * 每个请求在内嵌 Tomcat 里阻塞 LLM_LATENCY_MS（模拟 ChatClient.call() 等待 OpenAI），
+ * 客户端一次发出 REQUESTS 个并发请求，统计服务端同时阻塞中的请求峰值。
+ * platform = Tomcat 默认的 200 个平台线程，在途请求被线程数封顶，其余排队；
+ * virtual = spring.threads.virtual.enabled=true 时 Spring Boot 使用的 TomcatVirtualThreadsWebServerFactoryCustomizer。
+ * 要绑定本地端口、耗时数秒，打了 load 标签，默认的 test 任务不执行，用 ./gradlew loadTest 运行
+ */
+@Tag("load")
+class VirtualThreadLoadTest {
+    private static final int REQUESTS = 1_000;
+    private static final int PLATFORM_MAX_THREADS = 200;
+    private static final long LLM_LATENCY_MS = 500;
+
+    @Test
+    public void virtualThreadsKeepMoreBlockingAiRequestsInFlight() throws Exception {
+        int platform = peakInFlight(false);
+        int virtual = peakInFlight(true);
+
+        assertThat(platform).isAtMost(PLATFORM_MAX_THREADS);
+        assertThat(virtual).isGreaterThan(PLATFORM_MAX_THREADS);
+    }
+
+    private int peakInFlight(boolean virtualThreads) throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        TomcatServletWebServerFactory factory = new TomcatServletWebServerFactory(0);
+        factory.addConnectorCustomizers(connector -> connector.setProperty("maxThreads", String.valueOf(PLATFORM_MAX_THREADS)));
+        if (virtualThreads) {
+            new TomcatVirtualThreadsWebServerFactoryCustomizer().customize(factory);
+        }
+        WebServer server = factory.getWebServer(context -> context
+                .addServlet("ai", new BlockingAiServlet(inFlight, peak))
+                .addMapping("/ai/chat"));
+        server.start();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient httpClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .executor(clients)
+                    .build();
+            URI uri = URI.create("http://localhost:" + server.getPort() + "/ai/chat");
+            List<CompletableFuture<HttpResponse<String>>> responses = new ArrayList<>(REQUESTS);
+            for (int i = 0; i < REQUESTS; i++) {
+                responses.add(httpClient.sendAsync(HttpRequest.newBuilder(uri).GET().build(),
+                        HttpResponse.BodyHandlers.ofString()));
+            }
+            for (CompletableFuture<HttpResponse<String>> response : responses) {
+                assertThat(response.get().statusCode()).isEqualTo(200);
+            }
+            return peak.get();
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static final class BlockingAiServlet extends HttpServlet {
+        private final AtomicInteger inFlight;
+        private final AtomicInteger peak;
+
+        private BlockingAiServlet(AtomicInteger inFlight, AtomicInteger peak) {
+            this.inFlight = inFlight;
+            this.peak = peak;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(LLM_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            response.getWriter().write("answer");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo.config.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SingleFlightCacheTest {
+
+    private SingleFlightCache<Long, String> cache;
+
+    @BeforeEach
+    public void setUp() {
+        cache = new SingleFlightCache<>(Caffeine.newBuilder().maximumSize(100).<Long, String>build());
+    }
+
+    @Test
+    public void get_ConcurrentMisses_ShouldLoadOnce() throws Exception {
+        // Arrange
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Act: 第一个调用方卡在 loader 里，第二个调用方应等待它的结果而不是自己再加载
+            Future<String> first = executor.submit(() -> cache.get(1L, key -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(releaseLoader);
+                return "v1";
+            }));
+            loaderStarted.await(5, TimeUnit.SECONDS);
+            Future<String> second = executor.submit(() -> cache.get(1L, key -> {
+                loads.incrementAndGet();
+                return "v2";
+            }));
+            releaseLoader.countDown();
+
+            // Assert
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("v1");
+            assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("v1");
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.getIfPresent(1L)).isEqualTo("v1");
+    }
+
+    @Test
+    public void get_InvalidatedDuringLoad_ShouldNotCacheStaleValue() {
+        // Act: 加载过程中发生失效
+        String loaded = cache.get(1L, key -> {
+            cache.invalidate(key);
+            return "stale";
+        });
+
+        // Assert: 本次调用拿到结果，但不写入缓存
+        assertThat(loaded).isEqualTo("stale");
+        assertThat(cache.getIfPresent(1L)).isNull();
+        assertThat(cache.get(1L, key -> "fresh")).isEqualTo("fresh");
+    }
+
+    @Test
+    public void get_PutDuringLoad_ShouldKeepNewerValue() {
+        // Act
+        cache.get(1L, key -> {
+            cache.put(key, "newer");
+            return "older";
+        });
+
+        // Assert
+        assertThat(cache.getIfPresent(1L)).isEqualTo("newer");
+    }
+
+    @Test
+    public void get_LoaderFails_ShouldPropagateAndAllowRetry() {
+        // Act & Assert
+        assertThrows(IllegalStateException.class, () -> cache.get(1L, key -> {
+            throw new IllegalStateException("db down");
+        }));
+        assertThat(cache.get(1L, key -> "recovered")).isEqualTo("recovered");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package com.example.demo.config.cache;
+
+import com.example.demo.model.dto.AccountSummary;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class TwoLevelCacheTest {
+    private static final String CHANNEL = "cache:invalidation";
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    // 两个实例共享同一个 L2
+    private ConcurrentMapCache remote;
+    // 下一次读取 L2 之后执行一次，模拟读取期间并发发生的写入或失效
+    private Runnable afterNextRemoteRead = () -> { };
+    private CacheInvalidationBus busA;
+    private CacheInvalidationBus busB;
+    private TwoLevelCache nodeA;
+    private TwoLevelCache nodeB;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        remote = new ConcurrentMapCache(CacheNames.ACCOUNTS, false) {
+            @Override
+            public ValueWrapper get(Object key) {
+                ValueWrapper wrapper = super.get(key);
+                Runnable hook = afterNextRemoteRead;
+                afterNextRemoteRead = () -> { };
+                hook.run();
+                return wrapper;
+            }
+        };
+        busA = new CacheInvalidationBus(stringRedisTemplate, meterRegistry, CHANNEL, "node-a");
+        busB = new CacheInvalidationBus(stringRedisTemplate, meterRegistry, CHANNEL, "node-b");
+        nodeA = createCache(busA);
+        nodeB = createCache(busB);
+    }
+
+    private TwoLevelCache createCache(CacheInvalidationBus bus) {
+        TwoLevelCache cache = new TwoLevelCache(CacheNames.ACCOUNTS,
+                Caffeine.newBuilder().maximumSize(100).<String, Object>build(), remote, bus, meterRegistry);
+        bus.register(cache);
+        return cache;
+    }
+
+    // 把发布到频道上的消息投递给另一个实例
+    private void deliverPublishedMessagesTo(CacheInvalidationBus bus) {
+        ArgumentCaptor<String> messages = ArgumentCaptor.forClass(String.class);
+        verify(stringRedisTemplate, atLeastOnce()).convertAndSend(eq(CHANNEL), messages.capture());
+        for (String message : messages.getAllValues()) {
+            bus.onMessage(new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8),
+                    message.getBytes(StandardCharsets.UTF_8)), null);
+        }
+    }
+
+    private double gets(String result) {
+        return meterRegistry.counter("cache.two-level.gets", "cache", CacheNames.ACCOUNTS, "result", result).count();
+    }
+
+    @Test
+    public void get_ShouldFillLocalCacheFromRedis() {
+        // Arrange
+        AccountSummary account = new AccountSummary(1L, "Daily", 100.0, 40.0);
+        remote.put(1L, account);
+
+        // Act
+        Object first = nodeA.get(1L).get();
+        remote.evict(1L);
+        Object second = nodeA.get(1L).get();
+
+        // Assert: 第二次直接命中 L1，不再读 Redis
+        assertThat(first).isEqualTo(account);
+        assertThat(second).isEqualTo(account);
+        assertThat(gets("remote")).isEqualTo(1.0);
+        assertThat(gets("local")).isEqualTo(1.0);
+    }
+
+    @Test
+    public void get_WhenMissingEverywhere_ShouldReturnNull() {
+        // Act & Assert
+        assertThat(nodeA.get(1L)).isNull();
+        assertThat(gets("miss")).isEqualTo(1.0);
+    }
+
+    @Test
+    public void evict_ShouldDropBothLevelsAndNotifyOtherNodes() {
+        // Arrange
+        remote.put(1L, new AccountSummary(1L, "Daily", 100.0, 40.0));
+        nodeA.get(1L);
+        nodeB.get(1L);
+
+        // Act
+        nodeA.evict(1L);
+        deliverPublishedMessagesTo(busB);
+
+        // Assert
+        assertThat(remote.get(1L)).isNull();
+        assertThat(nodeA.get(1L)).isNull();
+        assertThat(nodeB.get(1L)).isNull();
+    }
+
+    @Test
+    public void put_ShouldReplaceStaleLocalValueOnOtherNodes() {
+        // Arrange
+        remote.put(1L, new AccountSummary(1L, "Daily", 100.0, 40.0));
+        nodeB.get(1L);
+        AccountSummary updated = new AccountSummary(1L, "Daily", 150.0, 40.0);
+
+        // Act
+        nodeA.put(1L, updated);
+        deliverPublishedMessagesTo(busB);
+
+        // Assert: B 丢弃了 L1 中的旧值，下次从 Redis 读到新值
+        assertThat(nodeB.get(1L).get()).isEqualTo(updated);
+        assertThat(nodeA.get(1L).get()).isEqualTo(updated);
+    }
+
+    @Test
+    public void clear_ShouldClearOtherNodesLocalCache() {
+        // Arrange
+        remote.put(1L, new AccountSummary(1L, "Daily", 100.0, 40.0));
+        remote.put(2L, new AccountSummary(2L, "Savings", 0.0, 0.0));
+        nodeB.get(1L);
+        nodeB.get(2L);
+
+        // Act
+        nodeA.clear();
+        deliverPublishedMessagesTo(busB);
+
+        // Assert
+        assertThat(nodeB.get(1L)).isNull();
+        assertThat(nodeB.get(2L)).isNull();
+    }
+
+    @Test
+    public void onMessage_FromSameInstance_ShouldBeIgnored() {
+        // Arrange
+        remote.put(1L, new AccountSummary(1L, "Daily", 100.0, 40.0));
+        nodeA.get(1L);
+        remote.evict(1L);
+
+        // Act: A 收到自己发出的消息
+        busA.onMessage(new DefaultMessage(CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "node-a accounts 1".getBytes(StandardCharsets.UTF_8)), null);
+
+        // Assert
+        assertThat(nodeA.get(1L)).isNotNull();
+    }
+
+    @Test
+    public void evict_WhenPublishFails_ShouldStillEvictLocally() {
+        // Arrange
+        remote.put(1L, new AccountSummary(1L, "Daily", 100.0, 40.0));
+        nodeA.get(1L);
+        doThrow(new RuntimeException("connection refused")).when(stringRedisTemplate).convertAndSend(anyString(), anyString());
+
+        // Act
+        nodeA.evict(1L);
+
+        // Assert
+        assertThat(nodeA.get(1L)).isNull();
+    }
+
+    @Test
+    public void put_NullValue_ShouldBeRejected() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> nodeA.put(1L, null));
+        verify(stringRedisTemplate, never()).convertAndSend(anyString(), anyString());
+    }
+
+    @Test
+    public void get_WithLoader_ShouldLoadOnceAndCache() {
+        // Arrange
+        List<AccountSummary> loads = new ArrayList<>();
+
+        // Act
+        Object first = nodeA.get(1L, () -> {
+            AccountSummary loaded = new AccountSummary(1L, "Daily", 1.0, 2.0);
+            loads.add(loaded);
+            return loaded;
+        });
+        Object second = nodeA.get(1L, () -> {
+            throw new IllegalStateException("should not load again");
+        });
+
+        // Assert
+        assertThat(first).isEqualTo(second);
+        assertThat(loads).hasSize(1);
+        assertThat(remote.get(1L)).isNotNull();
+    }
+
+    @Test
+    public void get_EvictOfSameKeyDuringRemoteRead_ShouldNotBackfillStaleValue() {
+        // Arrange
+        remote.put(1L, new AccountSummary(1L, "Daily", 100.0, 40.0));
+        afterNextRemoteRead = () -> nodeA.evict(1L);
+
+        // Act
+        Object stale = nodeA.get(1L).get();
+
+        // Assert: 本次调用拿到读到的值，但 L1 里没有它
+        assertThat(stale).isNotNull();
+        assertThat(nodeA.get(1L)).isNull();
+    }
+
+    @Test
+    public void get_EvictOfOtherKeyDuringRemoteRead_ShouldStillBackfill() {
+        // Arrange: 记录写入会不断失效其他账户
+        AccountSummary account = new AccountSummary(1L, "Daily", 100.0, 40.0);
+        remote.put(1L, account);
+        afterNextRemoteRead = () -> nodeA.evict(2L);
+
+        // Act
+        nodeA.get(1L);
+        remote.evict(1L);
+
+        // Assert: 账户 1 仍然进了 L1
+        assertThat(nodeA.get(1L).get()).isEqualTo(account);
+        assertThat(gets("local")).isEqualTo(1.0);
+    }
+
+    @Test
+    public void get_WithLoader_ConcurrentMisses_ShouldLoadOnce() throws Exception {
+        // Arrange
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        AccountSummary account = new AccountSummary(1L, "Daily", 1.0, 2.0);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // Act: 第一个调用方卡在 loader 里，第二个调用方等待它的结果
+            Future<AccountSummary> first = executor.submit(() -> nodeA.get(1L, () -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                releaseLoader.await(5, TimeUnit.SECONDS);
+                return account;
+            }));
+            loaderStarted.await(5, TimeUnit.SECONDS);
+            Future<AccountSummary> second = executor.submit(() -> nodeA.get(1L, () -> {
+                loads.incrementAndGet();
+                return account;
+            }));
+            releaseLoader.countDown();
+
+            // Assert
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(account);
+            assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(account);
+        }
+        assertThat(loads.get()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo.config.redis;
+
+import com.example.demo.model.redis.RedisAccount;
+import com.example.demo.model.redis.RedisUser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CompactSessionRedisSerializerTest {
+
+    private RedisSerializer<Object> json;
+    private CompactSessionRedisSerializer serializer;
+
+    @BeforeEach
+    public void setUp() {
+        json = new GenericJackson2JsonRedisSerializer(new RedisConfig().redisObjectMapper());
+        serializer = new CompactSessionRedisSerializer(json, true);
+    }
+
+    @Test
+    public void sessionTypes_ShouldRoundTripInBinary() {
+        // Arrange
+        RedisUser user = new RedisUser(1L, "alice", "alice@example.com", null, "头像.png", "token");
+        RedisAccount account = new RedisAccount(-7L, "日常", 1500.5, null);
+        List<Long> accountIds = new ArrayList<>(List.of(1L, 300L, Long.MAX_VALUE));
+
+        // Act & Assert
+        for (Object value : List.of(user, account, accountIds, 42L, Long.MIN_VALUE)) {
+            byte[] bytes = serializer.serialize(value);
+            assertThat(bytes[0]).isEqualTo(CompactSessionRedisSerializer.MAGIC);
+            assertThat(serializer.deserialize(bytes)).isEqualTo(value);
+        }
+    }
+
+    @Test
+    public void serialize_ShouldBeSmallerThanJsonWithTypeInfo() {
+        // Arrange
+        RedisUser user = new RedisUser(12345L, "alice", "alice@example.com", "0400000000", null, "header.payload.signature");
+        RedisAccount account = new RedisAccount(67890L, "Daily spending", 15234.5, 8731.25);
+
+        // Act & Assert: JSON 里带着完整类名，二进制只有字段值
+        assertThat(serializer.serialize(user).length).isLessThan(json.serialize(user).length / 2);
+        assertThat(serializer.serialize(account).length).isLessThan(json.serialize(account).length / 2);
+    }
+
+    @Test
+    public void deserialize_ShouldStillReadJsonWrittenByOldVersion() {
+        // Arrange
+        RedisAccount account = new RedisAccount(3L, "Savings", 10.0, 2.0);
+        byte[] legacy = json.serialize(account);
+
+        // Act
+        Object value = serializer.deserialize(legacy);
+
+        // Assert
+        assertThat(value).isEqualTo(account);
+    }
+
+    @Test
+    public void serialize_WithBinaryWritesDisabled_ShouldWriteJson() {
+        // Arrange
+        CompactSessionRedisSerializer readOnly = new CompactSessionRedisSerializer(json, false);
+        RedisAccount account = new RedisAccount(3L, "Savings", 10.0, 2.0);
+
+        // Act
+        byte[] bytes = readOnly.serialize(account);
+
+        // Assert: 升级期间写出的值旧版本也能读，二进制数据照样可以读取
+        assertThat(bytes).isEqualTo(json.serialize(account));
+        assertThat(readOnly.deserialize(serializer.serialize(account))).isEqualTo(account);
+    }
+
+    @Test
+    public void serialize_OtherTypes_ShouldFallBackToJson() {
+        // Arrange
+        List<Object> mixed = new ArrayList<>(Arrays.asList(1L, null));
+        Map<String, String> map = Map.of("key", "value");
+
+        // Act & Assert
+        assertThat(serializer.serialize(mixed)).isEqualTo(json.serialize(mixed));
+        assertThat(serializer.serialize(map)).isEqualTo(json.serialize(map));
+        assertThat(serializer.serialize(null)).isEmpty();
+        assertThat(serializer.deserialize(new byte[0])).isNull();
+    }
+
+    @Test
+    public void deserialize_NewerVersionOrTruncatedValue_ShouldFail() {
+        // Arrange
+        byte[] bytes = serializer.serialize(new RedisAccount(3L, "Savings", 10.0, 2.0));
+        byte[] newer = bytes.clone();
+        newer[1] = CompactSessionRedisSerializer.VERSION + 1;
+        byte[] truncated = Arrays.copyOf(bytes, bytes.length - 3);
+
+        // Act & Assert
+        assertThrows(SerializationException.class, () -> serializer.deserialize(newer));
+        assertThrows(SerializationException.class, () -> serializer.deserialize(truncated));
+    }
+}
@@ -5,9 +5,14 @@ import com.example.demo.exception.AccountAlreadyExistException;
 import com.example.demo.exception.AccountNotFoundException;
 import com.example.demo.exception.UserNotFoundException;
 import com.example.demo.model.Account;
+import com.example.demo.model.AccountDailyRollup;
+import com.example.demo.config.web.CurrentUserContextArgumentResolver;
 import com.example.demo.model.dto.AccountDTO;
+import com.example.demo.model.dto.AccountSummary;
+import com.example.demo.model.security.CurrentUserContext;
+import com.example.demo.model.security.JwtPrincipal;
+import com.example.demo.service.AccountAggregateService;
 import com.example.demo.service.AccountService;
-import com.example.demo.utility.jwt.JwtUtil;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -16,8 +21,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
@@ -25,12 +28,14 @@ import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -44,10 +49,7 @@ public class AccountControllerTest {
     private AccountService accountService;
 
     @Mock
-    private JwtUtil jwtUtil;
-
-    @Mock
-    private StringRedisTemplate stringRedisTemplate;
+    private AccountAggregateService accountAggregateService;
 
     @InjectMocks
     private AccountController accountController;
@@ -55,13 +57,19 @@ public class AccountControllerTest {
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
-        mockMvc = MockMvcBuilders.standaloneSetup(accountController).build();
+        mockMvc = MockMvcBuilders.standaloneSetup(accountController)
+                .setCustomArgumentResolvers(new CurrentUserContextArgumentResolver())
+                .build();
+    }
+
+    // JwtAuthenticationTokenFilter 为每个请求放入的上下文
+    private static CurrentUserContext currentUser(Long currentAccountId) {
+        return new CurrentUserContext(new JwtPrincipal(1L, "testUser", "ROLE_USER", "testToken"), userId -> currentAccountId);
     }
 
     @Test
     public void testGetAllAccountsByUserId() throws Exception, UserNotFoundException {
         String token = "Bearer testToken";
-        when(jwtUtil.getUserIdFromToken(anyString())).thenReturn(1L);
         when(accountService.getAllAccountsByUserId(anyString())).thenReturn(List.of(new Account()));
 
         MvcResult result = mockMvc.perform(get("/account/all")
@@ -78,11 +86,10 @@ public class AccountControllerTest {
         accountDTO.setName("TestAccount");
         String requestBody = new ObjectMapper().writeValueAsString(accountDTO);
 
-        when(jwtUtil.getUserIdFromToken(anyString())).thenReturn(1L);
-        when(accountService.createAccount(any(AccountDTO.class), anyLong())).thenReturn("Account created");
+        when(accountService.createAccount(any(AccountDTO.class), eq(1L))).thenReturn("Account created");
 
         MvcResult result = mockMvc.perform(post("/account/create")
-                        .header("Authorization", "Bearer testToken")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(null))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
                 .andExpect(status().isCreated())
@@ -98,12 +105,11 @@ public class AccountControllerTest {
         accountDTO.setName("TestAccount");  // 确保字段不为空
         String requestBody = new ObjectMapper().writeValueAsString(accountDTO);
 
-        when(jwtUtil.getUserIdFromToken(anyString())).thenReturn(1L);
         doThrow(new AccountAlreadyExistException("User already exists")).when(accountService)
                 .createAccount(any(AccountDTO.class), anyLong());
 
         MvcResult result = mockMvc.perform(post("/account/create")
-                        .header("Authorization", "Bearer testToken")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(null))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(requestBody))
                 .andExpect(status().isConflict())
@@ -122,21 +128,17 @@ public class AccountControllerTest {
 
     @Test
     public void testGetAccountByAccountId() throws Exception {
-        String token = "Bearer testToken";
-        when(jwtUtil.getUserIdFromToken(anyString())).thenReturn(1L);
-
-        ValueOperations valueOpsMock = mock(ValueOperations.class);
-        when(stringRedisTemplate.opsForValue()).thenReturn(valueOpsMock);
-        when(valueOpsMock.get(anyString())).thenReturn("1"); // Mock Redis value retrieval
-
-        when(accountService.getAccountByAccountId(1L)).thenReturn(new Account());
+        when(accountService.getAccountByAccountId(1L)).thenReturn(new AccountSummary(1L, "Daily", 100.0, 40.0));
 
         MvcResult result = mockMvc.perform(get("/account/current")
-                        .header("Authorization", token))
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(1L)))
                 .andExpect(status().isOk())
                 .andReturn();
 
         assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+        // 字段名和原来的 Account 实体一致，前端不需要改动
+        assertThat(result.getResponse().getContentAsString()).contains("\"totalIncome\":100.0");
+        assertThat(result.getResponse().getContentAsString()).contains("\"totalExpense\":40.0");
     }
 
     @Test
@@ -170,16 +172,51 @@ public class AccountControllerTest {
 
     @Test
     public void testSwitchAccount() throws Exception {
-        String token = "Bearer testToken";
-        when(jwtUtil.getUserIdFromToken(anyString())).thenReturn(1L);
         doNothing().when(accountService).setCurrentAccountToRedis(anyLong(), anyLong());
 
         MvcResult result = mockMvc.perform(get("/account/switch")
                         .param("accountId", "1")
-                        .header("Authorization", token))
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(null)))
                 .andExpect(status().isOk())
                 .andReturn();
 
         assertThat(result.getResponse().getStatus()).isEqualTo(HttpStatus.OK.value());
+        verify(accountService).setCurrentAccountToRedis(1L, 1L);
+    }
+
+    @Test
+    public void testGetDailyRollups() throws Exception {
+        AccountDailyRollup rollup = new AccountDailyRollup();
+        rollup.setAccountId(2L);
+        rollup.setCategory("Food");
+        rollup.setType("expense");
+        rollup.setTotalAmount(42.5);
+        rollup.setRecordCount(3);
+        when(accountAggregateService.getDailyRollups(2L, LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 31)))
+                .thenReturn(List.of(rollup));
+
+        MvcResult result = mockMvc.perform(get("/account/rollups")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(2L))
+                        .param("from", "2024-01-01")
+                        .param("to", "2024-01-31"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(result.getResponse().getContentAsString()).contains("\"totalAmount\":42.5");
+    }
+
+    @Test
+    public void testGetAccountByAccountId_WithoutCurrentAccount() throws Exception {
+        mockMvc.perform(get("/account/current")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(null)))
+                .andExpect(status().isNotFound());
+
+        verify(accountService, never()).getAccountByAccountId(anyLong());
+    }
+
+    @Test
+    public void testWithoutRequestContext_ShouldBeUnauthorized() throws Exception {
+        mockMvc.perform(get("/account/current"))
+                .andExpect(status().isUnauthorized());
     }
-}
\ No newline at end of file
+}
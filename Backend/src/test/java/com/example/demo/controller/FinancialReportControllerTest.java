@@ -1,7 +1,10 @@
 package com.example.demo.controller;
 
+import com.example.demo.config.web.CurrentUserContextArgumentResolver;
 import com.example.demo.controller.FinancialReportController;
-import com.example.demo.model.FinancialReport;
+import com.example.demo.model.dto.FinancialReportSummary;
+import com.example.demo.model.security.CurrentUserContext;
+import com.example.demo.model.security.JwtPrincipal;
 import com.example.demo.service.FinancialReportService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -19,7 +22,7 @@ import java.util.Collections;
 import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
-import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -38,21 +41,26 @@ public class FinancialReportControllerTest {
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
-        mockMvc = MockMvcBuilders.standaloneSetup(financialReportController).build();
+        mockMvc = MockMvcBuilders.standaloneSetup(financialReportController)
+                .setCustomArgumentResolvers(new CurrentUserContextArgumentResolver())
+                .build();
+    }
+
+    // JwtAuthenticationTokenFilter 为每个请求放入的上下文
+    private static CurrentUserContext currentUser() {
+        return new CurrentUserContext(new JwtPrincipal(1L, "testUser", "ROLE_USER", "testToken"), userId -> null);
     }
 
     @Test
     public void testGetFinancialReport_Success() throws Exception {
         // 模拟返回的财务报告列表
-        FinancialReport report = new FinancialReport();
-        report.setContent("Quarterly Report");  // 使用 setContent 设置报告内容
-        List<FinancialReport> reports = List.of(report);
+        List<FinancialReportSummary> reports = List.of(new FinancialReportSummary(1L, "Quarterly Report"));
 
-        when(financialReportService.getFinancialReports(anyString())).thenReturn(reports);
+        when(financialReportService.getFinancialReports(any(CurrentUserContext.class))).thenReturn(reports);
 
         // 发送请求
         MvcResult result = mockMvc.perform(get("/financial-report")
-                        .header("Authorization", "Bearer testToken")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser())
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andReturn();
@@ -66,11 +74,11 @@ public class FinancialReportControllerTest {
     @Test
     public void testGetFinancialReport_NoContent() throws Exception {
         // 模拟返回空列表
-        when(financialReportService.getFinancialReports(anyString())).thenReturn(Collections.emptyList());
+        when(financialReportService.getFinancialReports(any(CurrentUserContext.class))).thenReturn(Collections.emptyList());
 
         // 发送请求
         MvcResult result = mockMvc.perform(get("/financial-report")
-                        .header("Authorization", "Bearer testToken"))
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser()))
                 .andExpect(status().isNoContent())
                 .andReturn();
 
@@ -81,11 +89,11 @@ public class FinancialReportControllerTest {
     @Test
     public void testGetFinancialReport_InternalServerError() throws Exception {
         // 模拟抛出异常
-        when(financialReportService.getFinancialReports(anyString())).thenThrow(new RuntimeException("Internal Server Error"));
+        when(financialReportService.getFinancialReports(any(CurrentUserContext.class))).thenThrow(new RuntimeException("Internal Server Error"));
 
         // 发送请求
         MvcResult result = mockMvc.perform(get("/financial-report")
-                        .header("Authorization", "Bearer testToken"))
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser()))
                 .andExpect(status().isInternalServerError())
                 .andReturn();
 
@@ -1,10 +1,15 @@
 package com.example.demo.controller;
 
 import com.example.demo.controller.TransactionRecordController;
-import com.example.demo.model.TransactionRecord;
+import com.example.demo.model.dto.RecordPage;
 import com.example.demo.model.dto.TransactionRecordDTO;
+import com.example.demo.model.dto.TransactionRecordView;
+import com.example.demo.config.web.CurrentUserContextArgumentResolver;
+import com.example.demo.model.security.CurrentUserContext;
+import com.example.demo.model.security.JwtPrincipal;
 import com.example.demo.service.TransactionRecordService;
-import com.example.demo.utility.jwt.JwtUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.jayway.jsonpath.JsonPath;
 import org.joda.time.LocalDateTime;
 import org.junit.jupiter.api.BeforeEach;
@@ -13,9 +18,8 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
@@ -23,12 +27,21 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 
 import java.time.ZonedDateTime;
 import java.util.List;
+import java.util.function.Consumer;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
@@ -39,14 +52,8 @@ public class TransactionRecordControllerTest {
     @Mock
     private TransactionRecordService recordService;
 
-    @Mock
-    private JwtUtil jwtUtil;
-
-    @Mock
-    private StringRedisTemplate stringRedisTemplate;
-
-    @Mock
-    private ValueOperations<String, String> valueOperations;
+    @Spy
+    private ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
 
     @InjectMocks
     private TransactionRecordController transactionRecordController;
@@ -56,34 +63,28 @@ public class TransactionRecordControllerTest {
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
-        mockMvc = MockMvcBuilders.standaloneSetup(transactionRecordController).build();
+        mockMvc = MockMvcBuilders.standaloneSetup(transactionRecordController)
+                .setCustomArgumentResolvers(new CurrentUserContextArgumentResolver())
+                .build();
+    }
 
-        // Mock Redis template operations
-        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+    // JwtAuthenticationTokenFilter 为每个请求放入的上下文
+    private static CurrentUserContext currentUser(Long currentAccountId) {
+        return new CurrentUserContext(new JwtPrincipal(1L, "testUser", "ROLE_USER", "testToken"), userId -> currentAccountId);
     }
 
     @Test
     public void testGetAllRecordByAccountId_Success() throws Exception {
-        // Mock Redis to return a valid accountId
-        when(stringRedisTemplate.opsForValue().get(anyString())).thenReturn("1");
+        // Mock the session to return a valid accountId
 
         // Mock the service call
-        TransactionRecord record = new TransactionRecord();
-        record.setId(1L);
-        record.setType("INCOME");
-        record.setCategory("Salary");
-        record.setAmount(100.00);  // use Double
-        record.setTransactionTime(ZonedDateTime.now());
-        record.setTransactionDescription("Salary for September");
-        record.setUserId(1L);
-        record.setTransactionMethod("Bank Transfer");
-
-        List<TransactionRecord> records = List.of(record);
-        when(recordService.getAllRecordsByAccountId(anyLong())).thenReturn(records);
+        TransactionRecordView record = new TransactionRecordView(1L, "INCOME", "Salary", 100.00,
+                "Bank Transfer", ZonedDateTime.now(), "Salary for September");
+        when(recordService.getRecordPage(1L, null, null, 50)).thenReturn(new RecordPage(List.of(record), "next"));
 
         // Perform the request
         MvcResult result = mockMvc.perform(get("/records/all")
-                        .header("Authorization", "Bearer testToken")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(1L))
                         .contentType(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andReturn();
@@ -92,9 +93,10 @@ public class TransactionRecordControllerTest {
         String jsonResponse = result.getResponse().getContentAsString();
 
         // Use JsonPath to extract values
-        String amount = JsonPath.parse(jsonResponse).read("$[0].amount").toString();
-        String type = JsonPath.parse(jsonResponse).read("$[0].type").toString();
-        String description = JsonPath.parse(jsonResponse).read("$[0].transactionDescription").toString();
+        String amount = JsonPath.parse(jsonResponse).read("$.items[0].amount").toString();
+        String type = JsonPath.parse(jsonResponse).read("$.items[0].type").toString();
+        String description = JsonPath.parse(jsonResponse).read("$.items[0].transactionDescription").toString();
+        String nextCursor = JsonPath.parse(jsonResponse).read("$.nextCursor").toString();
 
         // Convert both to a common format
         double expectedAmount = Double.parseDouble("100.00");
@@ -104,22 +106,66 @@ public class TransactionRecordControllerTest {
         assertThat(actualAmount).isEqualTo(expectedAmount);  // Compare double values
         assertThat(type).isEqualTo("INCOME");
         assertThat(description).contains("Salary for September");
+        assertThat(nextCursor).isEqualTo("next");
     }
 
+    @Test
+    public void testGetAllRecordByAccountId_WithCursor() throws Exception {
+        when(recordService.getRecordPage(1L, null, "abc", 20)).thenReturn(new RecordPage(List.of(), null));
 
+        mockMvc.perform(get("/records/all")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(1L))
+                        .param("cursor", "abc")
+                        .param("limit", "20"))
+                .andExpect(status().isOk());
 
+        verify(recordService).getRecordPage(1L, null, "abc", 20);
+    }
 
+    @Test
+    public void testGetAllRecordByAccountId_InvalidCursor() throws Exception {
+        when(recordService.getRecordPage(1L, null, "bad", 50)).thenThrow(new IllegalArgumentException("Invalid cursor: bad"));
 
+        mockMvc.perform(get("/records/all")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(1L))
+                        .param("cursor", "bad"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExportAllRecords_StreamsNdjson() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<TransactionRecordView> consumer = invocation.getArgument(2);
+            consumer.accept(new TransactionRecordView(2L, "EXPENSE", "Food", 12.5, "Cash", ZonedDateTime.now(), "Lunch"));
+            consumer.accept(new TransactionRecordView(1L, "INCOME", "Salary", 100.0, "Bank", ZonedDateTime.now(), "Pay"));
+            return 2L;
+        }).when(recordService).exportRecords(eq(1L), isNull(), any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/records/all")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(1L))
+                        .param("format", "ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        MvcResult dispatched = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        assertThat(dispatched.getResponse().getContentType()).startsWith("application/x-ndjson");
+        String[] lines = dispatched.getResponse().getContentAsString().trim().split("\n");
+        assertThat(lines).hasLength(2);
+        assertThat(JsonPath.parse(lines[0]).read("$.id").toString()).isEqualTo("2");
+        assertThat(JsonPath.parse(lines[1]).read("$.type").toString()).isEqualTo("INCOME");
+    }
 
     @Test
     public void testAddTransactionRecord_Success() throws Exception {
         TransactionRecordDTO recordDTO = new TransactionRecordDTO();
         recordDTO.setAmount(200.00);
 
-        when(jwtUtil.getUserIdFromToken(anyString())).thenReturn(1L);
 
         MvcResult result = mockMvc.perform(post("/records/create")
-                        .header("Authorization", "Bearer testToken")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(1L))
                         .contentType(MediaType.APPLICATION_JSON)
                         .content("{\"amount\": 200.00}"))
                 .andExpect(status().isCreated())
@@ -127,6 +173,7 @@ public class TransactionRecordControllerTest {
 
         assertThat(result.getResponse().getStatus()).isEqualTo(201);
         assertThat(result.getResponse().getContentAsString()).contains("Transaction record has been created successfully.");
+        verify(recordService).addTransactionRecord(eq(1L), eq(1L), any(TransactionRecordDTO.class));
     }
 
     @Test
@@ -157,18 +204,15 @@ public class TransactionRecordControllerTest {
     @Test
     public void testGetRecordsByAccountIdAndType_Success() throws Exception {
         // Setup the mock data
-        TransactionRecord record = new TransactionRecord();
-        record.setAmount(50.00);  // Double value for amount
-        List<TransactionRecord> records = List.of(record);
+        TransactionRecordView record = new TransactionRecordView(1L, "INCOME", "Salary", 50.00,
+                "Bank Transfer", ZonedDateTime.now(), "Bonus");
 
         // Mock the behavior of dependencies
-        when(jwtUtil.getUserIdFromToken(anyString())).thenReturn(1L);
-        when(valueOperations.get(anyString())).thenReturn("1");
-        when(recordService.findRecordByAccountIdAndType("INCOME", 1L)).thenReturn(records);
+        when(recordService.getRecordPage(1L, "INCOME", null, 50)).thenReturn(new RecordPage(List.of(record), null));
 
         // Perform the GET request
         MvcResult result = mockMvc.perform(get("/records/by-type/income")
-                        .header("Authorization", "Bearer testToken")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(1L))
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
                 .andReturn();
@@ -177,7 +221,7 @@ public class TransactionRecordControllerTest {
         String jsonResponse = result.getResponse().getContentAsString();
 
         // Extract the amount from the response using JsonPath
-        String amount = JsonPath.parse(jsonResponse).read("$[0].amount").toString();
+        String amount = JsonPath.parse(jsonResponse).read("$.items[0].amount").toString();
 
         // Convert both to a common format and assert
         double expectedAmount = 50.00;
@@ -196,13 +240,11 @@ public class TransactionRecordControllerTest {
         List<TransactionRecordDTO> records = List.of(recordDTO);
 
         // Mock the behavior of dependencies
-        when(jwtUtil.getUserIdFromToken(anyString())).thenReturn(1L);
-        when(valueOperations.get(anyString())).thenReturn("1");
         when(recordService.getCertainDaysRecords(1L, 7)).thenReturn(records);
 
         // Perform the GET request
         MvcResult result = mockMvc.perform(get("/records/recent")
-                        .header("Authorization", "Bearer testToken")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(1L))
                         .param("duration", "7")
                         .accept(MediaType.APPLICATION_JSON))
                 .andExpect(status().isOk())
@@ -222,4 +264,13 @@ public class TransactionRecordControllerTest {
         assertThat(result.getResponse().getStatus()).isEqualTo(200);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testGetAllRecordByAccountId_NoCurrentAccount() throws Exception {
+        mockMvc.perform(get("/records/all")
+                        .requestAttr(CurrentUserContext.REQUEST_ATTRIBUTE, currentUser(null)))
+                .andExpect(status().isBadRequest());
+
+        verify(recordService, never()).getRecordPage(any(), any(), any(), anyInt());
+    }
+
+}
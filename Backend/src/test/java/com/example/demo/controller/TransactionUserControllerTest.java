@@ -11,6 +11,7 @@ import com.example.demo.exception.UserNotFoundException;
 
 import com.example.demo.model.TransactionUser;
 import com.example.demo.model.dto.TransactionUserDTO;
+import com.example.demo.model.dto.UserProfile;
 import com.example.demo.service.TransactionUserService;
 import com.google.common.truth.Truth;
 import org.junit.jupiter.api.BeforeEach;
@@ -165,9 +166,7 @@ public class TransactionUserControllerTest {
     @Test
     public void testGetUserById_Success() {
         // Given
-        TransactionUser user = new TransactionUser();
-        user.setId(1L);
-        user.setUsername("testUser");
+        UserProfile user = new UserProfile(1L, "testUser", "test@example.com", null, null, null, "ROLE_USER");
 
 
 
@@ -178,14 +177,14 @@ public class TransactionUserControllerTest {
 
 
         // When
-        ResponseEntity<TransactionUser> response = transactionUserController.getUserById(1L);
+        ResponseEntity<UserProfile> response = transactionUserController.getUserById(1L);
 
 
 
 
         // Then
         assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
-        assertThat(response.getBody().getUsername()).isEqualTo("testUser");
+        assertThat(response.getBody().username()).isEqualTo("testUser");
 
 
 
@@ -205,7 +204,7 @@ public class TransactionUserControllerTest {
 
 
         // When
-        ResponseEntity<TransactionUser> response = transactionUserController.getUserById(1L);
+        ResponseEntity<UserProfile> response = transactionUserController.getUserById(1L);
 
 
 
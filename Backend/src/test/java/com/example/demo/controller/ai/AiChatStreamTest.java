@@ -0,0 +1,125 @@
+package com.example.demo.controller.ai;
+
+import com.example.demo.agent.AgentRegistry;
+import com.example.demo.model.message.FinancialReportMessage;
+import com.example.demo.service.ai.cache.SemanticCacheAdvisor;
+import com.example.demo.service.ai.memory.FinancialReportMemory;
+import com.example.demo.service.resilience.DependencyGuards;
+import com.example.demo.utility.GetCurrentUserInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.ai.chat.memory.ChatMemory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+public class AiChatStreamTest {
+
+    @Mock private OpenAiChatModel openAiChatModel;
+    @Mock private ChatMemory chatMemory;
+    @Mock private FinancialReportMemory financialReportMemory;
+    @Mock private AgentRegistry agentRegistry;
+    @Mock private GetCurrentUserInfo getCurrentUserInfo;
+    @Mock private SemanticCacheAdvisor semanticCacheAdvisor;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AiChatController aiChatController;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        aiChatController = new AiChatController(openAiChatModel, chatMemory, financialReportMemory, agentRegistry, getCurrentUserInfo,
+                semanticCacheAdvisor, new DependencyGuards(new MockEnvironment(), meterRegistry), meterRegistry);
+    }
+
+    @Test
+    public void toServerSentEvents_ShouldEmitTokensThenDone() {
+        // Act
+        List<ServerSentEvent<String>> events = aiChatController
+                .toServerSentEvents(Flux.just("Hel", "lo", "!"), "c1")
+                .collectList().block();
+
+        // Assert
+        assertThat(events).hasSize(4);
+        assertThat(events.get(0).event()).isEqualTo("token");
+        assertThat(events.get(0).data()).isEqualTo("Hel");
+        assertThat(events.get(2).data()).isEqualTo("!");
+        assertThat(events.get(3).event()).isEqualTo("done");
+        assertThat(meterRegistry.timer("ai.chat.first-token").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void toServerSentEvents_UpstreamError_ShouldEmitErrorEvent() {
+        // Act
+        List<ServerSentEvent<String>> events = aiChatController
+                .toServerSentEvents(Flux.concat(Flux.just("partial"), Flux.error(new RuntimeException("rate limited"))), "c1")
+                .collectList().block();
+
+        // Assert
+        assertThat(events).hasSize(2);
+        assertThat(events.get(1).event()).isEqualTo("error");
+        assertThat(events.get(1).data()).contains("rate limited");
+    }
+
+    @Test
+    public void toServerSentEvents_ClientDisconnect_ShouldCancelUpstream() {
+        // Arrange
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flux<String> tokens = Flux.<String>never().doOnCancel(() -> cancelled.set(true));
+
+        // Act: 客户端断开时 Spring MVC 会取消订阅
+        Disposable subscription = aiChatController.toServerSentEvents(tokens, "c1").subscribe();
+        subscription.dispose();
+
+        // Assert
+        assertThat(cancelled.get()).isTrue();
+    }
+
+    @Test
+    public void receiveFinancialReport_ShouldRecordReportForUser() {
+        // Act
+        aiChatController.receiveFinancialReport(amqpMessage("{\"userId\":1,\"conversationId\":\"c1\",\"report\":\"ok\",\"generatedAt\":0}"));
+
+        // Assert
+        verify(financialReportMemory).record(new FinancialReportMessage(1L, "c1", "ok", 0L));
+    }
+
+    @Test
+    public void receiveFinancialReport_LegacyStringPayload_ShouldBeDropped() {
+        // Act: 旧版本发送的是 JSON 字符串，没有 userId
+        aiChatController.receiveFinancialReport(amqpMessage("\"Monthly report\""));
+
+        // Assert
+        verify(financialReportMemory, never()).record(any());
+    }
+
+    @Test
+    public void receiveFinancialReport_MalformedPayload_ShouldBeRejectedWithoutRequeue() {
+        // Act & Assert
+        assertThrows(AmqpRejectAndDontRequeueException.class,
+                () -> aiChatController.receiveFinancialReport(amqpMessage("{not json")));
+    }
+
+    private static Message amqpMessage(String body) {
+        return new Message(body.getBytes(StandardCharsets.UTF_8), new MessageProperties());
+    }
+}
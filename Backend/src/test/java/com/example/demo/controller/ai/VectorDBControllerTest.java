@@ -4,6 +4,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 import static org.mockito.Mockito.*;
 
+import com.example.demo.exception.DependencyUnavailableException;
 import com.example.demo.service.aws.S3Service;
 import com.example.demo.utility.GetCurrentUserInfo;
 import org.junit.jupiter.api.BeforeEach;
@@ -207,4 +208,17 @@ public class VectorDBControllerTest {
 
         assertThat(exception.getMessage()).contains("Failed to upload file to S3");
     }
+
+    @Test
+    public void testUploadToVectorDB_S3Unavailable_ShouldPropagateFor503() {
+        // Arrange
+        MockMultipartFile file = new MockMultipartFile("file", "test.txt", "text/plain", "Test content".getBytes());
+        when(getCurrentUserInfo.getCurrentUserId(anyString())).thenReturn(1L);
+        doThrow(new DependencyUnavailableException("s3 bulkhead is full"))
+                .when(s3Service)
+                .uploadFile(anyLong(), any(), anyLong(), anyString(), anyString());
+
+        // Act & Assert: 不包装成普通 RuntimeException，保留 @ResponseStatus(SERVICE_UNAVAILABLE)
+        assertThrows(DependencyUnavailableException.class, () -> vectorDBController.UploadToVectorDB(file, "Bearer test-token"));
+    }
 }
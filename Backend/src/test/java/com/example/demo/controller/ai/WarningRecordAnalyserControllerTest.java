@@ -33,10 +33,10 @@ public class WarningRecordAnalyserControllerTest {
         String expectedReport = "Financial Report Content";
 
         // Mock the service call
-        when(aiAnalyserService.generateOverAllFinancialReport(token)).thenReturn(expectedReport);
+        when(aiAnalyserService.generateOverAllFinancialReport(token, "c1")).thenReturn(expectedReport);
 
         // Call the controller method
-        ResponseEntity<String> response = aiAnalyserController.generateOverAllFinancialReport(token);
+        ResponseEntity<String> response = aiAnalyserController.generateOverAllFinancialReport(token, "c1");
 
         // Assert the response
         assertThat(response.getStatusCodeValue()).isEqualTo(200);
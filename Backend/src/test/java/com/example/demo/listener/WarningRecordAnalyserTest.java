@@ -0,0 +1,243 @@
+package com.example.demo.listener;
+
+import com.example.demo.exception.DependencyUnavailableException;
+import com.example.demo.model.dto.TransactionRecordDTO;
+import com.example.demo.model.message.AnalyseRequest;
+import com.example.demo.service.TransactionRecordService;
+import com.example.demo.service.ai.AiAnalyserService;
+import com.example.demo.service.rabbitmq.MessageDeduplicator;
+import com.example.demo.service.rabbitmq.RabbitMQService;
+import com.example.demo.utility.GetCurrentUserInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.support.AmqpHeaders;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class WarningRecordAnalyserTest {
+
+    @Mock private AiAnalyserService aiAnalyserService;
+    @Mock private GetCurrentUserInfo getCurrentUserInfo;
+    @Mock private TransactionRecordService transactionRecordService;
+    @Mock private SimpMessagingTemplate messagingTemplate;
+    @Mock private RabbitMQService rabbitMQService;
+    @Mock private StringRedisTemplate stringRedisTemplate;
+    @Mock private ValueOperations<String, String> valueOperations;
+
+    // 模拟 Redis 里的去重标记，SET NX / DEL 的语义与 Redis 一致
+    private final Set<String> processed = new HashSet<>();
+    private final AtomicInteger messageIds = new AtomicInteger();
+
+    private SimpleMeterRegistry meterRegistry;
+    private WarningRecordAnalyser warningRecordAnalyser;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> processed.add(invocation.getArgument(0)));
+        when(stringRedisTemplate.delete(anyCollection())).thenAnswer(invocation -> {
+            Collection<String> keys = invocation.getArgument(0);
+            return keys.stream().filter(processed::remove).count();
+        });
+        warningRecordAnalyser = new WarningRecordAnalyser(aiAnalyserService, getCurrentUserInfo,
+                transactionRecordService, messagingTemplate, rabbitMQService,
+                new MessageDeduplicator(stringRedisTemplate, 24), meterRegistry, 1000);
+        when(rabbitMQService.sendAnalyseRetryWithConfirm(any(AnalyseRequest.class), anyString()))
+                .thenAnswer(invocation -> confirmed(invocation.getArgument(1), true));
+        when(transactionRecordService.getCertainDaysRecords(anyLong(), eq(10))).thenReturn(List.<TransactionRecordDTO>of());
+    }
+
+    @Test
+    public void handleAnalyseBatch_ShouldCallModelOncePerAccount() {
+        // Arrange: 两个账户交错到达的 5 条记录
+        List<Message<AnalyseRequest>> requests = List.of(
+                message(1L, "r1"),
+                message(2L, "r2"),
+                message(1L, "r3"),
+                message(1L, "r4"),
+                message(2L, "r5"));
+        when(aiAnalyserService.analyseRecordBatch(anyList(), anyString())).thenReturn("No unusual patterns detected.");
+
+        // Act
+        warningRecordAnalyser.handleAnalyseBatch(requests);
+
+        // Assert
+        verify(aiAnalyserService).analyseRecordBatch(eq(List.of("r1", "r3", "r4")), anyString());
+        verify(aiAnalyserService).analyseRecordBatch(eq(List.of("r2", "r5")), anyString());
+        verify(transactionRecordService, times(1)).getCertainDaysRecords(1L, 10);
+        verify(transactionRecordService, times(1)).getCertainDaysRecords(2L, 10);
+        verify(messagingTemplate, times(1)).convertAndSend("/topic/analysis-result/1", (Object) "No unusual patterns detected.");
+        verify(messagingTemplate, times(1)).convertAndSend("/topic/analysis-result/2", (Object) "No unusual patterns detected.");
+        assertThat(meterRegistry.counter("analyser.requests").count()).isEqualTo(5.0);
+        assertThat(meterRegistry.counter("analyser.llm.calls").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void handleAnalyseBatch_FailingAccountShouldNotBlockOthers() {
+        // Arrange
+        when(transactionRecordService.getCertainDaysRecords(1L, 10)).thenThrow(new RuntimeException("db down"));
+        when(aiAnalyserService.analyseRecordBatch(anyList(), anyString())).thenReturn("WARNING #1");
+
+        // Act
+        warningRecordAnalyser.handleAnalyseBatch(List.of(message(1L, "r1"), message(2L, "r2")));
+
+        // Assert
+        verify(aiAnalyserService, times(1)).analyseRecordBatch(eq(List.of("r2")), anyString());
+        verify(messagingTemplate).convertAndSend("/topic/analysis-result/2", (Object) "WARNING #1");
+        verify(messagingTemplate, never()).convertAndSend(eq("/topic/analysis-result/1"), any(Object.class));
+    }
+
+    @Test
+    public void handleAnalyseBatch_DependencyUnavailableOnFirstAccount_ShouldDeferWholeBatchToRetryQueue() {
+        // Arrange
+        when(aiAnalyserService.analyseRecordBatch(anyList(), anyString()))
+                .thenThrow(new DependencyUnavailableException("openai circuit open"));
+
+        // Act: 不抛异常、不在消费线程上等待，整批带原 messageId 发到延迟重试队列
+        warningRecordAnalyser.handleAnalyseBatch(List.of(message("outbox-1", 1L, "r1"), message("outbox-2", 2L, "r2")));
+
+        // Assert
+        verify(aiAnalyserService, times(1)).analyseRecordBatch(anyList(), anyString());
+        verify(rabbitMQService).sendAnalyseRetryWithConfirm(new AnalyseRequest(1L, "r1"), "outbox-1");
+        verify(rabbitMQService).sendAnalyseRetryWithConfirm(new AnalyseRequest(2L, "r2"), "outbox-2");
+        verify(rabbitMQService, never()).sendAnalyseRequestToAIAnalyser(any(AnalyseRequest.class));
+        verifyNoInteractions(messagingTemplate);
+    }
+
+    @Test
+    public void handleAnalyseBatch_DependencyUnavailableMidBatch_ShouldRepublishOnlyRemainingAccounts() {
+        // Arrange
+        when(aiAnalyserService.analyseRecordBatch(eq(List.of("r1")), anyString())).thenReturn("No unusual patterns detected.");
+        when(aiAnalyserService.analyseRecordBatch(eq(List.of("r2", "r3")), anyString()))
+                .thenThrow(new DependencyUnavailableException("openai bulkhead full"));
+
+        // Act
+        warningRecordAnalyser.handleAnalyseBatch(List.of(
+                message("outbox-1", 1L, "r1"), message("outbox-2", 2L, "r2"),
+                message("outbox-3", 2L, "r3"), message("outbox-4", 3L, "r4")));
+
+        // Assert: 账户 1 已推送结果，账户 2、3 的请求发到重试队列，账户 3 不再调用模型
+        verify(messagingTemplate).convertAndSend("/topic/analysis-result/1", (Object) "No unusual patterns detected.");
+        verify(messagingTemplate, never()).convertAndSend(eq("/topic/analysis-result/2"), any(Object.class));
+        verify(rabbitMQService).sendAnalyseRetryWithConfirm(new AnalyseRequest(2L, "r2"), "outbox-2");
+        verify(rabbitMQService).sendAnalyseRetryWithConfirm(new AnalyseRequest(2L, "r3"), "outbox-3");
+        verify(rabbitMQService).sendAnalyseRetryWithConfirm(new AnalyseRequest(3L, "r4"), "outbox-4");
+        verify(rabbitMQService, never()).sendAnalyseRetryWithConfirm(new AnalyseRequest(1L, "r1"), "outbox-1");
+        verify(aiAnalyserService, never()).analyseRecordBatch(eq(List.of("r4")), anyString());
+        assertThat(meterRegistry.counter("analyser.deferred").count()).isEqualTo(3.0);
+    }
+
+    @Test
+    public void handleAnalyseBatch_RetryPublishNacked_ShouldRequeueWithoutReanalysingDoneAccounts() {
+        // Arrange
+        when(aiAnalyserService.analyseRecordBatch(anyList(), anyString()))
+                .thenReturn("No unusual patterns detected.")
+                .thenThrow(new DependencyUnavailableException("openai circuit open"))
+                .thenReturn("No unusual patterns detected.");
+        when(rabbitMQService.sendAnalyseRetryWithConfirm(any(AnalyseRequest.class), anyString()))
+                .thenAnswer(invocation -> confirmed(invocation.getArgument(1), false));
+        List<Message<AnalyseRequest>> batch = List.of(message("outbox-1", 1L, "r1"), message("outbox-2", 2L, "r2"));
+
+        // Act: 重试消息被 nack，整批交还给容器；重新投递时账户 1 已经处理过
+        assertThrows(RuntimeException.class, () -> warningRecordAnalyser.handleAnalyseBatch(batch));
+        warningRecordAnalyser.handleAnalyseBatch(batch);
+
+        // Assert
+        verify(aiAnalyserService, times(1)).analyseRecordBatch(eq(List.of("r1")), anyString());
+        verify(aiAnalyserService, times(2)).analyseRecordBatch(eq(List.of("r2")), anyString());
+        verify(messagingTemplate, times(1)).convertAndSend("/topic/analysis-result/1", (Object) "No unusual patterns detected.");
+        verify(messagingTemplate, times(1)).convertAndSend("/topic/analysis-result/2", (Object) "No unusual patterns detected.");
+    }
+
+    @Test
+    public void handleAnalyseBatch_RedeliveredMessageId_ShouldAnalyseOnce() {
+        // Arrange: confirm 超时后 relay 用同一个 messageId 重发了同一个事件
+        when(aiAnalyserService.analyseRecordBatch(anyList(), anyString())).thenReturn("WARNING #1");
+
+        // Act
+        warningRecordAnalyser.handleAnalyseBatch(List.of(message("outbox-7", 1L, "r1")));
+        warningRecordAnalyser.handleAnalyseBatch(List.of(message("outbox-7", 1L, "r1")));
+
+        // Assert
+        verify(aiAnalyserService, times(1)).analyseRecordBatch(anyList(), anyString());
+        verify(messagingTemplate, times(1)).convertAndSend("/topic/analysis-result/1", (Object) "WARNING #1");
+        assertThat(meterRegistry.counter("analyser.duplicates").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void handleAnalyseBatch_DuplicateWithinBatch_ShouldBeDropped() {
+        // Arrange
+        when(aiAnalyserService.analyseRecordBatch(anyList(), anyString())).thenReturn("No unusual patterns detected.");
+
+        // Act
+        warningRecordAnalyser.handleAnalyseBatch(List.of(message("outbox-1", 1L, "r1"), message("outbox-1", 1L, "r1")));
+
+        // Assert
+        verify(aiAnalyserService).analyseRecordBatch(eq(List.of("r1")), anyString());
+    }
+
+    @Test
+    public void handleAnalyseBatch_DeferredMessageComingBack_ShouldBeAnalysedAgain() {
+        // Arrange: 第一次投递时模型不可用，消息进了重试队列
+        when(aiAnalyserService.analyseRecordBatch(anyList(), anyString()))
+                .thenThrow(new DependencyUnavailableException("openai circuit open"))
+                .thenReturn("No unusual patterns detected.");
+        warningRecordAnalyser.handleAnalyseBatch(List.of(message("outbox-3", 1L, "r1")));
+
+        // Act: 从重试队列回来的消息带着同一个 messageId，不能被当成重复消息跳过
+        warningRecordAnalyser.handleAnalyseBatch(List.of(message("outbox-3", 1L, "r1")));
+
+        // Assert
+        verify(aiAnalyserService, times(2)).analyseRecordBatch(eq(List.of("r1")), anyString());
+        verify(messagingTemplate).convertAndSend("/topic/analysis-result/1", (Object) "No unusual patterns detected.");
+    }
+
+    @Test
+    public void handleAnalyseBatch_ShouldSkipMalformedRequests() {
+        warningRecordAnalyser.handleAnalyseBatch(List.of(message(null, "r1"), message(3L, null)));
+
+        verifyNoInteractions(aiAnalyserService, messagingTemplate);
+    }
+
+    private Message<AnalyseRequest> message(Long accountId, String content) {
+        return message("m-" + messageIds.incrementAndGet(), accountId, content);
+    }
+
+    private static Message<AnalyseRequest> message(String messageId, Long accountId, String content) {
+        return MessageBuilder.withPayload(new AnalyseRequest(accountId, content))
+                .setHeader(AmqpHeaders.MESSAGE_ID, messageId)
+                .build();
+    }
+
+    private static CorrelationData confirmed(String messageId, boolean ack) {
+        CorrelationData correlationData = new CorrelationData(messageId);
+        correlationData.getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "queue full"));
+        return correlationData;
+    }
+}
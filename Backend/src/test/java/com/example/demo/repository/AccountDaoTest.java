@@ -3,6 +3,7 @@ package com.example.demo.repository;
 import com.example.demo.config.TestConfig;
 import com.example.demo.model.Account;
 import com.example.demo.model.TransactionUser;
+import com.example.demo.model.dto.AccountSummary;
 import com.google.common.truth.Truth;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
@@ -41,6 +42,7 @@ class AccountDaoTest {
             test.testGetAccountIDByUserIdAndAccountName();
             test.testFindByTransactionUser();
             test.testFindAccountIdByAccountNameAndTransactionUserId();
+            test.testFindSummariesByUserId();
             System.out.println("All tests passed successfully!");
         } finally {
             if (test.applicationContext != null) {
@@ -126,4 +128,18 @@ class AccountDaoTest {
 
         System.out.println("testFindAccountIdByAccountNameAndTransactionUserId passed!");
     }
-}
\ No newline at end of file
+
+    public void testFindSummariesByUserId() {
+        List<AccountSummary> summaries = accountDao.findSummariesByUserId(1L);
+
+        Truth.assertThat(summaries.stream().map(AccountSummary::accountName).collect(Collectors.toList()))
+                .containsExactly("Test Account 1", "Test Account 2").inOrder();
+        Truth.assertThat(summaries.get(1).totalIncome()).isEqualTo(2000.00);
+        Truth.assertThat(summaries.get(1).totalExpense()).isEqualTo(100.00);
+
+        // 没有账户的用户
+        Truth.assertThat(accountDao.findSummariesByUserId(99L)).isEmpty();
+
+        System.out.println("testFindSummariesByUserId passed!");
+    }
+}
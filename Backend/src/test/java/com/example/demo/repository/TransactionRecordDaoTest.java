@@ -4,12 +4,14 @@ import com.example.demo.config.TestConfig;
 import com.example.demo.model.Account;
 import com.example.demo.model.TransactionRecord;
 import com.example.demo.model.TransactionUser;
+import com.example.demo.model.dto.TransactionRecordView;
 import com.google.common.truth.Truth;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.context.TestContextManager;
 
@@ -44,8 +46,9 @@ class TransactionRecordDaoTest {
         TransactionRecordDaoTest test = new TransactionRecordDaoTest();
         try {
             test.setup();
-            test.testFindAllByAccountId();
-            test.testFindByAccountIdAndType();
+            test.testFindFirstPage();
+            test.testFindPageAfter();
+            test.testFindFirstPageByType();
             test.testFindAllByIdInAndAccountId();
             test.testFindCertainDaysRecords();
             System.out.println("All tests passed successfully!");
@@ -110,38 +113,44 @@ class TransactionRecordDaoTest {
         transactionRecordDao.save(expense);
     }
 
-    public void testFindAllByAccountId() {
-        List<TransactionRecord> records = transactionRecordDao.findAllByAccountId(1L);
+    public void testFindFirstPage() {
+        List<TransactionRecordView> records = transactionRecordDao.findFirstPage(1L, PageRequest.of(0, 10));
 
         Truth.assertThat(records).isNotNull();
-        Truth.assertThat(records).isNotEmpty();
         Truth.assertThat(records).hasSize(2);
 
-        records.forEach(record ->
-                Truth.assertThat(record.getAccount().getId()).isEqualTo(1L)
-        );
-
+        // 按交易时间倒序
         List<String> types = records.stream()
-                .map(TransactionRecord::getType)
+                .map(TransactionRecordView::type)
                 .collect(Collectors.toList());
-        Truth.assertThat(types).containsExactly("INCOME", "EXPENSE");
+        Truth.assertThat(types).containsExactly("INCOME", "EXPENSE").inOrder();
 
         List<Double> amounts = records.stream()
-                .map(TransactionRecord::getAmount)
+                .map(TransactionRecordView::amount)
                 .collect(Collectors.toList());
-        Truth.assertThat(amounts).containsExactly(1000.00, 50.00);
+        Truth.assertThat(amounts).containsExactly(1000.00, 50.00).inOrder();
 
-        System.out.println("testFindAllByAccountId passed!");
+        System.out.println("testFindFirstPage passed!");
     }
 
+    public void testFindPageAfter() {
+        TransactionRecordView first = transactionRecordDao.findFirstPage(1L, PageRequest.of(0, 1)).get(0);
+
+        List<TransactionRecordView> records = transactionRecordDao.findPageAfter(
+                1L, first.transactionTime(), first.id(), PageRequest.of(0, 10));
+
+        Truth.assertThat(records).hasSize(1);
+        Truth.assertThat(records.get(0).type()).isEqualTo("EXPENSE");
+        Truth.assertThat(records.get(0).transactionTime()).isLessThan(first.transactionTime());
+    }
 
-    public void testFindByAccountIdAndType() {
-        List<TransactionRecord> records = transactionRecordDao.findByAccountIdAndType("INCOME", 1L);
+    public void testFindFirstPageByType() {
+        List<TransactionRecordView> records = transactionRecordDao.findFirstPageByType(1L, "INCOME", PageRequest.of(0, 10));
 
         Truth.assertThat(records).isNotNull();
         Truth.assertThat(records).hasSize(1);
-        Truth.assertThat(records.get(0).getType()).isEqualTo("INCOME");
-        Truth.assertThat(records.get(0).getAmount()).isEqualTo(1000.00);
+        Truth.assertThat(records.get(0).type()).isEqualTo("INCOME");
+        Truth.assertThat(records.get(0).amount()).isEqualTo(1000.00);
     }
 
     public void testFindAllByIdInAndAccountId() {
@@ -0,0 +1,214 @@
+package com.example.demo.service;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.math.BigDecimal;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.config.TestConfig;
+import com.example.demo.model.Account;
+import com.example.demo.model.TransactionRecord;
+import com.example.demo.model.TransactionUser;
+import com.example.demo.repository.AccountDao;
+import com.example.demo.repository.TransactionRecordDao;
+import com.example.demo.repository.TransactionUserDao;
+
+/**
+ * 并发压测：多线程对同一批账户执行 10 万次增 / 改 / 删，
+ * 结束后账户总额和每日汇总必须与 transaction_record 的实际合计完全一致
+ */
+@SpringBootTest
+@Import(TestConfig.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.main.allow-bean-definition-overriding=true"
+})
+class AccountAggregateConcurrencyTest {
+    private static final int MUTATIONS = 100_000;
+    private static final int THREADS = 8;
+    private static final int MAX_RETRIES = 5;
+    private static final String[] CATEGORIES = {"Food", "Rent", "Salary", "Shopping", "Transport"};
+
+    @Autowired private AccountAggregateService accountAggregateService;
+    @Autowired private AccountDao accountDao;
+    @Autowired private TransactionRecordDao transactionRecordDao;
+    @Autowired private TransactionUserDao transactionUserDao;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private TransactionTemplate transactionTemplate;
+
+    private final List<Long> accountIds = new ArrayList<>();
+    private Long userId;
+
+    @BeforeEach
+    public void setup() {
+        TransactionUser user = new TransactionUser();
+        user.setUsername("aggregate" + System.nanoTime() % 100_000);
+        user.setPassword("password");
+        user.setEmail("aggregate@example.com");
+        userId = transactionUserDao.save(user).getId();
+
+        for (int i = 0; i < 2; i++) {
+            Account account = new Account();
+            account.setAccountName("Aggregate Account " + i);
+            account.setTransactionUser(user);
+            accountIds.add(accountDao.save(account).getId());
+        }
+    }
+
+    @Test
+    public void totalsMatchRecordSumsAfterParallelMutations() throws Exception {
+        ConcurrentLinkedQueue<Long> liveRecordIds = new ConcurrentLinkedQueue<>();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < MUTATIONS / THREADS; i++) {
+                    withRetry(() -> mutate(liveRecordIds));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(1, TimeUnit.MINUTES)).isTrue();
+
+        for (Long accountId : accountIds) {
+            assertTotalsMatch(accountId);
+            assertRollupsMatch(accountId);
+        }
+    }
+
+    // 每次随机执行一种操作；正在被修改或删除的记录先从队列取出，保证同一条记录不会被两个线程同时操作
+    private void mutate(ConcurrentLinkedQueue<Long> liveRecordIds) {
+        int op = ThreadLocalRandom.current().nextInt(10);
+        Long recordId = op < 6 ? null : liveRecordIds.poll();
+        if (recordId == null) {
+            liveRecordIds.offer(transactionTemplate.execute(status -> addRecord()));
+        } else if (op < 8) {
+            transactionTemplate.executeWithoutResult(status -> updateRecord(recordId));
+            liveRecordIds.offer(recordId);
+        } else {
+            transactionTemplate.executeWithoutResult(status -> deleteRecord(recordId));
+        }
+    }
+
+    private Long addRecord() {
+        TransactionRecord record = new TransactionRecord();
+        record.setAccount(accountDao.getReferenceById(randomAccountId()));
+        record.setUserId(userId);
+        randomize(record);
+        transactionRecordDao.save(record);
+        accountAggregateService.recordAdded(record);
+        return record.getId();
+    }
+
+    private void updateRecord(Long recordId) {
+        TransactionRecord record = transactionRecordDao.findById(recordId).orElseThrow();
+        TransactionRecord before = new TransactionRecord();
+        before.setType(record.getType());
+        before.setCategory(record.getCategory());
+        before.setAmount(record.getAmount());
+        before.setTransactionTime(record.getTransactionTime());
+        before.setAccount(record.getAccount());
+        randomize(record);
+        transactionRecordDao.save(record);
+        accountAggregateService.recordUpdated(before, record);
+    }
+
+    private void deleteRecord(Long recordId) {
+        TransactionRecord record = transactionRecordDao.findById(recordId).orElseThrow();
+        transactionRecordDao.delete(record);
+        accountAggregateService.recordsRemoved(List.of(record));
+    }
+
+    private void randomize(TransactionRecord record) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        record.setType(random.nextBoolean() ? "income" : "expense");
+        record.setCategory(CATEGORIES[random.nextInt(CATEGORIES.length)]);
+        record.setAmount(random.nextInt(1, 10_000) / 100.0);
+        record.setTransactionTime(ZonedDateTime.now(ZoneId.systemDefault()).minusDays(random.nextInt(10)));
+    }
+
+    private Long randomAccountId() {
+        return accountIds.get(ThreadLocalRandom.current().nextInt(accountIds.size()));
+    }
+
+    // 锁等待超时属于正常的并发冲突，整个事务回滚后重试即可
+    private void withRetry(Runnable mutation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                mutation.run();
+                return;
+            } catch (PessimisticLockingFailureException e) {
+                if (attempt == MAX_RETRIES) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void assertTotalsMatch(Long accountId) {
+        BigDecimal income = sumRecords(accountId, "income");
+        BigDecimal expense = sumRecords(accountId, "expense");
+        Map<String, Object> account = jdbcTemplate.queryForMap(
+                "SELECT total_income, total_expense FROM account WHERE id = ?", accountId);
+
+        assertThat(new BigDecimal(account.get("total_income").toString())).isEquivalentAccordingToCompareTo(income);
+        assertThat(new BigDecimal(account.get("total_expense").toString())).isEquivalentAccordingToCompareTo(expense);
+    }
+
+    private BigDecimal sumRecords(Long accountId, String type) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM transaction_record WHERE account_id = ? AND LOWER(type) = ?",
+                BigDecimal.class, accountId, type);
+    }
+
+    private void assertRollupsMatch(Long accountId) {
+        Map<String, String> expected = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT category, CAST(transaction_time AS DATE) AS rollup_date, LOWER(type) AS type, " +
+                "SUM(amount) AS total_amount, COUNT(*) AS record_count FROM transaction_record " +
+                "WHERE account_id = ? GROUP BY category, CAST(transaction_time AS DATE), LOWER(type)",
+                rs -> {
+                    expected.put(rs.getString("category") + "|" + rs.getDate("rollup_date") + "|" + rs.getString("type"),
+                            rs.getBigDecimal("total_amount").stripTrailingZeros().toPlainString() + "|" + rs.getLong("record_count"));
+                },
+                accountId);
+
+        Map<String, String> actual = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT category, rollup_date, type, total_amount, record_count FROM account_daily_rollup " +
+                "WHERE account_id = ? AND record_count <> 0",
+                rs -> {
+                    actual.put(rs.getString("category") + "|" + rs.getDate("rollup_date") + "|" + rs.getString("type"),
+                            rs.getBigDecimal("total_amount").stripTrailingZeros().toPlainString() + "|" + rs.getLong("record_count"));
+                },
+                accountId);
+
+        assertThat(actual).isNotEmpty();
+        assertThat(actual).containsExactlyEntriesIn(expected);
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.demo.service;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+import java.sql.Date;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.config.cache.CacheNames;
+import com.example.demo.model.Account;
+import com.example.demo.model.dto.AccountSummary;
+import com.example.demo.model.TransactionRecord;
+import com.example.demo.repository.AccountDailyRollupDao;
+import com.example.demo.repository.AccountDao;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnitUtil;
+
+public class AccountAggregateServiceTest {
+
+    private static final ZonedDateTime TIME = ZonedDateTime.parse("2024-03-01T10:15:30+11:00[Australia/Sydney]");
+
+    @Mock private AccountDao accountDao;
+    @Mock private AccountDailyRollupDao accountDailyRollupDao;
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private EntityManager entityManager;
+    @Mock private EntityManagerFactory entityManagerFactory;
+    @Mock private PersistenceUnitUtil persistenceUnitUtil;
+
+    private CacheManager cacheManager;
+    private AccountAggregateService accountAggregateService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(accountDao.applyTotalsDelta(anyLong(), anyDouble(), anyDouble())).thenReturn(1);
+        when(entityManager.getEntityManagerFactory()).thenReturn(entityManagerFactory);
+        when(entityManagerFactory.getPersistenceUnitUtil()).thenReturn(persistenceUnitUtil);
+        cacheManager = new ConcurrentMapCacheManager(CacheNames.ACCOUNTS);
+        accountAggregateService = new AccountAggregateService(accountDao, accountDailyRollupDao, jdbcTemplate, cacheManager, entityManager);
+    }
+
+    @Test
+    public void recordAdded_ShouldEvictCachedAccountSummary() {
+        // Arrange
+        cacheManager.getCache(CacheNames.ACCOUNTS).put(1L, new AccountSummary(1L, "Daily", 0.0, 0.0));
+        cacheManager.getCache(CacheNames.ACCOUNTS).put(2L, new AccountSummary(2L, "Savings", 0.0, 0.0));
+        when(jdbcTemplate.update(startsWith("UPDATE account_daily_rollup"), any(Object[].class))).thenReturn(1);
+
+        // Act
+        accountAggregateService.recordAdded(createRecord("expense", "Food", 25.5));
+
+        // Assert: 只有总额变化的账户被失效
+        assertThat(cacheManager.getCache(CacheNames.ACCOUNTS).get(1L)).isNull();
+        assertThat(cacheManager.getCache(CacheNames.ACCOUNTS).get(2L)).isNotNull();
+    }
+
+    @Test
+    public void recordAdded_ShouldIncrementTotalsAndRollup() {
+        // Arrange
+        when(jdbcTemplate.update(startsWith("UPDATE account_daily_rollup"), any(Object[].class))).thenReturn(1);
+
+        // Act
+        accountAggregateService.recordAdded(createRecord("Expense", "Food", 25.5));
+
+        // Assert
+        verify(accountDao).applyTotalsDelta(1L, 0.0, 25.5);
+        verify(jdbcTemplate).update(startsWith("UPDATE account_daily_rollup"),
+                eq(25.5), eq(1L), eq(1L), eq("Food"), eq(Date.valueOf("2024-03-01")), eq("expense"));
+        verify(jdbcTemplate, never()).update(startsWith("INSERT"), any(Object[].class));
+    }
+
+    @Test
+    public void recordAdded_MissingRollupRow_ShouldInsert() {
+        // Arrange
+        when(jdbcTemplate.update(startsWith("UPDATE account_daily_rollup"), any(Object[].class))).thenReturn(0);
+
+        // Act
+        accountAggregateService.recordAdded(createRecord("income", "Salary", 1000.0));
+
+        // Assert
+        verify(accountDao).applyTotalsDelta(1L, 1000.0, 0.0);
+        verify(jdbcTemplate).update(startsWith("INSERT INTO account_daily_rollup"),
+                eq(1L), eq("Salary"), eq(Date.valueOf("2024-03-01")), eq("income"), eq(1000.0), eq(1L));
+    }
+
+    @Test
+    public void recordAdded_ConcurrentInsert_ShouldRetryAsUpdate() {
+        // Arrange
+        when(jdbcTemplate.update(startsWith("UPDATE account_daily_rollup"), any(Object[].class))).thenReturn(0, 1);
+        when(jdbcTemplate.update(startsWith("INSERT INTO account_daily_rollup"), any(Object[].class)))
+                .thenThrow(new DuplicateKeyException("duplicate"));
+
+        // Act
+        accountAggregateService.recordAdded(createRecord("expense", "Food", 10.0));
+
+        // Assert
+        verify(jdbcTemplate, times(2)).update(startsWith("UPDATE account_daily_rollup"), any(Object[].class));
+    }
+
+    @Test
+    public void recordUpdated_ShouldApplyNetDeltaPerAccount() {
+        // Arrange
+        when(jdbcTemplate.update(startsWith("UPDATE account_daily_rollup"), any(Object[].class))).thenReturn(1);
+        TransactionRecord before = createRecord("expense", "Food", 100.0);
+        TransactionRecord after = createRecord("income", "Food", 150.0);
+
+        // Act
+        accountAggregateService.recordUpdated(before, after);
+
+        // Assert
+        verify(accountDao, times(1)).applyTotalsDelta(1L, 150.0, -100.0);
+        verify(jdbcTemplate).update(startsWith("UPDATE account_daily_rollup"),
+                eq(-100.0), eq(-1L), eq(1L), eq("Food"), eq(Date.valueOf("2024-03-01")), eq("expense"));
+        verify(jdbcTemplate).update(startsWith("UPDATE account_daily_rollup"),
+                eq(150.0), eq(1L), eq(1L), eq("Food"), eq(Date.valueOf("2024-03-01")), eq("income"));
+    }
+
+    @Test
+    public void recordsRemoved_ShouldMergeDeltasIntoSingleAccountUpdate() {
+        // Arrange
+        when(jdbcTemplate.update(startsWith("UPDATE account_daily_rollup"), any(Object[].class))).thenReturn(1);
+
+        // Act
+        accountAggregateService.recordsRemoved(List.of(
+                createRecord("expense", "Food", 10.0),
+                createRecord("expense", "Food", 15.0),
+                createRecord("income", null, 40.0)));
+
+        // Assert
+        verify(accountDao, times(1)).applyTotalsDelta(1L, -40.0, -25.0);
+        verify(jdbcTemplate).update(startsWith("UPDATE account_daily_rollup"),
+                eq(-25.0), eq(-2L), eq(1L), eq("Food"), eq(Date.valueOf("2024-03-01")), eq("expense"));
+        verify(jdbcTemplate).update(startsWith("UPDATE account_daily_rollup"),
+                eq(-40.0), eq(-1L), eq(1L), eq(AccountAggregateService.UNCATEGORIZED), eq(Date.valueOf("2024-03-01")), eq("income"));
+    }
+
+    @Test
+    public void recordAdded_UnknownAccount_ShouldThrow() {
+        // Arrange
+        when(accountDao.applyTotalsDelta(anyLong(), anyDouble(), anyDouble())).thenReturn(0);
+
+        // Act & Assert
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> accountAggregateService.recordAdded(createRecord("expense", "Food", 10.0)));
+        assertThat(e.getMessage()).contains("Account not found");
+    }
+
+    @Test
+    public void recordsRemoved_ShouldLockAccountsAndRollupsInAscendingOrder() {
+        // Arrange
+        when(jdbcTemplate.update(startsWith("UPDATE account_daily_rollup"), any(Object[].class))).thenReturn(1);
+
+        // Act: 输入顺序打乱，加锁顺序仍然固定
+        accountAggregateService.recordsRemoved(List.of(
+                createRecord(3L, "expense", "Food", 10.0),
+                createRecord(1L, "expense", "Travel", 20.0),
+                createRecord(2L, "income", "Salary", 30.0),
+                createRecord(1L, "expense", "Food", 40.0)));
+
+        // Assert
+        InOrder order = inOrder(accountDao, jdbcTemplate);
+        order.verify(accountDao).applyTotalsDelta(1L, 0.0, -60.0);
+        order.verify(accountDao).applyTotalsDelta(2L, -30.0, 0.0);
+        order.verify(accountDao).applyTotalsDelta(3L, 0.0, -10.0);
+        order.verify(jdbcTemplate).update(startsWith("UPDATE account_daily_rollup"),
+                eq(-40.0), eq(-1L), eq(1L), eq("Food"), eq(Date.valueOf("2024-03-01")), eq("expense"));
+        order.verify(jdbcTemplate).update(startsWith("UPDATE account_daily_rollup"),
+                eq(-20.0), eq(-1L), eq(1L), eq("Travel"), eq(Date.valueOf("2024-03-01")), eq("expense"));
+        order.verify(jdbcTemplate).update(startsWith("UPDATE account_daily_rollup"),
+                eq(-30.0), eq(-1L), eq(2L), eq("Salary"), eq(Date.valueOf("2024-03-01")), eq("income"));
+        order.verify(jdbcTemplate).update(startsWith("UPDATE account_daily_rollup"),
+                eq(-10.0), eq(-1L), eq(3L), eq("Food"), eq(Date.valueOf("2024-03-01")), eq("expense"));
+    }
+
+    @Test
+    public void recordAdded_ShouldRefreshOnlyLoadedAccount() {
+        // Arrange: 1 号账户已经加载进持久化上下文，2 号账户只是未初始化的代理
+        Account loaded = new Account();
+        loaded.setId(1L);
+        Account proxy = new Account();
+        proxy.setId(2L);
+        when(entityManager.getReference(Account.class, 1L)).thenReturn(loaded);
+        when(entityManager.getReference(Account.class, 2L)).thenReturn(proxy);
+        when(persistenceUnitUtil.isLoaded(loaded)).thenReturn(true);
+        when(persistenceUnitUtil.isLoaded(proxy)).thenReturn(false);
+        when(jdbcTemplate.update(startsWith("UPDATE account_daily_rollup"), any(Object[].class))).thenReturn(1);
+
+        // Act
+        accountAggregateService.recordsAdded(List.of(
+                createRecord(1L, "expense", "Food", 10.0),
+                createRecord(2L, "expense", "Food", 10.0)));
+
+        // Assert: 不 clear 整个持久化上下文，只 refresh 已加载的账户
+        verify(entityManager).refresh(loaded);
+        verify(entityManager, never()).refresh(proxy);
+        verify(entityManager, never()).clear();
+    }
+
+    private TransactionRecord createRecord(String type, String category, double amount) {
+        return createRecord(1L, type, category, amount);
+    }
+
+    private TransactionRecord createRecord(Long accountId, String type, String category, double amount) {
+        Account account = new Account();
+        account.setId(accountId);
+        TransactionRecord record = new TransactionRecord();
+        record.setType(type);
+        record.setCategory(category);
+        record.setAmount(amount);
+        record.setTransactionTime(TIME);
+        record.setAccount(account);
+        return record;
+    }
+}
@@ -13,13 +13,12 @@ import com.example.demo.model.redis.RedisAccount;
 import com.example.demo.repository.AccountDao;
 import com.example.demo.repository.TransactionUserDao;
 import com.example.demo.utility.GetCurrentUserInfo;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.demo.service.session.UserSessionStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 
 import java.util.*;
 
@@ -33,25 +32,18 @@ public class AccountServiceTest {
     private AccountDao accountDao;
 
     @Mock
-    private RedisTemplate<String, Object> redisTemplate;
+    private UserSessionStore userSessionStore;
 
     @Mock
     private TransactionUserDao transactionUserDao;
 
-    @Mock
-    private ObjectMapper objectMapper;
-
     @Mock
     private GetCurrentUserInfo getCurrentUserInfo;
 
-    @Mock
-    private ValueOperations<String, Object> valueOperations;
-
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
-        accountService = new AccountService(accountDao, redisTemplate, transactionUserDao, objectMapper, getCurrentUserInfo);
+        accountService = new AccountService(accountDao, userSessionStore, transactionUserDao, getCurrentUserInfo);
     }
 
     // ... 其他测试方法保持不变 ...
@@ -60,7 +52,7 @@ public class AccountServiceTest {
     public void getAccountByAccountId_WithInvalidId_ShouldThrowException() {
         // Arrange
         Long invalidId = 999L;
-        when(accountDao.findById(invalidId)).thenReturn(Optional.empty());
+        when(accountDao.findSummaryById(invalidId)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(AccountNotFoundException.class, () ->
@@ -75,19 +67,73 @@ public class AccountServiceTest {
         AccountDTO accountDTO = new AccountDTO();
         accountDTO.setName("ExistingAccount");
 
-        Set<String> redisKeys = new HashSet<>();
-        redisKeys.add("login_user:1:account:1");
-
-        RedisAccount existingRedisAccount = new RedisAccount(1L, "ExistingAccount", 0.0, 0.0);
-
-        when(redisTemplate.keys(anyString())).thenReturn(redisKeys);
-        when(redisTemplate.opsForValue().get(anyString())).thenReturn(existingRedisAccount);
-        when(objectMapper.convertValue(any(), eq(RedisAccount.class))).thenReturn(existingRedisAccount);
+        when(userSessionStore.isActive(userId)).thenReturn(true);
+        when(userSessionStore.accountNameExists(userId, "ExistingAccount")).thenReturn(true);
 
         // Act & Assert
         assertThrows(AccountAlreadyExistException.class, () ->
                 accountService.createAccount(accountDTO, userId)
         );
+        verify(accountDao, never()).save(any());
+    }
+
+    @Test
+    public void createAccount_WithoutSession_ShouldThrowException() {
+        // Arrange
+        AccountDTO accountDTO = new AccountDTO();
+        accountDTO.setName("NewAccount");
+        when(userSessionStore.isActive(1L)).thenReturn(false);
+
+        // Act & Assert
+        RuntimeException thrown = assertThrows(RuntimeException.class, () ->
+                accountService.createAccount(accountDTO, 1L)
+        );
+        assertThat(thrown.getMessage()).isEqualTo("用户未登录或会话已过期");
+    }
+
+    @Test
+    public void createAccount_WithNewName_ShouldSaveAndAddToSession() throws Exception, UserNotFoundException {
+        // Arrange
+        Long userId = 1L;
+        AccountDTO accountDTO = new AccountDTO();
+        accountDTO.setName("NewAccount");
+        TransactionUser user = new TransactionUser();
+        user.setId(userId);
+        when(userSessionStore.isActive(userId)).thenReturn(true);
+        when(userSessionStore.accountNameExists(userId, "NewAccount")).thenReturn(false);
+        when(transactionUserDao.findById(userId)).thenReturn(Optional.of(user));
+        when(accountDao.save(any(Account.class))).thenAnswer(invocation -> {
+            Account saved = invocation.getArgument(0);
+            saved.setId(5L);
+            return saved;
+        });
+
+        // Act
+        String result = accountService.createAccount(accountDTO, userId);
+
+        // Assert
+        assertThat(result).isEqualTo("账户创建成功");
+        ArgumentCaptor<RedisAccount> redisAccount = ArgumentCaptor.forClass(RedisAccount.class);
+        verify(userSessionStore).putAccount(eq(userId), redisAccount.capture());
+        assertThat(redisAccount.getValue().getId()).isEqualTo(5L);
+        assertThat(redisAccount.getValue().getName()).isEqualTo("NewAccount");
+    }
+
+    @Test
+    public void deleteAccount_ShouldRemoveAccountFromSession() throws Exception {
+        // Arrange
+        Account account = createTestAccount(3L, "Savings");
+        TransactionUser user = new TransactionUser();
+        user.setId(1L);
+        account.setTransactionUser(user);
+        when(accountDao.findById(3L)).thenReturn(Optional.of(account));
+
+        // Act
+        accountService.deleteAccount(3L);
+
+        // Assert
+        verify(accountDao).delete(account);
+        verify(userSessionStore).removeAccount(1L, 3L);
     }
 
     private Account createTestAccount(Long id, String name) {
@@ -0,0 +1,215 @@
+package com.example.demo.service;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.exception.ImportCapacityExceededException;
+import com.example.demo.model.TransactionRecord;
+import com.example.demo.model.dto.CsvImportProgress;
+import com.example.demo.service.outbox.TransactionOutboxService;
+
+public class CsvImportServiceTest {
+    private static final String HEADER = "交易时间,收/支,金额(元),交易分类\n";
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private TransactionTemplate transactionTemplate;
+    @Mock private AccountAggregateService accountAggregateService;
+    @Mock private TransactionOutboxService transactionOutboxService;
+    @Mock private TransactionRecordService transactionRecordService;
+
+    private CsvImportService csvImportService;
+    // Mockito 记录的是集合引用，批次列表会被复用，这里保存每次调用时的副本
+    private final List<List<TransactionRecord>> aggregatedBatches = new ArrayList<>();
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        doAnswer(invocation -> {
+            ((Consumer<TransactionStatus>) invocation.getArgument(0)).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        doAnswer(invocation -> {
+            aggregatedBatches.add(new ArrayList<>((Collection<TransactionRecord>) invocation.getArgument(0)));
+            return null;
+        }).when(accountAggregateService).recordsAdded(any());
+        csvImportService = new CsvImportService(jdbcTemplate, transactionTemplate, accountAggregateService,
+                transactionOutboxService, transactionRecordService, 2, 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        csvImportService.shutdown();
+    }
+
+    @Test
+    public void importStatement_ShouldInsertFullBatchesWithOneMultiRowStatement() {
+        // Arrange
+        String csv = HEADER +
+                "2024-01-01 10:00:00,支出,10.00,Food\n" +
+                "2024-01-01 11:00:00,收入,200.00,Salary\n" +
+                "2024-01-02 09:00:00,支出,5.50,Transport\n";
+        CsvImportProgress progress = new CsvImportProgress("job", 1L, 9L, csv.length());
+        List<String> statements = new ArrayList<>();
+        List<Object[]> statementArgs = new ArrayList<>();
+        doAnswer(invocation -> {
+            Object[] arguments = invocation.getArguments();
+            statements.add((String) arguments[0]);
+            statementArgs.add(Arrays.copyOfRange(arguments, 1, arguments.length));
+            return 1;
+        }).when(jdbcTemplate).update(anyString(), any(Object[].class));
+
+        // Act
+        csvImportService.importStatement(input(csv), StandardCharsets.UTF_8, progress);
+
+        // Assert
+        assertThat(statements).containsExactly(CsvImportService.insertSql(2), CsvImportService.insertSql(1)).inOrder();
+        assertThat(statementArgs.get(0)).hasLength(16);
+        assertThat(statementArgs.get(1)).hasLength(8);
+        Object[] firstRow = statementArgs.get(0);
+        assertThat(firstRow[0]).isEqualTo("Expense");
+        assertThat(firstRow[1]).isEqualTo("Food");
+        assertThat(firstRow[6]).isEqualTo(9L);
+        assertThat(firstRow[7]).isEqualTo(1L);
+
+        // 每批只产生一次聚合增量
+        assertThat(aggregatedBatches).hasSize(2);
+        assertThat(aggregatedBatches.get(0)).hasSize(2);
+        assertThat(aggregatedBatches.get(1)).hasSize(1);
+        verify(transactionOutboxService, times(1)).accountReindex(9L);
+        verify(transactionRecordService).refreshCachedAccount(9L);
+
+        assertThat(progress.getStatus()).isEqualTo(CsvImportProgress.Status.COMPLETED);
+        assertThat(progress.getRowsRead()).isEqualTo(3);
+        assertThat(progress.getRowsImported()).isEqualTo(3);
+        assertThat(progress.getBytesRead()).isEqualTo(csv.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    public void importStatement_ShouldSkipInvalidRowsAndRecordErrors() {
+        // Arrange
+        String csv = HEADER +
+                "2024-01-01 10:00:00,支出,10.00,Food\n" +
+                "2024-01-01 11:00:00,不计收支,200.00,Transfer\n" +
+                "not a date,支出,1.00,Food\n";
+        CsvImportProgress progress = new CsvImportProgress("job", 1L, 9L, csv.length());
+
+        // Act
+        csvImportService.importStatement(input(csv), StandardCharsets.UTF_8, progress);
+
+        // Assert
+        verify(jdbcTemplate, times(1)).update(anyString(), any(Object[].class));
+        assertThat(progress.getRowsRead()).isEqualTo(3);
+        assertThat(progress.getRowsImported()).isEqualTo(1);
+        assertThat(progress.getRowsRejected()).isEqualTo(2);
+        assertThat(progress.getErrors()).hasSize(2);
+        assertThat(progress.getErrors().get(0)).startsWith("line 3:");
+    }
+
+    @Test
+    public void importStatement_NoValidRows_ShouldNotTouchDatabase() {
+        // Arrange
+        String csv = HEADER + "2024-01-01 10:00:00,不计收支,10.00,Food\n";
+        CsvImportProgress progress = new CsvImportProgress("job", 1L, 9L, csv.length());
+
+        // Act
+        csvImportService.importStatement(input(csv), StandardCharsets.UTF_8, progress);
+
+        // Assert
+        verifyNoInteractions(jdbcTemplate, accountAggregateService, transactionOutboxService, transactionRecordService);
+        assertThat(progress.getStatus()).isEqualTo(CsvImportProgress.Status.COMPLETED);
+    }
+
+    @Test
+    public void importStatement_FailureMidway_ShouldKeepCommittedBatchesAndReindex() {
+        // Arrange
+        String csv = HEADER +
+                "2024-01-01 10:00:00,支出,10.00,Food\n" +
+                "2024-01-01 11:00:00,支出,20.00,Food\n" +
+                "2024-01-02 09:00:00,支出,5.50,Food\n";
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenReturn(2)
+                .thenThrow(new RuntimeException("disk full"));
+        CsvImportProgress progress = new CsvImportProgress("job", 1L, 9L, csv.length());
+
+        // Act
+        csvImportService.importStatement(input(csv), StandardCharsets.UTF_8, progress);
+
+        // Assert
+        assertThat(progress.getStatus()).isEqualTo(CsvImportProgress.Status.FAILED);
+        assertThat(progress.getMessage()).isEqualTo("disk full");
+        assertThat(progress.getRowsImported()).isEqualTo(2);
+        verify(transactionOutboxService).accountReindex(9L);
+    }
+
+    @Test
+    public void importStatement_MissingHeader_ShouldFail() {
+        CsvImportProgress progress = new CsvImportProgress("job", 1L, 9L, 10);
+
+        csvImportService.importStatement(input("a,b\n1,2\n"), StandardCharsets.UTF_8, progress);
+
+        assertThat(progress.getStatus()).isEqualTo(CsvImportProgress.Status.FAILED);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    public void submit_ShouldImportInBackgroundAndDeleteFile() throws Exception {
+        // Arrange
+        Path file = Files.createTempFile("statement-test-", ".csv");
+        Files.writeString(file, HEADER + "2024-01-01 10:00:00,支出,10.00,Food\n");
+
+        // Act
+        CsvImportProgress progress = csvImportService.submit(1L, 9L, file, StandardCharsets.UTF_8);
+
+        // Assert
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (progress.getFinishedAt() == null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(progress.getStatus()).isEqualTo(CsvImportProgress.Status.COMPLETED);
+        assertThat(progress.getRowsImported()).isEqualTo(1);
+        assertThat(Files.exists(file)).isFalse();
+        assertThat(csvImportService.getProgress(progress.getJobId(), 1L)).hasValue(progress);
+        assertThat(csvImportService.getProgress(progress.getJobId(), 2L)).isEmpty();
+    }
+
+    @Test
+    public void submit_WhenExecutorRejects_ShouldThrowCapacityExceptionAndDeleteFile() throws Exception {
+        // Arrange: 关闭后的线程池拒绝所有任务，和队列已满时走同一条路径
+        Path file = Files.createTempFile("statement-test-", ".csv");
+        Files.writeString(file, HEADER);
+        csvImportService.shutdown();
+
+        // Act & Assert
+        assertThrows(ImportCapacityExceededException.class,
+                () -> csvImportService.submit(1L, 9L, file, StandardCharsets.UTF_8));
+        assertThat(Files.exists(file)).isFalse();
+    }
+
+    private static ByteArrayInputStream input(String csv) {
+        return new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.demo.service;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.Map;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import com.example.demo.config.TestConfig;
+import com.example.demo.model.Account;
+import com.example.demo.model.TransactionUser;
+import com.example.demo.model.dto.CsvImportProgress;
+import com.example.demo.repository.AccountDao;
+import com.example.demo.repository.TransactionUserDao;
+
+/**
+ * 端到端吞吐测试：生成 20 万行账单边生成边导入，rows/s 记录在导入进度里（CsvImportProgress.rowsPerSecond），
+ * 并校验写入行数、账户总额与 transaction_record 的实际合计一致。
+ * 耗时较长，打了 load 标签，默认的 test 任务不执行，用 ./gradlew loadTest 运行
+ */
+@Tag("load")
+@SpringBootTest
+@Import(TestConfig.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = {
+        "spring.main.allow-bean-definition-overriding=true",
+        "csv.import.batch-size=500"
+})
+class CsvImportThroughputTest {
+    private static final int ROWS = 200_000;
+
+    @Autowired private CsvImportService csvImportService;
+    @Autowired private AccountDao accountDao;
+    @Autowired private TransactionUserDao transactionUserDao;
+    @Autowired private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void importsGeneratedStatementAndReportsThroughput() {
+        TransactionUser user = new TransactionUser();
+        user.setUsername("importer" + System.nanoTime() % 100_000);
+        user.setPassword("password");
+        user.setEmail("importer@example.com");
+        user = transactionUserDao.save(user);
+        Account account = new Account();
+        account.setAccountName("Import Account");
+        account.setTransactionUser(user);
+        Long accountId = accountDao.save(account).getId();
+
+        CsvImportProgress progress = new CsvImportProgress("throughput", user.getId(), accountId, -1);
+        csvImportService.importStatement(generatedStatement(ROWS), StandardCharsets.UTF_8, progress);
+
+        assertThat(progress.getStatus()).isEqualTo(CsvImportProgress.Status.COMPLETED);
+        assertThat(progress.getRowsImported()).isEqualTo(ROWS);
+        assertThat(progress.getRowsPerSecond()).isGreaterThan(0.0);
+        assertThat(jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM transaction_record WHERE account_id = ?", Long.class, accountId)).isEqualTo(ROWS);
+
+        Map<String, Object> totals = jdbcTemplate.queryForMap(
+                "SELECT total_income, total_expense FROM account WHERE id = ?", accountId);
+        assertThat(new BigDecimal(totals.get("total_income").toString()))
+                .isEquivalentAccordingToCompareTo(sumRecords(accountId, "income"));
+        assertThat(new BigDecimal(totals.get("total_expense").toString()))
+                .isEquivalentAccordingToCompareTo(sumRecords(accountId, "expense"));
+    }
+
+    private BigDecimal sumRecords(Long accountId, String type) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(amount), 0) FROM transaction_record WHERE account_id = ? AND LOWER(type) = ?",
+                BigDecimal.class, accountId, type);
+    }
+
+    // 逐行生成，不在内存里拼出整个文件
+    private static InputStream generatedStatement(int rows) {
+        Enumeration<InputStream> lines = new Enumeration<>() {
+            private int line = -1;
+
+            @Override
+            public boolean hasMoreElements() {
+                return line < rows;
+            }
+
+            @Override
+            public InputStream nextElement() {
+                String text = line < 0
+                        ? "交易时间,收/支,金额(元),交易分类,支付方式,商品\n"
+                        : String.format("2024-%02d-%02d 10:%02d:00,%s,%d.%02d,%s,零钱,商品%d\n",
+                                line % 12 + 1, line % 28 + 1, line % 60, line % 3 == 0 ? "收入" : "支出",
+                                line % 500 + 1, line % 100, line % 2 == 0 ? "Food" : "Shopping", line);
+                line++;
+                return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        return new SequenceInputStream(lines);
+    }
+}
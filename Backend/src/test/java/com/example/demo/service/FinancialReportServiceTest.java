@@ -1,114 +1,97 @@
 package com.example.demo.service;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.example.demo.model.FinancialReport;
 import com.example.demo.model.TransactionUser;
+import com.example.demo.model.dto.FinancialReportSummary;
+import com.example.demo.model.security.CurrentUserContext;
+import com.example.demo.model.security.JwtPrincipal;
 import com.example.demo.repository.FinancialReportRepository;
-import com.example.demo.repository.TransactionUserDao;
-import com.example.demo.utility.GetCurrentUserInfo;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 public class FinancialReportServiceTest {
 
     private FinancialReportService financialReportService;
 
-    @Mock
-    private GetCurrentUserInfo getCurrentUserInfo;
-
-    @Mock
-    private TransactionUserDao transactionUserDao;
-
     @Mock
     private FinancialReportRepository financialReportRepository;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        financialReportService = new FinancialReportService(
-                getCurrentUserInfo,
-                transactionUserDao,
-                financialReportRepository
-        );
+        financialReportService = new FinancialReportService(financialReportRepository);
+    }
+
+    private static CurrentUserContext currentUser(Long userId, String role) {
+        return new CurrentUserContext(new JwtPrincipal(userId, "testUser", role, "test-token"), id -> null);
     }
 
     @Test
     public void getFinancialReports_WhenUserRole_ShouldReturnUserReports() {
         // Arrange
-        String token = "test-token";
         Long userId = 1L;
-
-        TransactionUser user = new TransactionUser();
-        List<FinancialReport> expectedReports = createTestReports();
-        user.setFinancialReports(expectedReports);
-
-        when(getCurrentUserInfo.getCurrentUserRole(token)).thenReturn("ROLE_USER");
-        when(getCurrentUserInfo.getCurrentUserId(token)).thenReturn(userId);
-        when(transactionUserDao.findById(userId)).thenReturn(Optional.of(user));
+        List<FinancialReportSummary> expectedReports = List.of(
+                new FinancialReportSummary(1L, "First"),
+                new FinancialReportSummary(2L, "Second"));
+        when(financialReportRepository.findSummariesByUserId(userId)).thenReturn(new ArrayList<>(expectedReports));
 
         // Act
-        List<FinancialReport> result = financialReportService.getFinancialReports(token);
+        List<FinancialReportSummary> result = financialReportService.getFinancialReports(currentUser(userId, "ROLE_USER"));
 
         // Assert
-        assertThat(result).isNotNull();
-        assertThat(result).hasSize(2);
-        assertThat(result).containsExactlyElementsIn(expectedReports);
+        assertThat(result).containsExactlyElementsIn(expectedReports).inOrder();
     }
 
     @Test
     public void getFinancialReports_WhenNonUserRole_ShouldReturnEmptyList() {
-        // Arrange
-        String token = "admin-token";
-        when(getCurrentUserInfo.getCurrentUserRole(token)).thenReturn("ROLE_ADMIN");
-
         // Act
-        List<FinancialReport> result = financialReportService.getFinancialReports(token);
+        List<FinancialReportSummary> result = financialReportService.getFinancialReports(currentUser(1L, "ROLE_ADMIN"));
 
         // Assert
-        assertThat(result).isNotNull();
         assertThat(result).isEmpty();
+        verify(financialReportRepository, never()).findSummariesByUserId(anyLong());
     }
 
     @Test
     public void getFinancialReports_WhenUserHasNoReports_ShouldReturnEmptyList() {
         // Arrange
-        String token = "test-token";
-        Long userId = 1L;
-
-        TransactionUser user = new TransactionUser();
-        user.setFinancialReports(new ArrayList<>());
-
-        when(getCurrentUserInfo.getCurrentUserRole(token)).thenReturn("ROLE_USER");
-        when(getCurrentUserInfo.getCurrentUserId(token)).thenReturn(userId);
-        when(transactionUserDao.findById(userId)).thenReturn(Optional.of(user));
+        when(financialReportRepository.findSummariesByUserId(1L)).thenReturn(new ArrayList<>());
 
         // Act
-        List<FinancialReport> result = financialReportService.getFinancialReports(token);
+        List<FinancialReportSummary> result = financialReportService.getFinancialReports(currentUser(1L, "ROLE_USER"));
 
         // Assert
         assertThat(result).isNotNull();
         assertThat(result).isEmpty();
     }
 
-    private List<FinancialReport> createTestReports() {
-        List<FinancialReport> reports = new ArrayList<>();
-
-        FinancialReport report1 = new FinancialReport();
-        report1.setId(1L);
-        reports.add(report1);
+    @Test
+    public void saveFinancialReport_ShouldSaveReportForUser() {
+        // Arrange
+        TransactionUser user = new TransactionUser();
+        user.setId(1L);
+        when(financialReportRepository.save(any(FinancialReport.class))).thenAnswer(invocation -> invocation.getArgument(0));
 
-        FinancialReport report2 = new FinancialReport();
-        report2.setId(2L);
-        reports.add(report2);
+        // Act
+        financialReportService.saveFinancialReport(user, "Monthly report");
 
-        return reports;
+        // Assert
+        ArgumentCaptor<FinancialReport> saved = ArgumentCaptor.forClass(FinancialReport.class);
+        verify(financialReportRepository).save(saved.capture());
+        assertThat(saved.getValue().getContent()).isEqualTo("Monthly report");
+        assertThat(saved.getValue().getTransactionUser()).isSameInstanceAs(user);
     }
-}
\ No newline at end of file
+}
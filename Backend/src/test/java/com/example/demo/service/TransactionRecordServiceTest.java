@@ -1,29 +1,40 @@
 package com.example.demo.service;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
 import com.example.demo.model.Account;
 import com.example.demo.model.TransactionRecord;
 import com.example.demo.model.TransactionUser;
+import com.example.demo.model.dto.RecordPage;
 import com.example.demo.model.dto.TransactionRecordDTO;
+import com.example.demo.model.dto.TransactionRecordView;
+import com.example.demo.model.message.AnalyseRequest;
 import com.example.demo.repository.AccountDao;
 import com.example.demo.repository.TransactionRecordDao;
 import com.example.demo.repository.TransactionUserDao;
-import com.example.demo.service.es.RecordSyncService;
-import com.example.demo.service.rabbitmq.RabbitMQService;
-import com.example.demo.utility.GetCurrentUserInfo;
-import com.example.demo.utility.jwt.JwtUtil;
+import com.example.demo.service.fraud.FraudPreScreener;
+import com.example.demo.service.fraud.FraudScore;
+import com.example.demo.model.redis.RedisAccount;
+import com.example.demo.service.outbox.TransactionOutboxService;
+import com.example.demo.service.session.UserSessionStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
@@ -35,49 +46,118 @@ public class TransactionRecordServiceTest {
     @Mock private TransactionRecordDao transactionRecordDao;
     @Mock private TransactionUserDao transactionUserDao;
     @Mock private AccountDao accountDao;
-    @Mock private RecordSyncService recordSyncService;
-    @Mock private JwtUtil jwtUtil;
-    @Mock private RedisTemplate<String, Object> redisTemplate;
-    @Mock private GetCurrentUserInfo getCurrentUserInfo;
-    @Mock private RabbitMQService rabbitMQService;
+    @Mock private UserSessionStore userSessionStore;
+    @Mock private AccountAggregateService accountAggregateService;
+    @Mock private TransactionOutboxService transactionOutboxService;
+    @Mock private FraudPreScreener fraudPreScreener;
     @Mock private RabbitTemplate rabbitTemplate;
     @Mock private StringRedisTemplate stringRedisTemplate;
-    @Mock private ValueOperations<String, Object> valueOperations;
 
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
         transactionRecordService = new TransactionRecordService(
-                transactionRecordDao, jwtUtil, redisTemplate, accountDao,
-                transactionUserDao, recordSyncService, getCurrentUserInfo,
-                rabbitMQService
+                transactionRecordDao, userSessionStore, accountDao, transactionUserDao,
+                accountAggregateService, transactionOutboxService, fraudPreScreener
         );
     }
 
     @Test
-    public void getAllRecordsByAccountId_ShouldReturnRecordsList() {
+    public void getRecordPage_LastPage_ShouldHaveNoCursor() {
         // Arrange
-        Long accountId = 1L;
-        List<TransactionRecord> expectedRecords = Arrays.asList(
-                createTestRecord(1L, "expense", 100.0),
-                createTestRecord(2L, "income", 200.0)
-        );
-        when(transactionRecordDao.findAllByAccountId(accountId)).thenReturn(expectedRecords);
+        List<TransactionRecordView> views = List.of(createView(2L, 0), createView(1L, 1));
+        when(transactionRecordDao.findFirstPage(eq(1L), any(Pageable.class))).thenReturn(views);
 
         // Act
-        List<TransactionRecord> result = transactionRecordService.getAllRecordsByAccountId(accountId);
+        RecordPage page = transactionRecordService.getRecordPage(1L, null, null, 2);
 
         // Assert
-        assertThat(result).isNotNull();
-        assertThat(result).hasSize(2);
-        assertThat(result).containsExactlyElementsIn(expectedRecords);
+        assertThat(page.items()).containsExactlyElementsIn(views).inOrder();
+        assertThat(page.nextCursor()).isNull();
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(transactionRecordDao).findFirstPage(eq(1L), pageable.capture());
+        // 多取一条判断是否还有下一页
+        assertThat(pageable.getValue().getPageSize()).isEqualTo(3);
+    }
+
+    @Test
+    public void getRecordPage_MoreRows_ShouldReturnCursorOfLastItem() {
+        // Arrange
+        TransactionRecordView newest = createView(3L, 0);
+        TransactionRecordView second = createView(2L, 1);
+        TransactionRecordView extra = createView(1L, 2);
+        when(transactionRecordDao.findFirstPage(eq(1L), any(Pageable.class))).thenReturn(List.of(newest, second, extra));
+
+        // Act
+        RecordPage page = transactionRecordService.getRecordPage(1L, null, null, 2);
+
+        // Assert
+        assertThat(page.items()).containsExactly(newest, second).inOrder();
+        TransactionRecordView cursor = TransactionRecordService.decodeCursor(page.nextCursor());
+        assertThat(cursor.id()).isEqualTo(2L);
+        assertThat(cursor.transactionTime().toInstant()).isEqualTo(second.transactionTime().toInstant());
+    }
+
+    @Test
+    public void getRecordPage_WithCursorAndType_ShouldSeekPastCursor() {
+        // Arrange
+        TransactionRecordView last = createView(7L, 0);
+        String cursor = TransactionRecordService.encodeCursor(last);
+        when(transactionRecordDao.findPageAfterByType(eq(1L), eq("EXPENSE"), any(ZonedDateTime.class), eq(7L), any(Pageable.class)))
+                .thenReturn(List.of(createView(6L, 1)));
+
+        // Act
+        RecordPage page = transactionRecordService.getRecordPage(1L, "EXPENSE", cursor, 50);
+
+        // Assert
+        assertThat(page.items()).hasSize(1);
+        ArgumentCaptor<ZonedDateTime> time = ArgumentCaptor.forClass(ZonedDateTime.class);
+        verify(transactionRecordDao).findPageAfterByType(eq(1L), eq("EXPENSE"), time.capture(), eq(7L), any(Pageable.class));
+        assertThat(time.getValue().toInstant()).isEqualTo(last.transactionTime().toInstant());
+    }
+
+    @Test
+    public void getRecordPage_ShouldClampPageSize() {
+        when(transactionRecordDao.findFirstPage(eq(1L), any(Pageable.class))).thenReturn(List.of());
+
+        transactionRecordService.getRecordPage(1L, null, null, 10_000);
+
+        ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+        verify(transactionRecordDao).findFirstPage(eq(1L), pageable.capture());
+        assertThat(pageable.getValue().getPageSize()).isEqualTo(TransactionRecordService.MAX_PAGE_SIZE + 1);
+    }
+
+    @Test
+    public void getRecordPage_InvalidCursor_ShouldThrowIllegalArgument() {
+        assertThrows(IllegalArgumentException.class,
+                () -> transactionRecordService.getRecordPage(1L, null, "not-a-cursor", 10));
+    }
+
+    @Test
+    public void exportRecords_ShouldWalkAllPages() {
+        // Arrange: 第一页是满的，第二页不满，之后不再查询
+        List<TransactionRecordView> firstPage = new ArrayList<>();
+        for (int i = 0; i < TransactionRecordService.EXPORT_PAGE_SIZE; i++) {
+            firstPage.add(createView(10_000L - i, i));
+        }
+        TransactionRecordView lastOfFirst = firstPage.get(firstPage.size() - 1);
+        when(transactionRecordDao.findFirstPage(eq(1L), any(Pageable.class))).thenReturn(firstPage);
+        when(transactionRecordDao.findPageAfter(eq(1L), eq(lastOfFirst.transactionTime()), eq(lastOfFirst.id()), any(Pageable.class)))
+                .thenReturn(List.of(createView(1L, 5_000)));
+        List<TransactionRecordView> exported = new ArrayList<>();
+
+        // Act
+        long count = transactionRecordService.exportRecords(1L, null, exported::add);
+
+        // Assert
+        assertThat(count).isEqualTo(TransactionRecordService.EXPORT_PAGE_SIZE + 1L);
+        assertThat(exported).hasSize(TransactionRecordService.EXPORT_PAGE_SIZE + 1);
+        verify(transactionRecordDao, times(1)).findPageAfter(anyLong(), any(), anyLong(), any(Pageable.class));
     }
 
     @Test
-    public void addTransactionRecord_ExpenseType_ShouldUpdateAccountExpense() {
+    public void addTransactionRecord_ExpenseType_ShouldApplyAggregateDelta() {
         // Arrange
-        String token = "Bearer test-token";
         Long userId = 1L;
         Long accountId = 1L;
         TransactionRecordDTO dto = createTestRecordDTO("expense", 100.0);
@@ -89,21 +169,81 @@ public class TransactionRecordServiceTest {
         Account account = createTestAccount(accountId, 0.0, 0.0);
         account.setTransactionUser(user); // 设置用户
 
-        when(jwtUtil.getUserIdFromToken("test-token")).thenReturn(userId);
-        when(getCurrentUserInfo.getCurrentAccountId(userId)).thenReturn(accountId);
         when(accountDao.findById(accountId)).thenReturn(Optional.of(account));
+        FraudScore fraudScore = new FraudScore(60, List.of("3 records within the velocity window"));
+        when(fraudPreScreener.screen(eq(accountId), any(TransactionRecord.class))).thenReturn(fraudScore);
+        when(fraudPreScreener.shouldEscalate(fraudScore)).thenReturn(true);
 
         // Act
-        transactionRecordService.addTransactionRecord(token, dto);
+        transactionRecordService.addTransactionRecord(userId, accountId, dto);
 
         // Assert
-        assertThat(account.getTotalExpense()).isEqualTo(100.0);
-        verify(transactionRecordDao).save(any(TransactionRecord.class));
-        verify(recordSyncService).syncToElasticsearch(any(TransactionRecord.class));
+        ArgumentCaptor<TransactionRecord> captor = ArgumentCaptor.forClass(TransactionRecord.class);
+        verify(transactionRecordDao).save(captor.capture());
+        verify(accountAggregateService).recordAdded(captor.getValue());
+        assertThat(captor.getValue().getAmount()).isEqualTo(100.0);
+        assertThat(captor.getValue().getAccount()).isSameInstanceAs(account);
+        // 总额由聚合引擎在数据库中原子累加，不在内存里修改
+        assertThat(account.getTotalExpense()).isEqualTo(0.0);
+        verify(userSessionStore).putAccount(eq(1L), any(RedisAccount.class));
+        verify(transactionOutboxService).recordChanged(captor.getValue().getId());
+        ArgumentCaptor<AnalyseRequest> request = ArgumentCaptor.forClass(AnalyseRequest.class);
+        verify(transactionOutboxService).analyseRequest(request.capture());
+        assertThat(request.getValue().getContent()).contains("Pre-screening flags: 3 records within the velocity window");
+    }
+
+    @Test
+    public void refreshCachedAccount_InTransaction_ShouldWriteRedisOnlyAfterCommit() {
+        // Arrange
+        TransactionUser user = new TransactionUser();
+        user.setId(1L);
+        Account account = createTestAccount(1L, 100.0, 40.0);
+        account.setTransactionUser(user);
+        when(accountDao.findById(1L)).thenReturn(Optional.of(account));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            // Act
+            transactionRecordService.refreshCachedAccount(1L);
+
+            // Assert: 事务提交前不写 Redis，回滚的事务永远不写
+            verify(userSessionStore, never()).putAccount(anyLong(), any(RedisAccount.class));
+            completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+            verify(userSessionStore, never()).putAccount(anyLong(), any(RedisAccount.class));
+
+            TransactionSynchronizationManager.initSynchronization();
+            transactionRecordService.refreshCachedAccount(1L);
+            completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+            verify(userSessionStore).putAccount(eq(1L), eq(new RedisAccount(1L, account.getAccountName(), 100.0, 40.0)));
+        } finally {
+            TransactionSynchronizationManager.clear();
+        }
     }
 
     @Test
-    public void updateTransactionRecord_ShouldUpdateAmounts() {
+    public void addTransactionRecord_CleanPreScreen_ShouldNotQueueAnalysis() {
+        // Arrange
+        TransactionRecordDTO dto = createTestRecordDTO("expense", 12.0);
+        dto.setTransactionTime(ZonedDateTime.now());
+        TransactionUser user = new TransactionUser();
+        user.setId(1L);
+        Account account = createTestAccount(1L, 0.0, 0.0);
+        account.setTransactionUser(user);
+
+        when(accountDao.findById(1L)).thenReturn(Optional.of(account));
+        when(fraudPreScreener.screen(eq(1L), any(TransactionRecord.class))).thenReturn(FraudScore.CLEAN);
+        when(fraudPreScreener.shouldEscalate(FraudScore.CLEAN)).thenReturn(false);
+
+        // Act
+        transactionRecordService.addTransactionRecord(1L, 1L, dto);
+
+        // Assert
+        verify(transactionOutboxService).recordChanged(any());
+        verify(transactionOutboxService, never()).analyseRequest(any(AnalyseRequest.class));
+    }
+
+    @Test
+    public void updateTransactionRecord_ShouldApplyOldAndNewValues() {
         // Arrange
         Long recordId = 1L;
         TransactionRecordDTO newDto = createTestRecordDTO("income", 150.0);
@@ -123,14 +263,18 @@ public class TransactionRecordServiceTest {
         transactionRecordService.updateTransactionRecord(recordId, newDto);
 
         // Assert
-        assertThat(account.getTotalExpense()).isEqualTo(0.0);
-        assertThat(account.getTotalIncome()).isEqualTo(350.0);
+        ArgumentCaptor<TransactionRecord> before = ArgumentCaptor.forClass(TransactionRecord.class);
+        verify(accountAggregateService).recordUpdated(before.capture(), eq(existingRecord));
+        assertThat(before.getValue().getType()).isEqualTo("expense");
+        assertThat(before.getValue().getAmount()).isEqualTo(100.0);
+        assertThat(existingRecord.getType()).isEqualTo("income");
+        assertThat(existingRecord.getAmount()).isEqualTo(150.0);
         verify(transactionRecordDao).save(any(TransactionRecord.class));
-        verify(recordSyncService).updateInElasticsearch(any(TransactionRecord.class));
+        verify(transactionOutboxService).recordChanged(recordId);
     }
 
     @Test
-    public void deleteTransactionRecord_ShouldUpdateAccountBalance() {
+    public void deleteTransactionRecord_ShouldSubtractFromAggregates() {
         // Arrange
         Long recordId = 1L;
         TransactionUser user = new TransactionUser();
@@ -149,31 +293,35 @@ public class TransactionRecordServiceTest {
         transactionRecordService.deleteTransactionRecord(recordId);
 
         // Assert
-        assertThat(account.getTotalExpense()).isEqualTo(50.0);
+        verify(accountAggregateService).recordsRemoved(List.of(record));
         verify(transactionRecordDao).delete(record);
-        verify(recordSyncService).deleteFromElasticsearch(recordId);
+        verify(transactionOutboxService).recordChanged(recordId);
     }
 
 
     @Test
-    public void findRecordByAccountIdAndType_ShouldReturnFilteredRecords() {
+    public void deleteTransactionRecordsInBatch_ShouldSubtractAllRecords() {
         // Arrange
-        Long accountId = 1L;
-        String type = "expense";
-        List<TransactionRecord> expectedRecords = Arrays.asList(
-                createTestRecord(1L, "expense", 100.0),
-                createTestRecord(2L, "expense", 150.0)
+        TransactionUser user = new TransactionUser();
+        user.setId(1L);
+        Account account = createTestAccount(1L, 200.0, 100.0);
+        account.setTransactionUser(user);
+        List<Long> ids = Arrays.asList(1L, 2L);
+        List<TransactionRecord> records = Arrays.asList(
+                createTestRecord(1L, "expense", 30.0),
+                createTestRecord(2L, "income", 20.0)
         );
 
-        when(transactionRecordDao.findByAccountIdAndType(type, accountId)).thenReturn(expectedRecords);
+        when(transactionRecordDao.findAllByIdInAndAccountId(ids, 1L)).thenReturn(records);
+        when(accountDao.findById(1L)).thenReturn(Optional.of(account));
 
         // Act
-        List<TransactionRecord> result = transactionRecordService.findRecordByAccountIdAndType(type, accountId);
+        transactionRecordService.deleteTransactionRecordsInBatch(1L, ids);
 
         // Assert
-        assertThat(result).isNotNull();
-        assertThat(result).hasSize(2);
-        assertThat(result).containsExactlyElementsIn(expectedRecords);
+        verify(transactionRecordDao).deleteAll(records);
+        verify(accountAggregateService).recordsRemoved(records);
+        verify(transactionOutboxService).recordsChanged(ids);
     }
 
     @Test
@@ -204,6 +352,23 @@ public class TransactionRecordServiceTest {
         return record;
     }
 
+    private static final ZonedDateTime BASE_TIME = ZonedDateTime.parse("2024-05-01T12:00:00.123456+10:00");
+
+    private TransactionRecordView createView(long id, int minutesAgo) {
+        return new TransactionRecordView(id, "EXPENSE", "Food", 10.0, "Cash",
+                BASE_TIME.minusMinutes(minutesAgo), "test");
+    }
+
+    // 模拟事务结束：提交时先回调 afterCommit，再回调 afterCompletion
+    private static void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        if (status == TransactionSynchronization.STATUS_COMMITTED) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+
     private TransactionRecordDTO createTestRecordDTO(String type, Double amount) {
         TransactionRecordDTO dto = new TransactionRecordDTO();
         dto.setType(type);
@@ -13,14 +13,18 @@ import com.example.demo.repository.TransactionUserDao;
 import com.example.demo.model.TransactionUser;
 import com.example.demo.model.Account;
 import com.example.demo.model.dto.TransactionUserDTO;
+import com.example.demo.model.dto.UserProfile;
+import com.example.demo.model.redis.RedisAccount;
+import com.example.demo.model.redis.RedisUser;
+import com.example.demo.service.security.UserDetailService;
+import com.example.demo.service.session.UserSession;
+import com.example.demo.service.session.UserSessionStore;
 import com.example.demo.utility.GetCurrentUserInfo;
 import com.example.demo.utility.jwt.JwtUtil;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 
@@ -56,7 +60,7 @@ public class TransactionUserServiceTest {
 
 
     @Mock
-    private RedisTemplate<String, Object> redisTemplate;
+    private UserSessionStore userSessionStore;
 
 
 
@@ -68,13 +72,13 @@ public class TransactionUserServiceTest {
 
 
     @Mock
-    private ValueOperations<String, Object> valueOperations;
+    private GetCurrentUserInfo getCurrentUserInfo;  // 添加新的 Mock
 
 
 
 
     @Mock
-    private GetCurrentUserInfo getCurrentUserInfo;  // 添加新的 Mock
+    private UserDetailService userDetailService;
 
 
 
@@ -82,13 +86,13 @@ public class TransactionUserServiceTest {
     @BeforeEach
     public void setUp() {
         MockitoAnnotations.openMocks(this);
-        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
         transactionUserService = new TransactionUserService(
                 transactionUserDao,
                 jwtUtil,
-                redisTemplate,
+                userSessionStore,
                 passwordEncoder,
-                getCurrentUserInfo  // 添加新的参数
+                getCurrentUserInfo,  // 添加新的参数
+                userDetailService
         );
     }
 
@@ -109,9 +113,10 @@ public class TransactionUserServiceTest {
         TransactionUserService testService = new TransactionUserService(
                 transactionUserDao,
                 jwtUtil,
-                redisTemplate,
+                userSessionStore,
                 passwordEncoder,
-                getCurrentUserInfo  // 添加新的参数
+                getCurrentUserInfo,  // 添加新的参数
+                userDetailService
         ) {
             @Override
             public Optional<TransactionUserDTO> getUserInfoByUserId(String token) {
@@ -129,7 +134,7 @@ public class TransactionUserServiceTest {
 
 
         when(jwtUtil.getUserIdFromToken("test-token")).thenReturn(userId);
-        when(valueOperations.get("login_user:" + userId + ":info")).thenReturn(null);
+        when(userSessionStore.load(userId)).thenReturn(Optional.empty());
         when(transactionUserDao.findById(userId)).thenReturn(Optional.of(user));
 
 
@@ -154,6 +159,82 @@ public class TransactionUserServiceTest {
 
 
 
+    @Test
+    public void getUserInfoByUserId_WithSession_ShouldReadSessionOnly() {
+        // Arrange
+        Long userId = 1L;
+        RedisUser info = new RedisUser(userId, "testUser", "test@email.com", "1234567890", null, "test-token");
+        UserSession session = new UserSession(info, null, List.of(
+                new RedisAccount(1L, "Daily", 0.0, 0.0),
+                new RedisAccount(2L, "Savings", 0.0, 0.0)));
+        when(jwtUtil.getUserIdFromToken("test-token")).thenReturn(userId);
+        when(userSessionStore.load(userId)).thenReturn(Optional.of(session));
+
+
+
+
+        // Act
+        Optional<TransactionUserDTO> result = transactionUserService.getUserInfoByUserId("Bearer test-token");
+
+
+
+
+        // Assert
+        assertThat(result.isPresent()).isTrue();
+        assertThat(result.get().getUsername()).isEqualTo("testUser");
+        assertThat(result.get().getAccountName()).containsExactly("Daily", "Savings").inOrder();
+        verify(transactionUserDao, never()).findById(anyLong());
+    }
+
+
+
+
+    @Test
+    public void deleteUser_ShouldEvictCachedUserDetail() throws Exception {
+        // Arrange
+        Long userId = 1L;
+        when(transactionUserDao.findById(userId)).thenReturn(Optional.of(createTestUser()));
+
+
+
+
+        // Act
+        transactionUserService.deleteUser(userId);
+
+
+
+
+        // Assert
+        verify(transactionUserDao).deleteById(userId);
+        verify(userDetailService).evictUser(userId);
+    }
+
+
+
+
+    @Test
+    public void findById_ShouldReturnProfileWithoutPassword() {
+        // Arrange
+        TransactionUser user = createTestUser();
+        user.setPassword("encoded-password");
+        when(transactionUserDao.findById(1L)).thenReturn(Optional.of(user));
+
+
+
+
+        // Act
+        Optional<UserProfile> profile = transactionUserService.findById(1L);
+
+
+
+
+        // Assert: 缓存的资料只有基本字段，不带密码和账户集合
+        assertThat(profile).hasValue(new UserProfile(1L, "testUser", "test@email.com", "1234567890", null, null, null));
+    }
+
+
+
+
     private TransactionUser createTestUser() {
         TransactionUser user = new TransactionUser();
         user.setId(1L);
@@ -1,26 +1,33 @@
 package com.example.demo.service.ai;
 
-import com.example.demo.model.FinancialReport;
 import com.example.demo.model.TransactionUser;
 import com.example.demo.model.dto.TransactionRecordDTO;
-import com.example.demo.repository.FinancialReportRepository;
+import com.example.demo.model.message.FinancialReportMessage;
+import com.example.demo.service.FinancialReportService;
 import com.example.demo.service.TransactionRecordService;
 import com.example.demo.service.rabbitmq.RabbitMQService;
+import com.example.demo.service.resilience.DependencyGuards;
 import com.example.demo.utility.PromptManager;
 import com.example.demo.utility.GetCurrentUserInfo;
 import com.example.demo.utility.jwt.JwtUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.openai.OpenAiChatModel;
 import org.springframework.ai.vectorstore.ChromaVectorStore;
+import org.springframework.mock.env.MockEnvironment;
 
 import java.util.ArrayList;
 import java.util.List;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
@@ -33,7 +40,7 @@ public class WarningRecordAnalyserServiceTest {
     @Mock private ChromaVectorStore vectorStore;
     @Mock private PromptManager promptManager;
     @Mock private RabbitMQService rabbitMQService;
-    @Mock private FinancialReportRepository financialReportRepository;
+    @Mock private FinancialReportService financialReportService;
 
     private AiAnalyserService aiAnalyserService;
 
@@ -42,7 +49,8 @@ public class WarningRecordAnalyserServiceTest {
         MockitoAnnotations.openMocks(this);
         aiAnalyserService = new AiAnalyserService(
                 openAiChatModel, jwtUtil, getCurrentUserInfo, recordService,
-                vectorStore, promptManager, rabbitMQService, financialReportRepository
+                vectorStore, promptManager, rabbitMQService, financialReportService, Runnable::run,
+                new DependencyGuards(new MockEnvironment(), new SimpleMeterRegistry())
         );
     }
 
@@ -64,6 +72,39 @@ public class WarningRecordAnalyserServiceTest {
         verify(openAiChatModel).call(any(Prompt.class));
     }
 
+    @Test
+    public void analyseRecordBatch_shouldSendAllRecordsInOnePrompt() {
+        // Arrange
+        List<String> currentRecords = List.of("Transfer $100 to John", "Transfer $100 to John", "Coffee $5");
+        ArgumentCaptor<Prompt> promptCaptor = ArgumentCaptor.forClass(Prompt.class);
+        when(openAiChatModel.call(promptCaptor.capture()))
+                .thenReturn(new ChatResponse(List.of(new Generation("WARNING #2: same amount as #1"))));
+
+        // Act
+        String result = aiAnalyserService.analyseRecordBatch(currentRecords, "No records found.");
+
+        // Assert
+        verify(openAiChatModel, times(1)).call(any(Prompt.class));
+        String prompt = promptCaptor.getValue().getContents();
+        assertThat(prompt).contains("#1: Transfer $100 to John");
+        assertThat(prompt).contains("#3: Coffee $5");
+        assertThat(result).contains("WARNING #2");
+    }
+
+    @Test
+    public void analyseCurrentRecord_whenModelFails_shouldPropagateInsteadOfReturningErrorText() {
+        // Arrange
+        when(openAiChatModel.call(any(Prompt.class))).thenThrow(new RuntimeException("rate limited"));
+
+        // Act & Assert: 错误不能变成一条普通的分析结果被推送给前端
+        try {
+            aiAnalyserService.analyseCurrentRecord("Transfer $100 to John", "No records found.");
+            fail("Expected the model failure to propagate");
+        } catch (RuntimeException e) {
+            assertThat(e).hasMessageThat().isEqualTo("rate limited");
+        }
+    }
+
     @Test
     public void generateOverAllFinancialReport_shouldGenerateReport() {
         // Arrange
@@ -95,8 +136,12 @@ public class WarningRecordAnalyserServiceTest {
 
         // Assert
         assertThat(result).isEqualTo(expectedResponse);
-        verify(rabbitMQService, timeout(1000)).sendTransactionReportToChatbot(expectedResponse);
-        verify(financialReportRepository, timeout(1000)).save(any(FinancialReport.class));
+        ArgumentCaptor<FinancialReportMessage> reportCaptor = ArgumentCaptor.forClass(FinancialReportMessage.class);
+        verify(rabbitMQService, timeout(1000)).sendTransactionReportToChatbot(reportCaptor.capture());
+        assertThat(reportCaptor.getValue().getUserId()).isEqualTo(userId);
+        assertThat(reportCaptor.getValue().getConversationId()).isNull();
+        assertThat(reportCaptor.getValue().getReport()).isEqualTo(expectedResponse);
+        verify(financialReportService, timeout(1000)).saveFinancialReport(mockUser, expectedResponse);
     }
 
     @Test
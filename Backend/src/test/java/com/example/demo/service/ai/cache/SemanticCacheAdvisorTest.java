@@ -0,0 +1,117 @@
+package com.example.demo.service.ai.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import reactor.core.publisher.Flux;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class SemanticCacheAdvisorTest {
+    private SimpleMeterRegistry meterRegistry;
+    private SemanticResponseCache cache;
+    private SemanticCacheAdvisor advisor;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new SemanticResponseCache(text -> new float[]{1, 0}, meterRegistry, 0.95, 60_000, 10, 100, 5,
+                System::currentTimeMillis);
+        advisor = new SemanticCacheAdvisor(cache, meterRegistry, "user");
+    }
+
+    @Test
+    public void scopeFor_ShouldFollowConfiguredMode() {
+        assertThat(advisor.scopeFor(7L, "c1")).isEqualTo("user:7");
+        assertThat(advisor.scopeFor(null, "c1")).isNull();
+        assertThat(new SemanticCacheAdvisor(cache, meterRegistry, "conversation").scopeFor(7L, "c1")).isEqualTo("conversation:c1");
+        assertThat(new SemanticCacheAdvisor(cache, meterRegistry, "global").scopeFor(null, null)).isEqualTo(SemanticCacheAdvisor.GLOBAL_SCOPE);
+    }
+
+    @Test
+    public void scopeFor_WithReportOrHistory_ShouldSeparateDifferentContexts() {
+        // Arrange
+        List<Message> history = List.of(new UserMessage("What did I spend on food?"), new AssistantMessage("$120."));
+
+        // Act
+        String plain = advisor.scopeFor(7L, "c1", null, List.of());
+        String withReport = advisor.scopeFor(7L, "c1", "Latest financial report: spending is up", List.of());
+        String withOtherReport = advisor.scopeFor(7L, "c1", "Latest financial report: spending is down", List.of());
+        String withHistory = advisor.scopeFor(7L, "c1", null, history);
+
+        // Assert: 没有上下文时和原来的作用域一致，上下文相同则作用域相同
+        assertThat(plain).isEqualTo("user:7");
+        assertThat(withReport).startsWith("user:7:ctx:");
+        assertThat(withReport).isNotEqualTo(withOtherReport);
+        assertThat(withHistory).isNotEqualTo(withReport);
+        assertThat(advisor.scopeFor(7L, "c1", null, List.copyOf(history))).isEqualTo(withHistory);
+        assertThat(advisor.scopeFor(null, "c1", "report", history)).isNull();
+    }
+
+    @Test
+    public void adviseResponse_OnMiss_ShouldStoreAnswer() {
+        // Arrange: 模拟 adviseRequest 未命中时放入 context 的 lookup
+        Map<String, Object> context = new HashMap<>();
+        context.put("semantic_cache_lookup", cache.lookup("user:1", "How much did I spend?"));
+
+        // Act
+        ChatResponse response = response("You spent $120.");
+        ChatResponse advised = advisor.adviseResponse(response, context);
+
+        // Assert
+        assertThat(advised).isSameInstanceAs(response);
+        assertThat(cache.lookup("user:1", "how much did i spend").answer()).isEqualTo("You spent $120.");
+        assertThat(meterRegistry.timer("ai.chat.latency", "cache", "miss").count()).isEqualTo(0);
+    }
+
+    @Test
+    public void adviseResponse_Stream_ShouldStoreAggregatedAnswer() {
+        // Arrange
+        Map<String, Object> context = new HashMap<>();
+        context.put("semantic_cache_lookup", cache.lookup("user:1", "Summarise my month"));
+        context.put("semantic_cache_start", System.nanoTime());
+
+        // Act
+        List<ChatResponse> chunks = advisor.adviseResponse(Flux.just(response("You spent "), response("$120.")), context)
+                .collectList().block();
+
+        // Assert
+        assertThat(chunks).hasSize(2);
+        assertThat(cache.lookup("user:1", "summarise my month").answer()).isEqualTo("You spent $120.");
+        assertThat(meterRegistry.timer("ai.chat.latency", "cache", "miss").count()).isEqualTo(1);
+    }
+
+    @Test
+    public void adviseResponse_OnHit_ShouldReturnCachedResponse() {
+        // Arrange
+        ChatResponse cached = response("cached");
+        Map<String, Object> context = new HashMap<>();
+        context.put("semantic_cache_response", cached);
+        context.put("semantic_cache_start", System.nanoTime());
+
+        // Act & Assert
+        assertThat(advisor.adviseResponse(response("fresh"), context)).isSameInstanceAs(cached);
+        assertThat(advisor.adviseResponse(Flux.just(response("fresh")), context).blockFirst()).isSameInstanceAs(cached);
+        assertThat(meterRegistry.timer("ai.chat.latency", "cache", "hit").count()).isEqualTo(2);
+    }
+
+    @Test
+    public void adviseResponse_WithoutScope_ShouldPassThrough() {
+        ChatResponse response = response("fresh");
+
+        assertThat(advisor.adviseResponse(response, new HashMap<>())).isSameInstanceAs(response);
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(text)));
+    }
+}
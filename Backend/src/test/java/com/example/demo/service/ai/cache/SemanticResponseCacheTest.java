@@ -0,0 +1,126 @@
+package com.example.demo.service.ai.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class SemanticResponseCacheTest {
+    private static final long TTL = 60_000;
+
+    private final Map<String, float[]> vectors = new HashMap<>();
+    private final AtomicInteger embedCalls = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private SimpleMeterRegistry meterRegistry;
+    private SemanticResponseCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        vectors.put("how much did i spend on food", new float[]{1, 0, 0});
+        vectors.put("how much have i spent on food", new float[]{0.98f, 0.2f, 0});
+        vectors.put("what is my biggest expense", new float[]{0, 1, 0});
+        cache = new SemanticResponseCache(this::embed, meterRegistry, 0.95, TTL, 2, 100, 12, now::get);
+    }
+
+    @Test
+    public void lookup_SimilarPrompt_ShouldReturnCachedAnswer() {
+        // Arrange
+        SemanticResponseCache.Lookup miss = cache.lookup("user:1", "How much did I spend on food?");
+        cache.put(miss, "You spent $120 on food.");
+
+        // Act
+        SemanticResponseCache.Lookup hit = cache.lookup("user:1", "how much have I spent on food");
+
+        // Assert
+        assertThat(miss.isHit()).isFalse();
+        assertThat(hit.isHit()).isTrue();
+        assertThat(hit.answer()).isEqualTo("You spent $120 on food.");
+        assertThat(cache.hitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void lookup_SamePromptDifferentFormatting_ShouldHitWithoutEmbedding() {
+        // Arrange
+        cache.put(cache.lookup("user:1", "How much did I spend on food?"), "$120");
+        int callsBefore = embedCalls.get();
+
+        // Act
+        SemanticResponseCache.Lookup hit = cache.lookup("user:1", "  how much did i   spend on FOOD ");
+
+        // Assert
+        assertThat(hit.answer()).isEqualTo("$120");
+        assertThat(embedCalls.get()).isEqualTo(callsBefore);
+    }
+
+    @Test
+    public void lookup_DissimilarPrompt_ShouldMiss() {
+        cache.put(cache.lookup("user:1", "How much did I spend on food?"), "$120");
+
+        SemanticResponseCache.Lookup lookup = cache.lookup("user:1", "What is my biggest expense?");
+
+        assertThat(lookup.isHit()).isFalse();
+        assertThat(lookup.embedding()).isNotNull();
+    }
+
+    @Test
+    public void lookup_OtherScope_ShouldMiss() {
+        cache.put(cache.lookup("user:1", "How much did I spend on food?"), "$120");
+
+        assertThat(cache.lookup("user:2", "How much did I spend on food?").isHit()).isFalse();
+    }
+
+    @Test
+    public void lookup_ExpiredEntry_ShouldMiss() {
+        cache.put(cache.lookup("user:1", "How much did I spend on food?"), "$120");
+
+        now.addAndGet(TTL + 1);
+
+        assertThat(cache.lookup("user:1", "How much did I spend on food?").isHit()).isFalse();
+    }
+
+    @Test
+    public void put_BeyondCapacity_ShouldEvictLeastRecentlyUsed() {
+        // Arrange: 每个作用域最多 2 条
+        cache.put(cache.lookup("user:1", "How much did I spend on food?"), "food");
+        cache.put(cache.lookup("user:1", "What is my biggest expense?"), "rent");
+        // 访问 food，使 rent 成为最久未使用
+        assertThat(cache.lookup("user:1", "How much did I spend on food?").isHit()).isTrue();
+
+        // Act
+        cache.put(cache.lookup("user:1", "Show my savings rate please"), "20%");
+
+        // Assert
+        assertThat(cache.lookup("user:1", "How much did I spend on food?").isHit()).isTrue();
+        assertThat(cache.lookup("user:1", "What is my biggest expense?").isHit()).isFalse();
+    }
+
+    @Test
+    public void lookup_ShortPromptOrMissingScope_ShouldBypass() {
+        assertThat(cache.lookup("user:1", "more?")).isNull();
+        assertThat(cache.lookup(null, "How much did I spend on food?")).isNull();
+        assertThat(embedCalls.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void toVector_ShouldNormaliseWithoutModifyingEmbedding() {
+        float[] embedding = {3, 4};
+        float[] vector = SemanticResponseCache.toVector(embedding);
+
+        assertThat(vector[0]).isWithin(1e-6f).of(0.6f);
+        assertThat(vector[1]).isWithin(1e-6f).of(0.8f);
+        assertThat(embedding[0]).isEqualTo(3f);
+        assertThat(SemanticResponseCache.dot(vector, vector)).isWithin(1e-6).of(1.0);
+    }
+
+    private float[] embed(String normalized) {
+        embedCalls.incrementAndGet();
+        return SemanticResponseCache.toVector(vectors.getOrDefault(normalized, new float[]{0, 0, 1}));
+    }
+}
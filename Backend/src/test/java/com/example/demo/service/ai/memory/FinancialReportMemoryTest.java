@@ -0,0 +1,122 @@
+package com.example.demo.service.ai.memory;
+
+import com.example.demo.model.message.FinancialReportMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FinancialReportMemoryTest {
+
+    @Mock private StringRedisTemplate stringRedisTemplate;
+    @Mock private ListOperations<String, String> listOperations;
+
+    // 用 Map 模拟 Redis 列表，LPUSH / LTRIM / LRANGE 的语义与 Redis 一致（trim 和 range 的 end 都是闭区间）
+    private final Map<String, LinkedList<String>> lists = new HashMap<>();
+    private FinancialReportMemory reportMemory;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(stringRedisTemplate.opsForList()).thenReturn(listOperations);
+        when(stringRedisTemplate.execute(any(SessionCallback.class))).thenAnswer(invocation ->
+                invocation.<SessionCallback<Object>>getArgument(0).execute(stringRedisTemplate));
+        when(listOperations.leftPush(anyString(), anyString())).thenAnswer(invocation -> {
+            LinkedList<String> list = lists.computeIfAbsent(invocation.getArgument(0), key -> new LinkedList<>());
+            list.addFirst(invocation.getArgument(1));
+            return (long) list.size();
+        });
+        when(listOperations.range(anyString(), anyLong(), anyLong())).thenAnswer(invocation -> {
+            List<String> list = lists.getOrDefault(invocation.<String>getArgument(0), new LinkedList<>());
+            int end = (int) Math.min(invocation.<Long>getArgument(2) + 1, list.size());
+            return new ArrayList<>(list.subList(0, end));
+        });
+        doAnswer(invocation -> {
+            LinkedList<String> list = lists.get(invocation.<String>getArgument(0));
+            while (list != null && list.size() > invocation.<Long>getArgument(2) + 1) {
+                list.removeLast();
+            }
+            return null;
+        }).when(listOperations).trim(anyString(), anyLong(), anyLong());
+        reportMemory = new FinancialReportMemory(stringRedisTemplate, 2, 20);
+    }
+
+    @Test
+    public void record_ShouldPushAndTrimInOneTransaction() {
+        // Act
+        reportMemory.record(new FinancialReportMessage(1L, null, "Spending is stable.", 0L));
+
+        // Assert
+        InOrder order = inOrder(stringRedisTemplate, listOperations);
+        order.verify(stringRedisTemplate).multi();
+        order.verify(listOperations).leftPush("financial_report:1", "0\nSpending is stable.");
+        order.verify(listOperations).trim("financial_report:1", 0, 2);
+        order.verify(stringRedisTemplate).exec();
+        assertThat(reportMemory.contextFor(1L, null)).isEqualTo("Latest financial report (1970-01-01 00:00 UTC):\nSpending is stable.");
+        assertThat(reportMemory.contextFor(2L, null)).isNull();
+    }
+
+    @Test
+    public void contextFor_RepeatedReports_ShouldCollapseOlderOnesIntoBoundedSummary() {
+        // Arrange
+        for (int i = 1; i <= 5; i++) {
+            reportMemory.record(new FinancialReportMessage(1L, null, "Report number " + i + " with a long body of text", i * 60_000L));
+        }
+
+        // Act
+        String context = reportMemory.contextFor(1L, null);
+
+        // Assert: 列表只保留最新报告和 2 份更早的报告，摘要按时间顺序排列
+        assertThat(lists.get("financial_report:1")).hasSize(3);
+        String[] parts = context.split("\n\n");
+        assertThat(parts).hasLength(2);
+        assertThat(parts[0]).isEqualTo(FinancialReportMemory.EARLIER_HEADER + "\n"
+                + "- 1970-01-01 00:03 UTC: Report number 3 with...\n"
+                + "- 1970-01-01 00:04 UTC: Report number 4 with...");
+        assertThat(parts[1]).isEqualTo("Latest financial report (1970-01-01 00:05 UTC):\nReport number 5 with a long body of text");
+    }
+
+    @Test
+    public void contextFor_ShouldPreferConversationReportAndFallBackToUserReport() {
+        // Arrange
+        reportMemory.record(new FinancialReportMessage(1L, null, "user-wide report", 0L));
+        reportMemory.record(new FinancialReportMessage(1L, "c1", "conversation report", 0L));
+
+        // Act & Assert
+        assertThat(reportMemory.contextFor(1L, "c1")).contains("conversation report");
+        assertThat(reportMemory.contextFor(1L, "c2")).contains("user-wide report");
+        assertThat(reportMemory.contextFor(2L, "c1")).isNull();
+        assertThat(reportMemory.contextFor(null, "c1")).isNull();
+    }
+
+    @Test
+    public void record_WithoutUser_ShouldBeIgnored() {
+        // Act
+        reportMemory.record(new FinancialReportMessage(null, null, "orphan report", 0L));
+
+        // Assert
+        verify(stringRedisTemplate, never()).execute(any(SessionCallback.class));
+        assertThat(lists).isEmpty();
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.demo.service.ai.memory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.MessageType;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class TieredChatMemoryTest {
+
+    @Mock private StringRedisTemplate stringRedisTemplate;
+    @Mock private ListOperations<String, String> listOperations;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private TieredChatMemory memory;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(stringRedisTemplate.opsForList()).thenReturn(listOperations);
+        // pipeline 回调直接在 mock 上执行，便于校验写入的命令
+        when(stringRedisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            SessionCallback<Object> callback = invocation.getArgument(0);
+            callback.execute(stringRedisTemplate);
+            return List.of();
+        });
+        meterRegistry = new SimpleMeterRegistry();
+        memory = new TieredChatMemory(stringRedisTemplate, meterRegistry, 4, 100, Duration.ofDays(1),
+                100, Duration.ofMinutes(30), nanos::get);
+    }
+
+    @Test
+    public void add_ShouldKeepMessagesLocallyAndAppendCompactFormToRedis() {
+        // Act
+        memory.add("c1", List.of(new UserMessage("hi"), new AssistantMessage("hello")));
+        List<Message> history = memory.get("c1", 10);
+
+        // Assert
+        assertThat(history).hasSize(2);
+        assertThat(history.get(0).getMessageType()).isEqualTo(MessageType.USER);
+        assertThat(history.get(1).getContent()).isEqualTo("hello");
+        verify(listOperations).rightPushAll("chat_memory:c1", List.of("uhi", "ahello"));
+        verify(listOperations).trim("chat_memory:c1", -2, -1);
+        verify(stringRedisTemplate).expire("chat_memory:c1", Duration.ofDays(1));
+        // 第二次读取命中本地热层，只在首次访问时查询 Redis
+        verify(listOperations, times(1)).range(anyString(), anyLong(), anyLong());
+        assertThat(meterRegistry.get("ai.chat.memory.messages").tag("tier", "local").gauge().value()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void add_OverMessageCap_ShouldDropOldestMessages() {
+        // Act
+        for (int i = 0; i < 6; i++) {
+            memory.add("c1", List.of(new UserMessage("m" + i)));
+        }
+
+        // Assert
+        List<Message> history = memory.get("c1", 10);
+        assertThat(history).hasSize(4);
+        assertThat(history.get(0).getContent()).isEqualTo("m2");
+        verify(listOperations, atLeastOnce()).trim("chat_memory:c1", -4, -1);
+        assertThat(meterRegistry.counter("ai.chat.memory.trimmed").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void add_OverTokenBudget_ShouldTrimButKeepNewestMessage() {
+        // Arrange: 每条约 60 个 token，预算 100
+        String longText = "x".repeat(240);
+
+        // Act
+        memory.add("c1", List.of(new UserMessage(longText), new AssistantMessage(longText)));
+        memory.add("c2", List.of(new UserMessage(longText + longText)));
+
+        // Assert
+        assertThat(memory.get("c1", 10)).hasSize(1);
+        assertThat(memory.get("c1", 10).get(0).getMessageType()).isEqualTo(MessageType.ASSISTANT);
+        assertThat(memory.get("c2", 10)).hasSize(1);
+    }
+
+    @Test
+    public void add_ChineseOverTokenBudget_ShouldCountEachCharacterAsToken() {
+        // Arrange: 每条 80 个汉字约 80 个 token，按 4 字符一个 token 估算只有 20 个，不会触发裁剪
+        String chinese = "本月餐饮支出明显高于上月".repeat(7).substring(0, 80);
+
+        // Act
+        memory.add("c1", List.of(new UserMessage(chinese), new AssistantMessage(chinese)));
+
+        // Assert
+        assertThat(memory.get("c1", 10)).hasSize(1);
+        assertThat(memory.get("c1", 10).get(0).getMessageType()).isEqualTo(MessageType.ASSISTANT);
+    }
+
+    @Test
+    public void get_ColdConversation_ShouldLoadFromRedisAndReturnLastN() {
+        // Arrange
+        when(listOperations.range("chat_memory:c1", 0, -1)).thenReturn(List.of("ssummary", "uq1", "aa1", "uq2"));
+
+        // Act
+        List<Message> history = memory.get("c1", 2);
+
+        // Assert
+        assertThat(history).hasSize(2);
+        assertThat(history.get(0).getContent()).isEqualTo("a1");
+        assertThat(history.get(1).getContent()).isEqualTo("q2");
+        assertThat(memory.get("c1", 10).get(0)).isInstanceOf(SystemMessage.class);
+        assertThat(meterRegistry.counter("ai.chat.memory.reads", "tier", "redis").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void get_AfterLocalIdleExpiry_ShouldReloadFromRedis() {
+        // Arrange
+        memory.add("c1", List.of(new UserMessage("hi")));
+        when(listOperations.range("chat_memory:c1", 0, -1)).thenReturn(List.of("uhi"));
+
+        // Act
+        nanos.addAndGet(Duration.ofMinutes(31).toNanos());
+        List<Message> history = memory.get("c1", 10);
+
+        // Assert
+        assertThat(history).hasSize(1);
+        verify(listOperations, times(2)).range("chat_memory:c1", 0, -1);
+    }
+
+    @Test
+    public void onMessage_FromOtherInstance_ShouldDropLocalCopy() {
+        // Arrange
+        memory.add("c1", List.of(new UserMessage("hi")));
+        when(listOperations.range("chat_memory:c1", 0, -1)).thenReturn(List.of("uhi", "afrom other instance"));
+
+        // Act
+        memory.onMessage(new DefaultMessage(TieredChatMemory.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "other-instance:c1".getBytes(StandardCharsets.UTF_8)), null);
+
+        // Assert
+        assertThat(memory.get("c1", 10)).hasSize(2);
+    }
+
+    @Test
+    public void clear_ShouldRemoveBothTiers() {
+        // Arrange
+        memory.add("c1", List.of(new UserMessage("hi")));
+
+        // Act
+        memory.clear("c1");
+
+        // Assert
+        verify(stringRedisTemplate).delete("chat_memory:c1");
+        verify(stringRedisTemplate, atLeastOnce()).convertAndSend(eq(TieredChatMemory.CHANNEL), anyString());
+        assertThat(memory.get("c1", 10)).isEmpty();
+    }
+}
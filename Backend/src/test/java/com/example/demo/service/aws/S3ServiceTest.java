@@ -2,7 +2,9 @@ package com.example.demo.service.aws;
 
 import static org.mockito.Mockito.*;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import com.amazonaws.AmazonServiceException;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.S3Object;
@@ -10,11 +12,13 @@ import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.example.demo.exception.S3DownloadException;
 import com.example.demo.model.aws.S3FileMetadata;
+import com.example.demo.service.resilience.DependencyGuards;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.mock.env.MockEnvironment;
 
 import java.io.FileNotFoundException;
 import java.io.InputStream;
@@ -27,7 +31,6 @@ public class S3ServiceTest {
     @Mock
     private AmazonS3 amazonS3;
 
-    @InjectMocks
     private S3Service s3Service;
 
     private final String bucketName = "test-bucket";
@@ -35,6 +38,7 @@ public class S3ServiceTest {
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
+        s3Service = new S3Service(amazonS3, new DependencyGuards(new MockEnvironment(), new SimpleMeterRegistry()));
         // 使用反射设置bucketName
         try {
             java.lang.reflect.Field bucketField = S3Service.class.getDeclaredField("bucketName");
@@ -57,11 +61,20 @@ public class S3ServiceTest {
         // Act
         s3Service.uploadFile(userId, inputStream, contentLength, contentType, fileName);
 
-        // Assert
-        String expectedKey = S3Service.generateS3Key(userId, fileName);
+        // Assert: 上传经过 S3 的隔离舱同步完成
         verify(amazonS3).putObject(any());
     }
 
+    @Test
+    public void testUploadFile_S3Failure_ShouldPropagate() {
+        // Arrange
+        when(amazonS3.putObject(any())).thenThrow(new AmazonServiceException("Access Denied"));
+
+        // Act & Assert: 失败不能被吞掉，调用方需要知道文件没有存上
+        assertThrows(AmazonServiceException.class,
+                () -> s3Service.uploadFile(1L, mock(InputStream.class), 100L, "text/plain", "test.txt"));
+    }
+
     @Test
     public void testDownloadFile() throws S3DownloadException, FileNotFoundException {
         // Arrange
@@ -0,0 +1,174 @@
+package com.example.demo.service.es;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.convert.ElasticsearchConverter;
+import org.springframework.data.elasticsearch.core.document.Document;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
+
+import com.example.demo.model.TransactionRecordES;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.ErrorCause;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+
+public class BulkRecordIndexerTest {
+
+    @Mock private ElasticsearchClient elasticsearchClient;
+    @Mock private ElasticsearchOperations elasticsearchOperations;
+    @Mock private ElasticsearchConverter elasticsearchConverter;
+
+    private BulkRecordIndexer bulkRecordIndexer;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        when(elasticsearchOperations.getElasticsearchConverter()).thenReturn(elasticsearchConverter);
+        when(elasticsearchConverter.mapObject(any())).thenAnswer(invocation -> {
+            TransactionRecordES record = invocation.getArgument(0);
+            Document document = Document.create();
+            document.put("id", record.getId());
+            document.put("category", record.getCategory());
+            return document;
+        });
+        when(elasticsearchOperations.getIndexCoordinatesFor(TransactionRecordES.class))
+                .thenReturn(IndexCoordinates.of("transaction_records"));
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenReturn(response(false, List.of()));
+        bulkRecordIndexer = new BulkRecordIndexer(elasticsearchClient, elasticsearchOperations, 3);
+    }
+
+    @Test
+    public void testOperationsOnSameIdAreCoalesced() throws IOException {
+        // Arrange
+        bulkRecordIndexer.index(record("1", "Food"));
+        bulkRecordIndexer.index(record("1", "Rent"));
+        bulkRecordIndexer.index(record("2", "Food"));
+        bulkRecordIndexer.delete("2");
+
+        // Act
+        bulkRecordIndexer.flush();
+
+        // Assert
+        BulkRequest request = captureBulkRequest();
+        assertThat(request.operations()).hasSize(2);
+        BulkOperation first = request.operations().get(0);
+        assertThat(first.isIndex()).isTrue();
+        assertThat(first.index().id()).isEqualTo("1");
+        assertThat(first.index().index()).isEqualTo("transaction_records");
+        assertThat(((Document) first.index().document()).get("category")).isEqualTo("Rent");
+        assertThat(request.operations().get(1).isDelete()).isTrue();
+        assertThat(request.operations().get(1).delete().id()).isEqualTo("2");
+        assertThat(bulkRecordIndexer.pendingActions()).isEqualTo(0);
+    }
+
+    @Test
+    public void testFlushesWhenBufferIsFull() throws IOException {
+        // Act
+        bulkRecordIndexer.index(record("1", "Food"));
+        bulkRecordIndexer.index(record("2", "Food"));
+        verify(elasticsearchClient, never()).bulk(any(BulkRequest.class));
+        bulkRecordIndexer.delete("3");
+
+        // Assert
+        assertThat(captureBulkRequest().operations()).hasSize(3);
+    }
+
+    @Test
+    public void testEmptyBufferDoesNotSendRequest() throws IOException {
+        bulkRecordIndexer.flush();
+
+        verify(elasticsearchClient, never()).bulk(any(BulkRequest.class));
+    }
+
+    @Test
+    public void testRequestFailureRequeuesOperations() throws IOException {
+        // Arrange
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenThrow(new IOException("connection refused"));
+        bulkRecordIndexer.index(record("1", "Food"));
+
+        // Act & Assert
+        RuntimeException e = assertThrows(RuntimeException.class, () -> bulkRecordIndexer.flush());
+        assertThat(e).hasMessageThat().contains("connection refused");
+        assertThat(bulkRecordIndexer.pendingActions()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRetryableItemsAreRequeuedAndOthersDropped() throws IOException {
+        // Arrange
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenReturn(response(true, List.of(
+                item("1", 201, null),
+                item("2", 429, "rejected"),
+                item("3", 400, "mapper_parsing_exception"))));
+        bulkRecordIndexer.index(record("1", "Food"));
+        bulkRecordIndexer.index(record("2", "Food"));
+
+        // Act & Assert: 第三次写入触发 flush，可重试的条目放回缓冲区，调用方收到异常
+        assertThrows(RuntimeException.class, () -> bulkRecordIndexer.index(record("3", "Food")));
+        assertThat(bulkRecordIndexer.pendingActions()).isEqualTo(1);
+    }
+
+    @Test
+    public void testRequeueDoesNotOverrideNewerOperation() throws IOException {
+        // Arrange
+        when(elasticsearchClient.bulk(any(BulkRequest.class))).thenAnswer(invocation -> {
+            // flush 进行中时同一文档被删除
+            bulkRecordIndexer.delete("1");
+            throw new IOException("timeout");
+        });
+        bulkRecordIndexer.index(record("1", "Food"));
+
+        // Act
+        assertThrows(RuntimeException.class, () -> bulkRecordIndexer.flush());
+
+        // Assert
+        doReturn(response(false, List.of())).when(elasticsearchClient).bulk(any(BulkRequest.class));
+        bulkRecordIndexer.flush();
+        ArgumentCaptor<BulkRequest> captor = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(elasticsearchClient, times(2)).bulk(captor.capture());
+        BulkRequest retried = captor.getAllValues().get(1);
+        assertThat(retried.operations()).hasSize(1);
+        assertThat(retried.operations().get(0).isDelete()).isTrue();
+    }
+
+    private BulkRequest captureBulkRequest() throws IOException {
+        ArgumentCaptor<BulkRequest> captor = ArgumentCaptor.forClass(BulkRequest.class);
+        verify(elasticsearchClient).bulk(captor.capture());
+        return captor.getValue();
+    }
+
+    private TransactionRecordES record(String id, String category) {
+        TransactionRecordES record = new TransactionRecordES();
+        record.setId(id);
+        record.setCategory(category);
+        return record;
+    }
+
+    private static BulkResponse response(boolean errors, List<BulkResponseItem> items) {
+        return BulkResponse.of(b -> b.errors(errors).took(1).items(items));
+    }
+
+    private static BulkResponseItem item(String id, int status, String error) {
+        return BulkResponseItem.of(b -> {
+            b.id(id).index("transaction_records").status(status).operationType(OperationType.Index);
+            if (error != null) {
+                b.error(ErrorCause.of(e -> e.type(error).reason(error)));
+            }
+            return b;
+        });
+    }
+}
@@ -2,8 +2,10 @@ package com.example.demo.service.es;
 
 import com.example.demo.model.TransactionRecordES;
 import com.example.demo.repository.es.RecordESDao;
+import com.example.demo.service.resilience.DependencyGuards;
 import com.example.demo.utility.GetCurrentUserInfo;
 import com.google.common.truth.Truth;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -16,6 +18,7 @@ import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
 import org.springframework.data.elasticsearch.core.SearchHit;
 import org.springframework.data.elasticsearch.core.SearchHits;
 import org.springframework.data.elasticsearch.core.query.CriteriaQuery;
+import org.springframework.mock.env.MockEnvironment;
 
 import java.util.Arrays;
 import java.util.List;
@@ -36,7 +39,8 @@ public class RecordSearchServiceTest {
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
-        recordSearchService = new RecordSearchService(recordESDao, elasticsearchOperations, getCurrentUserInfo);
+        recordSearchService = new RecordSearchService(recordESDao, elasticsearchOperations, getCurrentUserInfo,
+                new DependencyGuards(new MockEnvironment(), new SimpleMeterRegistry()));
     }
 
     @Test
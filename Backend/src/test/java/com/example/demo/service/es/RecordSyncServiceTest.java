@@ -4,47 +4,77 @@ import com.example.demo.model.Account;
 import com.example.demo.model.TransactionRecord;
 import com.example.demo.model.TransactionRecordES;
 import com.example.demo.repository.TransactionRecordDao;
-import com.example.demo.repository.es.RecordESDao;
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch.core.DeleteByQueryRequest;
+import co.elastic.clients.elasticsearch.indices.ElasticsearchIndicesClient;
+import co.elastic.clients.elasticsearch.indices.GetIndicesSettingsResponse;
+import co.elastic.clients.elasticsearch.indices.IndexSettings;
+import co.elastic.clients.elasticsearch.indices.IndexState;
+import co.elastic.clients.elasticsearch.indices.PutIndicesSettingsRequest;
+import co.elastic.clients.util.ObjectBuilder;
 import com.google.common.truth.Truth;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.elasticsearch.core.ElasticsearchOperations;
+import org.springframework.data.elasticsearch.core.mapping.IndexCoordinates;
 
+import java.io.IOException;
 import java.time.ZonedDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 import static org.mockito.Mockito.*;
 
 public class RecordSyncServiceTest {
 
+    private static final String INDEX = "transaction_records";
+
     private RecordSyncService recordSyncService;
 
     @Mock
     private TransactionRecordDao transactionRecordDao;
 
     @Mock
-    private RecordESDao recordESDao;
+    private BulkRecordIndexer bulkRecordIndexer;
+
+    @Mock
+    private ElasticsearchClient elasticsearchClient;
+
+    @Mock
+    private ElasticsearchOperations elasticsearchOperations;
+
+    @Mock
+    private ElasticsearchIndicesClient indicesClient;
 
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
-        recordSyncService = new RecordSyncService(transactionRecordDao, recordESDao);
+        when(elasticsearchOperations.getIndexCoordinatesFor(TransactionRecordES.class))
+                .thenReturn(IndexCoordinates.of(INDEX));
+        when(elasticsearchClient.indices()).thenReturn(indicesClient);
+        recordSyncService = new RecordSyncService(transactionRecordDao, bulkRecordIndexer,
+                elasticsearchClient, elasticsearchOperations, 2);
     }
 
     @Test
     public void testSyncToElasticsearch() {
         // Arrange
-        TransactionRecord record = createTestRecord();
+        TransactionRecord record = createTestRecord(1L);
         ArgumentCaptor<TransactionRecordES> esRecordCaptor = ArgumentCaptor.forClass(TransactionRecordES.class);
 
         // Act
         recordSyncService.syncToElasticsearch(record);
 
         // Assert
-        verify(recordESDao).save(esRecordCaptor.capture());
+        verify(bulkRecordIndexer).index(esRecordCaptor.capture());
         TransactionRecordES capturedRecord = esRecordCaptor.getValue();
         verifyESRecord(capturedRecord, record);
     }
@@ -58,54 +88,154 @@ public class RecordSyncServiceTest {
         recordSyncService.deleteFromElasticsearch(recordId);
 
         // Assert
-        verify(recordESDao).deleteById(String.valueOf(recordId));
+        verify(bulkRecordIndexer).delete(String.valueOf(recordId));
     }
 
     @Test
     public void testDeleteFromElasticsearchInBatch() {
         // Arrange
         List<Long> recordIds = Arrays.asList(1L, 2L, 3L);
-        List<String> expectedEsIds = Arrays.asList("1", "2", "3");
 
         // Act
         recordSyncService.deleteFromElasticsearchInBatch(recordIds);
 
         // Assert
-        verify(recordESDao).deleteAllById(expectedEsIds);
+        verify(bulkRecordIndexer).delete("1");
+        verify(bulkRecordIndexer).delete("2");
+        verify(bulkRecordIndexer).delete("3");
     }
 
     @Test
-    public void testUpdateInElasticsearchSuccess() {
+    public void testUpdateInElasticsearch_IsPlainUpsert() {
         // Arrange
-        TransactionRecord record = createTestRecord();
-        when(recordESDao.existsById(String.valueOf(record.getId()))).thenReturn(true);
+        TransactionRecord record = createTestRecord(1L);
         ArgumentCaptor<TransactionRecordES> esRecordCaptor = ArgumentCaptor.forClass(TransactionRecordES.class);
 
         // Act
         recordSyncService.updateInElasticsearch(record);
 
         // Assert
-        verify(recordESDao).save(esRecordCaptor.capture());
-        TransactionRecordES capturedRecord = esRecordCaptor.getValue();
-        verifyESRecord(capturedRecord, record);
+        verify(bulkRecordIndexer).index(esRecordCaptor.capture());
+        verifyESRecord(esRecordCaptor.getValue(), record);
+    }
+
+    @Test
+    public void testSyncRecordsToElasticsearch_IndexesExistingAndDeletesMissing() {
+        // Arrange
+        TransactionRecord record = createTestRecord(1L);
+        List<Long> recordIds = Arrays.asList(1L, 2L);
+        when(transactionRecordDao.findAllById(recordIds)).thenReturn(List.of(record));
+        ArgumentCaptor<TransactionRecordES> esRecordCaptor = ArgumentCaptor.forClass(TransactionRecordES.class);
+
+        // Act
+        recordSyncService.syncRecordsToElasticsearch(recordIds);
+
+        // Assert
+        verify(bulkRecordIndexer).index(esRecordCaptor.capture());
+        verifyESRecord(esRecordCaptor.getValue(), record);
+        verify(bulkRecordIndexer).delete("2");
+        verify(bulkRecordIndexer).flush();
+    }
+
+    @Test
+    public void testReindexAccount_WalksKeysetPages() {
+        // Arrange
+        when(transactionRecordDao.findNextChunkByAccountId(eq(1L), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(createTestRecord(3L), createTestRecord(5L)));
+        when(transactionRecordDao.findNextChunkByAccountId(eq(1L), eq(5L), any(Pageable.class)))
+                .thenReturn(List.of(createTestRecord(8L)));
+
+        // Act
+        long indexed = recordSyncService.reindexAccount(1L);
+
+        // Assert
+        Truth.assertThat(indexed).isEqualTo(3L);
+        verify(bulkRecordIndexer, times(3)).index(any(TransactionRecordES.class));
+        verify(bulkRecordIndexer).flush();
+        // 最后一页不满，不再继续查询
+        verify(transactionRecordDao, never()).findNextChunkByAccountId(eq(1L), eq(8L), any(Pageable.class));
     }
 
     @Test
-    public void testUpdateInElasticsearchNotFound() {
+    @SuppressWarnings("unchecked")
+    public void testReindexAccount_ClearsAccountDocumentsFirst() throws Exception {
         // Arrange
-        TransactionRecord record = createTestRecord();
-        when(recordESDao.existsById(String.valueOf(record.getId()))).thenReturn(false);
-
-        // Act & Assert
-        RuntimeException exception = org.junit.jupiter.api.Assertions.assertThrows(RuntimeException.class, () -> {
-            recordSyncService.updateInElasticsearch(record);
-        });
-        Truth.assertThat(exception).hasMessageThat().contains("Record not found in Elasticsearch");
+        when(transactionRecordDao.findNextChunkByAccountId(eq(1L), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(createTestRecord(3L)));
+        ArgumentCaptor<Function<DeleteByQueryRequest.Builder, ObjectBuilder<DeleteByQueryRequest>>> deleteRequest =
+                ArgumentCaptor.forClass(Function.class);
+
+        // Act
+        recordSyncService.reindexAccount(1L);
+
+        // Assert: 缓冲区先写出，再按账户清理，最后重新写入
+        InOrder order = inOrder(bulkRecordIndexer, elasticsearchClient);
+        order.verify(bulkRecordIndexer).flush();
+        order.verify(elasticsearchClient).deleteByQuery(deleteRequest.capture());
+        order.verify(bulkRecordIndexer).index(any(TransactionRecordES.class));
+        order.verify(bulkRecordIndexer).flush();
+        DeleteByQueryRequest request = deleteRequest.getValue().apply(new DeleteByQueryRequest.Builder()).build();
+        Truth.assertThat(request.index()).containsExactly(INDEX);
+        Truth.assertThat(request.query().term().field()).isEqualTo("accountId");
+        Truth.assertThat(request.query().term().value().stringValue()).isEqualTo("1");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReindexAll_RestoresPreviousRefreshInterval() throws Exception {
+        // Arrange: 索引原来配置的是 30s，而不是 ES 默认的 1s
+        GetIndicesSettingsResponse settings = GetIndicesSettingsResponse.of(r -> r.result(Map.of(INDEX, IndexState.of(state -> state
+                .settings(IndexSettings.of(index -> index.index(IndexSettings.of(i -> i.refreshInterval(Time.of(t -> t.time("30s")))))))
+                .defaults(IndexSettings.of(index -> index.refreshInterval(Time.of(t -> t.time("1s")))))))));
+        when(indicesClient.getSettings(any(Function.class))).thenReturn(settings);
+        when(transactionRecordDao.findNextChunk(eq(0L), any(Pageable.class))).thenReturn(List.of());
+        ArgumentCaptor<Function<PutIndicesSettingsRequest.Builder, ObjectBuilder<PutIndicesSettingsRequest>>> putSettings =
+                ArgumentCaptor.forClass(Function.class);
+
+        // Act
+        recordSyncService.reindexAll();
+
+        // Assert
+        verify(indicesClient, times(2)).putSettings(putSettings.capture());
+        List<String> intervals = putSettings.getAllValues().stream()
+                .map(function -> function.apply(new PutIndicesSettingsRequest.Builder()).build().settings().refreshInterval().time())
+                .toList();
+        Truth.assertThat(intervals).containsExactly("-1", "30s").inOrder();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testReindexAll_UnknownRefreshInterval_LeavesSettingsAlone() throws Exception {
+        // Arrange
+        when(indicesClient.getSettings(any(Function.class))).thenThrow(new IOException("connection refused"));
+        when(transactionRecordDao.findNextChunk(eq(0L), any(Pageable.class))).thenReturn(List.of());
+
+        // Act
+        recordSyncService.reindexAll();
+
+        // Assert
+        verify(indicesClient, never()).putSettings(any(Function.class));
+    }
+
+    @Test
+    public void testReindexAccount_FullLastPageQueriesOnceMore() {
+        // Arrange
+        when(transactionRecordDao.findNextChunkByAccountId(eq(1L), eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(createTestRecord(1L), createTestRecord(2L)));
+        when(transactionRecordDao.findNextChunkByAccountId(eq(1L), eq(2L), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        // Act
+        long indexed = recordSyncService.reindexAccount(1L);
+
+        // Assert
+        Truth.assertThat(indexed).isEqualTo(2L);
+        verify(transactionRecordDao).findNextChunkByAccountId(eq(1L), eq(2L), any(Pageable.class));
     }
 
-    private TransactionRecord createTestRecord() {
+    private TransactionRecord createTestRecord(Long id) {
         TransactionRecord record = new TransactionRecord();
-        record.setId(1L);
+        record.setId(id);
         record.setType("EXPENSE");
         record.setCategory("Food");
         record.setAmount(100.0);
@@ -132,4 +262,4 @@ public class RecordSyncServiceTest {
         Truth.assertThat(esRecord.getAccountId()).isEqualTo(String.valueOf(record.getAccount().getId()));
         Truth.assertThat(esRecord.getTransactionTime()).isNotNull();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,244 @@
+package com.example.demo.service.fraud;
+
+import com.example.demo.model.TransactionRecord;
+import com.example.demo.model.dto.TransactionRecordView;
+import com.example.demo.repository.TransactionRecordDao;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class FraudPreScreenerTest {
+    private static final ZonedDateTime BASE_TIME = ZonedDateTime.parse("2024-03-01T09:00:00+11:00[Australia/Sydney]");
+
+    @Mock private TransactionRecordDao transactionRecordDao;
+
+    private SimpleMeterRegistry meterRegistry;
+    private FraudPreScreener fraudPreScreener;
+    private long nextId = 1;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        fraudPreScreener = createScreener(true);
+    }
+
+    @Test
+    public void screen_EverydayRecords_ShouldNotEscalate() {
+        // Arrange: 一周内的日常消费
+        String[] categories = {"Food", "Transport", "Food", "Shopping", "Food", "Transport", "Food"};
+        double[] amounts = {12.5, 4.2, 15.0, 60.0, 9.8, 4.2, 13.1};
+
+        // Act & Assert
+        for (int i = 0; i < categories.length; i++) {
+            FraudScore score = fraudPreScreener.screen(1L, record("Expense", categories[i], amounts[i], "Card", "Shop " + i, i * 24 * 60));
+            assertThat(fraudPreScreener.shouldEscalate(score)).isFalse();
+        }
+        assertThat(meterRegistry.counter("fraud.prescreen.screened").count()).isEqualTo(7.0);
+        assertThat(meterRegistry.counter("fraud.prescreen.escalated").count()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void screen_DuplicateAmountAndCounterparty_ShouldEscalate() {
+        // Arrange
+        fraudPreScreener.screen(1L, record("Expense", "Transfer", 500.0, "Bank Transfer", "Pay John", 0));
+
+        // Act: 20 分钟后同一对方、同一金额
+        FraudScore score = fraudPreScreener.screen(1L, record("Expense", "Transfer", 500.0, "Bank Transfer", " pay john ", 20));
+
+        // Assert
+        assertThat(score.score()).isEqualTo(60);
+        assertThat(score.reasons()).hasSize(2);
+        assertThat(fraudPreScreener.shouldEscalate(score)).isTrue();
+        assertThat(meterRegistry.counter("fraud.prescreen.escalated").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void screen_DuplicateOutsideWindow_ShouldNotCount() {
+        fraudPreScreener.screen(1L, record("Expense", "Rent", 800.0, "Bank Transfer", "Landlord", 0));
+
+        FraudScore score = fraudPreScreener.screen(1L, record("Expense", "Rent", 800.0, "Bank Transfer", "Landlord", 2 * 24 * 60));
+
+        assertThat(score).isEqualTo(FraudScore.CLEAN);
+    }
+
+    @Test
+    public void screen_AmountFarAboveCategoryAverage_ShouldEscalate() {
+        // Arrange: 10 笔 4~6 元的咖啡，间隔一天
+        for (int i = 0; i < 10; i++) {
+            fraudPreScreener.screen(1L, record("Expense", "Coffee", 4 + (i % 3), "Card", "Cafe " + i, i * 24 * 60));
+        }
+
+        // Act
+        FraudScore score = fraudPreScreener.screen(1L, record("Expense", "Coffee", 450.0, "Card", "Cafe X", 11 * 24 * 60));
+
+        // Assert
+        assertThat(score.score()).isEqualTo(60);
+        assertThat(score.reasons().get(0)).contains("standard deviations above the category average");
+        assertThat(fraudPreScreener.shouldEscalate(score)).isTrue();
+    }
+
+    @Test
+    public void screen_BurstWithNewMethod_ShouldEscalate() {
+        // Arrange: 历史都用银行卡
+        for (int i = 0; i < 5; i++) {
+            fraudPreScreener.screen(1L, record("Expense", "Food", 10 + i, "Card", "Shop " + i, -(10 - i) * 24 * 60));
+        }
+        // 5 分钟内连续 4 笔礼品卡消费
+        for (int i = 0; i < 4; i++) {
+            fraudPreScreener.screen(1L, record("Expense", "Gifts", 100 + i, "Gift Card", "Store " + i, i));
+        }
+
+        // Act
+        FraudScore score = fraudPreScreener.screen(1L, record("Expense", "Gifts", 150.0, "Gift Card", "Store 9", 5));
+
+        // Assert: 第 5 笔触发频率规则
+        assertThat(score.score()).isEqualTo(30);
+        assertThat(score.reasons().get(0)).contains("5 records within the velocity window");
+
+        // 新支付方式 + 高频
+        FraudScore withNewMethod = fraudPreScreener.screen(1L, record("Expense", "Gifts", 160.0, "Crypto Wallet", "Exchange", 6));
+        assertThat(withNewMethod.score()).isEqualTo(50);
+        assertThat(fraudPreScreener.shouldEscalate(withNewMethod)).isTrue();
+    }
+
+    @Test
+    public void screen_ColdAccount_ShouldReplayRecentRecordsExceptCurrent() {
+        // Arrange: 数据库里已有一笔相同金额的转账，以及刚保存的当前记录
+        TransactionRecord current = record("Expense", "Transfer", 250.0, "Bank Transfer", "Pay Alice", 30);
+        when(transactionRecordDao.findFirstPage(eq(2L), any(Pageable.class))).thenReturn(List.of(
+                view(current),
+                new TransactionRecordView(7L, "Expense", "Transfer", 250.0, "Bank Transfer", BASE_TIME, "Pay Bob")));
+
+        // Act
+        FraudScore score = fraudPreScreener.screen(2L, current);
+
+        // Assert: 只和历史记录比较，不会和自己重复
+        assertThat(score.score()).isEqualTo(35);
+        verify(transactionRecordDao, times(1)).findFirstPage(eq(2L), any(Pageable.class));
+
+        // 已缓存的窗口不再查库，失效后重新加载
+        fraudPreScreener.screen(2L, record("Expense", "Food", 5.0, "Card", "Cafe", 40));
+        verify(transactionRecordDao, times(1)).findFirstPage(eq(2L), any(Pageable.class));
+        fraudPreScreener.invalidate(2L);
+        fraudPreScreener.screen(2L, record("Expense", "Food", 6.0, "Card", "Cafe", 50));
+        verify(transactionRecordDao, times(2)).findFirstPage(eq(2L), any(Pageable.class));
+    }
+
+    @Test
+    public void screen_InTransaction_ShouldOnlyAddRecordAfterCommit() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            fraudPreScreener.screen(1L, record("Expense", "Transfer", 500.0, "Bank Transfer", "Pay John", 0));
+
+            // Act: 事务回滚，刚才的记录不存在
+            completeTransaction(TransactionSynchronization.STATUS_ROLLED_BACK);
+            TransactionSynchronizationManager.initSynchronization();
+            FraudScore afterRollback = fraudPreScreener.screen(1L, record("Expense", "Transfer", 500.0, "Bank Transfer", "Pay John", 20));
+            completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+            FraudScore afterCommit = fraudPreScreener.screen(1L, record("Expense", "Transfer", 500.0, "Bank Transfer", "Pay John", 40));
+
+            // Assert: 回滚的记录不参与比较，提交的记录参与
+            assertThat(afterRollback).isEqualTo(FraudScore.CLEAN);
+            assertThat(afterCommit.score()).isEqualTo(60);
+        } finally {
+            TransactionSynchronizationManager.clear();
+        }
+    }
+
+    @Test
+    public void screen_WindowReloadedBeforeCommit_ShouldInvalidateInsteadOfAdding() {
+        // Arrange
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            fraudPreScreener.screen(3L, record("Expense", "Food", 5.0, "Card", "Cafe", 0));
+            fraudPreScreener.invalidate(3L);
+            fraudPreScreener.screen(3L, record("Expense", "Food", 6.0, "Card", "Cafe", 10));
+
+            // Act
+            completeTransaction(TransactionSynchronization.STATUS_COMMITTED);
+            fraudPreScreener.screen(3L, record("Expense", "Food", 7.0, "Card", "Cafe", 20));
+
+            // Assert: 提交后重新从数据库回放，而不是往新窗口里补写
+            verify(transactionRecordDao, times(3)).findFirstPage(eq(3L), any(Pageable.class));
+        } finally {
+            TransactionSynchronizationManager.clear();
+        }
+    }
+
+    @Test
+    public void shouldEscalate_WhenDisabled_ShouldSendEverything() {
+        FraudPreScreener disabled = createScreener(false);
+
+        FraudScore score = disabled.screen(1L, record("Expense", "Food", 5.0, "Card", "Cafe", 0));
+
+        assertThat(disabled.shouldEscalate(score)).isTrue();
+    }
+
+    @Test
+    public void window_EvictedRecordsShouldLeaveCategoryStats() {
+        // Arrange: 容量 4，先写入 4 笔 Food，再写入 4 笔 Rent 把它们全部挤出去
+        AccountActivityWindow window = new AccountActivityWindow(4);
+        FraudRules rules = new FraudRules(60_000, 60_000, 100, 3.0, 3, 100);
+        for (int i = 0; i < 4; i++) {
+            window.add(i * 3_600_000L, "Expense", "Food", 10.0, "Card", "Shop");
+        }
+        for (int i = 4; i < 8; i++) {
+            window.add(i * 3_600_000L, "Expense", "Rent", 900.0 + i, "Bank", "Landlord");
+        }
+
+        // Act: Food 的统计已经随记录淘汰，不应再触发金额异常
+        FraudScore score = window.scoreAndAdd(rules, 9 * 3_600_000L, "Expense", "Food", 5000.0, "Card", "Shop");
+
+        // Assert
+        assertThat(window.size()).isEqualTo(4);
+        assertThat(score).isEqualTo(FraudScore.CLEAN);
+    }
+
+    // 模拟事务结束：提交时触发 afterCommit，然后清理同步器
+    private static void completeTransaction(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) {
+                synchronization.afterCommit();
+            }
+            synchronization.afterCompletion(status);
+        }
+    }
+
+    private FraudPreScreener createScreener(boolean enabled) {
+        return new FraudPreScreener(transactionRecordDao, meterRegistry, enabled, 50, 64, 1000, 1440, 10, 5, 3.0);
+    }
+
+    private TransactionRecord record(String type, String category, double amount, String method, String description, int minutesAfterBase) {
+        TransactionRecord record = new TransactionRecord();
+        record.setId(nextId++);
+        record.setType(type);
+        record.setCategory(category);
+        record.setAmount(amount);
+        record.setTransactionMethod(method);
+        record.setTransactionDescription(description);
+        record.setTransactionTime(BASE_TIME.plusMinutes(minutesAfterBase));
+        return record;
+    }
+
+    private static TransactionRecordView view(TransactionRecord record) {
+        return new TransactionRecordView(record.getId(), record.getType(), record.getCategory(), record.getAmount(),
+                record.getTransactionMethod(), record.getTransactionTime(), record.getTransactionDescription());
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.demo.service.outbox;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.data.domain.Pageable;
+
+import com.example.demo.model.message.AnalyseRequest;
+import com.example.demo.model.outbox.OutboxEvent;
+import com.example.demo.model.outbox.OutboxEventType;
+import com.example.demo.model.outbox.OutboxStatus;
+import com.example.demo.repository.OutboxEventDao;
+import com.example.demo.service.es.RecordSyncService;
+import com.example.demo.service.rabbitmq.RabbitMQService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class OutboxRelayTest {
+
+    @Mock private OutboxEventDao outboxEventDao;
+    @Mock private RecordSyncService recordSyncService;
+    @Mock private RabbitMQService rabbitMQService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private MeterRegistry meterRegistry;
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        outboxRelay = new OutboxRelay(outboxEventDao, recordSyncService, rabbitMQService, objectMapper, meterRegistry,
+                100, 3, 1000, 60_000, 60_000, 1000);
+    }
+
+    @Test
+    public void relayBatch_NoDueEvents_ShouldDoNothing() {
+        when(outboxEventDao.findDueIds(eq(OutboxStatus.PENDING), any(Instant.class), any(Pageable.class))).thenReturn(List.of());
+
+        assertThat(outboxRelay.relayBatch()).isEqualTo(0);
+
+        verify(outboxEventDao, never()).claim(anyList(), any(), any(), any(), anyString());
+        verifyNoInteractions(recordSyncService, rabbitMQService);
+    }
+
+    @Test
+    public void relayBatch_RecordEvents_ShouldBeMergedIntoOneBulkSync() {
+        // Arrange
+        OutboxEvent first = recordEvent(1L, "10");
+        OutboxEvent second = recordEvent(2L, "10");
+        OutboxEvent third = recordEvent(3L, "11");
+        givenClaimedEvents(first, second, third);
+
+        // Act
+        int relayed = outboxRelay.relayBatch();
+
+        // Assert
+        assertThat(relayed).isEqualTo(3);
+        verify(recordSyncService).syncRecordsToElasticsearch(Set.of(10L, 11L));
+        verify(outboxEventDao).deleteAllInBatch(List.of(first, second, third));
+        assertThat(meterRegistry.counter("outbox.delivered").count()).isEqualTo(3.0);
+    }
+
+    @Test
+    public void relayBatch_AccountReindexEvents_ShouldReindexEachAccountOnce() {
+        // Arrange
+        OutboxEvent first = reindexEvent(1L, "5");
+        OutboxEvent second = reindexEvent(2L, "5");
+        OutboxEvent third = reindexEvent(3L, "6");
+        givenClaimedEvents(first, second, third);
+        doThrow(new RuntimeException("es down")).when(recordSyncService).reindexAccount(6L);
+
+        // Act
+        outboxRelay.relayBatch();
+
+        // Assert
+        verify(recordSyncService, times(1)).reindexAccount(5L);
+        verify(outboxEventDao).deleteAllInBatch(List.of(first, second));
+        verify(outboxEventDao).saveAll(List.of(third));
+        assertThat(third.getAttempts()).isEqualTo(1);
+        assertThat(third.getLastError()).isEqualTo("es down");
+    }
+
+    @Test
+    public void relayBatch_ElasticsearchDown_ShouldScheduleRetryWithBackoff() {
+        // Arrange
+        OutboxEvent event = recordEvent(1L, "10");
+        givenClaimedEvents(event);
+        doThrow(new RuntimeException("es down")).when(recordSyncService).syncRecordsToElasticsearch(any());
+
+        // Act
+        Instant before = Instant.now();
+        outboxRelay.relayBatch();
+
+        // Assert
+        verify(outboxEventDao, never()).deleteAllInBatch(any());
+        verify(outboxEventDao).saveAll(List.of(event));
+        assertThat(event.getAttempts()).isEqualTo(1);
+        assertThat(event.getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(event.getLastError()).isEqualTo("es down");
+        assertThat(event.getClaimToken()).isNull();
+        assertThat(event.getNextAttemptAt()).isAtLeast(before.plusMillis(1000));
+    }
+
+    @Test
+    public void relayBatch_ExhaustedRetries_ShouldMarkFailed() {
+        // Arrange
+        OutboxEvent event = recordEvent(1L, "10");
+        event.setAttempts(2);
+        givenClaimedEvents(event);
+        doThrow(new RuntimeException("es down")).when(recordSyncService).syncRecordsToElasticsearch(any());
+
+        // Act
+        outboxRelay.relayBatch();
+
+        // Assert
+        assertThat(event.getAttempts()).isEqualTo(3);
+        assertThat(event.getStatus()).isEqualTo(OutboxStatus.FAILED);
+        assertThat(meterRegistry.counter("outbox.dead").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void relayBatch_AnalyseRequest_ShouldDeleteOnlyAfterAck() throws Exception {
+        // Arrange
+        OutboxEvent acked = messageEvent(1L, new AnalyseRequest(1L, "a"));
+        OutboxEvent nacked = messageEvent(2L, new AnalyseRequest(2L, "b"));
+        givenClaimedEvents(acked, nacked);
+        CorrelationData ack = new CorrelationData("outbox-1");
+        ack.getFuture().complete(new CorrelationData.Confirm(true, null));
+        CorrelationData nack = new CorrelationData("outbox-2");
+        nack.getFuture().complete(new CorrelationData.Confirm(false, "queue full"));
+        when(rabbitMQService.sendAnalyseRequestWithConfirm(any(AnalyseRequest.class), eq("outbox-1"))).thenReturn(ack);
+        when(rabbitMQService.sendAnalyseRequestWithConfirm(any(AnalyseRequest.class), eq("outbox-2"))).thenReturn(nack);
+
+        // Act
+        outboxRelay.relayBatch();
+
+        // Assert
+        ArgumentCaptor<AnalyseRequest> requestCaptor = ArgumentCaptor.forClass(AnalyseRequest.class);
+        verify(rabbitMQService).sendAnalyseRequestWithConfirm(requestCaptor.capture(), eq("outbox-1"));
+        assertThat(requestCaptor.getValue().getContent()).isEqualTo("a");
+        verify(outboxEventDao).deleteAllInBatch(List.of(acked));
+        verify(outboxEventDao).saveAll(List.of(nacked));
+        assertThat(nacked.getLastError()).contains("queue full");
+    }
+
+    @Test
+    public void relay_ShouldPublishLagMetrics() {
+        // Arrange
+        when(outboxEventDao.findDueIds(eq(OutboxStatus.PENDING), any(Instant.class), any(Pageable.class))).thenReturn(List.of());
+        when(outboxEventDao.countByStatus(OutboxStatus.PENDING)).thenReturn(5L);
+        when(outboxEventDao.countByStatus(OutboxStatus.FAILED)).thenReturn(1L);
+        when(outboxEventDao.findOldestCreatedAt(OutboxStatus.PENDING)).thenReturn(Instant.now().minusSeconds(30));
+
+        // Act
+        outboxRelay.relay();
+
+        // Assert
+        assertThat(meterRegistry.get("outbox.pending").gauge().value()).isEqualTo(5.0);
+        assertThat(meterRegistry.get("outbox.failed").gauge().value()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("outbox.lag").gauge().value()).isAtLeast(30_000.0);
+    }
+
+    @Test
+    public void backoff_ShouldGrowExponentiallyUpToMax() {
+        assertThat(outboxRelay.backoff(1)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(outboxRelay.backoff(2)).isEqualTo(Duration.ofSeconds(2));
+        assertThat(outboxRelay.backoff(4)).isEqualTo(Duration.ofSeconds(8));
+        assertThat(outboxRelay.backoff(20)).isEqualTo(Duration.ofMinutes(1));
+    }
+
+    private void givenClaimedEvents(OutboxEvent... events) {
+        List<Long> ids = Arrays.stream(events).map(OutboxEvent::getId).toList();
+        when(outboxEventDao.findDueIds(eq(OutboxStatus.PENDING), any(Instant.class), any(Pageable.class))).thenReturn(ids);
+        when(outboxEventDao.findByClaimTokenOrderByIdAsc(anyString())).thenReturn(List.of(events));
+    }
+
+    private OutboxEvent recordEvent(Long id, String recordId) {
+        OutboxEvent event = new OutboxEvent(OutboxEventType.RECORD_CHANGED, recordId, null);
+        event.setId(id);
+        return event;
+    }
+
+    private OutboxEvent reindexEvent(Long id, String accountId) {
+        OutboxEvent event = new OutboxEvent(OutboxEventType.ACCOUNT_REINDEX, accountId, null);
+        event.setId(id);
+        return event;
+    }
+
+    private OutboxEvent messageEvent(Long id, AnalyseRequest request) throws Exception {
+        OutboxEvent event = new OutboxEvent(OutboxEventType.ANALYSE_REQUEST, String.valueOf(request.getAccountId()),
+                objectMapper.writeValueAsString(request));
+        event.setId(id);
+        return event;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.demo.service.outbox;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import com.example.demo.model.message.AnalyseRequest;
+import com.example.demo.model.outbox.OutboxEvent;
+import com.example.demo.model.outbox.OutboxEventType;
+import com.example.demo.model.outbox.OutboxStatus;
+import com.example.demo.repository.OutboxEventDao;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class TransactionOutboxServiceTest {
+
+    @Mock
+    private OutboxEventDao outboxEventDao;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private TransactionOutboxService transactionOutboxService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        transactionOutboxService = new TransactionOutboxService(outboxEventDao, objectMapper);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void recordsChanged_ShouldWriteOneEventPerRecord() {
+        // Act
+        transactionOutboxService.recordsChanged(List.of(1L, 2L));
+
+        // Assert
+        ArgumentCaptor<List<OutboxEvent>> captor = ArgumentCaptor.forClass(List.class);
+        verify(outboxEventDao).saveAll(captor.capture());
+        List<OutboxEvent> events = captor.getValue();
+        assertThat(events).hasSize(2);
+        assertThat(events.get(0).getEventType()).isEqualTo(OutboxEventType.RECORD_CHANGED);
+        assertThat(events.get(0).getAggregateId()).isEqualTo("1");
+        assertThat(events.get(1).getAggregateId()).isEqualTo("2");
+        assertThat(events.get(0).getStatus()).isEqualTo(OutboxStatus.PENDING);
+        assertThat(events.get(0).getNextAttemptAt()).isNotNull();
+    }
+
+    @Test
+    public void accountReindex_ShouldWriteOneEventForAccount() {
+        // Act
+        transactionOutboxService.accountReindex(7L);
+
+        // Assert
+        ArgumentCaptor<OutboxEvent> captor = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventDao).save(captor.capture());
+        assertThat(captor.getValue().getEventType()).isEqualTo(OutboxEventType.ACCOUNT_REINDEX);
+        assertThat(captor.getValue().getAggregateId()).isEqualTo("7");
+        assertThat(captor.getValue().getPayload()).isNull();
+    }
+
+    @Test
+    public void analyseRequest_ShouldStoreJsonPayload() throws Exception {
+        // Arrange
+        AnalyseRequest request = new AnalyseRequest(3L, "latest record");
+
+        // Act
+        transactionOutboxService.analyseRequest(request);
+
+        // Assert
+        ArgumentCaptor<OutboxEvent> captor = ArgumentCaptor.forClass(OutboxEvent.class);
+        verify(outboxEventDao).save(captor.capture());
+        OutboxEvent event = captor.getValue();
+        assertThat(event.getEventType()).isEqualTo(OutboxEventType.ANALYSE_REQUEST);
+        assertThat(event.getAggregateId()).isEqualTo("3");
+        assertThat(objectMapper.readValue(event.getPayload(), AnalyseRequest.class)).isEqualTo(request);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demo.service.rabbitmq;
 
 import com.example.demo.model.message.AnalyseRequest;
+import com.example.demo.model.message.FinancialReportMessage;
 import groovy.util.logging.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -9,7 +10,12 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.mockito.ArgumentCaptor;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.*;
@@ -65,24 +71,57 @@ class RabbitMQServiceTest {
         verify(rabbitTemplate, times(1)).convertAndSend("new.record.to.ai.analyser", request);
     }
 
+    @Test
+    void testSendAnalyseRequestWithConfirm() {
+        // Arrange
+        AnalyseRequest request = new AnalyseRequest(1L, "Test content");
+        ArgumentCaptor<MessagePostProcessor> postProcessorCaptor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+
+        // Act
+        CorrelationData correlationData = rabbitMQService.sendAnalyseRequestWithConfirm(request, "outbox-7");
+
+        // Assert
+        assertThat(correlationData.getId()).isEqualTo("outbox-7");
+        verify(rabbitTemplate).convertAndSend(eq(""), eq("new.record.to.ai.analyser"), eq(request),
+                postProcessorCaptor.capture(), eq(correlationData));
+        Message message = postProcessorCaptor.getValue().postProcessMessage(new Message(new byte[0], new MessageProperties()));
+        assertThat(message.getMessageProperties().getMessageId()).isEqualTo("outbox-7");
+    }
+
+    @Test
+    void testSendAnalyseRetryWithConfirm_KeepsMessageIdAndTargetsRetryQueue() {
+        // Arrange
+        AnalyseRequest request = new AnalyseRequest(1L, "Test content");
+        ArgumentCaptor<MessagePostProcessor> postProcessorCaptor = ArgumentCaptor.forClass(MessagePostProcessor.class);
+
+        // Act
+        CorrelationData correlationData = rabbitMQService.sendAnalyseRetryWithConfirm(request, "outbox-7");
+
+        // Assert
+        verify(rabbitTemplate).convertAndSend(eq(""), eq("new.record.to.ai.analyser.retry"), eq(request),
+                postProcessorCaptor.capture(), eq(correlationData));
+        Message message = postProcessorCaptor.getValue().postProcessMessage(new Message(new byte[0], new MessageProperties()));
+        assertThat(message.getMessageProperties().getMessageId()).isEqualTo("outbox-7");
+    }
+
     @Test
     void testSendTransactionReportToChatbotSuccess() {
         // Arrange
-        String report = "Sample report content";
+        FinancialReportMessage report = new FinancialReportMessage(1L, "c1", "Sample report content", 0L);
 
         // Act
         rabbitMQService.sendTransactionReportToChatbot(report);
 
         // Assert using Google Truth
         verify(rabbitTemplate, times(1)).convertAndSend("financial.report.to.chatbot", report);
-        assertThat(report).isEqualTo("Sample report content");
+        assertThat(report.getReport()).isEqualTo("Sample report content");
     }
 
     @Test
     void testSendTransactionReportToChatbotFailure() {
         // Arrange
-        String report = "Sample report content";
-        doThrow(new RuntimeException("RabbitMQ error")).when(rabbitTemplate).convertAndSend(anyString(), anyString());
+        FinancialReportMessage report = new FinancialReportMessage(1L, "c1", "Sample report content", 0L);
+        doThrow(new RuntimeException("RabbitMQ error")).when(rabbitTemplate).convertAndSend(anyString(), any(Object.class));
 
         // Act and Assert
         try {
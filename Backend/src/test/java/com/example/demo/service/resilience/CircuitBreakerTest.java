@@ -0,0 +1,118 @@
+package com.example.demo.service.resilience;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+
+public class CircuitBreakerTest {
+
+    private final AtomicLong now = new AtomicLong();
+    // 窗口 10 次，至少 4 次调用后失败率 >= 50% 打开，打开 1 秒，半开放行 2 次
+    private final CircuitBreaker breaker = new CircuitBreaker(10, 4, 50, 1_000, 2, now::get);
+
+    @Test
+    public void failuresAboveThreshold_ShouldOpen() {
+        // Act
+        call(true);
+        call(false);
+        call(false);
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+        call(false);
+
+        // Assert
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquire()).isFalse();
+    }
+
+    @Test
+    public void failuresBelowMinimumCalls_ShouldStayClosed() {
+        // Act
+        call(false);
+        call(false);
+        call(false);
+
+        // Assert
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void oldOutcomesLeaveTheWindow() {
+        // Arrange: 4 次失败之前先有足够多的成功，失败率 4/10 < 50%
+        for (int i = 0; i < 6; i++) {
+            call(true);
+        }
+        for (int i = 0; i < 4; i++) {
+            call(false);
+        }
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        // Act: 再失败一次，最早的成功被挤出窗口，失败率 5/10
+        call(false);
+
+        // Assert
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void halfOpen_SuccessfulTrialCalls_ShouldClose() {
+        // Arrange
+        openBreaker();
+        now.addAndGet(1_000);
+
+        // Act & Assert: 只放行 2 次试探调用
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isFalse();
+        breaker.onSuccess();
+        breaker.onSuccess();
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    public void halfOpen_FailedTrialCall_ShouldReopen() {
+        // Arrange
+        openBreaker();
+        now.addAndGet(1_000);
+
+        // Act
+        assertThat(breaker.tryAcquire()).isTrue();
+        breaker.onFailure();
+
+        // Assert
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void halfOpen_CancelledTrialCall_ShouldReturnPermit() {
+        // Arrange
+        openBreaker();
+        now.addAndGet(1_000);
+        assertThat(breaker.tryAcquire()).isTrue();
+        assertThat(breaker.tryAcquire()).isTrue();
+
+        // Act
+        breaker.cancel();
+
+        // Assert
+        assertThat(breaker.tryAcquire()).isTrue();
+    }
+
+    private void openBreaker() {
+        for (int i = 0; i < 4; i++) {
+            call(false);
+        }
+        assertThat(breaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    private void call(boolean success) {
+        assertThat(breaker.tryAcquire()).isTrue();
+        if (success) {
+            breaker.onSuccess();
+        } else {
+            breaker.onFailure();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.demo.service.resilience;
+
+import com.example.demo.exception.DependencyUnavailableException;
+import com.example.demo.exception.UpstreamFailureException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import reactor.core.publisher.Flux;
+
+import java.net.ConnectException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class DependencyGuardTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private DependencyGuard guard;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // 1 个线程、队列 1、隔离舱 2 个许可；超时 200ms；最近 4 次至少 4 次且失败率 >= 50% 熔断
+        guard = new DependencyGuard("test", new DependencyGuard.Settings(1, 1, 2, 0, 200, 4, 4, 50, 60_000, 1), meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        guard.shutdown();
+    }
+
+    @Test
+    public void call_ShouldRunOnTheDependencyPool() {
+        // Act
+        String threadName = guard.call(() -> Thread.currentThread().getName());
+
+        // Assert
+        assertThat(threadName).isEqualTo("test-1");
+        assertThat(meterRegistry.get("dependency.calls").tag("dependency", "test").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    public void call_SlowDependency_ShouldTimeOut() {
+        // Act
+        DependencyUnavailableException thrown = assertThrows(DependencyUnavailableException.class,
+                () -> guard.call(() -> release.await(5, TimeUnit.SECONDS)));
+
+        // Assert
+        assertThat(thrown).hasMessageThat().contains("timed out");
+        assertThat(meterRegistry.get("dependency.rejected").tag("reason", "timeout").counter().count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void call_BulkheadFull_ShouldRejectWithoutWaiting() throws Exception {
+        // Arrange: 两个流占满隔离舱
+        guard.stream(() -> Flux.<String>never()).subscribe();
+        guard.stream(() -> Flux.<String>never()).subscribe();
+
+        // Act
+        DependencyUnavailableException thrown = assertThrows(DependencyUnavailableException.class,
+                () -> guard.call(() -> "never runs"));
+
+        // Assert
+        assertThat(thrown).hasMessageThat().contains("bulkhead is full");
+        assertThat(meterRegistry.get("dependency.bulkhead.available").gauge().value()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void call_RepeatedFailures_ShouldOpenCircuit() {
+        // Act
+        for (int i = 0; i < 4; i++) {
+            assertThrows(IllegalStateException.class, () -> guard.call(() -> {
+                throw new IllegalStateException("upstream 500");
+            }));
+        }
+
+        // Assert
+        assertThat(guard.circuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+        DependencyUnavailableException thrown = assertThrows(DependencyUnavailableException.class,
+                () -> guard.call(() -> "ok"));
+        assertThat(thrown).hasMessageThat().contains("circuit breaker is open");
+        assertThat(meterRegistry.get("dependency.circuit.state").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void call_BadInputErrors_ShouldNotOpenCircuit() {
+        // Act: 无效股票代码、未知城市这类请求错误，依赖本身是正常应答的
+        for (int i = 0; i < 4; i++) {
+            assertThrows(RuntimeException.class, () -> guard.call(() -> {
+                throw new RuntimeException("AlphaVantage error for XXXX: Invalid API call");
+            }, DependencyGuard::isUpstreamFailure));
+            assertThrows(HttpClientErrorException.class, () -> guard.call(() -> {
+                throw HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "No matching location found.", null, null, null);
+            }, DependencyGuard::isUpstreamFailure));
+        }
+
+        // Assert
+        assertThat(guard.circuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(guard.call(() -> "ok", DependencyGuard::isUpstreamFailure)).isEqualTo("ok");
+    }
+
+    @Test
+    public void call_UpstreamErrors_ShouldOpenCircuit() {
+        // Act: 限流、5xx、429 和网络错误都算依赖失败
+        assertThrows(UpstreamFailureException.class, () -> guard.call(() -> {
+            throw new UpstreamFailureException("AlphaVantage rate limit reached");
+        }, DependencyGuard::isUpstreamFailure));
+        assertThrows(HttpServerErrorException.class, () -> guard.call(() -> {
+            throw HttpServerErrorException.create(HttpStatus.BAD_GATEWAY, "Bad Gateway", null, null, null);
+        }, DependencyGuard::isUpstreamFailure));
+        assertThrows(HttpClientErrorException.class, () -> guard.call(() -> {
+            throw HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", null, null, null);
+        }, DependencyGuard::isUpstreamFailure));
+        assertThrows(ResourceAccessException.class, () -> guard.call(() -> {
+            throw new ResourceAccessException("I/O error", new ConnectException("Connection refused"));
+        }, DependencyGuard::isUpstreamFailure));
+
+        // Assert
+        assertThat(guard.circuitState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+
+    @Test
+    public void executor_QueueFull_ShouldRejectAndReportSaturation() throws Exception {
+        // Arrange: 一个任务占住唯一的线程，另一个占满队列
+        CountDownLatch started = new CountDownLatch(1);
+        guard.executor().execute(() -> {
+            started.countDown();
+            awaitRelease();
+        });
+        started.await(5, TimeUnit.SECONDS);
+        guard.executor().execute(this::awaitRelease);
+
+        // Act & Assert
+        assertThrows(RejectedExecutionException.class, () -> guard.executor().execute(this::awaitRelease));
+        assertThat(meterRegistry.get("dependency.pool.saturation").gauge().value()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void stream_ShouldReleasePermitWhenDone() {
+        // Act
+        guard.stream(() -> Flux.just("a", "b")).collectList().block();
+        guard.stream(() -> Flux.just("a", "b")).collectList().block();
+
+        // Assert
+        assertThat(meterRegistry.get("dependency.bulkhead.available").gauge().value()).isEqualTo(2.0);
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -2,20 +2,24 @@ package com.example.demo.service.security;
 
 import com.example.demo.exception.PasswordNotCorrectException;
 import com.example.demo.exception.UserNotFoundException;
+import com.example.demo.repository.AccountDao;
 import com.example.demo.repository.TransactionUserDao;
 import com.example.demo.repository.UserRoleDao;
 import com.example.demo.model.TransactionUser;
 import com.example.demo.model.security.UserRole;
 import com.example.demo.model.security.UserDetail;
 import com.example.demo.model.security.LoginVo;
+import com.example.demo.model.dto.AccountSummary;
 import com.example.demo.model.dto.TransactionUserDTO;
+import com.example.demo.model.redis.RedisAccount;
+import com.example.demo.model.redis.RedisUser;
+import com.example.demo.service.session.UserSessionStore;
 import com.example.demo.utility.jwt.JwtUtil;
 import com.google.common.truth.Truth;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.*;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
@@ -23,7 +27,9 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -41,7 +47,7 @@ public class SecurityServiceTest {
     private JwtUtil jwtUtil;
 
     @Mock
-    private RedisTemplate<String, Object> redisTemplate;
+    private UserSessionStore userSessionStore;
 
     @Mock
     private PasswordEncoder passwordEncoder;
@@ -50,20 +56,28 @@ public class SecurityServiceTest {
     private UserRoleDao userRoleDao;
 
     @Mock
-    private ValueOperations<String, Object> valueOperations;
+    private UserDetailService userDetailService;
+
+    @Mock
+    private AccountDao accountDao;
+
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
-        Mockito.when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        meterRegistry = new SimpleMeterRegistry();
 
         securityService = new SecurityService(
                 passwordEncoder,
                 transactionUserDao,
                 authenticationManager,
                 jwtUtil,
-                redisTemplate,
-                userRoleDao
+                userSessionStore,
+                userRoleDao,
+                userDetailService,
+                accountDao,
+                meterRegistry
         );
     }
 
@@ -121,12 +135,29 @@ public class SecurityServiceTest {
             Mockito.when(authentication.getPrincipal()).thenReturn(userDetail);
             Mockito.when(jwtUtil.generateToken(1L, "testUser", "ROLE_USER"))
                     .thenReturn("test-token");
+            Mockito.when(accountDao.findSummariesByUserId(1L))
+                    .thenReturn(List.of(new AccountSummary(3L, "Daily", 100.0, 40.0)));
 
             ResponseEntity<Map<String, Object>> response = securityService.login(loginVo);
 
             Truth.assertThat(response.getStatusCodeValue()).isEqualTo(200);
             Truth.assertThat(response.getBody().get("token")).isEqualTo("test-token");
             Truth.assertThat(response.getBody().get("username")).isEqualTo("testUser");
+
+            // 会话和投影查询出的账户一起写入用户的哈希
+            ArgumentCaptor<RedisUser> sessionInfo = ArgumentCaptor.forClass(RedisUser.class);
+            @SuppressWarnings("unchecked")
+            ArgumentCaptor<Collection<RedisAccount>> sessionAccounts = ArgumentCaptor.forClass(Collection.class);
+            Mockito.verify(userSessionStore).open(sessionInfo.capture(), sessionAccounts.capture());
+            Truth.assertThat(sessionInfo.getValue().getUserId()).isEqualTo(1L);
+            Truth.assertThat(sessionInfo.getValue().getToken()).isEqualTo("test-token");
+            Truth.assertThat(sessionAccounts.getValue()).containsExactly(new RedisAccount(3L, "Daily", 100.0, 40.0));
+            Mockito.verify(userDetailService).cacheUser(userDetail.getTransactionUser());
+
+            // 每个阶段记录一次耗时
+            for (String phase : List.of("auth", "db", "redis")) {
+                Truth.assertThat(meterRegistry.get("auth.login.phase").tag("phase", phase).timer().count()).isEqualTo(1L);
+            }
             System.out.println("testLogin passed!");
         } catch (Exception e) {
             System.err.println("testLogin failed: " + e.getMessage());
@@ -159,6 +190,8 @@ public class SecurityServiceTest {
 
             // 验证 save 方法被调用一次
             Mockito.verify(transactionUserDao, Mockito.times(1)).save(Mockito.any(TransactionUser.class));
+            // 验证缓存的 UserDetail 被清除
+            Mockito.verify(userDetailService).evictUser(1L);
             System.out.println("testUpdatePassword passed!");
         } catch (Exception e) {
             System.err.println("testUpdatePassword failed: " + e.getMessage());
@@ -12,9 +12,11 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
+import java.util.Collections;
 import java.util.Optional;
 
 public class UserDetailServiceTest {
@@ -113,6 +115,74 @@ public class UserDetailServiceTest {
         }
     }
 
+    @Test
+    public void testLoadUserByIdUsesCache() {
+        // Arrange
+        Long userId = 1L;
+        TransactionUser user = createTestUser("testUser");
+        user.setId(userId);
+        Mockito.when(transactionUserDao.findById(userId))
+                .thenReturn(Optional.of(user));
+
+        // Act
+        UserDetails first = userDetailService.loadUserById(userId);
+        UserDetails second = userDetailService.loadUserById(userId);
+
+        // Assert
+        Truth.assertThat(second).isSameInstanceAs(first);
+        Mockito.verify(transactionUserDao, Mockito.times(1)).findById(userId);
+    }
+
+    @Test
+    public void testEvictUserReloadsFromDatabase() {
+        // Arrange
+        Long userId = 1L;
+        TransactionUser user = createTestUser("testUser");
+        user.setId(userId);
+        Mockito.when(transactionUserDao.findById(userId))
+                .thenReturn(Optional.of(user));
+
+        // Act
+        userDetailService.loadUserById(userId);
+        userDetailService.evictUser(userId);
+        userDetailService.loadUserById(userId);
+
+        // Assert
+        Mockito.verify(transactionUserDao, Mockito.times(2)).findById(userId);
+    }
+
+    @Test
+    public void testCacheUserSkipsDatabase() {
+        // Arrange
+        TransactionUser user = createTestUser("testUser");
+        user.setId(1L);
+
+        // Act
+        userDetailService.cacheUser(user);
+        UserDetails result = userDetailService.loadUserById(1L);
+
+        // Assert
+        Truth.assertThat(((UserDetail) result).getTransactionUser()).isSameInstanceAs(user);
+        Mockito.verify(transactionUserDao, Mockito.never()).findById(1L);
+    }
+
+    @Test
+    public void testCacheUserKeepsCredentialsErasedFromPrincipal() {
+        // Arrange: 认证成功后 AuthenticationManager 会擦除 principal 的密码
+        TransactionUser user = createTestUser("testUser");
+        user.setId(1L);
+        UserDetail principal = new UserDetail(user, Collections.singleton(new SimpleGrantedAuthority("ROLE_USER")));
+        principal.eraseCredentials();
+
+        // Act
+        userDetailService.cacheUser(principal.getTransactionUser());
+        UserDetails result = userDetailService.loadUserById(1L);
+
+        // Assert
+        Truth.assertThat(result).isNotSameInstanceAs(principal);
+        Truth.assertThat(result.getPassword()).isEqualTo("testPassword");
+    }
+
     private TransactionUser createTestUser(String username) {
         TransactionUser user = new TransactionUser();
         user.setUsername(username);
@@ -0,0 +1,179 @@
+package com.example.demo.service.session;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+public class CurrentAccountNearCacheTest {
+
+    private static final String CHANNEL = "session:current-account";
+
+    @Mock private StringRedisTemplate stringRedisTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CurrentAccountNearCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new CurrentAccountNearCache(stringRedisTemplate, meterRegistry, Duration.ofMinutes(5), 1000, true, CHANNEL, "node-a");
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void get_ShouldLoadOnceIncludingNoAccountSelected() {
+        // Act
+        Long first = cache.get(1L, this::load);
+        Long second = cache.get(1L, this::load);
+        Long none = cache.get(2L, userId -> {
+            loads.incrementAndGet();
+            return null;
+        });
+        Long noneAgain = cache.get(2L, userId -> {
+            loads.incrementAndGet();
+            return null;
+        });
+
+        // Assert
+        assertThat(first).isEqualTo(10L);
+        assertThat(second).isEqualTo(10L);
+        assertThat(none).isNull();
+        assertThat(noneAgain).isNull();
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(meterRegistry.counter("session.current-account.cache", "result", "hit").count()).isEqualTo(2.0);
+    }
+
+    @Test
+    public void keyspaceNotification_ShouldInvalidateOnlyThatUser() {
+        // Arrange
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        // Act
+        cache.onMessage(notification("__keyspace@0__:login_user:1", "expired"), null);
+        cache.get(1L, this::load);
+        cache.get(2L, this::load);
+
+        // Assert
+        assertThat(loads.get()).isEqualTo(3);
+        assertThat(meterRegistry.counter("session.current-account.cache.invalidations").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void keyspaceNotification_ForHashFieldWrites_ShouldBeIgnored() {
+        // Arrange
+        cache.get(1L, this::load);
+
+        // Act: 写账户、写用户信息产生的 hset / hdel 不代表 current_account 变化
+        cache.onMessage(notification("__keyspace@0__:login_user:1", "hset"), null);
+        cache.onMessage(notification("__keyspace@0__:login_user:1", "hdel"), null);
+        cache.get(1L, this::load);
+
+        // Assert
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void currentAccountChanged_ShouldInvalidateLocallyAndNotifyOtherInstances() {
+        // Arrange
+        CurrentAccountNearCache other = new CurrentAccountNearCache(stringRedisTemplate, meterRegistry,
+                Duration.ofMinutes(5), 1000, true, CHANNEL, "node-b");
+        cache.get(1L, this::load);
+        other.get(1L, this::load);
+
+        // Act
+        cache.currentAccountChanged(1L);
+        ArgumentCaptor<String> published = ArgumentCaptor.forClass(String.class);
+        verify(stringRedisTemplate).convertAndSend(eq(CHANNEL), published.capture());
+        other.onMessage(notification(CHANNEL, published.getValue()), null);
+        cache.onMessage(notification(CHANNEL, published.getValue()), null);
+        cache.get(1L, this::load);
+        other.get(1L, this::load);
+
+        // Assert: 两个实例各重新加载一次，自己发出的消息不重复失效
+        assertThat(published.getValue()).isEqualTo("node-a 1");
+        assertThat(loads.get()).isEqualTo(4);
+        assertThat(meterRegistry.counter("session.current-account.cache.invalidations").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void get_WhenInvalidatedWhileLoading_ShouldNotCacheStaleValue() {
+        // Act: 读取 Redis 的同时另一个实例切换了账户
+        Long stale = cache.get(1L, userId -> {
+            loads.incrementAndGet();
+            cache.onMessage(notification(CHANNEL, "node-b 1"), null);
+            return 10L;
+        });
+        Long fresh = cache.get(1L, this::load);
+
+        // Assert
+        assertThat(stale).isEqualTo(10L);
+        assertThat(fresh).isEqualTo(10L);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void get_OtherUserInvalidatedWhileLoading_ShouldStillCache() {
+        // Act: 其他用户的失效不影响这次加载写入缓存
+        cache.get(1L, userId -> {
+            cache.invalidate(2L);
+            return load(userId);
+        });
+        cache.get(1L, this::load);
+
+        // Assert
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void disabled_ShouldAlwaysLoad() {
+        // Arrange
+        CurrentAccountNearCache disabled = CurrentAccountNearCache.disabled(meterRegistry);
+
+        // Act
+        disabled.get(1L, this::load);
+        disabled.get(1L, this::load);
+
+        // Assert
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void userIdOf_ShouldParseHashAndLegacyKeys() {
+        assertThat(CurrentAccountNearCache.userIdOf("login_user:42")).isEqualTo(42L);
+        assertThat(CurrentAccountNearCache.userIdOf("login_user:42:current_account")).isEqualTo(42L);
+        assertThat(CurrentAccountNearCache.userIdOf("login_user:abc")).isNull();
+        assertThat(CurrentAccountNearCache.userIdOf("chat_memory:42")).isNull();
+    }
+
+    @Test
+    public void missingNotifyFlags_ShouldOnlyAddWhatIsMissing() {
+        assertThat(CurrentAccountNearCache.missingNotifyFlags("")).isEqualTo("Kgxe");
+        assertThat(CurrentAccountNearCache.missingNotifyFlags("Ex")).isEqualTo("Kge");
+        assertThat(CurrentAccountNearCache.missingNotifyFlags("KA")).isEmpty();
+    }
+
+    private Long load(Long userId) {
+        loads.incrementAndGet();
+        return userId * 10;
+    }
+
+    private static DefaultMessage notification(String channel, String body) {
+        return new DefaultMessage(channel.getBytes(StandardCharsets.UTF_8), body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,445 @@
+package com.example.demo.service.session;
+
+import com.example.demo.config.redis.CompactSessionRedisSerializer;
+import com.example.demo.model.dto.AccountSummary;
+import com.example.demo.model.redis.RedisAccount;
+import com.example.demo.model.redis.RedisUser;
+import com.example.demo.repository.AccountDao;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UserSessionStoreTest {
+
+    @Mock private RedisTemplate<String, Object> redisTemplate;
+    @Mock private HashOperations<String, Object, Object> hashOperations;
+    @Mock private ValueOperations<String, Object> valueOperations;
+    @Mock private AccountDao accountDao;
+
+    // 用 Map 模拟 Redis：哈希和旧格式的字符串 key 分开保存
+    private final Map<String, Map<Object, Object>> hashes = new HashMap<>();
+    private final Map<String, Object> values = new HashMap<>();
+    private final Map<String, Long> expires = new HashMap<>();
+    private int transactions;
+
+    // 和生产环境相同的哈希值序列化，WRITE_IF_ACTIVE 的参数按它解码
+    private final RedisSerializer<Object> valueSerializer =
+            new CompactSessionRedisSerializer(new GenericJackson2JsonRedisSerializer(), true);
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserSessionStore store;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(redisTemplate.opsForHash()).thenReturn((HashOperations) hashOperations);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        when(hashOperations.entries(anyString())).thenAnswer(invocation ->
+                new LinkedHashMap<>(hashes.getOrDefault(invocation.<String>getArgument(0), Map.of())));
+        when(hashOperations.get(anyString(), any())).thenAnswer(invocation ->
+                hashes.getOrDefault(invocation.<String>getArgument(0), Map.of()).get(invocation.getArgument(1)));
+        when(hashOperations.hasKey(anyString(), any())).thenAnswer(invocation ->
+                hashes.getOrDefault(invocation.<String>getArgument(0), Map.of()).containsKey(invocation.getArgument(1)));
+        when(hashOperations.multiGet(anyString(), anyCollection())).thenAnswer(invocation -> {
+            Map<Object, Object> hash = hashes.getOrDefault(invocation.<String>getArgument(0), Map.of());
+            List<Object> result = new ArrayList<>();
+            for (Object field : invocation.<Collection<Object>>getArgument(1)) {
+                result.add(hash.get(field));
+            }
+            return result;
+        });
+        doAnswer(invocation -> {
+            hashes.computeIfAbsent(invocation.getArgument(0), key -> new LinkedHashMap<>())
+                    .put(invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(hashOperations).put(anyString(), any(), any());
+        doAnswer(invocation -> {
+            hashes.computeIfAbsent(invocation.getArgument(0), key -> new LinkedHashMap<>())
+                    .putAll(invocation.<Map<Object, Object>>getArgument(1));
+            return null;
+        }).when(hashOperations).putAll(anyString(), any());
+        doAnswer(invocation -> {
+            Map<Object, Object> hash = hashes.getOrDefault(invocation.<String>getArgument(0), new HashMap<>());
+            Object[] fields = invocation.getArguments();
+            for (int i = 1; i < fields.length; i++) {
+                hash.remove(fields[i]);
+            }
+            return (long) fields.length - 1;
+        }).when(hashOperations).delete(anyString(), any(Object[].class));
+
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> values.get(invocation.<String>getArgument(0)));
+        when(valueOperations.multiGet(anyCollection())).thenAnswer(invocation ->
+                invocation.<Collection<String>>getArgument(0).stream().map(values::get).toList());
+        when(redisTemplate.hasKey(anyString())).thenAnswer(invocation -> {
+            String key = invocation.getArgument(0);
+            return hashes.containsKey(key) || values.containsKey(key);
+        });
+        when(redisTemplate.delete(anyString())).thenAnswer(invocation -> remove(invocation.getArgument(0)));
+        when(redisTemplate.delete(anyCollection())).thenAnswer(invocation -> {
+            long removed = 0;
+            for (String key : invocation.<Collection<String>>getArgument(0)) {
+                removed += remove(key) ? 1 : 0;
+            }
+            return removed;
+        });
+        when(redisTemplate.expire(anyString(), any(Duration.class))).thenAnswer(invocation -> {
+            expires.put(invocation.getArgument(0), invocation.<Duration>getArgument(1).toSeconds());
+            return true;
+        });
+        when(redisTemplate.getExpire(anyString(), eq(TimeUnit.SECONDS))).thenAnswer(invocation ->
+                expires.getOrDefault(invocation.<String>getArgument(0), -1L));
+
+        when(redisTemplate.scan(any(ScanOptions.class))).thenAnswer(invocation -> scan(invocation.getArgument(0)));
+        when(redisTemplate.getHashKeySerializer()).thenReturn((RedisSerializer) RedisSerializer.string());
+        when(redisTemplate.getHashValueSerializer()).thenReturn((RedisSerializer) valueSerializer);
+        when(redisTemplate.execute(eq(UserSessionStore.WRITE_IF_ACTIVE), any(RedisSerializer.class), any(RedisSerializer.class),
+                anyList(), any(Object[].class))).thenAnswer(invocation -> writeIfActive(
+                invocation.<List<String>>getArgument(3).get(0),
+                Arrays.copyOfRange(invocation.getArguments(), 4, invocation.getArguments().length)));
+
+        // MULTI/EXEC 里的命令直接作用在 Map 上，提交时才计数
+        when(redisTemplate.execute(any(SessionCallback.class))).thenAnswer(invocation ->
+                invocation.<SessionCallback<Object>>getArgument(0).execute(redisTemplate));
+        when(redisTemplate.exec()).thenAnswer(invocation -> {
+            transactions++;
+            return List.of();
+        });
+
+        meterRegistry = new SimpleMeterRegistry();
+        store = new UserSessionStore(redisTemplate, meterRegistry, CurrentAccountNearCache.disabled(meterRegistry), accountDao,
+                Duration.ofMinutes(60), true);
+    }
+
+    @Test
+    public void open_ThenLoad_ShouldReadWholeSessionFromOneHash() {
+        // Act
+        store.open(user(1L), List.of(account(2L, "Savings"), account(1L, "Daily")));
+        UserSession session = store.load(1L).orElseThrow();
+
+        // Assert
+        assertThat(session.info().getUsername()).isEqualTo("user1");
+        assertThat(session.accountNames()).containsExactly("Daily", "Savings").inOrder();
+        assertThat(session.currentAccountId()).isNull();
+        assertThat(hashes.keySet()).containsExactly("login_user:1");
+        assertThat(expires.get("login_user:1")).isEqualTo(3600L);
+        assertThat(hashes.get("login_user:1")).doesNotContainKey("account:initial placeholder");
+        assertThat(transactions).isEqualTo(1);
+        verify(hashOperations, never()).put(anyString(), any(), any());
+        verify(redisTemplate, never()).keys(anyString());
+    }
+
+    @Test
+    public void open_ShouldReplaceSessionInOneTransactionWithCurrentAccountComputedFirst() {
+        // Arrange
+        store.open(user(1L), List.of(account(1L, "Daily"), account(2L, "Savings")));
+        store.setCurrentAccount(1L, 2L);
+        clearInvocations(redisTemplate, hashOperations);
+
+        // Act
+        store.open(user(1L), List.of(account(2L, "Savings"), account(3L, "Travel")));
+
+        // Assert: current_account 随 HSET 一起写入，不在 EXEC 之后单独补写
+        InOrder order = inOrder(redisTemplate, hashOperations);
+        order.verify(hashOperations).get("login_user:1", "current_account");
+        order.verify(redisTemplate).multi();
+        order.verify(redisTemplate).delete("login_user:1");
+        order.verify(hashOperations).putAll(eq("login_user:1"), argThat(fields -> Long.valueOf(2L).equals(fields.get("current_account"))));
+        order.verify(redisTemplate).expire("login_user:1", Duration.ofMinutes(60));
+        order.verify(redisTemplate).exec();
+        assertThat(transactions).isEqualTo(2);
+        assertThat(store.load(1L).orElseThrow().accountNames()).containsExactly("Savings", "Travel").inOrder();
+        assertThat(store.getCurrentAccountId(1L)).isEqualTo(2L);
+    }
+
+    @Test
+    public void load_WithoutSession_ShouldBeEmpty() {
+        assertThat(store.load(1L).isPresent()).isFalse();
+        assertThat(store.isActive(1L)).isFalse();
+    }
+
+    @Test
+    public void accountNameExists_ShouldFollowRenamesAndRemovals() {
+        // Arrange
+        store.open(user(1L), List.of(account(1L, "Daily")));
+
+        // Act
+        store.putAccount(1L, account(1L, "Travel"));
+        boolean oldName = store.accountNameExists(1L, "Daily");
+        boolean newName = store.accountNameExists(1L, "Travel");
+        store.removeAccount(1L, 1L);
+
+        // Assert
+        assertThat(oldName).isFalse();
+        assertThat(newName).isTrue();
+        assertThat(store.accountNameExists(1L, "Travel")).isFalse();
+        assertThat(store.load(1L).orElseThrow().accounts()).isEmpty();
+    }
+
+    @Test
+    public void putAccount_WithoutSession_ShouldNotCreateHash() {
+        // Act
+        store.putAccount(1L, account(1L, "Daily"));
+        store.setCurrentAccount(1L, 1L);
+
+        // Assert
+        assertThat(hashes).isEmpty();
+    }
+
+    @Test
+    public void putAccount_WhenSessionExpiresBeforeWrite_ShouldNotRecreateHash() {
+        // Arrange: 读取旧账户之后、写入之前会话过期
+        store.open(user(1L), List.of(account(1L, "Daily")));
+        when(hashOperations.get("login_user:1", "account:2")).thenAnswer(invocation -> {
+            remove("login_user:1");
+            return null;
+        });
+
+        // Act
+        store.putAccount(1L, account(2L, "Savings"));
+
+        // Assert: 检查和写入在同一个脚本里，过期的会话不会被重新创建成没有 TTL 的哈希
+        assertThat(hashes).isEmpty();
+        assertThat(expires).isEmpty();
+        verify(hashOperations, times(1)).putAll(anyString(), any());
+    }
+
+    @Test
+    public void currentAccount_ShouldSurviveReloginAndBeClearedWithItsAccount() {
+        // Arrange
+        store.open(user(1L), List.of(account(1L, "Daily"), account(2L, "Savings")));
+        store.setCurrentAccount(1L, 2L);
+
+        // Act
+        store.open(user(1L), List.of(account(1L, "Daily"), account(2L, "Savings")));
+        Long afterRelogin = store.getCurrentAccountId(1L);
+        store.removeAccount(1L, 2L);
+
+        // Assert
+        assertThat(afterRelogin).isEqualTo(2L);
+        assertThat(store.getCurrentAccountId(1L)).isNull();
+    }
+
+    @Test
+    public void currentAccount_WithNearCache_ShouldBeInvalidatedByLocalWrites() {
+        // Arrange
+        StringRedisTemplate publisher = mock(StringRedisTemplate.class);
+        UserSessionStore cached = new UserSessionStore(redisTemplate, meterRegistry,
+                new CurrentAccountNearCache(publisher, meterRegistry, Duration.ofMinutes(5), 100, true,
+                        "session:current-account", "node-a"), accountDao, Duration.ofMinutes(60), true);
+        cached.open(user(1L), List.of(account(1L, "Daily"), account(2L, "Savings")));
+
+        // Act
+        Long beforeSwitch = cached.getCurrentAccountId(1L);
+        cached.getCurrentAccountId(1L);
+        cached.setCurrentAccount(1L, 2L);
+        Long afterSwitch = cached.getCurrentAccountId(1L);
+        cached.getCurrentAccountId(1L);
+        cached.removeAccount(1L, 2L);
+
+        // Assert: 登录时读一次，之后每次写入后只从 Redis 读一次
+        assertThat(beforeSwitch).isNull();
+        assertThat(afterSwitch).isEqualTo(2L);
+        assertThat(cached.getCurrentAccountId(1L)).isNull();
+        verify(hashOperations, times(4)).get("login_user:1", "current_account");
+        // 登录、切换账户、删除当前账户都会通知其他实例
+        verify(publisher, times(3)).convertAndSend("session:current-account", "node-a 1");
+    }
+
+    @Test
+    public void updateInfo_ShouldReplaceInfoOnlyWhenLoggedIn() {
+        // Arrange
+        store.open(user(1L), List.of());
+
+        // Act
+        store.updateInfo(1L, info -> new RedisUser(info.getUserId(), "renamed", info.getEmail(),
+                info.getPhone(), info.getAvatar(), info.getToken()));
+        store.updateInfo(2L, info -> info);
+
+        // Assert
+        assertThat(store.load(1L).orElseThrow().info().getUsername()).isEqualTo("renamed");
+        assertThat(hashes).doesNotContainKey("login_user:2");
+    }
+
+    @Test
+    public void close_ShouldDeleteHashAndLegacyKeys() {
+        // Arrange
+        store.open(user(1L), List.of(account(1L, "Daily")));
+        values.put("login_user:1:current_account", 1);
+
+        // Act
+        store.close(1L);
+
+        // Assert
+        assertThat(hashes).isEmpty();
+        assertThat(values).isEmpty();
+    }
+
+    @Test
+    public void load_WithLegacyKeys_ShouldMigrateIntoHashKeepingTtl() {
+        // Arrange: 旧格式的会话
+        values.put("login_user:1:info", user(1L));
+        values.put("login_user:1:current_account", 2);
+        values.put("login_user:1:account:initial placeholder", new ArrayList<>(List.of(1L, 2L)));
+        values.put("login_user:1:account:1", account(1L, "Daily"));
+        values.put("login_user:1:account:2", account(2L, "Savings"));
+        expires.put("login_user:1:info", 1200L);
+        when(accountDao.findSummariesByUserId(1L)).thenReturn(List.of(summary(1L, "Daily"), summary(2L, "Savings")));
+
+        // Act
+        UserSession session = store.load(1L).orElseThrow();
+
+        // Assert
+        assertThat(session.accountNames()).containsExactly("Daily", "Savings").inOrder();
+        assertThat(session.currentAccountId()).isEqualTo(2L);
+        assertThat(store.accountNameExists(1L, "Savings")).isTrue();
+        assertThat(expires.get("login_user:1")).isEqualTo(1200L);
+        assertThat(values).isEmpty();
+        assertThat(meterRegistry.counter("session.legacy.migrated").count()).isEqualTo(1.0);
+        // 按 key 名直接 MGET，不遍历 keyspace
+        verify(redisTemplate, never()).scan(any(ScanOptions.class));
+    }
+
+    @Test
+    public void load_WithLegacyAccountCreatedAfterLogin_ShouldMigrateIt() {
+        // Arrange: 登录后创建的账户 3 不在 initial placeholder 里
+        values.put("login_user:1:info", user(1L));
+        values.put("login_user:1:account:initial placeholder", new ArrayList<>(List.of(1L)));
+        values.put("login_user:1:account:1", account(1L, "Daily"));
+        values.put("login_user:1:account:3", account(3L, "Travel"));
+        when(accountDao.findSummariesByUserId(1L)).thenReturn(List.of(summary(1L, "Daily"), summary(3L, "Travel")));
+
+        // Act
+        UserSession session = store.load(1L).orElseThrow();
+
+        // Assert
+        assertThat(session.accountNames()).containsExactly("Daily", "Travel").inOrder();
+        assertThat(values).isEmpty();
+    }
+
+    @Test
+    public void migrateLegacy_WhenUserAlreadyHasHash_ShouldKeepHashAndDropLegacyKeys() {
+        // Arrange
+        store.open(user(1L), List.of(account(1L, "Daily")));
+        values.put("login_user:1:info", user(1L));
+        values.put("login_user:1:account:9", account(9L, "Stale"));
+
+        // Act
+        boolean migrated = store.migrateLegacy(1L, List.of("login_user:1:info", "login_user:1:account:9"));
+
+        // Assert
+        assertThat(migrated).isFalse();
+        assertThat(store.accountNameExists(1L, "Stale")).isFalse();
+        assertThat(values).isEmpty();
+    }
+
+    @Test
+    public void migrateAll_ShouldMigrateLiveSessionsAndDeleteOrphanedKeys() {
+        // Arrange: 用户 1 的会话仍然有效，用户 2 只剩下没有 TTL 的账户 key
+        values.put("login_user:1:info", user(1L));
+        values.put("login_user:1:account:1", account(1L, "Daily"));
+        values.put("login_user:2:account:5", account(5L, "Orphan"));
+        expires.put("login_user:1:info", 600L);
+        LegacySessionMigrator migrator = new LegacySessionMigrator(redisTemplate, store, true);
+
+        // Act
+        int migrated = migrator.migrateAll();
+
+        // Assert
+        assertThat(migrated).isEqualTo(1);
+        assertThat(store.load(1L).orElseThrow().accountNames()).containsExactly("Daily");
+        assertThat(hashes).doesNotContainKey("login_user:2");
+        assertThat(values).isEmpty();
+        assertThat(LegacySessionMigrator.userIdOf("login_user:abc:info")).isNull();
+    }
+
+    private static AccountSummary summary(Long id, String name) {
+        return new AccountSummary(id, name, 0, 0);
+    }
+
+    // 按 SCAN 的 glob 模式匹配旧格式的字符串 key
+    @SuppressWarnings("unchecked")
+    private Cursor<String> scan(ScanOptions options) {
+        String regex = Arrays.stream(options.getPattern().split("\\*", -1))
+                .map(Pattern::quote)
+                .collect(Collectors.joining(".*"));
+        Iterator<String> keys = values.keySet().stream().filter(key -> key.matches(regex)).toList().iterator();
+        Cursor<String> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> keys.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> keys.next());
+        return cursor;
+    }
+
+    // 模拟 WRITE_IF_ACTIVE 脚本：会话不存在时不写入
+    private long writeIfActive(String key, Object[] args) {
+        Map<Object, Object> hash = hashes.get(key);
+        if (hash == null || !hash.containsKey("info")) {
+            return 0L;
+        }
+        int deletes = Integer.parseInt(new String((byte[]) args[0], StandardCharsets.UTF_8));
+        for (int i = 1; i <= deletes; i++) {
+            hash.remove(RedisSerializer.string().deserialize((byte[]) args[i]));
+        }
+        for (int i = deletes + 1; i < args.length; i += 2) {
+            hash.put(RedisSerializer.string().deserialize((byte[]) args[i]), valueSerializer.deserialize((byte[]) args[i + 1]));
+        }
+        return 1L;
+    }
+
+    private boolean remove(String key) {
+        boolean removed = hashes.remove(key) != null | values.remove(key) != null;
+        expires.remove(key);
+        return removed;
+    }
+
+    private static RedisUser user(Long id) {
+        return new RedisUser(id, "user" + id, "user" + id + "@example.com", "0400000000", null, "token-" + id);
+    }
+
+    private static RedisAccount account(Long id, String name) {
+        return new RedisAccount(id, name, 0.0, 0.0);
+    }
+}
@@ -0,0 +1,331 @@
+package com.example.demo.service.stock;
+
+import com.example.demo.service.resilience.DependencyGuards;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用本地的 AlphaVantage 桩服务器验证缓存、合并请求和增量刷新，Redis 用内存 Map 代替
+ */
+public class StockServiceTest {
+    // 2024-01-10 是周三，纽约时间 11:00 开盘中，20:00 已收盘
+    private static final Instant MARKET_OPEN = Instant.parse("2024-01-10T16:00:00Z");
+    private static final Instant MARKET_CLOSED = Instant.parse("2024-01-11T01:00:00Z");
+
+    @Mock private StringRedisTemplate stringRedisTemplate;
+    @Mock private ValueOperations<String, String> valueOperations;
+
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final List<String> upstreamRequests = new CopyOnWriteArrayList<>();
+    private final AtomicReference<LocalDate> latestTradingDay = new AtomicReference<>(LocalDate.of(2024, 1, 10));
+    private final AtomicReference<String> forcedResponse = new AtomicReference<>();
+    private volatile long responseDelayMillis;
+
+    private HttpServer stubServer;
+    private ExecutorService stubExecutor;
+    private MutableClock clock;
+    private SimpleMeterRegistry meterRegistry;
+    private StockService stockService;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get(anyString())).thenAnswer(invocation -> redis.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> redis.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(valueOperations).set(anyString(), anyString(), any(Duration.class));
+
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stubServer.createContext("/query", this::handleQuery);
+        stubExecutor = Executors.newCachedThreadPool();
+        stubServer.setExecutor(stubExecutor);
+        stubServer.start();
+
+        clock = new MutableClock(MARKET_OPEN);
+        meterRegistry = new SimpleMeterRegistry();
+        stockService = newStockService();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        stubServer.stop(0);
+        stubExecutor.shutdownNow();
+    }
+
+    @Test
+    public void getStockPrice_RepeatedCallsWithinTtl_ShouldHitUpstreamOnce() {
+        // Act
+        Map<String, Object> first = stockService.getStockPrice("IBM");
+        Map<String, Object> second = stockService.getStockPrice("IBM");
+
+        // Assert
+        assertThat(upstreamRequests).containsExactly("TIME_SERIES_DAILY:IBM:compact");
+        assertThat(first.get("lastUpdated")).isEqualTo("2024-01-10");
+        assertThat(first.get("volume")).isInstanceOf(Long.class);
+        assertThat(second).isEqualTo(first);
+    }
+
+    @Test
+    public void getStockPrice_ConcurrentCalls_ShouldShareOneUpstreamRequest() throws Exception {
+        // Arrange
+        responseDelayMillis = 300;
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Map<String, Object>>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 16; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return stockService.getStockPrice("IBM");
+            }));
+        }
+        start.countDown();
+        for (Future<Map<String, Object>> result : results) {
+            assertThat(result.get().get("symbol")).isEqualTo("IBM");
+        }
+        pool.shutdown();
+
+        // Assert
+        assertThat(upstreamRequests).hasSize(1);
+        assertThat(meterRegistry.counter("stock.cache.requests", "result", "coalesced").count()).isGreaterThan(0.0);
+    }
+
+    @Test
+    public void getStockPrice_AfterOpenTtl_ShouldRefresh() {
+        // Arrange
+        stockService.getStockPrice("IBM");
+
+        // Act
+        clock.advance(Duration.ofMinutes(6));
+        stockService.getStockPrice("IBM");
+
+        // Assert
+        assertThat(upstreamRequests).hasSize(2);
+    }
+
+    @Test
+    public void getStockPrice_AfterClose_ShouldStayFreshUntilNextSession() {
+        // Arrange
+        clock.set(MARKET_CLOSED);
+        stockService.getStockPrice("IBM");
+
+        // Act: 纽约时间次日 6:00，仍未开盘
+        clock.advance(Duration.ofHours(10));
+        stockService.getStockPrice("IBM");
+        // 纽约时间次日 10:00，已开盘
+        clock.advance(Duration.ofHours(4));
+        stockService.getStockPrice("IBM");
+
+        // Assert
+        assertThat(upstreamRequests).hasSize(2);
+    }
+
+    @Test
+    public void getStockHistory_ShouldFetchFullOnceThenRefreshIncrementallyWithCompact() {
+        // Arrange
+        List<Map<String, Object>> shortRange = stockService.getStockHistory("IBM", 5);
+        List<Map<String, Object>> longRange = stockService.getStockHistory("IBM", 300);
+
+        // Act: 下一个交易日开盘后再查
+        latestTradingDay.set(LocalDate.of(2024, 1, 11));
+        clock.advance(Duration.ofDays(1));
+        List<Map<String, Object>> refreshed = stockService.getStockHistory("IBM", 300);
+
+        // Assert
+        assertThat(shortRange).hasSize(5);
+        assertThat(longRange).hasSize(300);
+        assertThat(upstreamRequests).containsExactly(
+                "TIME_SERIES_DAILY:IBM:compact",
+                "TIME_SERIES_DAILY:IBM:full",
+                "TIME_SERIES_DAILY:IBM:compact").inOrder();
+        assertThat(refreshed).hasSize(300);
+        assertThat(refreshed.get(0).get("date")).isEqualTo("2024-01-11");
+        assertThat(refreshed.get(1).get("date")).isEqualTo("2024-01-10");
+        assertThat(refreshed.get(299).get("date")).isEqualTo(longRange.get(298).get("date"));
+    }
+
+    @Test
+    public void getStockPrice_WhenRateLimited_ShouldServeStaleValue() {
+        // Arrange
+        Map<String, Object> fresh = stockService.getStockPrice("IBM");
+        forcedResponse.set("{\"Note\": \"Thank you for using Alpha Vantage! Our standard API call frequency is 5 calls per minute.\"}");
+
+        // Act
+        clock.advance(Duration.ofMinutes(6));
+        Map<String, Object> stale = stockService.getStockPrice("IBM");
+
+        // Assert
+        assertThat(stale).isEqualTo(fresh);
+        assertThat(meterRegistry.counter("stock.cache.stale.served").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void getStockPrice_WhenRateLimitedWithoutCache_ShouldThrow() {
+        // Arrange
+        forcedResponse.set("{\"Information\": \"rate limit\"}");
+
+        // Act & Assert
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> stockService.getStockPrice("IBM"));
+        assertThat(thrown).hasMessageThat().contains("rate limit");
+    }
+
+    @Test
+    public void getStockPrice_OnAnotherInstance_ShouldReadSharedRedisTier() {
+        // Arrange
+        stockService.getStockPrice("IBM");
+        StockService otherInstance = newStockService();
+
+        // Act
+        Map<String, Object> result = otherInstance.getStockPrice("IBM");
+
+        // Assert
+        assertThat(upstreamRequests).hasSize(1);
+        assertThat(result.get("lastUpdated")).isEqualTo("2024-01-10");
+    }
+
+    @Test
+    public void getCompanyOverview_ShouldBeCachedForOverviewTtl() {
+        // Act
+        Map<String, Object> overview = stockService.getCompanyOverview("IBM");
+        stockService.getCompanyOverview("IBM");
+        clock.advance(Duration.ofHours(25));
+        stockService.getCompanyOverview("IBM");
+
+        // Assert
+        assertThat(overview.get("Name")).isEqualTo("International Business Machines");
+        assertThat(overview.get("MarketCap")).isEqualTo("150000000000");
+        assertThat(upstreamRequests).containsExactly("OVERVIEW:IBM", "OVERVIEW:IBM");
+    }
+
+    private StockService newStockService() {
+        AlphaVantageClient client = new AlphaVantageClient(new RestTemplateBuilder(),
+                "http://127.0.0.1:" + stubServer.getAddress().getPort(), "test-key", 5000);
+        MarketDataCache cache = new MarketDataCache(stringRedisTemplate, meterRegistry, 100, Duration.ofDays(7), clock);
+        DependencyGuards guards = new DependencyGuards(new MockEnvironment(), new SimpleMeterRegistry());
+        return new StockService(client, cache, guards, Duration.ofMinutes(5), Duration.ofHours(24), 1300, clock);
+    }
+
+    private void handleQuery(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new ConcurrentHashMap<>();
+        for (String pair : exchange.getRequestURI().getRawQuery().split("&")) {
+            String[] parts = pair.split("=", 2);
+            params.put(parts[0], parts.length > 1 ? parts[1] : "");
+        }
+        String function = params.get("function");
+        upstreamRequests.add(function + ":" + params.get("symbol")
+                + (params.containsKey("outputsize") ? ":" + params.get("outputsize") : ""));
+        if (responseDelayMillis > 0) {
+            try {
+                Thread.sleep(responseDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        String body = forcedResponse.get();
+        if (body == null) {
+            body = "OVERVIEW".equals(function)
+                    ? "{\"Symbol\": \"IBM\", \"Name\": \"International Business Machines\", \"Exchange\": \"NYSE\","
+                    + " \"Industry\": \"IT Services\", \"PERatio\": \"22.5\", \"MarketCapitalization\": \"150000000000\"}"
+                    : dailySeries("full".equals(params.get("outputsize")) ? 500 : StockService.COMPACT_DAYS);
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // 从 latestTradingDay 往前生成 count 个交易日，收盘价随日期变化，便于区分
+    private String dailySeries(int count) {
+        StringBuilder json = new StringBuilder("{\"Meta Data\": {}, \"Time Series (Daily)\": {");
+        LocalDate date = latestTradingDay.get();
+        for (int i = 0; i < count; date = date.minusDays(1)) {
+            if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                continue;
+            }
+            double close = 100 + date.getDayOfYear() / 10.0;
+            json.append(i == 0 ? "" : ", ")
+                    .append('"').append(date).append("\": {")
+                    .append("\"1. open\": \"").append(close - 1).append("\", ")
+                    .append("\"2. high\": \"").append(close + 2).append("\", ")
+                    .append("\"3. low\": \"").append(close - 2).append("\", ")
+                    .append("\"4. close\": \"").append(close).append("\", ")
+                    .append("\"5. volume\": \"").append(1000 + i).append("\"}");
+            i++;
+        }
+        return json.append("}}").toString();
+    }
+
+    private static final class MutableClock extends Clock {
+        private final AtomicReference<Instant> now;
+
+        private MutableClock(Instant start) {
+            this.now = new AtomicReference<>(start);
+        }
+
+        void set(Instant instant) {
+            now.set(instant);
+        }
+
+        void advance(Duration duration) {
+            now.updateAndGet(instant -> instant.plus(duration));
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now.get();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.demo.service.weather;
+
+import com.example.demo.service.resilience.DependencyGuards;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.client.RestTemplate;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class WeatherServiceTest {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Mock private RestTemplate restTemplate;
+
+    private final AtomicLong nanos = new AtomicLong();
+    private SimpleMeterRegistry meterRegistry;
+    private WeatherService weatherService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(restTemplate.getForObject(any(URI.class), eq(JsonNode.class))).thenAnswer(invocation -> {
+            URI uri = invocation.getArgument(0);
+            return uri.getPath().endsWith("forecast.json") ? forecastBody(3) : currentBody("current");
+        });
+        meterRegistry = new SimpleMeterRegistry();
+        weatherService = new WeatherService(restTemplate, "test-key",
+                new DependencyGuards(new MockEnvironment(), new SimpleMeterRegistry()), meterRegistry,
+                Duration.ofMinutes(5), Duration.ofMinutes(30), 3, 100, nanos::get);
+    }
+
+    @Test
+    public void getCurrentWeather_SameLocationSpelledDifferently_ShouldCallUpstreamOnce() {
+        // Act
+        JsonNode first = weatherService.getCurrentWeather("Sydney, AU");
+        JsonNode second = weatherService.getCurrentWeather("  sydney,au ");
+
+        // Assert
+        assertThat(second).isEqualTo(first);
+        verify(restTemplate, times(1)).getForObject(argThat((URI uri) -> uri.getQuery().contains("q=sydney,au")),
+                eq(JsonNode.class));
+    }
+
+    @Test
+    public void getCurrentWeather_AfterTtl_ShouldRefetch() {
+        // Arrange
+        weatherService.getCurrentWeather("Sydney,AU");
+
+        // Act
+        nanos.addAndGet(Duration.ofMinutes(6).toNanos());
+        weatherService.getCurrentWeather("Sydney,AU");
+
+        // Assert
+        verify(restTemplate, times(2)).getForObject(any(URI.class), eq(JsonNode.class));
+    }
+
+    @Test
+    public void getCurrentWeather_WithFreshForecast_ShouldReuseForecastPayload() {
+        // Arrange
+        weatherService.getForecast("Sydney,AU", 3);
+
+        // Act
+        JsonNode current = weatherService.getCurrentWeather("Sydney,AU");
+
+        // Assert
+        assertThat(current.get("current").get("condition").get("text").asText()).isEqualTo("forecast");
+        assertThat(current.get("location").get("name").asText()).isEqualTo("Sydney");
+        verify(restTemplate, never()).getForObject(argThat((URI uri) -> uri.getPath().endsWith("current.json")),
+                eq(JsonNode.class));
+    }
+
+    @Test
+    public void getCurrentWeather_WithForecastOlderThanCurrentTtl_ShouldFetchCurrent() {
+        // Arrange
+        weatherService.getForecast("Sydney,AU", 3);
+
+        // Act
+        nanos.addAndGet(Duration.ofMinutes(10).toNanos());
+        JsonNode current = weatherService.getCurrentWeather("Sydney,AU");
+
+        // Assert
+        assertThat(current.get("current").get("condition").get("text").asText()).isEqualTo("current");
+    }
+
+    @Test
+    public void getForecast_ShorterRangeAfterLonger_ShouldTrimCachedPayload() {
+        // Act
+        JsonNode first = weatherService.getForecast("Sydney,AU", 1);
+        JsonNode threeDays = weatherService.getForecast("Sydney,AU", 3);
+        JsonNode oneDay = weatherService.getForecast("Sydney,AU", 1);
+
+        // Assert
+        assertThat(first.get("forecast").get("forecastday").size()).isEqualTo(1);
+        assertThat(threeDays.get("forecast").get("forecastday").size()).isEqualTo(3);
+        assertThat(oneDay.get("forecast").get("forecastday").size()).isEqualTo(1);
+        verify(restTemplate, times(1)).getForObject(argThat((URI uri) -> uri.getQuery().contains("days=3")),
+                eq(JsonNode.class));
+    }
+
+    @Test
+    public void getForecast_ConcurrentRequests_ShouldShareOneUpstreamCall() throws Exception {
+        // Arrange
+        when(restTemplate.getForObject(any(URI.class), eq(JsonNode.class))).thenAnswer(invocation -> {
+            Thread.sleep(300);
+            return forecastBody(3);
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<JsonNode>> results = new ArrayList<>();
+
+        // Act
+        for (int i = 0; i < 8; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return weatherService.getForecast("Sydney,AU", 2);
+            }));
+        }
+        start.countDown();
+        for (Future<JsonNode> result : results) {
+            assertThat(result.get().get("forecast").get("forecastday").size()).isEqualTo(2);
+        }
+        pool.shutdown();
+
+        // Assert
+        verify(restTemplate, times(1)).getForObject(any(URI.class), eq(JsonNode.class));
+    }
+
+    @Test
+    public void normalizeLocation_ShouldCanonicaliseNamesAndRoundCoordinates() {
+        assertThat(WeatherService.normalizeLocation(" New   York , US ")).isEqualTo("new york,us");
+        assertThat(WeatherService.normalizeLocation("-33.86785, 151.20732")).isEqualTo("-33.87,151.21");
+        assertThrows(IllegalArgumentException.class, () -> WeatherService.normalizeLocation(" "));
+    }
+
+    @Test
+    public void getCurrentWeather_UpstreamFailure_ShouldWrapAndNotCache() {
+        // Arrange
+        when(restTemplate.getForObject(any(URI.class), eq(JsonNode.class))).thenThrow(new IllegalStateException("boom"));
+
+        // Act & Assert
+        RuntimeException thrown = assertThrows(RuntimeException.class, () -> weatherService.getCurrentWeather("Sydney"));
+        assertThat(thrown).hasMessageThat().isEqualTo("Weather service error");
+        assertThrows(RuntimeException.class, () -> weatherService.getCurrentWeather("Sydney"));
+        verify(restTemplate, times(2)).getForObject(any(URI.class), eq(JsonNode.class));
+    }
+
+    private static JsonNode currentBody(String condition) throws Exception {
+        return MAPPER.readTree("{\"location\": {\"name\": \"Sydney\"}, \"current\": {\"temp_c\": 21.0,"
+                + " \"condition\": {\"text\": \"" + condition + "\"}}}");
+    }
+
+    private static JsonNode forecastBody(int days) throws Exception {
+        StringBuilder forecastDays = new StringBuilder();
+        for (int i = 0; i < days; i++) {
+            forecastDays.append(i == 0 ? "" : ", ")
+                    .append("{\"date\": \"2024-01-1").append(i).append("\", \"day\": {\"maxtemp_c\": 25.0}}");
+        }
+        return MAPPER.readTree("{\"location\": {\"name\": \"Sydney\"}, \"current\": {\"temp_c\": 20.0,"
+                + " \"condition\": {\"text\": \"forecast\"}}, \"forecast\": {\"forecastday\": [" + forecastDays + "]}}");
+    }
+}
@@ -9,17 +9,27 @@ import org.mockito.MockitoAnnotations;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class CsvFilterTest {
 
     private CsvFilter csvFilter;
     private static final String TEST_CSV_PATH = "test.csv";
+    private static final ZoneId ZONE = ZoneId.of("Australia/Sydney");
 
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
-        csvFilter = new CsvFilter();
+        csvFilter = new CsvFilter(ZONE);
     }
 
     @Test
@@ -38,6 +48,10 @@ public class CsvFilterTest {
         Truth.assertThat(records).isNotNull();
         Truth.assertThat(records).isNotEmpty();
         Truth.assertThat(records.size()).isEqualTo(2);
+        Truth.assertThat(records.get(0).getType()).isEqualTo("Expense");
+        Truth.assertThat(records.get(0).getAmount()).isEqualTo(100.0);
+        Truth.assertThat(records.get(0).getTransactionTime()).isEqualTo(ZonedDateTime.of(2024, 1, 1, 0, 0, 0, 0, ZONE));
+        Truth.assertThat(records.get(1).getType()).isEqualTo("Income");
         System.out.println("testImportCsvSuccess passed!");
 
         // Cleanup
@@ -55,9 +69,9 @@ public class CsvFilterTest {
         // Act
         List<TransactionRecord> records = csvFilter.importCsv(TEST_CSV_PATH);
 
-        // Assert
+        // Assert: 缺少类型 / 金额 / 时间列的文件无法导入
         Truth.assertThat(records).isNotNull();
-        Truth.assertThat(records).isNotEmpty();  // 即使缺少列，也应该创建记录
+        Truth.assertThat(records).isEmpty();
         System.out.println("testImportCsvWithMissingColumns passed!");
 
         // Cleanup
@@ -92,6 +106,92 @@ public class CsvFilterTest {
         System.out.println("testImportCsvWithInvalidPath passed!");
     }
 
+    @Test
+    public void testStreamWeChatStatementWithPreamble() {
+        // Arrange: 微信账单表头前有说明行，“交易类型”是分类，“收/支”才是收入 / 支出
+        String csv = "微信支付账单明细,,,,,,\n" +
+                "起始时间：[2024-01-01 00:00:00],,,,,,\n" +
+                ",,,,,,\n" +
+                "交易时间,交易类型,交易对方,商品,收/支,金额(元),支付方式\n" +
+                "2024-01-03 12:30:00,商户消费,便利店,\"饮料,零食\",支出,\"¥1,234.50\",零钱\n";
+
+        // Act
+        List<CsvFilter.CsvRow> rows = parse(csv);
+
+        // Assert
+        Truth.assertThat(rows).hasSize(1);
+        TransactionRecord record = rows.get(0).record();
+        Truth.assertThat(record.getType()).isEqualTo("Expense");
+        Truth.assertThat(record.getCategory()).isEqualTo("商户消费");
+        Truth.assertThat(record.getAmount()).isEqualTo(1234.5);
+        Truth.assertThat(record.getTransactionMethod()).isEqualTo("零钱");
+        Truth.assertThat(record.getTransactionDescription()).isEqualTo("饮料,零食");
+        Truth.assertThat(record.getTransactionTime()).isEqualTo(ZonedDateTime.of(2024, 1, 3, 12, 30, 0, 0, ZONE));
+    }
+
+    @Test
+    public void testStreamRejectsInvalidRowsWithLineNumbers() {
+        // Arrange
+        String csv = "Type,Amount,Date,Category\n" +
+                "Expense,12.5,2024-02-01,Food\n" +
+                "不计收支,10,2024-02-01,Transfer\n" +
+                "Income,abc,2024-02-01,Salary\n" +
+                "Income,-5,2024-02-01,Salary\n" +
+                "Expense,3,yesterday,Food\n" +
+                ",,,\n" +
+                "Income,1000,2024/2/3,\n";
+
+        // Act
+        List<CsvFilter.CsvRow> rows = parse(csv);
+
+        // Assert: 空行被跳过，负数金额取绝对值
+        Truth.assertThat(rows).hasSize(6);
+        Truth.assertThat(rows.get(0).isValid()).isTrue();
+        Truth.assertThat(rows.get(1).error()).contains("Unsupported transaction type");
+        Truth.assertThat(rows.get(1).lineNumber()).isEqualTo(3);
+        Truth.assertThat(rows.get(2).error()).contains("Invalid amount");
+        Truth.assertThat(rows.get(3).record().getAmount()).isEqualTo(5.0);
+        Truth.assertThat(rows.get(4).error()).contains("Invalid transaction time");
+        Truth.assertThat(rows.get(5).record().getCategory()).isEqualTo("uncategorized");
+        Truth.assertThat(rows.get(5).lineNumber()).isEqualTo(8);
+    }
+
+    @Test
+    public void testStreamWithoutRequiredHeaderThrows() {
+        assertThrows(IllegalArgumentException.class,
+                () -> csvFilter.stream(new StringReader("a,b\n1,2\n")));
+    }
+
+    @Test
+    public void testStreamReadsRowsLazily() throws Exception {
+        // Arrange: 一个 10 万行的 CSV，只取第一行时不应读完整个文件
+        CountingReader reader = new CountingReader(generateCsv(100_000));
+
+        // Act
+        try (Stream<CsvFilter.CsvRow> rows = csvFilter.stream(reader)) {
+            Iterator<CsvFilter.CsvRow> iterator = rows.iterator();
+            Truth.assertThat(iterator.next().isValid()).isTrue();
+
+            // Assert
+            Truth.assertThat(reader.charsRead).isLessThan(reader.length / 10);
+        }
+        Truth.assertThat(reader.closed).isTrue();
+    }
+
+    private List<CsvFilter.CsvRow> parse(String csv) {
+        try (Stream<CsvFilter.CsvRow> rows = csvFilter.stream(new StringReader(csv))) {
+            return rows.collect(Collectors.toList());
+        }
+    }
+
+    private static String generateCsv(int rows) {
+        StringBuilder csv = new StringBuilder("交易时间,收/支,金额(元),交易分类\n");
+        for (int i = 0; i < rows; i++) {
+            csv.append("2024-01-01 10:00:00,支出,").append(i % 1000 + 1).append(".00,Food\n");
+        }
+        return csv.toString();
+    }
+
     private void createTestCsvFile(String content) throws IOException {
         try (FileWriter writer = new FileWriter(TEST_CSV_PATH)) {
             writer.write(content);
@@ -104,4 +204,31 @@ public class CsvFilterTest {
             file.delete();
         }
     }
-}
\ No newline at end of file
+
+    private static final class CountingReader extends Reader {
+        private final StringReader delegate;
+        private final int length;
+        private long charsRead;
+        private boolean closed;
+
+        CountingReader(String content) {
+            this.delegate = new StringReader(content);
+            this.length = content.length();
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int len) throws IOException {
+            int read = delegate.read(buffer, offset, len);
+            if (read > 0) {
+                charsRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            delegate.close();
+        }
+    }
+}
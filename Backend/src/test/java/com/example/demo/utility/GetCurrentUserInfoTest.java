@@ -2,6 +2,7 @@ package com.example.demo.utility;
 
 import com.example.demo.model.TransactionUser;
 import com.example.demo.repository.TransactionUserDao;
+import com.example.demo.service.session.UserSessionStore;
 import com.example.demo.utility.jwt.JwtUtil;
 import com.google.common.truth.Truth;
 import org.junit.runner.RunWith;
@@ -9,8 +10,6 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.springframework.data.redis.core.StringRedisTemplate;
-import org.springframework.data.redis.core.ValueOperations;
 
 import java.util.Optional;
 
@@ -23,14 +22,11 @@ public class GetCurrentUserInfoTest {
     private JwtUtil jwtUtil;
 
     @Mock
-    private StringRedisTemplate stringRedisTemplate;
+    private UserSessionStore userSessionStore;
 
     @Mock
     private TransactionUserDao transactionUserDao;
 
-    @Mock
-    private ValueOperations<String, String> valueOperations;
-
     public static void main(String[] args) throws Exception {
         GetCurrentUserInfoTest test = new GetCurrentUserInfoTest();
         test.setup();
@@ -44,8 +40,7 @@ public class GetCurrentUserInfoTest {
 
     public void setup() {
         MockitoAnnotations.openMocks(this);
-        getCurrentUserInfo = new GetCurrentUserInfo(jwtUtil, stringRedisTemplate, transactionUserDao);
-        Mockito.when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        getCurrentUserInfo = new GetCurrentUserInfo(jwtUtil, userSessionStore, transactionUserDao);
     }
 
     public void testGetCurrentUserId() {
@@ -65,9 +60,7 @@ public class GetCurrentUserInfoTest {
     public void testGetCurrentAccountId() {
         // Arrange
         Long userId = 1L;
-        String pattern = "login_user:1:current_account";
-        String expectedAccountId = "2";
-        Mockito.when(valueOperations.get(pattern)).thenReturn(expectedAccountId);
+        Mockito.when(userSessionStore.getCurrentAccountId(userId)).thenReturn(2L);
 
         // Act
         Long result = getCurrentUserInfo.getCurrentAccountId(userId);
@@ -80,8 +73,7 @@ public class GetCurrentUserInfoTest {
     public void testGetCurrentAccountIdWithInvalidValue() {
         // Arrange
         Long userId = 1L;
-        String pattern = "login_user:1:current_account";
-        Mockito.when(valueOperations.get(pattern)).thenReturn(null);
+        Mockito.when(userSessionStore.getCurrentAccountId(userId)).thenReturn(null);
 
         // Act
         Long result = getCurrentUserInfo.getCurrentAccountId(userId);
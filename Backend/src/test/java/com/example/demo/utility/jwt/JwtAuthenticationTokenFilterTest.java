@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -30,8 +31,12 @@ import org.springframework.mock.web.MockFilterChain;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import com.example.demo.model.security.CurrentUserContext;
+import com.example.demo.model.security.JwtPrincipal;
 import com.example.demo.service.security.UserDetailService;
+import com.example.demo.service.session.UserSessionStore;
 
 import jakarta.servlet.ServletException;
 
@@ -44,6 +49,9 @@ public class JwtAuthenticationTokenFilterTest {
     @Mock
     private UserDetailService userDetailService;
 
+    @Mock
+    private UserSessionStore userSessionStore;
+
     @InjectMocks
     private JwtAuthenticationTokenFilter jwtAuthenticationTokenFilter;
 
@@ -54,6 +62,7 @@ public class JwtAuthenticationTokenFilterTest {
     @BeforeEach
     public void setup() {
         MockitoAnnotations.openMocks(this);
+        SecurityContextHolder.clearContext();
         request = new MockHttpServletRequest();
         response = new MockHttpServletResponse();
         filterChain = new MockFilterChain();
@@ -66,17 +75,8 @@ public class JwtAuthenticationTokenFilterTest {
         request.addHeader("Authorization", token);
 
         // Mock JwtUtil methods
-        when(jwtUtil.validateToken("validToken")).thenReturn(true);
-        when(jwtUtil.getUserIdFromToken("validToken")).thenReturn(1L);  // Mock a user ID from the token
-        when(jwtUtil.getRoleFromToken("validToken")).thenReturn("ROLE_USER");  // Mock a role from the token
-
-        // Mock UserDetails
-        UserDetails userDetails = mock(UserDetails.class);
-        Collection<GrantedAuthority> authorities = Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"));
-
-        // Mock getAuthorities and userDetailsService.loadUserById
-        doReturn(authorities).when(userDetails).getAuthorities();
-        when(userDetailService.loadUserById(1L)).thenReturn(userDetails);
+        JwtPrincipal principal = new JwtPrincipal(1L, "testuser", "ROLE_USER", "validToken");
+        when(jwtUtil.resolvePrincipal("validToken")).thenReturn(Optional.of(principal));
 
         // Mock FilterChain
         FilterChain filterChain = mock(FilterChain.class);
@@ -84,17 +84,56 @@ public class JwtAuthenticationTokenFilterTest {
         // Execute the filter
         jwtAuthenticationTokenFilter.doFilterInternal(request, response, filterChain);
 
-        // Verify the token was validated
-        verify(jwtUtil).validateToken("validToken");
-
-        // Assert that the authentication is set in the SecurityContext
+        // Verify the token was parsed exactly once and exposed to downstream handlers
+        verify(jwtUtil, times(1)).resolvePrincipal("validToken");
+        verify(jwtUtil, never()).getUserIdFromToken(anyString());
+        assertThat(request.getAttribute(JwtPrincipal.REQUEST_ATTRIBUTE)).isEqualTo(principal);
+
+        // The request context reads the current account lazily, and only once per request
+        CurrentUserContext context = (CurrentUserContext) request.getAttribute(CurrentUserContext.REQUEST_ATTRIBUTE);
+        assertThat(context.userId()).isEqualTo(1L);
+        verifyNoInteractions(userSessionStore);
+        when(userSessionStore.getCurrentAccountId(1L)).thenReturn(5L);
+        assertThat(context.currentAccountId()).isEqualTo(5L);
+        assertThat(context.requireCurrentAccountId()).isEqualTo(5L);
+        verify(userSessionStore, times(1)).getCurrentAccountId(1L);
+
+        // Claims-only mode: the principal comes straight from the token, no user lookup
+        verify(userDetailService, never()).loadUserById(anyLong());
         assertThat(SecurityContextHolder.getContext().getAuthentication()).isNotNull();
         assertThat(SecurityContextHolder.getContext().getAuthentication().isAuthenticated()).isTrue();
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(principal);
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList()).containsExactly("ROLE_USER");
 
         // Verify that the request was passed to the next filter in the chain
         verify(filterChain).doFilter(request, response);
     }
 
+    @Test
+    public void testDoFilterInternal_LoadUserEntityMode() throws ServletException, IOException {
+        // Entity mode loads the UserDetails through UserDetailService
+        ReflectionTestUtils.setField(jwtAuthenticationTokenFilter, "loadUserEntity", true);
+        request.addHeader("Authorization", "Bearer validToken");
+
+        JwtPrincipal principal = new JwtPrincipal(1L, "testuser", "ROLE_USER", "validToken");
+        when(jwtUtil.resolvePrincipal("validToken")).thenReturn(Optional.of(principal));
+
+        UserDetails userDetails = mock(UserDetails.class);
+        Collection<GrantedAuthority> authorities = Collections.singletonList(new SimpleGrantedAuthority("ROLE_USER"));
+        doReturn(authorities).when(userDetails).getAuthorities();
+        when(userDetailService.loadUserById(1L)).thenReturn(userDetails);
+
+        FilterChain filterChain = mock(FilterChain.class);
+
+        jwtAuthenticationTokenFilter.doFilterInternal(request, response, filterChain);
+
+        verify(userDetailService).loadUserById(1L);
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getPrincipal()).isEqualTo(userDetails);
+        verify(filterChain).doFilter(request, response);
+    }
+
 
 
     @Test
@@ -104,13 +143,13 @@ public class JwtAuthenticationTokenFilterTest {
         request.addHeader("Authorization", token);
 
         // Mock JWT utility behavior
-        when(jwtUtil.validateToken("invalidToken")).thenReturn(false);
+        when(jwtUtil.resolvePrincipal("invalidToken")).thenReturn(Optional.empty());
 
         // Execute filter
         jwtAuthenticationTokenFilter.doFilterInternal(request, response, filterChain);
 
         // Verify that the token was validated
-        verify(jwtUtil).validateToken("invalidToken");
+        verify(jwtUtil).resolvePrincipal("invalidToken");
 
         // Assert that no authentication is set in the security context
         assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
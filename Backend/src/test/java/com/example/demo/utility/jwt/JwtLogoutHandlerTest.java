@@ -1,8 +1,8 @@
 package com.example.demo.utility.jwt;
 
-import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.Mockito.*;
 
+import com.example.demo.service.session.UserSessionStore;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.junit.jupiter.api.BeforeEach;
@@ -10,27 +10,16 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.ScanOptions;
-import org.springframework.data.redis.core.Cursor;
-import org.springframework.data.redis.connection.RedisConnection;
-import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
-import java.util.HashSet;
-import java.util.Set;
-
 public class JwtLogoutHandlerTest {
 
     @Mock
     private JwtUtil jwtUtil;
 
     @Mock
-    private RedisTemplate<String, Object> redisTemplate;
-
-    @Mock
-    private RedisConnection redisConnection;
+    private UserSessionStore userSessionStore;
 
     @Mock
     private HttpServletRequest request;
@@ -56,34 +45,16 @@ public class JwtLogoutHandlerTest {
         String token = "validToken";
         Long userId = 1L;
 
-        // Mock JWT和Redis操作
+        // Mock JWT操作
         when(jwtUtil.extractTokenFromRequest(request)).thenReturn(token);
         when(jwtUtil.getUserIdFromToken(token)).thenReturn(userId);
 
-        // Mock Redis scan结果
-        Set<String> keys = new HashSet<>();
-        keys.add("login_user:1:someSessionKey");
-
-        Cursor<byte[]> cursor = mock(Cursor.class);
-        when(cursor.hasNext()).thenReturn(true, false);
-        when(cursor.next()).thenReturn("login_user:1:someSessionKey".getBytes());
-
-        when(redisTemplate.execute(any(RedisCallback.class))).thenAnswer(invocation -> {
-            RedisCallback<Set<String>> callback = invocation.getArgument(0);
-            return callback.doInRedis(redisConnection);
-        });
-        when(redisConnection.scan(any(ScanOptions.class))).thenReturn(cursor);
-
         // 执行登出操作
         jwtLogoutHandler.logout(request, response, authentication);
 
-        // 验证Redis keys删除
-        verify(redisTemplate).delete(keys);
+        // 验证会话哈希被删除，token 被注销
+        verify(userSessionStore).close(userId);
         verify(jwtUtil).invalidateToken(token);
-
-        // 断言
-        assertThat(keys).isNotEmpty();
-        assertThat(keys).contains("login_user:1:someSessionKey");
     }
 
     @Test
@@ -96,5 +67,6 @@ public class JwtLogoutHandlerTest {
 
         // 验证token未被尝试失效
         verify(jwtUtil, never()).invalidateToken(anyString());
+        verify(userSessionStore, never()).close(any());
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,20 @@
 package com.example.demo.utility.jwt;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.*;
 
+import com.example.demo.model.security.JwtPrincipal;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.Optional;
+
 public class JwtUtilTest {
 
     private JwtUtil jwtUtil;
@@ -107,6 +113,100 @@ public class JwtUtilTest {
         assertThat(isValid).isFalse();
     }
 
+    @Test
+    public void testParseClaims_ReusesCachedClaims() {
+        // Arrange
+        String token = jwtUtil.generateToken(1L, "testuser", "ROLE_USER");
+
+        // Act
+        Claims first = jwtUtil.parseClaims(token);
+        Claims second = jwtUtil.parseClaims(token);
+
+        // Assert
+        assertThat(first.get("userId", Long.class)).isEqualTo(1L);
+        assertThat(second).isSameInstanceAs(first);
+    }
+
+    @Test
+    public void testParseClaims_InvalidToken() {
+        assertThrows(JwtException.class, () -> jwtUtil.parseClaims("invalidToken"));
+    }
+
+    @Test
+    public void testResolvePrincipal_ValidToken() {
+        // Arrange
+        String token = jwtUtil.generateToken(1L, "testuser", "ROLE_USER");
+
+        // Act
+        Optional<JwtPrincipal> principal = jwtUtil.resolvePrincipal(token);
+
+        // Assert
+        assertThat(principal.isPresent()).isTrue();
+        assertThat(principal.get().userId()).isEqualTo(1L);
+        assertThat(principal.get().username()).isEqualTo("testuser");
+        assertThat(principal.get().role()).isEqualTo("ROLE_USER");
+    }
+
+    @Test
+    public void testResolvePrincipal_InvalidatedToken() {
+        // Arrange
+        String token = jwtUtil.generateToken(1L, "testuser", "ROLE_USER");
+        jwtUtil.resolvePrincipal(token);
+        jwtUtil.invalidateToken(token);
+
+        // Act & Assert
+        assertThat(jwtUtil.resolvePrincipal(token).isPresent()).isFalse();
+    }
+
+    @Test
+    public void testGenerateToken_AssignsUniqueJti() {
+        // Arrange
+        String first = jwtUtil.generateToken(1L, "testuser", "ROLE_USER");
+        String second = jwtUtil.generateToken(1L, "testuser", "ROLE_USER");
+
+        // Act & Assert
+        assertThat(jwtUtil.parseClaims(first).getId()).isNotNull();
+        assertThat(jwtUtil.parseClaims(first).getId()).isNotEqualTo(jwtUtil.parseClaims(second).getId());
+    }
+
+    @Test
+    public void testInvalidateToken_RevokesByJtiUntilExpiration() {
+        // Arrange
+        TokenRevocationStore revocationStore = mock(TokenRevocationStore.class);
+        JwtUtil util = new JwtUtil(SECRET, EXPIRATION_TIME, 100, revocationStore);
+        String token = util.generateToken(1L, "testuser", "ROLE_USER");
+        Claims claims = util.parseClaims(token);
+
+        // Act
+        util.invalidateToken(token);
+
+        // Assert
+        verify(revocationStore).revoke(claims.getId(), claims.getExpiration());
+    }
+
+    @Test
+    public void testInvalidateToken_OnlyRevokesThatToken() {
+        // Arrange
+        String revoked = jwtUtil.generateToken(1L, "testuser", "ROLE_USER");
+        String other = jwtUtil.generateToken(1L, "testuser", "ROLE_USER");
+
+        // Act
+        jwtUtil.invalidateToken(revoked);
+
+        // Assert
+        assertThat(jwtUtil.validateToken(revoked)).isFalse();
+        assertThat(jwtUtil.validateToken(other)).isTrue();
+    }
+
+    @Test
+    public void testInvalidateToken_InvalidTokenIsIgnored() {
+        // Act
+        jwtUtil.invalidateToken("invalid.token.here");
+
+        // Assert
+        assertThat(jwtUtil.validateToken("invalid.token.here")).isFalse();
+    }
+
     @Test
     public void testExtractTokenFromRequest_ValidToken() {
         // Arrange
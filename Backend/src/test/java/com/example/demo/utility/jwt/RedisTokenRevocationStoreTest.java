@@ -0,0 +1,144 @@
+package com.example.demo.utility.jwt;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+public class RedisTokenRevocationStoreTest {
+
+    @Mock
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private RedisMessageListenerContainer listenerContainer;
+
+    private RedisTokenRevocationStore store;
+
+    @BeforeEach
+    public void setup() {
+        MockitoAnnotations.openMocks(this);
+        when(stringRedisTemplate.opsForValue()).thenReturn(valueOperations);
+        store = new RedisTokenRevocationStore(stringRedisTemplate, listenerContainer, 1000);
+    }
+
+    @Test
+    public void testSubscribesToRevocationChannel() {
+        verify(listenerContainer).addMessageListener(eq(store), eq(new ChannelTopic(RedisTokenRevocationStore.CHANNEL)));
+    }
+
+    @Test
+    public void testRevokeWritesToRedisWithTtlAndBroadcasts() {
+        Date expiresAt = new Date(System.currentTimeMillis() + 60_000);
+
+        store.revoke("jti-1", expiresAt);
+
+        verify(valueOperations).set(eq("revoked_token:jti-1"), eq(String.valueOf(expiresAt.getTime())), any(Duration.class));
+        verify(stringRedisTemplate).convertAndSend(RedisTokenRevocationStore.CHANNEL, "jti-1:" + expiresAt.getTime());
+        assertThat(store.isRevoked("jti-1")).isTrue();
+    }
+
+    @Test
+    public void testRevokeExpiredTokenIsNoop() {
+        store.revoke("jti-old", new Date(System.currentTimeMillis() - 1000));
+
+        verify(valueOperations, never()).set(anyString(), anyString(), any(Duration.class));
+        assertThat(store.isRevoked("jti-old")).isFalse();
+    }
+
+    @Test
+    public void testIsRevokedNearCacheHitDoesNotHitRedis() {
+        store.revoke("jti-1", new Date(System.currentTimeMillis() + 60_000));
+
+        assertThat(store.isRevoked("jti-1")).isTrue();
+
+        verify(valueOperations, never()).get(anyString());
+    }
+
+    @Test
+    public void testIsRevokedFallsBackToRedisOnNearCacheMiss() {
+        // 条目被淘汰、广播丢失或重启后尚未同步时，近端缓存没有记录，但 Redis 里有
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        when(valueOperations.get("revoked_token:jti-evicted")).thenReturn(String.valueOf(expiresAt));
+
+        assertThat(store.isRevoked("jti-evicted")).isTrue();
+        assertThat(store.isRevoked("jti-evicted")).isTrue();
+        assertThat(store.isRevoked("unknown")).isFalse();
+
+        // 第二次命中回填后的近端缓存
+        verify(valueOperations, times(1)).get("revoked_token:jti-evicted");
+    }
+
+    @Test
+    public void testIsRevokedFailsClosedWhenRedisUnavailable() {
+        when(valueOperations.get(anyString())).thenThrow(new RuntimeException("redis down"));
+
+        assertThat(store.isRevoked("jti-unknown")).isTrue();
+    }
+
+    @Test
+    public void testOnMessageUpdatesNearCache() {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        Message message = mock(Message.class);
+        when(message.getBody()).thenReturn(("jti-2:" + expiresAt).getBytes(StandardCharsets.UTF_8));
+
+        store.onMessage(message, null);
+
+        assertThat(store.isRevoked("jti-2")).isTrue();
+    }
+
+    @Test
+    public void testOnMessageIgnoresMalformedPayload() {
+        Message message = mock(Message.class);
+        when(message.getBody()).thenReturn("garbage".getBytes(StandardCharsets.UTF_8));
+
+        store.onMessage(message, null);
+
+        assertThat(store.isRevoked("garbage")).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testResyncLoadsRevokedTokensFromRedis() {
+        long expiresAt = System.currentTimeMillis() + 60_000;
+        Cursor<String> cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenReturn(true, false);
+        when(cursor.next()).thenReturn("revoked_token:jti-3");
+        when(stringRedisTemplate.scan(any(ScanOptions.class))).thenReturn(cursor);
+        when(valueOperations.multiGet(List.of("revoked_token:jti-3"))).thenReturn(List.of(String.valueOf(expiresAt)));
+
+        store.resyncFromRedis();
+
+        assertThat(store.isRevoked("jti-3")).isTrue();
+    }
+
+    @Test
+    public void testResyncSwallowsRedisFailures() {
+        when(stringRedisTemplate.scan(any(ScanOptions.class))).thenThrow(new RuntimeException("redis down"));
+
+        store.resyncFromRedis();
+
+        assertThat(store.isRevoked("anything")).isFalse();
+    }
+}
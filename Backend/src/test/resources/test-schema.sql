@@ -1,4 +1,6 @@
 -- 清理现有表
+DROP TABLE IF EXISTS transaction_outbox;
+DROP TABLE IF EXISTS account_daily_rollup;
 DROP TABLE IF EXISTS financial_report;
 DROP TABLE IF EXISTS transaction_record;
 DROP TABLE IF EXISTS account;
@@ -54,6 +56,10 @@ CREATE TABLE transaction_record (
                                     FOREIGN KEY (account_id) REFERENCES account(id) ON DELETE CASCADE
 );
 
+-- 交易记录列表的 keyset 分页和按类型筛选
+CREATE INDEX idx_record_account_time ON transaction_record (account_id, transaction_time DESC, id DESC);
+CREATE INDEX idx_record_account_type ON transaction_record (account_id, type);
+
 -- 创建财务报告表
 CREATE TABLE financial_report (
                                   id BIGINT PRIMARY KEY AUTO_INCREMENT,
@@ -62,6 +68,34 @@ CREATE TABLE financial_report (
                                   FOREIGN KEY (user_id) REFERENCES transaction_users(id) ON DELETE CASCADE
 );
 
+-- 创建账户每日汇总表
+CREATE TABLE account_daily_rollup (
+                                      id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                      account_id BIGINT NOT NULL,
+                                      category VARCHAR(255) NOT NULL,
+                                      rollup_date DATE NOT NULL,
+                                      type VARCHAR(50) NOT NULL,
+                                      total_amount DECIMAL(19, 2) NOT NULL DEFAULT 0,
+                                      record_count BIGINT NOT NULL DEFAULT 0,
+                                      CONSTRAINT uk_account_daily_rollup UNIQUE (account_id, category, rollup_date, type),
+                                      FOREIGN KEY (account_id) REFERENCES account(id) ON DELETE CASCADE
+);
+
+-- 创建事务 outbox 表
+CREATE TABLE transaction_outbox (
+                                      id BIGINT PRIMARY KEY AUTO_INCREMENT,
+                                      event_type VARCHAR(50) NOT NULL,
+                                      aggregate_id VARCHAR(255) NOT NULL,
+                                      payload CLOB,
+                                      status VARCHAR(20) NOT NULL,
+                                      attempts INT NOT NULL DEFAULT 0,
+                                      next_attempt_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+                                      claim_token VARCHAR(36),
+                                      created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+                                      last_error VARCHAR(1000)
+);
+CREATE INDEX idx_outbox_status_next_attempt ON transaction_outbox (status, next_attempt_at);
+
 -- 插入测试用户
 INSERT INTO transaction_users (id, username, password, email, role_id)
 VALUES
@@ -1,16 +1,32 @@
 import { request } from "@/utils";
 
-// Get all records for an account
-export function getAllRecordsAPI() {
+// Get one page of records for an account, newest first; pass the previous nextCursor to continue
+export function getRecordsPageAPI(cursor, limit = 50) {
     return request({
         url: `/records/all`,
         method: 'GET',
+        params: {
+            cursor: cursor,
+            limit: limit,
+        },
     }).catch(error => {
         console.error('API Error:', error);
         throw error;
     });
 }
 
+// Get all records for an account by following the page cursors
+export async function getAllRecordsAPI() {
+    const records = [];
+    let cursor;
+    do {
+        const response = await getRecordsPageAPI(cursor, 200);
+        records.push(...response.data.items);
+        cursor = response.data.nextCursor;
+    } while (cursor);
+    return { data: records };
+}
+
 // Get a specific record by ID for an account
 export function getRecordByIdAPI(id) {
     return request({
@@ -37,10 +53,14 @@ export function getRecentRecordsAPI(duration) {
 }
 
 // Get records by type (income or expense)
-export function getRecordsByTypeAPI(type) {
+export function getRecordsByTypeAPI(type, cursor, limit = 50) {
     return request({
         url: `/records/by-type/${type}`,
         method: 'GET',
+        params: {
+            cursor: cursor,
+            limit: limit,
+        },
     }).catch(error => {
         console.error('API Error:', error);
         throw error;
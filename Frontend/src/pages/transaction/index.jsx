@@ -91,7 +91,7 @@ export default function EnhancedTransactionManagement() {
     const fetchAllRecords = async () => {
         try {
             setLoading(true)
-            const response = await getAllRecordsAPI(0, 10)
+            const response = await getAllRecordsAPI()
             const transactions = response.data || []
             setAllTransactions(transactions)
             setDisplayedTransactions(transactions)